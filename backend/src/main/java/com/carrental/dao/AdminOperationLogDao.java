@@ -2,6 +2,7 @@ package com.carrental.dao;
 
 import com.carrental.model.AdminOperationLog;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
@@ -10,6 +11,10 @@ import java.util.List;
 
 public class AdminOperationLogDao extends BaseDao<AdminOperationLog> {
 
+    private static final AsyncLogWriter.Table TABLE = new AsyncLogWriter.Table("admin_operation_logs",
+        "operator_id, operator_name, operator_role, module, action, target, "
+        + "result, ip, remark, created_at");
+
     @Override
     protected AdminOperationLog mapRow(ResultSet rs) throws SQLException {
         AdminOperationLog log = new AdminOperationLog();
@@ -39,31 +44,17 @@ public class AdminOperationLogDao extends BaseDao<AdminOperationLog> {
             log.getResult(), log.getIp(), log.getRemark());
     }
 
+    public void append(AdminOperationLog log) {
+        AsyncLogWriter.getInstance().submit(TABLE, log.getOperatorId(), log.getOperatorName(),
+            log.getOperatorRole(), log.getModule(), log.getAction(), log.getTarget(),
+            log.getResult(), log.getIp(), log.getRemark(), AsyncLogWriter.now());
+    }
+
     public List<AdminOperationLog> findAll(String operator, String module, String result,
             LocalDateTime startDate, LocalDateTime endDate, int page, int pageSize) {
         StringBuilder sql = new StringBuilder("SELECT * FROM admin_operation_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
-
-        if (operator != null && !operator.isBlank()) {
-            sql.append(" AND operator_name LIKE ?");
-            params.add("%" + operator + "%");
-        }
-        if (module != null && !module.isBlank()) {
-            sql.append(" AND module = ?");
-            params.add(module);
-        }
-        if (result != null && !result.isBlank()) {
-            sql.append(" AND result = ?");
-            params.add(result);
-        }
-        if (startDate != null) {
-            sql.append(" AND created_at >= ?");
-            params.add(startDate);
-        }
-        if (endDate != null) {
-            sql.append(" AND created_at <= ?");
-            params.add(endDate);
-        }
+        appendFilters(sql, params, operator, module, result, startDate, endDate);
 
         sql.append(" ORDER BY created_at DESC LIMIT ? OFFSET ?");
         params.add(pageSize);
@@ -72,11 +63,37 @@ public class AdminOperationLogDao extends BaseDao<AdminOperationLog> {
         return executeQuery(sql.toString(), params.toArray());
     }
 
+    public CursorPage<AdminOperationLog> findAllByCursor(String operator, String module, String result,
+            LocalDateTime startDate, LocalDateTime endDate, PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM admin_operation_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, operator, module, result, startDate, endDate);
+        return executeKeysetQuery(sql, params, "", cursor, pageSize,
+            AdminOperationLog::getCreatedAt, AdminOperationLog::getId);
+    }
+
+    public long streamAll(String operator, String module, String result,
+            LocalDateTime startDate, LocalDateTime endDate,
+            RowHandler<AdminOperationLog> handler) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM admin_operation_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, operator, module, result, startDate, endDate);
+        sql.append(" ORDER BY created_at DESC, id DESC");
+        return streamQuery(sql.toString(), handler, params.toArray());
+    }
+
     public long countAll(String operator, String module, String result,
             LocalDateTime startDate, LocalDateTime endDate) {
         StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM admin_operation_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, operator, module, result, startDate, endDate);
 
+        return executeCount(sql.toString(), params.toArray());
+    }
+
+    private void appendFilters(StringBuilder sql, List<Object> params,
+            String operator, String module, String result,
+            LocalDateTime startDate, LocalDateTime endDate) {
         if (operator != null && !operator.isBlank()) {
             sql.append(" AND operator_name LIKE ?");
             params.add("%" + operator + "%");
@@ -97,7 +114,5 @@ public class AdminOperationLogDao extends BaseDao<AdminOperationLog> {
             sql.append(" AND created_at <= ?");
             params.add(endDate);
         }
-
-        return executeCount(sql.toString(), params.toArray());
     }
 }
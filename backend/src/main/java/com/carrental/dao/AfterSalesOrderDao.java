@@ -6,7 +6,11 @@ import com.carrental.util.DatabaseUtil;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 public class AfterSalesOrderDao extends BaseDao<AfterSalesOrder> {
 
@@ -89,6 +93,38 @@ public class AfterSalesOrderDao extends BaseDao<AfterSalesOrder> {
         return null;
     }
 
+    /**
+     * Latest after-sales request per order for a batch of orders, keyed by order id.
+     * Orders without one are absent from the result.
+     */
+    public Map<Long, AfterSalesOrder> findLatestByOrderIds(Collection<Long> orderIds) throws SQLException {
+        Map<Long, AfterSalesOrder> latest = new HashMap<>();
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        ids.remove(null);
+        for (int from = 0; from < ids.size(); from += MAX_IN_CLAUSE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MAX_IN_CLAUSE, ids.size()));
+            StringBuilder sql = new StringBuilder("SELECT * FROM after_sales_orders WHERE order_id IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            // Newest first per order, so the first row seen for an order is its latest
+            sql.append(") ORDER BY order_id, created_at DESC");
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setLong(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        AfterSalesOrder a = mapRow(rs);
+                        latest.putIfAbsent(a.getOrderId(), a);
+                    }
+                }
+            }
+        }
+        return latest;
+    }
+
     public boolean hasActiveByOrderId(Long orderId) throws SQLException {
         String sql = "SELECT COUNT(1) FROM after_sales_orders WHERE order_id = ? AND status IN (1,2,5)";
         try (Connection conn = DatabaseUtil.getConnection();
@@ -108,27 +144,7 @@ public class AfterSalesOrderDao extends BaseDao<AfterSalesOrder> {
                                          int page, int pageSize) {
         StringBuilder sql = new StringBuilder("SELECT * FROM after_sales_orders WHERE 1=1");
         List<Object> params = new ArrayList<>();
-
-        if (status != null) {
-            sql.append(" AND status = ?");
-            params.add(status);
-        }
-        if (orderNo != null && !orderNo.isEmpty()) {
-            sql.append(" AND order_no LIKE ?");
-            params.add("%" + orderNo + "%");
-        }
-        if (userId != null) {
-            sql.append(" AND user_id = ?");
-            params.add(userId);
-        }
-        if (startDate != null) {
-            sql.append(" AND created_at >= ?");
-            params.add(startDate);
-        }
-        if (endDate != null) {
-            sql.append(" AND created_at <= ?");
-            params.add(endDate);
-        }
+        appendFilters(sql, params, status, orderNo, userId, startDate, endDate);
 
         sql.append(" ORDER BY created_at DESC LIMIT ? OFFSET ?");
         params.add(pageSize);
@@ -137,31 +153,21 @@ public class AfterSalesOrderDao extends BaseDao<AfterSalesOrder> {
         return executeQuery(sql.toString(), params.toArray());
     }
 
+    public CursorPage<AfterSalesOrder> findAllByCursor(Integer status, String orderNo, Long userId,
+                                                       java.time.LocalDateTime startDate, java.time.LocalDateTime endDate,
+                                                       PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM after_sales_orders WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, status, orderNo, userId, startDate, endDate);
+        return executeKeysetQuery(sql, params, "", cursor, pageSize,
+            AfterSalesOrder::getCreatedAt, AfterSalesOrder::getId);
+    }
+
     public long countAll(Integer status, String orderNo, Long userId,
                          java.time.LocalDateTime startDate, java.time.LocalDateTime endDate) {
         StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM after_sales_orders WHERE 1=1");
         List<Object> params = new ArrayList<>();
-
-        if (status != null) {
-            sql.append(" AND status = ?");
-            params.add(status);
-        }
-        if (orderNo != null && !orderNo.isEmpty()) {
-            sql.append(" AND order_no LIKE ?");
-            params.add("%" + orderNo + "%");
-        }
-        if (userId != null) {
-            sql.append(" AND user_id = ?");
-            params.add(userId);
-        }
-        if (startDate != null) {
-            sql.append(" AND created_at >= ?");
-            params.add(startDate);
-        }
-        if (endDate != null) {
-            sql.append(" AND created_at <= ?");
-            params.add(endDate);
-        }
+        appendFilters(sql, params, status, orderNo, userId, startDate, endDate);
 
         return executeCount(sql.toString(), params.toArray());
     }
@@ -188,4 +194,28 @@ public class AfterSalesOrderDao extends BaseDao<AfterSalesOrder> {
         }
         return null;
     }
+
+    private void appendFilters(StringBuilder sql, List<Object> params, Integer status, String orderNo,
+                               Long userId, java.time.LocalDateTime startDate, java.time.LocalDateTime endDate) {
+        if (status != null) {
+            sql.append(" AND status = ?");
+            params.add(status);
+        }
+        if (orderNo != null && !orderNo.isEmpty()) {
+            sql.append(" AND order_no LIKE ?");
+            params.add("%" + orderNo + "%");
+        }
+        if (userId != null) {
+            sql.append(" AND user_id = ?");
+            params.add(userId);
+        }
+        if (startDate != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(startDate);
+        }
+        if (endDate != null) {
+            sql.append(" AND created_at <= ?");
+            params.add(endDate);
+        }
+    }
 }
@@ -0,0 +1,373 @@
+package com.carrental.dao;
+
+import com.carrental.util.DatabaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background writer for audit and event log rows.
+ *
+ * Request threads hand rows to a bounded queue and return immediately; a single
+ * flusher thread coalesces them into multi-row INSERT statements, one per table,
+ * whenever flushSize rows are waiting or flushIntervalMillis has passed since the
+ * oldest pending row. When the queue is full the caller waits up to
+ * offerTimeoutMillis and the row is then dropped and counted, so a slow database
+ * never stalls request handling indefinitely.
+ *
+ * Rows are stamped when submitted, not when flushed, so created_at values come from
+ * now(): the JVM clock shifted by its measured offset to the database's NOW(). Log
+ * times then line up with columns the database stamps itself (orders.created_at) even
+ * when the JVM and the database run in different time zones. The offset is measured
+ * by the flusher thread between batches, so now() never queries on a request thread.
+ */
+public final class AsyncLogWriter {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncLogWriter.class);
+
+    /** Keeps a multi-row INSERT well under MySQL's placeholder limit */
+    private static final int MAX_FLUSH_SIZE = 1000;
+
+    private static final long CLOCK_CHECK_INTERVAL_MILLIS = 10 * 60 * 1000L;
+
+    private static volatile AsyncLogWriter instance;
+
+    private final boolean enabled;
+    private final int flushSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+    private final BlockingQueue<Row> queue;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private volatile long clockOffsetMillis;
+    private long clockCheckedAt;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    /**
+     * Target table of a log row: the table name and its insert column list.
+     */
+    public static final class Table {
+        private final String name;
+        private final String columns;
+        private final String rowPlaceholders;
+        private final int columnCount;
+
+        public Table(String name, String columns) {
+            this.name = name;
+            this.columns = columns;
+            this.columnCount = columns.split(",").length;
+            StringBuilder sb = new StringBuilder("(");
+            for (int i = 0; i < columnCount; i++) {
+                sb.append(i == 0 ? "?" : ", ?");
+            }
+            this.rowPlaceholders = sb.append(')').toString();
+        }
+    }
+
+    private static final class Row {
+        final Table table;
+        final Object[] values;
+
+        Row(Table table, Object[] values) {
+            this.table = table;
+            this.values = values;
+        }
+    }
+
+    private AsyncLogWriter() {
+        enabled = Boolean.parseBoolean(DatabaseUtil.getProperty("app.log.async.enabled", "true"));
+        int capacity = Math.max(1, Integer.parseInt(
+            DatabaseUtil.getProperty("app.log.async.queueCapacity", "10000")));
+        flushSize = Math.min(MAX_FLUSH_SIZE, Math.max(1, Integer.parseInt(
+            DatabaseUtil.getProperty("app.log.async.flushSize", "200"))));
+        flushIntervalMillis = Math.max(1L, Long.parseLong(
+            DatabaseUtil.getProperty("app.log.async.flushIntervalMillis", "1000")));
+        offerTimeoutMillis = Math.max(0L, Long.parseLong(
+            DatabaseUtil.getProperty("app.log.async.offerTimeoutMillis", "50")));
+        shutdownTimeoutMillis = Math.max(0L, Long.parseLong(
+            DatabaseUtil.getProperty("app.log.async.shutdownTimeoutSeconds", "10"))) * 1000L;
+
+        queue = new ArrayBlockingQueue<>(capacity);
+        flusher = new Thread(this::runFlusher, "async-log-writer");
+        flusher.setDaemon(true);
+        if (enabled) {
+            flusher.start();
+        }
+    }
+
+    public static AsyncLogWriter getInstance() {
+        AsyncLogWriter local = instance;
+        if (local == null) {
+            synchronized (AsyncLogWriter.class) {
+                local = instance;
+                if (local == null) {
+                    local = new AsyncLogWriter();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Current time on the database clock, for stamping created_at of submitted rows
+     */
+    public static LocalDateTime now() {
+        return getInstance().databaseNow();
+    }
+
+    /**
+     * Stop the writer if it was ever started, flushing everything still queued.
+     */
+    public static void shutdownIfStarted() {
+        AsyncLogWriter local = instance;
+        if (local != null) {
+            local.shutdown();
+        }
+    }
+
+    /**
+     * Queue one row for insertion. Values must be in the table's column order.
+     * With the writer disabled the row is written synchronously instead.
+     *
+     * @return false when the row was dropped
+     */
+    public boolean submit(Table table, Object... values) {
+        if (values.length != table.columnCount) {
+            throw new IllegalArgumentException("Expected " + table.columnCount
+                + " values for " + table.name + ", got " + values.length);
+        }
+        submitted.incrementAndGet();
+        Row row = new Row(table, values);
+        if (!enabled) {
+            flush(List.of(row));
+            return true;
+        }
+        if (!running) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        try {
+            if (queue.offer(row) || queue.offer(row, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long total = dropped.incrementAndGet();
+        if (total == 1 || total % 1000 == 0) {
+            logger.warn("Log queue full, dropped {} rows so far", total);
+        }
+        return false;
+    }
+
+    /**
+     * Stop accepting rows and wait for the flusher to drain the queue.
+     */
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (!enabled) {
+            return;
+        }
+        flusher.interrupt();
+        try {
+            flusher.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive() || !queue.isEmpty()) {
+            logger.warn("Log writer stopped with {} rows still queued", queue.size());
+        } else {
+            logger.info("Log writer drained, {} rows written", written.get());
+        }
+    }
+
+    public int getQueueDepth() { return queue.size(); }
+    public long getSubmittedCount() { return submitted.get(); }
+    public long getWrittenCount() { return written.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+    public long getFailedCount() { return failed.get(); }
+
+    /**
+     * Counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running);
+        stats.put("queueDepth", queue.size());
+        stats.put("queueRemaining", queue.remainingCapacity());
+        stats.put("submitted", submitted.get());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        stats.put("flushes", flushes.get());
+        stats.put("flushSize", flushSize);
+        stats.put("flushIntervalMillis", flushIntervalMillis);
+        stats.put("clockOffsetMillis", clockOffsetMillis);
+        return stats;
+    }
+
+    private LocalDateTime databaseNow() {
+        if (!enabled) {
+            // Rows are written on the caller's thread anyway, so it may as well check the clock
+            synchronized (this) {
+                maybeMeasureClockOffset();
+            }
+        }
+        return LocalDateTime.now().plus(clockOffsetMillis, ChronoUnit.MILLIS);
+    }
+
+    /**
+     * Re-measure the clock offset once CLOCK_CHECK_INTERVAL_MILLIS has passed. Called by
+     * the flusher between batches, or by callers of now() when the writer is disabled.
+     */
+    private void maybeMeasureClockOffset() {
+        long now = System.currentTimeMillis();
+        if (now - clockCheckedAt > CLOCK_CHECK_INTERVAL_MILLIS) {
+            clockCheckedAt = now;
+            measureClockOffset();
+        }
+    }
+
+    /**
+     * Offset of the database's NOW() from the JVM clock, measured against the midpoint
+     * of the round trip. On failure the previous offset is kept and retried next interval.
+     */
+    private void measureClockOffset() {
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT NOW(3)")) {
+            LocalDateTime before = LocalDateTime.now();
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                LocalDateTime database = rs.getObject(1, LocalDateTime.class);
+                LocalDateTime after = LocalDateTime.now();
+                LocalDateTime local = before.plus(ChronoUnit.MILLIS.between(before, after) / 2, ChronoUnit.MILLIS);
+                long offset = ChronoUnit.MILLIS.between(local, database);
+                if (Math.abs(offset - clockOffsetMillis) > 1000) {
+                    logger.info("Database clock is {} ms ahead of the JVM clock", offset);
+                }
+                clockOffsetMillis = offset;
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not read the database clock, keeping offset {} ms", clockOffsetMillis, e);
+        }
+    }
+
+    private void runFlusher() {
+        List<Row> batch = new ArrayList<>(flushSize);
+        while (running) {
+            maybeMeasureClockOffset();
+            try {
+                Row first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= flushSize || wait <= 0) {
+                        break;
+                    }
+                    Row next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // shutdown() interrupts to skip the remaining wait; drain below
+            }
+            flush(batch);
+            batch.clear();
+        }
+
+        // Clear a pending interrupt so the pool hands out connections for the final drain
+        Thread.interrupted();
+        while (!queue.isEmpty()) {
+            queue.drainTo(batch, flushSize);
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<Row> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Table, List<Row>> byTable = new LinkedHashMap<>();
+        for (Row row : batch) {
+            byTable.computeIfAbsent(row.table, t -> new ArrayList<>()).add(row);
+        }
+        for (Map.Entry<Table, List<Row>> entry : byTable.entrySet()) {
+            Table table = entry.getKey();
+            List<Row> rows = entry.getValue();
+            try {
+                insert(table, rows);
+                written.addAndGet(rows.size());
+            } catch (SQLException e) {
+                logger.error("Batch insert into {} failed for {} rows, retrying one by one",
+                    table.name, rows.size(), e);
+                // Isolate the bad row instead of losing the whole batch
+                for (Row row : rows) {
+                    try {
+                        insert(table, List.of(row));
+                        written.incrementAndGet();
+                    } catch (SQLException single) {
+                        failed.incrementAndGet();
+                        logger.error("Failed to write log row into {}", table.name, single);
+                    }
+                }
+            }
+        }
+        flushes.incrementAndGet();
+    }
+
+    private void insert(Table table, List<Row> rows) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table.name)
+            .append(" (").append(table.columns).append(") VALUES ");
+        Object[] params = new Object[rows.size() * table.columnCount];
+        int offset = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(table.rowPlaceholders);
+            Object[] values = rows.get(i).values;
+            System.arraycopy(values, 0, params, offset, values.length);
+            offset += values.length;
+        }
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            BaseDao.setParameters(stmt, params);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -4,16 +4,32 @@ import com.carrental.util.DatabaseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
- * Base DAO class with common database operations
+ * Base DAO class with common database operations.
+ *
+ * SQL errors are logged and turned into empty results; inside DatabaseUtil.inTransaction
+ * they are also reported through DatabaseUtil.markFailed so the transaction rolls back.
  */
 public abstract class BaseDao<T> {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
+    protected static final int MAX_IN_CLAUSE = 500;
+    /** Connector/J's marker fetch size for streaming a result set row by row */
+    private static final int STREAM_ROW_BY_ROW = Integer.MIN_VALUE;
+
     /**
      * Map ResultSet row to entity
      */
@@ -34,6 +50,7 @@ public abstract class BaseDao<T> {
             }
         } catch (SQLException e) {
             logger.error("Error executing query: {}", sql, e);
+            DatabaseUtil.markFailed(e);
         }
         return results;
     }
@@ -52,6 +69,7 @@ public abstract class BaseDao<T> {
             }
         } catch (SQLException e) {
             logger.error("Error executing query: {}", sql, e);
+            DatabaseUtil.markFailed(e);
         }
         return null;
     }
@@ -66,6 +84,7 @@ public abstract class BaseDao<T> {
             return stmt.executeUpdate();
         } catch (SQLException e) {
             logger.error("Error executing update: {}", sql, e);
+            DatabaseUtil.markFailed(e);
             return -1;
         }
     }
@@ -87,10 +106,146 @@ public abstract class BaseDao<T> {
             }
         } catch (SQLException e) {
             logger.error("Error executing insert: {}", sql, e);
+            DatabaseUtil.markFailed(e);
         }
         return null;
     }
 
+    /**
+     * Load rows by a set of ids with "IN (...)" queries, e.g.
+     * executeQueryByIds("SELECT * FROM users WHERE id IN ", ids, User::getId).
+     * Ids are de-duplicated and sent in chunks of at most MAX_IN_CLAUSE placeholders.
+     */
+    protected Map<Long, T> executeQueryByIds(String sqlPrefix, Collection<Long> ids, Function<T, Long> keyOf) {
+        Map<Long, T> result = new LinkedHashMap<>();
+        Set<Long> unique = new LinkedHashSet<>(ids);
+        unique.remove(null);
+        Iterator<Long> it = unique.iterator();
+        while (it.hasNext()) {
+            List<Object> chunk = new ArrayList<>();
+            while (it.hasNext() && chunk.size() < MAX_IN_CLAUSE) {
+                chunk.add(it.next());
+            }
+            StringBuilder sql = new StringBuilder(sqlPrefix).append('(');
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+            for (T row : executeQuery(sql.toString(), chunk.toArray())) {
+                result.put(keyOf.apply(row), row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pick rows from a map in the order of ids, skipping ids without a row
+     */
+    protected static <R> List<R> inOrder(List<Long> ids, Map<Long, R> byId) {
+        List<R> list = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            R row = byId.get(id);
+            if (row != null) {
+                list.add(row);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Append "AND column IN (?, ...)" for ids; an empty list appends a predicate matching nothing
+     */
+    protected static void appendIdIn(StringBuilder sql, List<Object> params, String column, List<Long> ids) {
+        if (ids.isEmpty()) {
+            sql.append(" AND 1 = 0");
+            return;
+        }
+        sql.append(" AND ").append(column).append(" IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+            params.add(ids.get(i));
+        }
+        sql.append(')');
+    }
+
+    /**
+     * Execute a keyset (cursor) paginated query ordered by (created_at, id) descending.
+     * The sql must already contain a WHERE clause; the keyset predicate, ORDER BY and
+     * LIMIT are appended here, so deep pages cost the same as the first one.
+     * One extra row is fetched to tell whether a next page exists.
+     *
+     * @param alias table alias prefix for the key columns, e.g. "v." or ""
+     */
+    protected CursorPage<T> executeKeysetQuery(StringBuilder sql, List<Object> params, String alias,
+            PageCursor cursor, int pageSize, Function<T, LocalDateTime> createdAtOf, Function<T, Long> idOf) {
+        int limit = Math.max(pageSize, 1);
+        String createdAt = alias + "created_at";
+        String id = alias + "id";
+        List<Object> keysetParams = new ArrayList<>(params);
+        if (cursor != null) {
+            sql.append(" AND (").append(createdAt).append(" < ? OR (")
+               .append(createdAt).append(" = ? AND ").append(id).append(" < ?))");
+            keysetParams.add(cursor.getCreatedAt());
+            keysetParams.add(cursor.getCreatedAt());
+            keysetParams.add(cursor.getId());
+        }
+        sql.append(" ORDER BY ").append(createdAt).append(" DESC, ").append(id).append(" DESC LIMIT ?");
+        keysetParams.add(limit + 1);
+
+        List<T> rows = executeQuery(sql.toString(), keysetParams.toArray());
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = new ArrayList<>(rows.subList(0, limit));
+            T last = rows.get(rows.size() - 1);
+            LocalDateTime lastCreatedAt = createdAtOf.apply(last);
+            Long lastId = idOf.apply(last);
+            if (lastCreatedAt != null && lastId != null) {
+                nextCursor = new PageCursor(lastCreatedAt, lastId).encode();
+            }
+        }
+        return new CursorPage<>(rows, nextCursor);
+    }
+
+    /**
+     * Callback receiving rows of a streamed query one at a time
+     */
+    @FunctionalInterface
+    public interface RowHandler<T> {
+        void handle(T row) throws IOException;
+    }
+
+    /**
+     * Stream a query row by row through a forward-only, read-only statement so the result
+     * set is never materialised; memory use is independent of the row count. Streaming
+     * is switched on for this statement only (fetch size Integer.MIN_VALUE), leaving
+     * every other query on the shared pool buffered as before. The connection cannot run
+     * another statement until the stream is read, so handlers must not query. Database
+     * errors surface as IOException since the caller is usually half way through writing
+     * a response.
+     *
+     * @return number of rows handed to the handler
+     */
+    protected long streamQuery(String sql, RowHandler<T> handler, Object... params) throws IOException {
+        long count = 0;
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql,
+                 ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(STREAM_ROW_BY_ROW);
+            setParameters(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(mapRow(rs));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error streaming query after {} rows: {}", count, sql, e);
+            DatabaseUtil.markFailed(e);
+            throw new IOException("Streaming query failed", e);
+        }
+        return count;
+    }
+
     /**
      * Execute count query
      */
@@ -105,6 +260,7 @@ public abstract class BaseDao<T> {
             }
         } catch (SQLException e) {
             logger.error("Error executing count: {}", sql, e);
+            DatabaseUtil.markFailed(e);
         }
         return 0;
     }
@@ -112,7 +268,7 @@ public abstract class BaseDao<T> {
     /**
      * Set parameters for prepared statement
      */
-    protected void setParameters(PreparedStatement stmt, Object... params) throws SQLException {
+    protected static void setParameters(PreparedStatement stmt, Object... params) throws SQLException {
         if (params != null) {
             for (int i = 0; i < params.length; i++) {
                 Object param = params[i];
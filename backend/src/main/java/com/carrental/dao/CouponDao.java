@@ -12,6 +12,8 @@ import java.util.List;
  */
 public class CouponDao extends BaseDao<Coupon> {
 
+    private static final EntityCache<Coupon> CACHE = EntityCache.create("coupons", 300, 2000, Coupon::new);
+
     @Override
     protected Coupon mapRow(ResultSet rs) throws SQLException {
         Coupon coupon = new Coupon();
@@ -43,7 +45,7 @@ public class CouponDao extends BaseDao<Coupon> {
      */
     public Coupon findById(Long id) {
         String sql = "SELECT * FROM coupons WHERE id = ?";
-        return executeQuerySingle(sql, id);
+        return CACHE.get(id, key -> executeQuerySingle(sql, key));
     }
 
     /**
@@ -88,12 +90,14 @@ public class CouponDao extends BaseDao<Coupon> {
                 vip_level_required = ?, updated_at = NOW()
             WHERE id = ?
             """;
-        return executeUpdate(sql, coupon.getCode(), coupon.getName(),
+        int result = executeUpdate(sql, coupon.getCode(), coupon.getName(),
             coupon.getDescription(), coupon.getType(), coupon.getMinAmount(),
             coupon.getDiscountAmount(), coupon.getDiscountRate(), coupon.getMaxDiscount(),
             coupon.getTotalCount(), coupon.getPerUserLimit(),
             coupon.getStartTime(), coupon.getEndTime(), coupon.getApplicableCategories(),
             coupon.getApplicableVehicles(), coupon.getStatus(), coupon.getVipLevelRequired(), coupon.getId());
+        CACHE.invalidate(coupon.getId());
+        return result;
     }
 
     /**
@@ -101,7 +105,9 @@ public class CouponDao extends BaseDao<Coupon> {
      */
     public int incrementUsedCount(Long id) {
         String sql = "UPDATE coupons SET used_count = COALESCE(used_count, 0) + 1, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, id);
+        int result = executeUpdate(sql, id);
+        CACHE.invalidate(id);
+        return result;
     }
 
     /**
@@ -144,7 +150,9 @@ public class CouponDao extends BaseDao<Coupon> {
      */
     public int updateStatus(Long id, Integer status) {
         String sql = "UPDATE coupons SET status = ?, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, status, id);
+        int result = executeUpdate(sql, status, id);
+        CACHE.invalidate(id);
+        return result;
     }
 
     /**
@@ -0,0 +1,25 @@
+package com.carrental.dao;
+
+import java.util.List;
+
+/**
+ * One page of a keyset paginated query plus the token for the next page
+ */
+public final class CursorPage<T> {
+    private final List<T> list;
+    private final String nextCursor;
+
+    public CursorPage(List<T> list, String nextCursor) {
+        this.list = list;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getList() { return list; }
+
+    /**
+     * Token for the following page, or null when this is the last page
+     */
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return nextCursor != null; }
+}
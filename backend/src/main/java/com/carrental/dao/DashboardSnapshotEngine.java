@@ -0,0 +1,594 @@
+package com.carrental.dao;
+
+import com.carrental.util.DatabaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Precomputed admin dashboard figures.
+ *
+ * All overview, stats, alerts, rankings and recent trend numbers are computed by a
+ * handful of grouped queries in one read-only transaction and published as an immutable
+ * snapshot, refreshed on a fixed schedule. Dashboard requests only read the current
+ * snapshot, so polling costs no database work regardless of how many admins are
+ * watching. Date windows are passed as timestamp bounds so idx_created is used.
+ */
+public final class DashboardSnapshotEngine {
+    private static final Logger logger = LoggerFactory.getLogger(DashboardSnapshotEngine.class);
+
+    public static final int MAINTENANCE_CYCLE_DAYS = 180;
+    /** Longest trend window served from the snapshot; longer ones are queried live */
+    public static final int TREND_DAYS = 90;
+    private static final int TOP_LIMIT = 5;
+
+    private static volatile DashboardSnapshotEngine instance;
+
+    private final long refreshSeconds;
+    private ScheduledExecutorService scheduler;
+    private volatile Snapshot current;
+
+    /**
+     * One consistent set of dashboard figures
+     */
+    public static final class Snapshot {
+        private final Map<String, Object> overview;
+        private final Map<String, Map<String, Object>> statsByPeriod;
+        private final List<Map<String, Object>> alerts;
+        private final Map<String, Object> rankings;
+        private final List<Map<String, Object>> dailyTrends;
+        private final LocalDate trendsEndDate;
+        private final LocalDateTime generatedAt;
+
+        Snapshot(Map<String, Object> overview, Map<String, Map<String, Object>> statsByPeriod,
+                 List<Map<String, Object>> alerts, Map<String, Object> rankings,
+                 List<Map<String, Object>> dailyTrends, LocalDate trendsEndDate, LocalDateTime generatedAt) {
+            this.overview = freeze(overview);
+            this.statsByPeriod = freeze(statsByPeriod);
+            this.alerts = freeze(alerts);
+            this.rankings = freeze(rankings);
+            this.dailyTrends = freeze(dailyTrends);
+            this.trendsEndDate = trendsEndDate;
+            this.generatedAt = generatedAt;
+        }
+
+        public Map<String, Object> getOverview() { return overview; }
+        public List<Map<String, Object>> getAlerts() { return alerts; }
+        public Map<String, Object> getRankings() { return rankings; }
+        public LocalDateTime getGeneratedAt() { return generatedAt; }
+
+        /**
+         * Stats for "day", "week" or anything else (month)
+         */
+        public Map<String, Object> getStats(String period) {
+            if ("day".equals(period) || "week".equals(period)) {
+                return statsByPeriod.get(period);
+            }
+            return statsByPeriod.get("month");
+        }
+
+        /**
+         * Daily trend rows for the last numDays days plus today, or null when the
+         * window is outside what the snapshot holds and must be queried live.
+         */
+        public List<Map<String, Object>> getTrends(int numDays) {
+            if (numDays < 0 || numDays > TREND_DAYS || !trendsEndDate.equals(LocalDate.now())) {
+                return null;
+            }
+            String from = trendsEndDate.minusDays(numDays).toString();
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (Map<String, Object> day : dailyTrends) {
+                if (((String) day.get("date")).compareTo(from) >= 0) {
+                    result.add(day);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Read-only view of a map or list and everything nested in it, so the published
+     * snapshot cannot be changed by whoever it is handed to
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T freeze(T value) {
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), freeze(entry.getValue()));
+            }
+            return (T) Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                copy.add(freeze(item));
+            }
+            return (T) Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    private DashboardSnapshotEngine() {
+        refreshSeconds = Math.max(1L, Long.parseLong(
+            DatabaseUtil.getProperty("app.dashboard.refreshSeconds", "30")));
+    }
+
+    public static DashboardSnapshotEngine getInstance() {
+        DashboardSnapshotEngine local = instance;
+        if (local == null) {
+            synchronized (DashboardSnapshotEngine.class) {
+                local = instance;
+                if (local == null) {
+                    local = new DashboardSnapshotEngine();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Stop the refresh schedule if it was ever started.
+     */
+    public static void shutdownIfStarted() {
+        DashboardSnapshotEngine local = instance;
+        if (local != null) {
+            local.shutdown();
+        }
+    }
+
+    /**
+     * Current snapshot. The first call computes it synchronously and starts the
+     * background refresh; later calls never touch the database.
+     */
+    public Snapshot getSnapshot() {
+        Snapshot snapshot = current;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            if (current == null) {
+                refresh();
+                startScheduler();
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Recompute the snapshot now; on failure the previous snapshot is kept.
+     */
+    public synchronized void refresh() {
+        try {
+            current = compute();
+        } catch (SQLException e) {
+            logger.error("Failed to refresh dashboard snapshot", e);
+            if (current == null) {
+                current = empty();
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void startScheduler() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dashboard-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                logger.error("Dashboard snapshot refresh crashed", e);
+            }
+        }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    private Snapshot compute() throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        LocalDateTime todayStart = today.atStartOfDay();
+        LocalDateTime tomorrowStart = todayStart.plusDays(1);
+        LocalDateTime weekStart = todayStart.minusDays(7);
+        LocalDateTime monthStart = today.withDayOfMonth(1).atStartOfDay();
+
+        // One connection and one read-only snapshot transaction: a background refresh
+        // should not take several pool connections from live requests, and the figures
+        // (counts vs. revenue, alerts vs. overview) must describe the same moment
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            VehicleFigures vehicles;
+            Map<Integer, Long> orderCounts;
+            WindowFigures windows;
+            long dueReturns;
+            long userCount;
+            List<Map<String, Object>> overdueList;
+            List<Map<String, Object>> topVehicles;
+            List<Map<String, Object>> topStores;
+            List<Map<String, Object>> trends;
+            try {
+                vehicles = loadVehicleFigures(conn, today);
+                orderCounts = loadOrderStatusCounts(conn);
+                windows = loadWindowFigures(conn, todayStart, tomorrowStart, weekStart, monthStart);
+                dueReturns = countLong(conn, """
+                    SELECT COUNT(*) FROM orders
+                    WHERE status = 5 AND return_time >= ? AND return_time < ?
+                    """, todayStart, tomorrowStart);
+                userCount = countLong(conn, "SELECT COUNT(*) FROM users");
+                overdueList = loadOverdueMaintenanceVehicles(conn, today);
+                topVehicles = loadTopVehicles(conn);
+                topStores = loadTopStores(conn);
+                trends = loadDailyTrends(conn, todayStart.minusDays(TREND_DAYS));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setReadOnly(false);
+                conn.setAutoCommit(true);
+            }
+
+            // Overview
+            Map<String, Object> todayMetrics = new HashMap<>();
+            todayMetrics.put("orderCount", (int) windows.todayCount);
+            todayMetrics.put("gmv", windows.todayRevenue);
+            todayMetrics.put("avgOrderValue", windows.todayAvg);
+            long rented = vehicles.byStatus(3) + vehicles.byStatus(2);
+            if (vehicles.total > 0) {
+                double rentalRate = (double) rented / vehicles.total * 100;
+                todayMetrics.put("rentalRate", String.format("%.1f%%", rentalRate));
+            } else {
+                todayMetrics.put("rentalRate", "0%");
+            }
+
+            Map<String, Object> vehicleStats = new HashMap<>();
+            vehicleStats.put("total", vehicles.total);
+            vehicleStats.put("available", vehicles.byStatus(1));
+            vehicleStats.put("rented", vehicles.byStatus(3));
+            vehicleStats.put("maintenance", vehicles.byStatus(4));
+
+            Map<String, Object> orderStats = new HashMap<>();
+            orderStats.put("pending", orderCounts.getOrDefault(1, 0L));
+            orderStats.put("inProgress", orderCounts.getOrDefault(5, 0L));
+            orderStats.put("completed", orderCounts.getOrDefault(8, 0L));
+
+            Map<String, Object> users = new HashMap<>();
+            users.put("total", userCount);
+
+            Map<String, Object> overview = new HashMap<>();
+            overview.put("today", todayMetrics);
+            overview.put("vehicles", vehicleStats);
+            overview.put("maintenanceOverdue", overdueList);
+            overview.put("maintenanceOverdueCount", vehicles.maintenanceOverdue);
+            overview.put("orders", orderStats);
+            overview.put("users", users);
+
+            // Stats per period
+            Map<String, Map<String, Object>> stats = new HashMap<>();
+            stats.put("day", periodStats(windows.todayCount, windows.todayRevenue));
+            stats.put("week", periodStats(windows.weekCount, windows.weekRevenue));
+            stats.put("month", periodStats(windows.monthCount, windows.monthRevenue));
+
+            // Alerts
+            List<Map<String, Object>> alerts = new ArrayList<>();
+            long available = vehicles.byStatus(1);
+            if (available < 5) {
+                alerts.add(alert("inventory", "warning", "可租车辆不足，当前仅剩 " + available + " 辆"));
+            }
+            long pendingReview = orderCounts.getOrDefault(1, 0L);
+            if (pendingReview > 0) {
+                alerts.add(alert("order", "info", "有 " + pendingReview + " 个订单待审核"));
+            }
+            if (dueReturns > 0) {
+                alerts.add(alert("return", "warning", "今日有 " + dueReturns + " 个订单需还车"));
+            }
+            if (vehicles.expiringDocuments > 0) {
+                alerts.add(alert("maintenance", "danger", vehicles.expiringDocuments + " 辆车辆证照/保险即将到期"));
+            }
+
+            // Rankings
+            Map<String, Object> rankings = new HashMap<>();
+            rankings.put("topVehicles", topVehicles);
+            rankings.put("topStores", topStores);
+
+            return new Snapshot(overview, stats, alerts, rankings, trends, today, now);
+        }
+    }
+
+    private Snapshot empty() {
+        Map<String, Map<String, Object>> stats = new HashMap<>();
+        stats.put("day", periodStats(0, BigDecimal.ZERO));
+        stats.put("week", periodStats(0, BigDecimal.ZERO));
+        stats.put("month", periodStats(0, BigDecimal.ZERO));
+        Map<String, Object> rankings = new HashMap<>();
+        rankings.put("topVehicles", List.of());
+        rankings.put("topStores", List.of());
+        return new Snapshot(new HashMap<>(), stats, List.of(), rankings, List.of(),
+            LocalDate.now(), LocalDateTime.now());
+    }
+
+    private static Map<String, Object> periodStats(long orderCount, BigDecimal revenue) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("orderCount", (int) orderCount);
+        stats.put("revenue", revenue);
+        return stats;
+    }
+
+    private static Map<String, Object> alert(String type, String level, String message) {
+        Map<String, Object> alert = new HashMap<>();
+        alert.put("type", type);
+        alert.put("level", level);
+        alert.put("message", message);
+        return alert;
+    }
+
+    private static final class VehicleFigures {
+        final Map<Integer, Long> countByStatus = new HashMap<>();
+        long total;
+        long expiringDocuments;
+        long maintenanceOverdue;
+
+        long byStatus(int status) {
+            return countByStatus.getOrDefault(status, 0L);
+        }
+    }
+
+    private static final class WindowFigures {
+        long todayCount;
+        BigDecimal todayRevenue = BigDecimal.ZERO;
+        BigDecimal todayAvg = BigDecimal.ZERO;
+        long weekCount;
+        BigDecimal weekRevenue = BigDecimal.ZERO;
+        long monthCount;
+        BigDecimal monthRevenue = BigDecimal.ZERO;
+    }
+
+    /**
+     * Status breakdown, expiring documents and overdue maintenance in one pass over vehicles
+     */
+    private VehicleFigures loadVehicleFigures(Connection conn, LocalDate today) throws SQLException {
+        String sql = """
+            SELECT status,
+                   COUNT(*) AS cnt,
+                   COALESCE(SUM(CASE WHEN insurance_expiry <= ? OR inspection_expiry <= ?
+                                       OR registration_expiry <= ? THEN 1 ELSE 0 END), 0) AS expiring,
+                   COALESCE(SUM(CASE WHEN last_maintenance_date IS NULL
+                                       OR last_maintenance_date <= ? THEN 1 ELSE 0 END), 0) AS overdue
+            FROM vehicles
+            GROUP BY status
+            """;
+        LocalDate expiryLimit = today.plusDays(30);
+        LocalDate maintenanceLimit = today.minusDays(MAINTENANCE_CYCLE_DAYS);
+        VehicleFigures figures = new VehicleFigures();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, expiryLimit);
+            stmt.setObject(2, expiryLimit);
+            stmt.setObject(3, expiryLimit);
+            stmt.setObject(4, maintenanceLimit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long cnt = rs.getLong("cnt");
+                    figures.countByStatus.put(rs.getInt("status"), cnt);
+                    figures.total += cnt;
+                    figures.expiringDocuments += rs.getLong("expiring");
+                    figures.maintenanceOverdue += rs.getLong("overdue");
+                }
+            }
+        }
+        return figures;
+    }
+
+    private Map<Integer, Long> loadOrderStatusCounts(Connection conn) throws SQLException {
+        Map<Integer, Long> counts = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT status, COUNT(*) AS cnt FROM orders GROUP BY status");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getInt("status"), rs.getLong("cnt"));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Today / last 7 days / this month order counts and net revenue in one range scan
+     */
+    private WindowFigures loadWindowFigures(Connection conn, LocalDateTime todayStart,
+            LocalDateTime tomorrowStart, LocalDateTime weekStart, LocalDateTime monthStart) throws SQLException {
+        String sql = """
+            SELECT
+                COALESCE(SUM(CASE WHEN created_at >= ? AND created_at < ? THEN 1 ELSE 0 END), 0) AS today_count,
+                COALESCE(SUM(CASE WHEN created_at >= ? AND created_at < ? AND status = 8
+                                  THEN paid_amount - COALESCE(refund_amount,0) ELSE 0 END), 0) AS today_revenue,
+                COALESCE(AVG(CASE WHEN created_at >= ? AND created_at < ? AND status = 8
+                                  THEN paid_amount - COALESCE(refund_amount,0) ELSE NULL END), 0) AS today_avg,
+                COALESCE(SUM(CASE WHEN created_at >= ? THEN 1 ELSE 0 END), 0) AS week_count,
+                COALESCE(SUM(CASE WHEN created_at >= ? AND status = 8
+                                  THEN paid_amount - COALESCE(refund_amount,0) ELSE 0 END), 0) AS week_revenue,
+                COALESCE(SUM(CASE WHEN created_at >= ? THEN 1 ELSE 0 END), 0) AS month_count,
+                COALESCE(SUM(CASE WHEN created_at >= ? AND status = 8
+                                  THEN paid_amount - COALESCE(refund_amount,0) ELSE 0 END), 0) AS month_revenue
+            FROM orders
+            WHERE created_at >= ?
+            """;
+        LocalDateTime scanStart = weekStart.isBefore(monthStart) ? weekStart : monthStart;
+        WindowFigures figures = new WindowFigures();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            Object[] params = {
+                todayStart, tomorrowStart, todayStart, tomorrowStart, todayStart, tomorrowStart,
+                weekStart, weekStart, monthStart, monthStart, scanStart
+            };
+            for (int i = 0; i < params.length; i++) {
+                stmt.setTimestamp(i + 1, Timestamp.valueOf((LocalDateTime) params[i]));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    figures.todayCount = rs.getLong("today_count");
+                    figures.todayRevenue = rs.getBigDecimal("today_revenue");
+                    figures.todayAvg = rs.getBigDecimal("today_avg");
+                    figures.weekCount = rs.getLong("week_count");
+                    figures.weekRevenue = rs.getBigDecimal("week_revenue");
+                    figures.monthCount = rs.getLong("month_count");
+                    figures.monthRevenue = rs.getBigDecimal("month_revenue");
+                }
+            }
+        }
+        return figures;
+    }
+
+    private List<Map<String, Object>> loadDailyTrends(Connection conn, LocalDateTime from) throws SQLException {
+        String sql = """
+            SELECT DATE(created_at) as date,
+                   COUNT(*) as orders,
+                   COALESCE(SUM((paid_amount - COALESCE(refund_amount,0))), 0) as revenue
+            FROM orders
+            WHERE created_at >= ?
+            GROUP BY DATE(created_at)
+            ORDER BY date ASC
+            """;
+        List<Map<String, Object>> trends = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(from));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> day = new HashMap<>();
+                    day.put("date", rs.getDate("date").toString());
+                    day.put("orders", rs.getInt("orders"));
+                    day.put("revenue", rs.getBigDecimal("revenue"));
+                    trends.add(day);
+                }
+            }
+        }
+        return trends;
+    }
+
+    private List<Map<String, Object>> loadOverdueMaintenanceVehicles(Connection conn, LocalDate today)
+            throws SQLException {
+        String sql = """
+            SELECT id, brand, model, plate_number, last_maintenance_date,
+                   CASE
+                     WHEN last_maintenance_date IS NULL THEN NULL
+                     ELSE GREATEST(DATEDIFF(?, last_maintenance_date) - ?, 0)
+                   END AS days_overdue
+            FROM vehicles
+            WHERE last_maintenance_date IS NULL
+               OR last_maintenance_date <= ?
+            ORDER BY (last_maintenance_date IS NULL) DESC, last_maintenance_date ASC
+            LIMIT ?
+            """;
+        List<Map<String, Object>> vehicles = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, today);
+            stmt.setInt(2, MAINTENANCE_CYCLE_DAYS);
+            stmt.setObject(3, today.minusDays(MAINTENANCE_CYCLE_DAYS));
+            stmt.setInt(4, TOP_LIMIT);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> v = new HashMap<>();
+                    v.put("id", rs.getLong("id"));
+                    v.put("brand", rs.getString("brand"));
+                    v.put("model", rs.getString("model"));
+                    v.put("plateNumber", rs.getString("plate_number"));
+                    java.sql.Date lastDate = rs.getDate("last_maintenance_date");
+                    v.put("lastMaintenanceDate", lastDate != null ? lastDate.toString() : null);
+                    v.put("daysOverdue", rs.getObject("days_overdue"));
+                    vehicles.add(v);
+                }
+            }
+        }
+        return vehicles;
+    }
+
+    private List<Map<String, Object>> loadTopVehicles(Connection conn) throws SQLException {
+        String sql = """
+            SELECT id, brand, model, plate_number, order_count, rating
+            FROM vehicles
+            ORDER BY order_count DESC
+            LIMIT ?
+            """;
+        List<Map<String, Object>> vehicles = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, TOP_LIMIT);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> v = new HashMap<>();
+                    v.put("id", rs.getLong("id"));
+                    v.put("name", rs.getString("brand") + " " + rs.getString("model"));
+                    v.put("plateNumber", rs.getString("plate_number"));
+                    v.put("orderCount", rs.getInt("order_count"));
+                    v.put("rating", rs.getBigDecimal("rating"));
+                    vehicles.add(v);
+                }
+            }
+        }
+        return vehicles;
+    }
+
+    private List<Map<String, Object>> loadTopStores(Connection conn) throws SQLException {
+        String sql = """
+            SELECT s.id, s.name, COUNT(o.id) as order_count,
+                   COALESCE(SUM((o.paid_amount - COALESCE(o.refund_amount,0))), 0) as revenue
+            FROM stores s
+            LEFT JOIN orders o ON o.pickup_store_id = s.id AND o.status = 8
+            GROUP BY s.id, s.name
+            ORDER BY revenue DESC
+            LIMIT ?
+            """;
+        List<Map<String, Object>> stores = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, TOP_LIMIT);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> store = new HashMap<>();
+                    store.put("id", rs.getLong("id"));
+                    store.put("name", rs.getString("name"));
+                    store.put("orderCount", rs.getInt("order_count"));
+                    store.put("revenue", rs.getBigDecimal("revenue"));
+                    stores.add(store);
+                }
+            }
+        }
+        return stores;
+    }
+
+    private long countLong(Connection conn, String sql, LocalDateTime... params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setTimestamp(i + 1, Timestamp.valueOf(params[i]));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+}
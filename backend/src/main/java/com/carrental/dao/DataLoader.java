@@ -0,0 +1,80 @@
+package com.carrental.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects keys and resolves them with one batch query instead of one query per key.
+ *
+ * Typical use on a listing: call want() for every row's foreign key, then get() per row;
+ * the first get() dispatches a single batch for everything wanted so far and later
+ * lookups are served from memory. Instances are request scoped and not thread-safe,
+ * see RequestLoaders.
+ */
+public final class DataLoader<V> {
+    private static final Logger logger = LoggerFactory.getLogger(DataLoader.class);
+
+    @FunctionalInterface
+    public interface BatchFunction<V> {
+        Map<Long, V> load(Collection<Long> keys) throws SQLException;
+    }
+
+    private final BatchFunction<V> batchFunction;
+    private final Set<Long> pending = new LinkedHashSet<>();
+    private final Set<Long> resolved = new HashSet<>();
+    private final Map<Long, V> values = new HashMap<>();
+
+    public DataLoader(BatchFunction<V> batchFunction) {
+        this.batchFunction = batchFunction;
+    }
+
+    /**
+     * Register a key for the next batch
+     */
+    public DataLoader<V> want(Long key) {
+        if (key != null && !resolved.contains(key)) {
+            pending.add(key);
+        }
+        return this;
+    }
+
+    /**
+     * Value for the key, dispatching pending keys first if it is not resolved yet.
+     * Returns null when no row exists or the batch failed.
+     */
+    public V get(Long key) {
+        if (key == null) {
+            return null;
+        }
+        if (!resolved.contains(key)) {
+            pending.add(key);
+            dispatch();
+        }
+        return values.get(key);
+    }
+
+    /**
+     * Load all pending keys with a single batch call
+     */
+    public void dispatch() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            values.putAll(batchFunction.load(new ArrayList<>(pending)));
+        } catch (SQLException e) {
+            logger.error("Batch load of {} keys failed", pending.size(), e);
+        }
+        resolved.addAll(pending);
+        pending.clear();
+    }
+}
@@ -0,0 +1,217 @@
+package com.carrental.dao;
+
+import com.carrental.util.DatabaseUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Read-through cache of entities by primary key, with a per-cache TTL and LRU eviction.
+ *
+ * DAOs route findById through get() and call invalidate() from their update methods.
+ * Callers always receive a copy, so mutating a returned entity never leaks into the
+ * cache. TTL and size come from app.cache.&lt;name&gt;.ttlSeconds / maxEntries, and
+ * app.cache.enabled=false turns every cache into a pass-through.
+ *
+ * Inside DatabaseUtil.inTransaction loads are not stored, since they may see the
+ * transaction's own uncommitted rows, and invalidations are repeated when it ends.
+ */
+public final class EntityCache<T> {
+    private static final boolean ENABLED = Boolean.parseBoolean(
+        DatabaseUtil.getProperty("app.cache.enabled", "true"));
+    private static final List<EntityCache<?>> REGISTRY = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final UnaryOperator<T> copier;
+    private final LinkedHashMap<Long, Entry<T>> entries;
+
+    /** Bumped on every invalidation so loads racing with a write are not cached */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private static final class Entry<T> {
+        final T value;
+        final long expiresAt;
+
+        Entry(T value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private EntityCache(String name, long ttlMillis, int maxEntries, UnaryOperator<T> copier) {
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.copier = copier;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry<T>> eldest) {
+                if (size() > EntityCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Create and register a cache, reading its limits from application.properties
+     */
+    public static <T> EntityCache<T> create(String name, long defaultTtlSeconds, int defaultMaxEntries,
+            UnaryOperator<T> copier) {
+        long ttlSeconds = Long.parseLong(DatabaseUtil.getProperty(
+            "app.cache." + name + ".ttlSeconds", String.valueOf(defaultTtlSeconds)));
+        int maxEntries = Integer.parseInt(DatabaseUtil.getProperty(
+            "app.cache." + name + ".maxEntries", String.valueOf(defaultMaxEntries)));
+        EntityCache<T> cache = new EntityCache<>(name, ttlSeconds * 1000L, Math.max(1, maxEntries), copier);
+        REGISTRY.add(cache);
+        return cache;
+    }
+
+    /**
+     * Return the cached entity or load it; missing rows are not cached
+     */
+    public T get(Long id, Function<Long, T> loader) {
+        if (!ENABLED || id == null || ttlMillis <= 0) {
+            return loader.apply(id);
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry<T> entry = entries.get(id);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return copier.apply(entry.value);
+                }
+                entries.remove(id);
+            }
+        }
+
+        misses.incrementAndGet();
+        long loadGeneration = generation.get();
+        T loaded = loader.apply(id);
+        if (loaded == null) {
+            return null;
+        }
+        if (DatabaseUtil.isInTransaction()) {
+            return loaded;
+        }
+        T stored = copier.apply(loaded);
+        synchronized (entries) {
+            if (generation.get() == loadGeneration) {
+                entries.put(id, new Entry<>(stored, now + ttlMillis));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Batch variant of get: cached ids are served from memory and all misses are
+     * loaded with a single call to batchLoader. Ids without a row are absent from the result.
+     */
+    public Map<Long, T> getAll(Collection<Long> ids, Function<Collection<Long>, Map<Long, T>> batchLoader) {
+        Map<Long, T> result = new LinkedHashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            for (Long id : ids) {
+                if (id == null || result.containsKey(id)) {
+                    continue;
+                }
+                Entry<T> entry = ENABLED && ttlMillis > 0 ? entries.get(id) : null;
+                if (entry != null && entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    result.put(id, copier.apply(entry.value));
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        misses.addAndGet(missing.size());
+        long loadGeneration = generation.get();
+        Map<Long, T> loaded = batchLoader.apply(missing);
+        synchronized (entries) {
+            boolean store = ENABLED && ttlMillis > 0 && generation.get() == loadGeneration
+                && !DatabaseUtil.isInTransaction();
+            for (Map.Entry<Long, T> e : loaded.entrySet()) {
+                if (store) {
+                    entries.put(e.getKey(), new Entry<>(copier.apply(e.getValue()), now + ttlMillis));
+                }
+                result.put(e.getKey(), e.getValue());
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(Long id) {
+        if (id == null) {
+            return;
+        }
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(id);
+        }
+        invalidations.incrementAndGet();
+        // Another thread may cache the old row before the transaction commits
+        DatabaseUtil.afterCompletion(() -> invalidate(id));
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+        invalidations.incrementAndGet();
+        DatabaseUtil.afterCompletion(this::invalidateAll);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("name", name);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlMillis / 1000);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    /**
+     * Stats of every registered cache
+     */
+    public static List<Map<String, Object>> allStats() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (EntityCache<?> cache : REGISTRY) {
+            result.add(cache.getStats());
+        }
+        return result;
+    }
+}
@@ -2,6 +2,7 @@ package com.carrental.dao;
 
 import com.carrental.model.FundsFlowLog;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
@@ -10,6 +11,10 @@ import java.util.List;
 
 public class FundsFlowLogDao extends BaseDao<FundsFlowLog> {
 
+    private static final AsyncLogWriter.Table TABLE = new AsyncLogWriter.Table("funds_flow_logs",
+        "flow_no, order_id, order_no, type, amount, channel, "
+        + "operator_id, operator_name, remark, created_at");
+
     @Override
     protected FundsFlowLog mapRow(ResultSet rs) throws SQLException {
         FundsFlowLog log = new FundsFlowLog();
@@ -39,33 +44,17 @@ public class FundsFlowLogDao extends BaseDao<FundsFlowLog> {
             log.getOperatorName(), log.getRemark());
     }
 
+    public void append(FundsFlowLog log) {
+        AsyncLogWriter.getInstance().submit(TABLE, log.getFlowNo(), log.getOrderId(), log.getOrderNo(),
+            log.getType(), log.getAmount(), log.getChannel(), log.getOperatorId(),
+            log.getOperatorName(), log.getRemark(), AsyncLogWriter.now());
+    }
+
     public List<FundsFlowLog> findAll(String keyword, String type, String channel,
             LocalDateTime startDate, LocalDateTime endDate, int page, int pageSize) {
         StringBuilder sql = new StringBuilder("SELECT * FROM funds_flow_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
-
-        if (keyword != null && !keyword.isBlank()) {
-            sql.append(" AND (flow_no LIKE ? OR order_no LIKE ?)");
-            String like = "%" + keyword + "%";
-            params.add(like);
-            params.add(like);
-        }
-        if (type != null && !type.isBlank()) {
-            sql.append(" AND type = ?");
-            params.add(type);
-        }
-        if (channel != null && !channel.isBlank()) {
-            sql.append(" AND channel = ?");
-            params.add(channel);
-        }
-        if (startDate != null) {
-            sql.append(" AND created_at >= ?");
-            params.add(startDate);
-        }
-        if (endDate != null) {
-            sql.append(" AND created_at <= ?");
-            params.add(endDate);
-        }
+        appendFilters(sql, params, keyword, type, channel, startDate, endDate);
 
         sql.append(" ORDER BY created_at DESC LIMIT ? OFFSET ?");
         params.add(pageSize);
@@ -74,11 +63,37 @@ public class FundsFlowLogDao extends BaseDao<FundsFlowLog> {
         return executeQuery(sql.toString(), params.toArray());
     }
 
+    public CursorPage<FundsFlowLog> findAllByCursor(String keyword, String type, String channel,
+            LocalDateTime startDate, LocalDateTime endDate, PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM funds_flow_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, keyword, type, channel, startDate, endDate);
+        return executeKeysetQuery(sql, params, "", cursor, pageSize,
+            FundsFlowLog::getCreatedAt, FundsFlowLog::getId);
+    }
+
+    public long streamAll(String keyword, String type, String channel,
+            LocalDateTime startDate, LocalDateTime endDate,
+            RowHandler<FundsFlowLog> handler) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM funds_flow_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, keyword, type, channel, startDate, endDate);
+        sql.append(" ORDER BY created_at DESC, id DESC");
+        return streamQuery(sql.toString(), handler, params.toArray());
+    }
+
     public long countAll(String keyword, String type, String channel,
             LocalDateTime startDate, LocalDateTime endDate) {
         StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM funds_flow_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, keyword, type, channel, startDate, endDate);
+
+        return executeCount(sql.toString(), params.toArray());
+    }
 
+    private void appendFilters(StringBuilder sql, List<Object> params,
+            String keyword, String type, String channel,
+            LocalDateTime startDate, LocalDateTime endDate) {
         if (keyword != null && !keyword.isBlank()) {
             sql.append(" AND (flow_no LIKE ? OR order_no LIKE ?)");
             String like = "%" + keyword + "%";
@@ -101,7 +116,5 @@ public class FundsFlowLogDao extends BaseDao<FundsFlowLog> {
             sql.append(" AND created_at <= ?");
             params.add(endDate);
         }
-
-        return executeCount(sql.toString(), params.toArray());
     }
 }
@@ -2,6 +2,7 @@ package com.carrental.dao;
 
 import com.carrental.model.LoginSecurityLog;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
@@ -10,6 +11,9 @@ import java.util.List;
 
 public class LoginSecurityLogDao extends BaseDao<LoginSecurityLog> {
 
+    private static final AsyncLogWriter.Table TABLE = new AsyncLogWriter.Table("login_security_logs",
+        "user_id, account, ip, location, device, result, message, created_at");
+
     @Override
     protected LoginSecurityLog mapRow(ResultSet rs) throws SQLException {
         LoginSecurityLog log = new LoginSecurityLog();
@@ -35,27 +39,17 @@ public class LoginSecurityLogDao extends BaseDao<LoginSecurityLog> {
             log.getLocation(), log.getDevice(), log.getResult(), log.getMessage());
     }
 
+    public void append(LoginSecurityLog log) {
+        AsyncLogWriter.getInstance().submit(TABLE, log.getUserId(), log.getAccount(), log.getIp(),
+            log.getLocation(), log.getDevice(), log.getResult(), log.getMessage(),
+            AsyncLogWriter.now());
+    }
+
     public List<LoginSecurityLog> findAll(String account, String result,
             LocalDateTime startDate, LocalDateTime endDate, int page, int pageSize) {
         StringBuilder sql = new StringBuilder("SELECT * FROM login_security_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
-
-        if (account != null && !account.isBlank()) {
-            sql.append(" AND account LIKE ?");
-            params.add("%" + account + "%");
-        }
-        if (result != null && !result.isBlank()) {
-            sql.append(" AND result = ?");
-            params.add(result);
-        }
-        if (startDate != null) {
-            sql.append(" AND created_at >= ?");
-            params.add(startDate);
-        }
-        if (endDate != null) {
-            sql.append(" AND created_at <= ?");
-            params.add(endDate);
-        }
+        appendFilters(sql, params, account, result, startDate, endDate);
 
         sql.append(" ORDER BY created_at DESC LIMIT ? OFFSET ?");
         params.add(pageSize);
@@ -64,11 +58,37 @@ public class LoginSecurityLogDao extends BaseDao<LoginSecurityLog> {
         return executeQuery(sql.toString(), params.toArray());
     }
 
+    public CursorPage<LoginSecurityLog> findAllByCursor(String account, String result,
+            LocalDateTime startDate, LocalDateTime endDate, PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM login_security_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, account, result, startDate, endDate);
+        return executeKeysetQuery(sql, params, "", cursor, pageSize,
+            LoginSecurityLog::getCreatedAt, LoginSecurityLog::getId);
+    }
+
+    public long streamAll(String account, String result,
+            LocalDateTime startDate, LocalDateTime endDate,
+            RowHandler<LoginSecurityLog> handler) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM login_security_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, account, result, startDate, endDate);
+        sql.append(" ORDER BY created_at DESC, id DESC");
+        return streamQuery(sql.toString(), handler, params.toArray());
+    }
+
     public long countAll(String account, String result,
             LocalDateTime startDate, LocalDateTime endDate) {
         StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM login_security_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, account, result, startDate, endDate);
+
+        return executeCount(sql.toString(), params.toArray());
+    }
 
+    private void appendFilters(StringBuilder sql, List<Object> params,
+            String account, String result,
+            LocalDateTime startDate, LocalDateTime endDate) {
         if (account != null && !account.isBlank()) {
             sql.append(" AND account LIKE ?");
             params.add("%" + account + "%");
@@ -85,7 +105,5 @@ public class LoginSecurityLogDao extends BaseDao<LoginSecurityLog> {
             sql.append(" AND created_at <= ?");
             params.add(endDate);
         }
-
-        return executeCount(sql.toString(), params.toArray());
     }
 }
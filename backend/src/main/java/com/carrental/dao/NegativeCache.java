@@ -0,0 +1,82 @@
+package com.carrental.dao;
+
+import com.carrental.util.DatabaseUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers lookup keys that recently matched no row, so repeated misses skip the query.
+ *
+ * Entries expire after ttlMillis and the least recently used ones are evicted beyond
+ * maxEntries. Writers that could create a match call clear(); a miss observed by a
+ * load that started before the clear is not recorded, using the same generation
+ * check as EntityCache. app.cache.enabled=false disables it along with the entity caches.
+ */
+final class NegativeCache {
+    private static final boolean ENABLED = Boolean.parseBoolean(
+        DatabaseUtil.getProperty("app.cache.enabled", "true"));
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Long> expiries;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong clears = new AtomicLong();
+
+    NegativeCache(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.expiries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > NegativeCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Token to pass to put() for a lookup about to start
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    synchronized boolean isKnownMissing(String key) {
+        Long expiresAt = expiries.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt < System.currentTimeMillis()) {
+            expiries.remove(key);
+            return false;
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    synchronized void put(String key, long generationAtLoad) {
+        if (ENABLED && ttlMillis > 0 && generation.get() == generationAtLoad && !DatabaseUtil.isInTransaction()) {
+            expiries.put(key, System.currentTimeMillis() + ttlMillis);
+        }
+    }
+
+    synchronized void clear() {
+        generation.incrementAndGet();
+        expiries.clear();
+        clears.incrementAndGet();
+        DatabaseUtil.afterCompletion(this::clear);
+    }
+
+    synchronized Map<String, Object> getStats(String name) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("size", expiries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("clears", clears.get());
+        return stats;
+    }
+}
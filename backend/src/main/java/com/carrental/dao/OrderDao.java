@@ -1,18 +1,52 @@
 package com.carrental.dao;
 
 import com.carrental.model.Order;
+import com.carrental.util.DatabaseUtil;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Order Data Access Object
  */
 public class OrderDao extends BaseDao<Order> {
 
+    /**
+     * Result of createIfFree when the vehicle is already reserved for part of the period
+     */
+    public static final long OVERLAPPING = -1L;
+
+    /** Every order number starts with this, followed by digits */
+    static final String ORDER_NO_PREFIX = "CR";
+
+    /**
+     * Statuses that hold the vehicle: pending review, awaiting payment, awaiting pickup,
+     * in use, awaiting return and awaiting settlement
+     */
+    private static final Set<Integer> RESERVING_STATUSES = Set.of(1, 3, 4, 5, 6, 7);
+    static final String RESERVING_STATUS_SQL = "(1, 3, 4, 5, 6, 7)";
+
+    private static final ReservationBook RESERVATIONS = ReservationBook.getInstance();
+    private static final boolean RESERVATION_BOOK_ENABLED = Boolean.parseBoolean(
+        DatabaseUtil.getProperty("app.reservation.book.enabled", "true"));
+    private static final long RESERVATION_BOOK_MAX_AGE_MILLIS = Long.parseLong(
+        DatabaseUtil.getProperty("app.reservation.maxAgeSeconds", "600")) * 1000L;
+    static final long TURNAROUND_MINUTES = Long.parseLong(
+        DatabaseUtil.getProperty("app.reservation.turnaroundMinutes", "0"));
+
     @Override
     protected Order mapRow(ResultSet rs) throws SQLException {
         Order order = new Order();
@@ -96,23 +130,175 @@ public class OrderDao extends BaseDao<Order> {
         return executeQuerySingle(sql, orderNo);
     }
 
+    private static final String INSERT_SQL = """
+        INSERT INTO orders (order_no, user_id, user_name, user_phone, vehicle_id,
+            vehicle_name, vehicle_plate, pickup_store_id, pickup_store_name,
+            return_store_id, return_store_name, delivery_address, delivery_city,
+            delivery_district, delivery_lng, delivery_lat, pickup_time, return_time,
+            rental_days, daily_price, rental_amount, deposit, insurance_amount,
+            service_amount, extra_amount, discount_amount, total_amount,
+            paid_amount, refund_amount, coupon_id, coupon_code, status,
+            pickup_code, insurance_type, add_services, created_at, updated_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?,
+            ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW(), NOW())
+        """;
+
     /**
      * Create new order
      */
     public Long create(Order order) {
-        String sql = """
-            INSERT INTO orders (order_no, user_id, user_name, user_phone, vehicle_id,
-                vehicle_name, vehicle_plate, pickup_store_id, pickup_store_name,
-                return_store_id, return_store_name, delivery_address, delivery_city,
-                delivery_district, delivery_lng, delivery_lat, pickup_time, return_time,
-                rental_days, daily_price, rental_amount, deposit, insurance_amount,
-                service_amount, extra_amount, discount_amount, total_amount,
-                paid_amount, refund_amount, coupon_id, coupon_code, status,
-                pickup_code, insurance_type, add_services, created_at, updated_at)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?,
-                ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW(), NOW())
-            """;
-        return executeInsert(sql, order.getOrderNo(), order.getUserId(),
+        Long id = executeInsert(INSERT_SQL, insertParams(order));
+        if (id != null) {
+            DatabaseUtil.afterCommit(() -> {
+                if (isReserving(order.getStatus())) {
+                    RESERVATIONS.add(reservationOf(id, order));
+                }
+            });
+        }
+        return id;
+    }
+
+    /**
+     * Create an order unless another active order holds its vehicle during
+     * [pickupTime, returnTime), widened by app.reservation.turnaroundMinutes on both sides.
+     *
+     * The in-memory ReservationBook turns most conflicts away without a query; it is only
+     * a hint. Correctness comes from the database: a transaction locks the vehicle row with
+     * SELECT ... FOR UPDATE, repeats the overlap check against orders and inserts, so two
+     * creates for the same car cannot both succeed, even from different processes. No
+     * Java monitor is held across the transaction, so a slow commit never blocks other
+     * vehicles sharing the book's lock stripe. Called inside DatabaseUtil.inTransaction
+     * it joins that transaction, and the row lock is held until the caller commits.
+     *
+     * @return the new order id, OVERLAPPING on a conflict, or null on a database error
+     */
+    public Long createIfFree(Order order) {
+        Long vehicleId = order.getVehicleId();
+        LocalDateTime from = order.getPickupTime().minusMinutes(TURNAROUND_MINUTES);
+        LocalDateTime to = order.getReturnTime().plusMinutes(TURNAROUND_MINUTES);
+        // Book entries already carry the turnaround gap, so probe with the bare period
+        if (useReservationBook()
+                && RESERVATIONS.findConflict(vehicleId, order.getPickupTime(), order.getReturnTime()) != null) {
+            return OVERLAPPING;
+        }
+        Long id;
+        try {
+            id = DatabaseUtil.inTransaction(() -> insertIfFree(order, from, to));
+        } catch (SQLException e) {
+            logger.error("Error creating order for vehicle {}", vehicleId, e);
+            DatabaseUtil.markFailed(e);
+            return null;
+        }
+        if (id != null && id != OVERLAPPING) {
+            DatabaseUtil.afterCommit(() -> RESERVATIONS.add(reservationOf(id, order)));
+        }
+        return id;
+    }
+
+    /**
+     * Whether the vehicle still has an active order that has not reached its return time
+     */
+    public boolean hasActiveReservation(Long vehicleId) {
+        if (useReservationBook()) {
+            return RESERVATIONS.hasReservations(vehicleId);
+        }
+        String sql = "SELECT COUNT(*) FROM orders WHERE vehicle_id = ? AND status IN "
+            + RESERVING_STATUS_SQL + " AND return_time > NOW()";
+        return executeCount(sql, vehicleId) > 0;
+    }
+
+    /**
+     * Ids of vehicles held by an active order at some point in [from, to), answered from
+     * the ReservationBook; null when the book is disabled or could not be loaded
+     */
+    public Set<Long> findReservedVehicleIds(LocalDateTime from, LocalDateTime to) {
+        return useReservationBook() ? RESERVATIONS.reservedVehicles(from, to) : null;
+    }
+
+    /**
+     * Which of the given vehicles are held by an active order at some point in [from, to).
+     * Answered with one ReservationBook probe per vehicle when the book is loaded, otherwise
+     * with one query on orders widened by the turnaround gap, so both paths agree with
+     * createIfFree.
+     */
+    public Set<Long> findReservedAmong(List<Long> vehicleIds, LocalDateTime from, LocalDateTime to) {
+        Set<Long> reserved = new HashSet<>();
+        if (vehicleIds.isEmpty()) {
+            return reserved;
+        }
+        if (useReservationBook()) {
+            for (Long id : vehicleIds) {
+                if (RESERVATIONS.findConflict(id, from, to) != null) {
+                    reserved.add(id);
+                }
+            }
+            return reserved;
+        }
+        LocalDateTime paddedFrom = from.minusMinutes(TURNAROUND_MINUTES);
+        LocalDateTime paddedTo = to.plusMinutes(TURNAROUND_MINUTES);
+        for (int start = 0; start < vehicleIds.size(); start += MAX_IN_CLAUSE) {
+            List<Long> chunk = vehicleIds.subList(start, Math.min(start + MAX_IN_CLAUSE, vehicleIds.size()));
+            StringBuilder sql = new StringBuilder("SELECT DISTINCT vehicle_id FROM orders WHERE status IN ")
+                .append(RESERVING_STATUS_SQL).append(" AND pickup_time < ? AND return_time > ?");
+            List<Object> params = new ArrayList<>();
+            params.add(paddedTo);
+            params.add(paddedFrom);
+            appendIdIn(sql, params, "vehicle_id", chunk);
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                setParameters(stmt, params.toArray());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        reserved.add(rs.getLong(1));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Error finding reserved vehicles", e);
+                DatabaseUtil.markFailed(e);
+                return null;
+            }
+        }
+        return reserved;
+    }
+
+    public static Map<String, Object> getReservationStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(RESERVATIONS.getStats());
+        stats.put("turnaroundMinutes", TURNAROUND_MINUTES);
+        return stats;
+    }
+
+    private Long insertIfFree(Order order, LocalDateTime from, LocalDateTime to) throws SQLException {
+        // The transaction's shared connection; inTransaction closes it
+        Connection conn = DatabaseUtil.getConnection();
+        try (PreparedStatement lock = conn.prepareStatement(
+                "SELECT id FROM vehicles WHERE id = ? FOR UPDATE")) {
+            lock.setObject(1, order.getVehicleId());
+            try (ResultSet rs = lock.executeQuery()) {
+                rs.next();
+            }
+        }
+        // Locking read: sees the latest committed orders even if this transaction already has a snapshot
+        String overlapSql = "SELECT id FROM orders WHERE vehicle_id = ? AND status IN "
+            + RESERVING_STATUS_SQL + " AND pickup_time < ? AND return_time > ? LIMIT 1 LOCK IN SHARE MODE";
+        try (PreparedStatement check = conn.prepareStatement(overlapSql)) {
+            setParameters(check, order.getVehicleId(), to, from);
+            try (ResultSet rs = check.executeQuery()) {
+                if (rs.next()) {
+                    return OVERLAPPING;
+                }
+            }
+        }
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            setParameters(insert, insertParams(order));
+            insert.executeUpdate();
+            try (ResultSet keys = insert.getGeneratedKeys()) {
+                return keys.next() ? keys.getLong(1) : null;
+            }
+        }
+    }
+
+    private static Object[] insertParams(Order order) {
+        return new Object[] {order.getOrderNo(), order.getUserId(),
             order.getUserName(), order.getUserPhone(), order.getVehicleId(),
             order.getVehicleName(), order.getVehiclePlate(), order.getPickupStoreId(),
             order.getPickupStoreName(), order.getReturnStoreId(), order.getReturnStoreName(),
@@ -124,7 +310,35 @@ public class OrderDao extends BaseDao<Order> {
             order.getDiscountAmount(), order.getTotalAmount(), order.getPaidAmount(),
             order.getRefundAmount(), order.getCouponId(), order.getCouponCode(),
             order.getStatus(), order.getPickupCode(), order.getInsuranceType(),
-            order.getAddServices());
+            order.getAddServices()};
+    }
+
+    /**
+     * Active reservations whose return time is still ahead, for the ReservationBook
+     */
+    private List<ReservationBook.Reservation> findActiveReservations() {
+        String sql = "SELECT * FROM orders WHERE status IN " + RESERVING_STATUS_SQL
+            + " AND return_time > NOW()";
+        List<ReservationBook.Reservation> reservations = new ArrayList<>();
+        for (Order order : executeQuery(sql)) {
+            reservations.add(reservationOf(order.getId(), order));
+        }
+        return reservations;
+    }
+
+    private boolean useReservationBook() {
+        return RESERVATION_BOOK_ENABLED
+            && RESERVATIONS.ensureLoaded(this::findActiveReservations, RESERVATION_BOOK_MAX_AGE_MILLIS);
+    }
+
+    private static ReservationBook.Reservation reservationOf(Long id, Order order) {
+        return new ReservationBook.Reservation(id, order.getVehicleId(),
+            order.getPickupTime().minusMinutes(TURNAROUND_MINUTES),
+            order.getReturnTime().plusMinutes(TURNAROUND_MINUTES));
+    }
+
+    private static boolean isReserving(Integer status) {
+        return status != null && RESERVING_STATUSES.contains(status);
     }
 
     /**
@@ -132,7 +346,11 @@ public class OrderDao extends BaseDao<Order> {
      */
     public int updateStatus(Long id, Integer status) {
         String sql = "UPDATE orders SET status = ?, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, status, id);
+        int result = executeUpdate(sql, status, id);
+        if (result > 0 && !isReserving(status)) {
+            DatabaseUtil.afterCommit(() -> RESERVATIONS.release(id));
+        }
+        return result;
     }
 
     /**
@@ -213,7 +431,11 @@ public class OrderDao extends BaseDao<Order> {
                 status = 0, cancel_reason = ?, cancel_time = NOW(), updated_at = NOW()
             WHERE id = ?
             """;
-        return executeUpdate(sql, reason, id);
+        int result = executeUpdate(sql, reason, id);
+        if (result > 0) {
+            DatabaseUtil.afterCommit(() -> RESERVATIONS.release(id));
+        }
+        return result;
     }
 
     /**
@@ -221,7 +443,11 @@ public class OrderDao extends BaseDao<Order> {
      */
     public int deleteById(Long id) {
         String sql = "DELETE FROM orders WHERE id = ?";
-        return executeUpdate(sql, id);
+        int result = executeUpdate(sql, id);
+        if (result > 0) {
+            DatabaseUtil.afterCommit(() -> RESERVATIONS.release(id));
+        }
+        return result;
     }
 
     /**
@@ -248,6 +474,21 @@ public class OrderDao extends BaseDao<Order> {
         }
     }
 
+    /**
+     * Keyset paginated variant of findByUser, ordered by created_at, id descending
+     */
+    public CursorPage<Order> findByUserByCursor(Long userId, Integer status, PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM orders WHERE user_id = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(userId);
+        if (status != null) {
+            sql.append(" AND status = ?");
+            params.add(status);
+        }
+        return executeKeysetQuery(sql, params, "", cursor, pageSize,
+            Order::getCreatedAt, Order::getId);
+    }
+
     /**
      * Count orders by user
      */
@@ -261,6 +502,31 @@ public class OrderDao extends BaseDao<Order> {
         }
     }
 
+    /**
+     * Count a user's orders that went ahead (not cancelled or rejected), optionally
+     * only those created since a given time; used by promotions. Returns -1 if the
+     * query fails, so a database error is never read as "no orders yet".
+     */
+    public long countPlacedByUser(Long userId, LocalDateTime since) {
+        String sql = "SELECT COUNT(*) FROM orders WHERE user_id = ? AND status NOT IN (0, 2)";
+        Object[] params = {userId};
+        if (since != null) {
+            sql += " AND created_at >= ?";
+            params = new Object[]{userId, since};
+        }
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            setParameters(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            logger.error("Error counting orders placed by user {}", userId, e);
+            DatabaseUtil.markFailed(e);
+            return -1;
+        }
+    }
+
     /**
      * Find all orders with filters (admin)
      */
@@ -268,28 +534,7 @@ public class OrderDao extends BaseDao<Order> {
             LocalDateTime startDate, LocalDateTime endDate, int page, int pageSize) {
         StringBuilder sql = new StringBuilder("SELECT * FROM orders WHERE 1=1");
         List<Object> params = new ArrayList<>();
-
-        if (status != null) {
-            sql.append(" AND status = ?");
-            params.add(status);
-        }
-        if (storeId != null) {
-            sql.append(" AND (pickup_store_id = ? OR return_store_id = ?)");
-            params.add(storeId);
-            params.add(storeId);
-        }
-        if (orderNo != null && !orderNo.isEmpty()) {
-            sql.append(" AND order_no LIKE ?");
-            params.add("%" + orderNo + "%");
-        }
-        if (startDate != null) {
-            sql.append(" AND created_at >= ?");
-            params.add(startDate);
-        }
-        if (endDate != null) {
-            sql.append(" AND created_at <= ?");
-            params.add(endDate);
-        }
+        appendFilters(sql, params, status, storeId, orderNo, startDate, endDate);
 
         sql.append(" ORDER BY created_at DESC LIMIT ? OFFSET ?");
         params.add(pageSize);
@@ -298,6 +543,31 @@ public class OrderDao extends BaseDao<Order> {
         return executeQuery(sql.toString(), params.toArray());
     }
 
+    /**
+     * Keyset paginated variant of findAll, ordered by created_at, id descending
+     */
+    public CursorPage<Order> findAllByCursor(Integer status, Long storeId, String orderNo,
+            LocalDateTime startDate, LocalDateTime endDate, PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM orders WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, status, storeId, orderNo, startDate, endDate);
+        return executeKeysetQuery(sql, params, "", cursor, pageSize,
+            Order::getCreatedAt, Order::getId);
+    }
+
+    /**
+     * Stream every matching order, newest first, without a row limit
+     */
+    public long streamAll(Integer status, Long storeId, String orderNo,
+            LocalDateTime startDate, LocalDateTime endDate,
+            RowHandler<Order> handler) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM orders WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, status, storeId, orderNo, startDate, endDate);
+        sql.append(" ORDER BY created_at DESC, id DESC");
+        return streamQuery(sql.toString(), handler, params.toArray());
+    }
+
     /**
      * Count all orders with filters
      */
@@ -305,32 +575,31 @@ public class OrderDao extends BaseDao<Order> {
             LocalDateTime startDate, LocalDateTime endDate) {
         StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM orders WHERE 1=1");
         List<Object> params = new ArrayList<>();
-
-        if (status != null) {
-            sql.append(" AND status = ?");
-            params.add(status);
-        }
-        if (storeId != null) {
-            sql.append(" AND (pickup_store_id = ? OR return_store_id = ?)");
-            params.add(storeId);
-            params.add(storeId);
-        }
-        if (orderNo != null && !orderNo.isEmpty()) {
-            sql.append(" AND order_no LIKE ?");
-            params.add("%" + orderNo + "%");
-        }
-        if (startDate != null) {
-            sql.append(" AND created_at >= ?");
-            params.add(startDate);
-        }
-        if (endDate != null) {
-            sql.append(" AND created_at <= ?");
-            params.add(endDate);
-        }
+        appendFilters(sql, params, status, storeId, orderNo, startDate, endDate);
 
         return executeCount(sql.toString(), params.toArray());
     }
 
+    /**
+     * Number of orders in each status, in one grouped scan; empty if the query fails
+     */
+    public Map<Integer, Long> countByStatus() {
+        Map<Integer, Long> counts = new HashMap<>();
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT status, COUNT(*) AS cnt FROM orders GROUP BY status");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getInt("status"), rs.getLong("cnt"));
+            }
+        } catch (SQLException e) {
+            logger.error("Error counting orders by status", e);
+            DatabaseUtil.markFailed(e);
+            counts.clear();
+        }
+        return counts;
+    }
+
     /**
      * Get today's order statistics
      */
@@ -442,4 +711,39 @@ public class OrderDao extends BaseDao<Order> {
         String sql = "UPDATE orders SET spending_accounted = 1, updated_at = NOW() WHERE id = ?";
         return executeUpdate(sql, id);
     }
+
+    private void appendFilters(StringBuilder sql, List<Object> params,
+            Integer status, Long storeId, String orderNo,
+            LocalDateTime startDate, LocalDateTime endDate) {
+        if (status != null) {
+            sql.append(" AND status = ?");
+            params.add(status);
+        }
+        if (storeId != null) {
+            sql.append(" AND (pickup_store_id = ? OR return_store_id = ?)");
+            params.add(storeId);
+            params.add(storeId);
+        }
+        if (orderNo != null && !orderNo.isBlank()) {
+            // Prefix range on the unique order_no index; a bare number is taken as what follows "CR"
+            String prefix = orderNo.trim().toUpperCase(Locale.ROOT);
+            if (Character.isDigit(prefix.charAt(0))) {
+                prefix = ORDER_NO_PREFIX + prefix;
+            }
+            sql.append(" AND order_no LIKE ?");
+            params.add(escapeLike(prefix) + "%");
+        }
+        if (startDate != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(startDate);
+        }
+        if (endDate != null) {
+            sql.append(" AND created_at <= ?");
+            params.add(endDate);
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 }
@@ -2,6 +2,7 @@ package com.carrental.dao;
 
 import com.carrental.model.OrderEventLog;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
@@ -10,6 +11,10 @@ import java.util.List;
 
 public class OrderEventLogDao extends BaseDao<OrderEventLog> {
 
+    private static final AsyncLogWriter.Table TABLE = new AsyncLogWriter.Table("order_event_logs",
+        "order_id, order_no, event_type, stage, operator_id, "
+        + "operator_name, operator_role, message, created_at");
+
     @Override
     protected OrderEventLog mapRow(ResultSet rs) throws SQLException {
         OrderEventLog log = new OrderEventLog();
@@ -38,31 +43,17 @@ public class OrderEventLogDao extends BaseDao<OrderEventLog> {
             log.getMessage());
     }
 
+    public void append(OrderEventLog log) {
+        AsyncLogWriter.getInstance().submit(TABLE, log.getOrderId(), log.getOrderNo(), log.getEventType(),
+            log.getStage(), log.getOperatorId(), log.getOperatorName(), log.getOperatorRole(),
+            log.getMessage(), AsyncLogWriter.now());
+    }
+
     public List<OrderEventLog> findAll(String orderNo, String eventType, String operator,
             LocalDateTime startDate, LocalDateTime endDate, int page, int pageSize) {
         StringBuilder sql = new StringBuilder("SELECT * FROM order_event_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
-
-        if (orderNo != null && !orderNo.isBlank()) {
-            sql.append(" AND order_no LIKE ?");
-            params.add("%" + orderNo + "%");
-        }
-        if (eventType != null && !eventType.isBlank()) {
-            sql.append(" AND event_type = ?");
-            params.add(eventType);
-        }
-        if (operator != null && !operator.isBlank()) {
-            sql.append(" AND operator_name LIKE ?");
-            params.add("%" + operator + "%");
-        }
-        if (startDate != null) {
-            sql.append(" AND created_at >= ?");
-            params.add(startDate);
-        }
-        if (endDate != null) {
-            sql.append(" AND created_at <= ?");
-            params.add(endDate);
-        }
+        appendFilters(sql, params, orderNo, eventType, operator, startDate, endDate);
 
         sql.append(" ORDER BY created_at DESC LIMIT ? OFFSET ?");
         params.add(pageSize);
@@ -71,11 +62,37 @@ public class OrderEventLogDao extends BaseDao<OrderEventLog> {
         return executeQuery(sql.toString(), params.toArray());
     }
 
+    public CursorPage<OrderEventLog> findAllByCursor(String orderNo, String eventType, String operator,
+            LocalDateTime startDate, LocalDateTime endDate, PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM order_event_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, orderNo, eventType, operator, startDate, endDate);
+        return executeKeysetQuery(sql, params, "", cursor, pageSize,
+            OrderEventLog::getCreatedAt, OrderEventLog::getId);
+    }
+
+    public long streamAll(String orderNo, String eventType, String operator,
+            LocalDateTime startDate, LocalDateTime endDate,
+            RowHandler<OrderEventLog> handler) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM order_event_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, orderNo, eventType, operator, startDate, endDate);
+        sql.append(" ORDER BY created_at DESC, id DESC");
+        return streamQuery(sql.toString(), handler, params.toArray());
+    }
+
     public long countAll(String orderNo, String eventType, String operator,
             LocalDateTime startDate, LocalDateTime endDate) {
         StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM order_event_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, orderNo, eventType, operator, startDate, endDate);
 
+        return executeCount(sql.toString(), params.toArray());
+    }
+
+    private void appendFilters(StringBuilder sql, List<Object> params,
+            String orderNo, String eventType, String operator,
+            LocalDateTime startDate, LocalDateTime endDate) {
         if (orderNo != null && !orderNo.isBlank()) {
             sql.append(" AND order_no LIKE ?");
             params.add("%" + orderNo + "%");
@@ -96,7 +113,5 @@ public class OrderEventLogDao extends BaseDao<OrderEventLog> {
             sql.append(" AND created_at <= ?");
             params.add(endDate);
         }
-
-        return executeCount(sql.toString(), params.toArray());
     }
 }
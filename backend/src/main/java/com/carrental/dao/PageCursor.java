@@ -0,0 +1,53 @@
+package com.carrental.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Continuation token for keyset pagination over (created_at, id) descending.
+ * Clients treat the encoded form as opaque and pass it back as the "cursor" parameter.
+ */
+public final class PageCursor {
+    private final LocalDateTime createdAt;
+    private final long id;
+
+    public PageCursor(LocalDateTime createdAt, long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public long getId() { return id; }
+
+    /**
+     * Encode as a URL-safe token
+     */
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token; returns null for a missing, empty or malformed token,
+     * which callers treat as "first page".
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            if (sep <= 0) {
+                return null;
+            }
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, sep)),
+                Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.carrental.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory calendar of active reservations per vehicle, used by OrderDao to turn down
+ * overlapping orders before touching the database and to find the vehicles that are
+ * taken during a requested period.
+ *
+ * Each vehicle keeps its reservations ordered by start time. Reservations accepted
+ * through OrderDao never overlap, so the only one that can clash with [start, end) is
+ * the last one starting before end, found in O(log n); a calendar loaded with legacy
+ * overlaps falls back to a scan. Vehicles are guarded by striped locks that are held
+ * only while a calendar is read or changed, never across a database call.
+ *
+ * The book is loaded lazily with one query and reloaded after
+ * app.reservation.maxAgeSeconds to pick up changes made outside this process. It is a
+ * fast path only: the transactional check in OrderDao stays the authority.
+ */
+public class ReservationBook {
+    private static final Logger logger = LoggerFactory.getLogger(ReservationBook.class);
+    private static final ReservationBook INSTANCE = new ReservationBook();
+
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * One order holding a vehicle over [start, end)
+     */
+    public static final class Reservation {
+        private final Long orderId;
+        private final Long vehicleId;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+
+        public Reservation(Long orderId, Long vehicleId, LocalDateTime start, LocalDateTime end) {
+            this.orderId = orderId;
+            this.vehicleId = vehicleId;
+            this.start = start;
+            this.end = end;
+        }
+
+        public Long getOrderId() { return orderId; }
+        public Long getVehicleId() { return vehicleId; }
+        public LocalDateTime getStart() { return start; }
+        public LocalDateTime getEnd() { return end; }
+    }
+
+    private static final Comparator<Reservation> BY_START = Comparator
+        .comparing(Reservation::getStart)
+        .thenComparing(Reservation::getOrderId, Comparator.nullsFirst(Comparator.<Long>naturalOrder()));
+
+    private static final class Calendar {
+        final TreeSet<Reservation> reservations = new TreeSet<>(BY_START);
+        boolean disjoint = true;
+    }
+
+    private static final class State {
+        final Map<Long, Calendar> byVehicle = new ConcurrentHashMap<>();
+        final Map<Long, Reservation> byOrder = new ConcurrentHashMap<>();
+    }
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Object loadMonitor = new Object();
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+
+    private volatile State state = new State();
+    private volatile boolean loaded;
+    private volatile long loadedAt;
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong rangeQueries = new AtomicLong();
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+
+    /**
+     * Package-private so tests can work on a fresh book; everything else uses getInstance()
+     */
+    ReservationBook() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public static ReservationBook getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Load the book on first use, and reload it once it is older than maxAgeMillis.
+     * Returns false if it could not be loaded and callers should rely on SQL alone.
+     */
+    public boolean ensureLoaded(Supplier<List<Reservation>> loader, long maxAgeMillis) {
+        if (!loaded) {
+            synchronized (loadMonitor) {
+                if (!loaded) {
+                    reload(loader);
+                }
+            }
+            return loaded;
+        }
+        if (maxAgeMillis > 0 && System.currentTimeMillis() - loadedAt > maxAgeMillis
+                && reloading.compareAndSet(false, true)) {
+            try {
+                synchronized (loadMonitor) {
+                    reload(loader);
+                }
+            } finally {
+                reloading.set(false);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Monitor guarding vehicleId's reservations; only held for in-memory work
+     */
+    private Object lockFor(Long vehicleId) {
+        return locks[Math.floorMod(Long.hashCode(vehicleId), LOCK_STRIPES)];
+    }
+
+    /**
+     * A reservation of vehicleId overlapping [start, end), or null when the range is free.
+     * Reservations that ended before now are dropped on the way.
+     */
+    public Reservation findConflict(Long vehicleId, LocalDateTime start, LocalDateTime end) {
+        checks.incrementAndGet();
+        State current = state;
+        synchronized (lockFor(vehicleId)) {
+            Calendar calendar = current.byVehicle.get(vehicleId);
+            if (calendar == null) {
+                return null;
+            }
+            prune(current, calendar, LocalDateTime.now());
+            Reservation conflict = conflictIn(calendar, probeAt(end), start, end);
+            if (conflict != null) {
+                conflicts.incrementAndGet();
+            }
+            return conflict;
+        }
+    }
+
+    /**
+     * Ids of all vehicles with a reservation overlapping [start, end); one O(log n)
+     * probe per vehicle that has reservations at all
+     */
+    public Set<Long> reservedVehicles(LocalDateTime start, LocalDateTime end) {
+        rangeQueries.incrementAndGet();
+        State current = state;
+        Set<Long> reserved = new HashSet<>();
+        Reservation probe = probeAt(end);
+        for (Map.Entry<Long, Calendar> entry : current.byVehicle.entrySet()) {
+            Long vehicleId = entry.getKey();
+            synchronized (lockFor(vehicleId)) {
+                if (conflictIn(entry.getValue(), probe, start, end) != null) {
+                    reserved.add(vehicleId);
+                }
+            }
+        }
+        return reserved;
+    }
+
+    /**
+     * Whether vehicleId has any reservation that has not ended yet
+     */
+    public boolean hasReservations(Long vehicleId) {
+        State current = state;
+        synchronized (lockFor(vehicleId)) {
+            Calendar calendar = current.byVehicle.get(vehicleId);
+            if (calendar == null) {
+                return false;
+            }
+            prune(current, calendar, LocalDateTime.now());
+            return !calendar.reservations.isEmpty();
+        }
+    }
+
+    /**
+     * Record a reservation that was just committed to the database
+     */
+    public void add(Reservation reservation) {
+        if (!loaded || reservation.getOrderId() == null) {
+            return;
+        }
+        State current = state;
+        synchronized (lockFor(reservation.getVehicleId())) {
+            put(current, reservation);
+        }
+        added.incrementAndGet();
+    }
+
+    /**
+     * Forget the reservation of an order that was cancelled, rejected, finished or deleted
+     */
+    public void release(Long orderId) {
+        if (orderId == null || !loaded) {
+            return;
+        }
+        State current = state;
+        Reservation reservation = current.byOrder.get(orderId);
+        if (reservation == null) {
+            return;
+        }
+        synchronized (lockFor(reservation.getVehicleId())) {
+            if (current.byOrder.remove(orderId) == null) {
+                return;
+            }
+            Calendar calendar = current.byVehicle.get(reservation.getVehicleId());
+            if (calendar != null) {
+                calendar.reservations.remove(reservation);
+                if (calendar.reservations.isEmpty()) {
+                    current.byVehicle.remove(reservation.getVehicleId());
+                }
+            }
+        }
+        released.incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        State current = state;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", loaded);
+        stats.put("vehicles", current.byVehicle.size());
+        stats.put("reservations", current.byOrder.size());
+        stats.put("checks", checks.get());
+        stats.put("conflicts", conflicts.get());
+        stats.put("rangeQueries", rangeQueries.get());
+        stats.put("added", added.get());
+        stats.put("released", released.get());
+        stats.put("reloads", reloads.get());
+        return stats;
+    }
+
+    private void reload(Supplier<List<Reservation>> loader) {
+        List<Reservation> reservations;
+        try {
+            reservations = loader.get();
+        } catch (Exception e) {
+            logger.error("Failed to load reservation book", e);
+            return;
+        }
+        if (reservations == null) {
+            return;
+        }
+        State fresh = new State();
+        for (Reservation r : reservations) {
+            if (r.getOrderId() != null && r.getVehicleId() != null && r.getStart() != null && r.getEnd() != null) {
+                put(fresh, r);
+            }
+        }
+        int overlapping = 0;
+        for (Calendar calendar : fresh.byVehicle.values()) {
+            if (!calendar.disjoint) {
+                overlapping++;
+            }
+        }
+        if (overlapping > 0) {
+            logger.warn("Reservation book loaded {} vehicles with overlapping orders", overlapping);
+        }
+        state = fresh;
+        loaded = true;
+        loadedAt = System.currentTimeMillis();
+        reloads.incrementAndGet();
+        logger.info("Reservation book loaded with {} reservations on {} vehicles",
+            fresh.byOrder.size(), fresh.byVehicle.size());
+    }
+
+    /**
+     * Search key sorting before every reservation that starts at end
+     */
+    private static Reservation probeAt(LocalDateTime end) {
+        return new Reservation(null, null, end, end);
+    }
+
+    private static Reservation conflictIn(Calendar calendar, Reservation probe, LocalDateTime start, LocalDateTime end) {
+        if (calendar.disjoint) {
+            // Ends ascend with starts, so only the last reservation starting before end can reach past start
+            Reservation candidate = calendar.reservations.lower(probe);
+            return candidate != null && candidate.getEnd().isAfter(start) ? candidate : null;
+        }
+        for (Reservation r : calendar.reservations) {
+            if (!r.getStart().isBefore(end)) {
+                break;
+            }
+            if (r.getEnd().isAfter(start)) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    private static void put(State target, Reservation reservation) {
+        Reservation previous = target.byOrder.put(reservation.getOrderId(), reservation);
+        if (previous != null) {
+            Calendar old = target.byVehicle.get(previous.getVehicleId());
+            if (old != null) {
+                old.reservations.remove(previous);
+            }
+        }
+        Calendar calendar = target.byVehicle.computeIfAbsent(reservation.getVehicleId(), id -> new Calendar());
+        if (calendar.disjoint) {
+            Reservation before = calendar.reservations.lower(reservation);
+            Reservation after = calendar.reservations.higher(reservation);
+            if ((before != null && before.getEnd().isAfter(reservation.getStart()))
+                    || (after != null && after.getStart().isBefore(reservation.getEnd()))) {
+                calendar.disjoint = false;
+            }
+        }
+        calendar.reservations.add(reservation);
+    }
+
+    private static void prune(State target, Calendar calendar, LocalDateTime now) {
+        for (Iterator<Reservation> it = calendar.reservations.iterator(); it.hasNext(); ) {
+            Reservation r = it.next();
+            if (r.getStart().isAfter(now)) {
+                break;
+            }
+            if (!r.getEnd().isAfter(now)) {
+                it.remove();
+                target.byOrder.remove(r.getOrderId());
+            }
+        }
+    }
+}
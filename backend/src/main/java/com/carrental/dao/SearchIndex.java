@@ -0,0 +1,496 @@
+package com.carrental.dao;
+
+import com.carrental.util.DatabaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * In-memory n-gram inverted index answering substring keyword searches that would
+ * otherwise need a leading-wildcard LIKE scan.
+ *
+ * Every searchable field is normalized (NFKC, lower case) and split into unigrams and
+ * bigrams, which works for Chinese text without a word segmenter. A query looks up the
+ * posting lists of its bigrams (or its single character), intersects them, then checks
+ * each candidate with a real substring match so results equal the LIKE semantics.
+ * Matches are ranked by field weight and match quality (exact, prefix, infix), with
+ * ties broken by the owner's default order.
+ *
+ * Slots are appended in increasing order, so posting lists stay sorted and can be
+ * merge-intersected. Replaced or removed documents leave dead slots behind that are
+ * compacted once they outnumber the live ones. Owners keep the index current through
+ * put/refresh/remove and it is fully reloaded after maxAge to pick up external writes.
+ * Loads run on a shared background thread, never on the calling request: until the
+ * first load finishes callers fall back to SQL, and a stale index keeps answering
+ * while its replacement is read.
+ */
+public class SearchIndex<T> {
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndex.class);
+
+    static final boolean ENABLED = Boolean.parseBoolean(
+        DatabaseUtil.getProperty("app.search.enabled", "true"));
+    static final long MAX_AGE_MILLIS = Long.parseLong(
+        DatabaseUtil.getProperty("app.search.maxAgeSeconds", "300")) * 1000L;
+    /** Largest match set turned into an id IN (...) predicate before falling back to LIKE */
+    static final int MAX_ID_MATCHES = Integer.parseInt(
+        DatabaseUtil.getProperty("app.search.maxIdMatches", "1000"));
+
+    private static final int EXACT_SCORE = 4;
+    private static final int PREFIX_SCORE = 2;
+    private static final int INFIX_SCORE = 1;
+    private static final int MIN_DEAD_FOR_COMPACTION = 1024;
+    /** Pause after a failed load before the next attempt */
+    private static final long RETRY_MILLIS = 10_000L;
+
+    private static volatile ExecutorService loaderThread;
+
+    private final String name;
+    private final Function<T, Long> idOf;
+    private final Function<T, String[]> fieldsOf;
+    private final int[] weights;
+    private final Comparator<T> order;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes writers (including their DB reads) without blocking readers
+    private final Object writeMonitor = new Object();
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+
+    private volatile boolean loaded;
+    private volatile long loadedAt;
+    private volatile long failedAt;
+
+    private Object[] docs = new Object[64];
+    private String[][] texts = new String[64][];
+    private int slotCount;
+    private int deadCount;
+    private final BitSet live = new BitSet();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+
+    /**
+     * Result page: matching ids in rank order plus the total number of matches
+     */
+    public static class Hits {
+        private final List<Long> ids;
+        private final long total;
+
+        public Hits(List<Long> ids, long total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * @param fieldsOf searchable fields of a document, aligned with weights
+     * @param order    tie-break order for documents with the same score
+     */
+    public SearchIndex(String name, Function<T, Long> idOf, Function<T, String[]> fieldsOf,
+            int[] weights, Comparator<T> order) {
+        this.name = name;
+        this.idOf = idOf;
+        this.fieldsOf = fieldsOf;
+        this.weights = weights;
+        this.order = order;
+    }
+
+    /**
+     * Start a background load on first use, and a reload once the index is older than
+     * maxAgeMillis. Returns false while the index is not loaded and callers should fall
+     * back to SQL.
+     */
+    public boolean ensureLoaded(Supplier<List<T>> loader, long maxAgeMillis) {
+        long now = System.currentTimeMillis();
+        boolean due = !loaded || (maxAgeMillis > 0 && now - loadedAt > maxAgeMillis);
+        if (due && now - failedAt > RETRY_MILLIS && reloading.compareAndSet(false, true)) {
+            try {
+                loaderThread().execute(() -> {
+                    try {
+                        synchronized (writeMonitor) {
+                            reload(loader);
+                        }
+                    } finally {
+                        reloading.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                reloading.set(false);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Stop the background loader if it was ever started
+     */
+    public static void shutdownIfStarted() {
+        ExecutorService local = loaderThread;
+        if (local != null) {
+            local.shutdownNow();
+        }
+    }
+
+    private static ExecutorService loaderThread() {
+        ExecutorService local = loaderThread;
+        if (local == null) {
+            synchronized (SearchIndex.class) {
+                local = loaderThread;
+                if (local == null) {
+                    local = Executors.newSingleThreadExecutor(r -> {
+                        Thread t = new Thread(r, "search-index-loader");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    loaderThread = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Drop all data; the next query reloads from the database
+     */
+    public void invalidate() {
+        synchronized (writeMonitor) {
+            loaded = false;
+        }
+    }
+
+    /**
+     * Add a document or replace the one with the same id
+     */
+    public void put(T doc) {
+        if (doc == null || idOf.apply(doc) == null || !loaded) {
+            return;
+        }
+        synchronized (writeMonitor) {
+            lock.writeLock().lock();
+            try {
+                removeSlot(idOf.apply(doc));
+                addSlot(doc);
+                compactIfNeeded();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Re-read a single document; a null result from the loader removes it
+     */
+    public void refresh(Long id, Function<Long, T> loader) {
+        if (id == null || !loaded) {
+            return;
+        }
+        synchronized (writeMonitor) {
+            if (!loaded) {
+                return;
+            }
+            T current = loader.apply(id);
+            lock.writeLock().lock();
+            try {
+                removeSlot(id);
+                if (current != null) {
+                    addSlot(current);
+                }
+                compactIfNeeded();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void remove(Long id) {
+        if (id == null || !loaded) {
+            return;
+        }
+        synchronized (writeMonitor) {
+            lock.writeLock().lock();
+            try {
+                removeSlot(id);
+                compactIfNeeded();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Rank documents matching keyword (and filter, if given) and return one page of ids
+     */
+    @SuppressWarnings("unchecked")
+    public Hits search(String keyword, Predicate<T> filter, int offset, int limit) {
+        String q = normalize(keyword);
+        if (q.isEmpty()) {
+            return new Hits(new ArrayList<>(), 0);
+        }
+        lock.readLock().lock();
+        try {
+            int[] candidates = candidates(q);
+            List<long[]> matches = new ArrayList<>();
+            for (int slot : candidates) {
+                if (!live.get(slot)) {
+                    continue;
+                }
+                int score = score(texts[slot], q);
+                if (score > 0 && (filter == null || filter.test((T) docs[slot]))) {
+                    matches.add(new long[] {slot, score});
+                }
+            }
+            matches.sort((a, b) -> {
+                int c = Long.compare(b[1], a[1]);
+                return c != 0 ? c : order.compare((T) docs[(int) a[0]], (T) docs[(int) b[0]]);
+            });
+
+            List<Long> ids = new ArrayList<>(Math.max(0, Math.min(limit, matches.size() - offset)));
+            for (int i = Math.max(0, offset); i < matches.size() && ids.size() < limit; i++) {
+                ids.add(idOf.apply((T) docs[(int) matches.get(i)[0]]));
+            }
+            return new Hits(ids, matches.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Unranked ids of all documents matching keyword, or null if there are more than max.
+     * Lets callers swap a LIKE predicate for an id IN (...) list while it stays small.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> matchIds(String keyword, int max) {
+        String q = normalize(keyword);
+        if (q.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (int slot : candidates(q)) {
+                if (live.get(slot) && score(texts[slot], q) > 0) {
+                    if (ids.size() >= max) {
+                        return null;
+                    }
+                    ids.add(idOf.apply((T) docs[slot]));
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of documents currently indexed
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void reload(Supplier<List<T>> loader) {
+        List<T> all;
+        try {
+            all = loader.get();
+        } catch (Exception e) {
+            logger.error("Failed to load search index {}", name, e);
+            failedAt = System.currentTimeMillis();
+            return;
+        }
+        if (all == null) {
+            failedAt = System.currentTimeMillis();
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (T doc : all) {
+                if (idOf.apply(doc) != null) {
+                    removeSlot(idOf.apply(doc));
+                    addSlot(doc);
+                }
+            }
+            loaded = true;
+            loadedAt = System.currentTimeMillis();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Search index {} loaded with {} documents", name, slotById.size());
+    }
+
+    private void clear() {
+        docs = new Object[64];
+        texts = new String[64][];
+        slotCount = 0;
+        deadCount = 0;
+        live.clear();
+        slotById.clear();
+        postings.clear();
+    }
+
+    private void addSlot(T doc) {
+        if (slotCount == docs.length) {
+            docs = Arrays.copyOf(docs, slotCount * 2);
+            texts = Arrays.copyOf(texts, slotCount * 2);
+        }
+        int slot = slotCount++;
+        String[] fields = fieldsOf.apply(doc);
+        String[] normalized = new String[fields.length];
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < fields.length; i++) {
+            normalized[i] = fields[i] == null ? null : normalize(fields[i]);
+            if (normalized[i] != null) {
+                addGrams(normalized[i], grams);
+            }
+        }
+        docs[slot] = doc;
+        texts[slot] = normalized;
+        live.set(slot);
+        slotById.put(idOf.apply(doc), slot);
+        for (String gram : grams) {
+            postings.computeIfAbsent(gram, k -> new IntList()).add(slot);
+        }
+    }
+
+    private void removeSlot(Long id) {
+        Integer slot = slotById.remove(id);
+        if (slot != null) {
+            live.clear(slot);
+            docs[slot] = null;
+            texts[slot] = null;
+            deadCount++;
+        }
+    }
+
+    /**
+     * Rebuild from the live documents once dead slots dominate the posting lists
+     */
+    @SuppressWarnings("unchecked")
+    private void compactIfNeeded() {
+        if (deadCount < MIN_DEAD_FOR_COMPACTION || deadCount < slotById.size()) {
+            return;
+        }
+        List<T> current = new ArrayList<>(slotById.size());
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            current.add((T) docs[slot]);
+        }
+        clear();
+        for (T doc : current) {
+            addSlot(doc);
+        }
+    }
+
+    private static void addGrams(String text, Set<String> grams) {
+        for (int i = 0; i < text.length(); i++) {
+            grams.add(text.substring(i, i + 1));
+            if (i + 1 < text.length()) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+    }
+
+    /**
+     * Slots containing every gram of the query, ascending
+     */
+    private int[] candidates(String q) {
+        Set<String> grams = new HashSet<>();
+        if (q.length() == 1) {
+            grams.add(q);
+        } else {
+            for (int i = 0; i + 1 < q.length(); i++) {
+                grams.add(q.substring(i, i + 2));
+            }
+        }
+        List<IntList> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            IntList list = postings.get(gram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(l -> l.size));
+        int[] result = Arrays.copyOf(lists.get(0).values, lists.get(0).size);
+        int size = result.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            size = intersect(result, size, lists.get(i));
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int intersect(int[] acc, int accSize, IntList other) {
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < accSize && j < other.size) {
+            if (acc[i] < other.values[j]) {
+                i++;
+            } else if (acc[i] > other.values[j]) {
+                j++;
+            } else {
+                acc[n++] = acc[i];
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    private int score(String[] fields, String q) {
+        int score = 0;
+        for (int i = 0; i < fields.length; i++) {
+            String text = fields[i];
+            if (text == null) {
+                continue;
+            }
+            int at = text.indexOf(q);
+            if (at < 0) {
+                continue;
+            }
+            int quality = text.length() == q.length() ? EXACT_SCORE : at == 0 ? PREFIX_SCORE : INFIX_SCORE;
+            score += quality * weights[i];
+        }
+        return score;
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -4,13 +4,17 @@ import com.carrental.model.Store;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Store Data Access Object
  */
 public class StoreDao extends BaseDao<Store> {
 
+    private static final EntityCache<Store> CACHE = EntityCache.create("stores", 600, 1000, Store::new);
+
     @Override
     protected Store mapRow(ResultSet rs) throws SQLException {
         Store store = new Store();
@@ -37,7 +41,15 @@ public class StoreDao extends BaseDao<Store> {
      */
     public Store findById(Long id) {
         String sql = "SELECT * FROM stores WHERE id = ?";
-        return executeQuerySingle(sql, id);
+        return CACHE.get(id, key -> executeQuerySingle(sql, key));
+    }
+
+    /**
+     * Find stores by IDs, keyed by ID; uncached ones are loaded in one query
+     */
+    public Map<Long, Store> findByIds(Collection<Long> ids) {
+        return CACHE.getAll(ids, missing -> executeQueryByIds(
+            "SELECT * FROM stores WHERE id IN ", missing, Store::getId));
     }
 
     /**
@@ -68,10 +80,17 @@ public class StoreDao extends BaseDao<Store> {
                 image = ?, status = ?, updated_at = NOW()
             WHERE id = ?
             """;
-        return executeUpdate(sql, store.getName(), store.getAddress(),
+        int result = executeUpdate(sql, store.getName(), store.getAddress(),
             store.getCity(), store.getDistrict(), store.getLatitude(),
             store.getLongitude(), store.getPhone(), store.getBusinessHours(),
             store.getImage(), store.getStatus(), store.getId());
+        CACHE.invalidate(store.getId());
+        if (result > 0) {
+            // Indexed and cached vehicles carry the store name/city from the join
+            VehicleAvailabilityIndex.getInstance().invalidate();
+            VehicleDao.invalidateCache();
+        }
+        return result;
     }
 
     /**
@@ -83,7 +102,9 @@ public class StoreDao extends BaseDao<Store> {
                 vehicle_count = ?, available_count = ?, updated_at = NOW()
             WHERE id = ?
             """;
-        return executeUpdate(sql, vehicleCount, availableCount, id);
+        int result = executeUpdate(sql, vehicleCount, availableCount, id);
+        CACHE.invalidate(id);
+        return result;
     }
 
     /**
@@ -1,16 +1,43 @@
 package com.carrental.dao;
 
 import com.carrental.model.User;
+import com.carrental.util.DatabaseUtil;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * User Data Access Object
  */
 public class UserDao extends BaseDao<User> {
 
+    private static final EntityCache<User> CACHE = EntityCache.create("users", 60, 10000, User::new);
+
+    /**
+     * Keyword index over username, phone and real name, ranked newest first on ties. It
+     * holds slim copies with only the columns it searches, filters and sorts on, never
+     * password hashes or identity documents.
+     */
+    private static final SearchIndex<User> SEARCH_INDEX = new SearchIndex<>("users", User::getId,
+        u -> new String[] {u.getUsername(), u.getPhone(), u.getRealName()},
+        new int[] {3, 3, 2},
+        Comparator.comparing(User::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(User::getId, Comparator.reverseOrder()));
+
+    /** Login identifiers that matched no account; cleared whenever an identifier is written */
+    private static final NegativeCache UNKNOWN_ACCOUNTS = new NegativeCache(
+        Long.parseLong(DatabaseUtil.getProperty("app.cache.unknownAccounts.ttlSeconds", "60")) * 1000,
+        Integer.parseInt(DatabaseUtil.getProperty("app.cache.unknownAccounts.maxEntries", "10000")));
+
     @Override
     protected User mapRow(ResultSet rs) throws SQLException {
         User user = new User();
@@ -48,7 +75,46 @@ public class UserDao extends BaseDao<User> {
      */
     public User findById(Long id) {
         String sql = "SELECT * FROM users WHERE id = ?";
-        return executeQuerySingle(sql, id);
+        return CACHE.get(id, key -> executeQuerySingle(sql, key));
+    }
+
+    /**
+     * Find users by IDs, keyed by ID; uncached ones are loaded in one query
+     */
+    public Map<Long, User> findByIds(Collection<Long> ids) {
+        return CACHE.getAll(ids, missing -> executeQueryByIds(
+            "SELECT * FROM users WHERE id IN ", missing, User::getId));
+    }
+
+    /**
+     * Find the account a login identifier refers to in one round trip.
+     * Each branch is a unique-index lookup; username wins over phone, phone over email.
+     */
+    public User findByAccount(String account) {
+        if (account == null || account.isEmpty() || UNKNOWN_ACCOUNTS.isKnownMissing(account)) {
+            return null;
+        }
+        long generation = UNKNOWN_ACCOUNTS.generation();
+        String sql = """
+            SELECT * FROM (
+                SELECT u.*, 1 AS match_rank FROM users u WHERE u.username = ?
+                UNION ALL
+                SELECT u.*, 2 AS match_rank FROM users u WHERE u.phone = ?
+                UNION ALL
+                SELECT u.*, 3 AS match_rank FROM users u WHERE u.email = ?
+            ) matched
+            ORDER BY match_rank
+            LIMIT 1
+            """;
+        User user = executeQuerySingle(sql, account, account, account);
+        if (user == null) {
+            UNKNOWN_ACCOUNTS.put(account, generation);
+        }
+        return user;
+    }
+
+    public static Map<String, Object> getUnknownAccountStats() {
+        return UNKNOWN_ACCOUNTS.getStats("unknownAccounts");
     }
 
     /**
@@ -94,13 +160,18 @@ public class UserDao extends BaseDao<User> {
                 balance, points, invite_code, inviter_id, created_at, updated_at)
             VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW(), NOW())
             """;
-        return executeInsert(sql, 
+        Long id = executeInsert(sql, 
             user.getUsername(), user.getPassword(), user.getEmail(), user.getPhone(),
             user.getRealName(), user.getIdCard(), user.getDriverLicense(), 
             user.getDriverLicenseImage(), user.getIdCardFront(), user.getIdCardBack(),
             user.getVerificationStatus(), user.getAvatar(), user.getGender(),
             user.getBirthday(), user.getRole(), user.getStatus(),
             user.getBalance(), user.getPoints(), user.getInviteCode(), user.getInviterId());
+        if (id != null) {
+            UNKNOWN_ACCOUNTS.clear();
+            SEARCH_INDEX.refresh(id, this::findIndexEntry);
+        }
+        return id;
     }
 
     /**
@@ -113,8 +184,12 @@ public class UserDao extends BaseDao<User> {
                 gender = ?, birthday = ?, updated_at = NOW()
             WHERE id = ?
             """;
-        return executeUpdate(sql, user.getEmail(), user.getPhone(), user.getRealName(),
+        int result = executeUpdate(sql, user.getEmail(), user.getPhone(), user.getRealName(),
             user.getAvatar(), user.getGender(), user.getBirthday(), user.getId());
+        // Email and phone may now match an identifier that used to be unknown
+        UNKNOWN_ACCOUNTS.clear();
+        refreshCaches(user.getId());
+        return result;
     }
 
     /**
@@ -130,8 +205,10 @@ public class UserDao extends BaseDao<User> {
                 verification_status = ?, updated_at = NOW()
             WHERE id = ?
             """;
-        return executeUpdate(sql, realName, idCard, driverLicense, 
+        int result = executeUpdate(sql, realName, idCard, driverLicense, 
             driverLicenseImage, idCardFront, idCardBack, verificationStatus, userId);
+        refreshCaches(userId);
+        return result;
     }
 
     /**
@@ -139,7 +216,9 @@ public class UserDao extends BaseDao<User> {
      */
     public int updateVerificationStatus(Long userId, Integer status) {
         String sql = "UPDATE users SET verification_status = ?, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, status, userId);
+        int result = executeUpdate(sql, status, userId);
+        refreshCaches(userId);
+        return result;
     }
 
     /**
@@ -147,7 +226,9 @@ public class UserDao extends BaseDao<User> {
      */
     public int updateStatus(Long userId, Integer status) {
         String sql = "UPDATE users SET status = ?, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, status, userId);
+        int result = executeUpdate(sql, status, userId);
+        CACHE.invalidate(userId);
+        return result;
     }
 
     /**
@@ -155,7 +236,9 @@ public class UserDao extends BaseDao<User> {
      */
     public int updateRole(Long userId, String role) {
         String sql = "UPDATE users SET role = ?, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, role, userId);
+        int result = executeUpdate(sql, role, userId);
+        refreshCaches(userId);
+        return result;
     }
 
     /**
@@ -163,7 +246,9 @@ public class UserDao extends BaseDao<User> {
      */
     public int updatePassword(Long userId, String password) {
         String sql = "UPDATE users SET password = ?, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, password, userId);
+        int result = executeUpdate(sql, password, userId);
+        CACHE.invalidate(userId);
+        return result;
     }
 
     /**
@@ -171,7 +256,9 @@ public class UserDao extends BaseDao<User> {
      */
     public int updateBalance(Long userId, java.math.BigDecimal amount) {
         String sql = "UPDATE users SET balance = balance + ?, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, amount, userId);
+        int result = executeUpdate(sql, amount, userId);
+        CACHE.invalidate(userId);
+        return result;
     }
 
     /**
@@ -179,7 +266,9 @@ public class UserDao extends BaseDao<User> {
      */
     public int updatePoints(Long userId, Integer points) {
         String sql = "UPDATE users SET points = points + ?, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, points, userId);
+        int result = executeUpdate(sql, points, userId);
+        CACHE.invalidate(userId);
+        return result;
     }
 
     /**
@@ -202,6 +291,10 @@ public class UserDao extends BaseDao<User> {
      * Search users
      */
     public List<User> search(String keyword, int page, int pageSize) {
+        if (useSearchIndex()) {
+            List<Long> ids = SEARCH_INDEX.search(keyword, null, (page - 1) * pageSize, pageSize).getIds();
+            return inOrder(ids, findByIds(ids));
+        }
         String sql = """
             SELECT * FROM users 
             WHERE username LIKE ? OR phone LIKE ? OR real_name LIKE ?
@@ -215,6 +308,9 @@ public class UserDao extends BaseDao<User> {
      * Count search results
      */
     public long countSearch(String keyword) {
+        if (useSearchIndex()) {
+            return SEARCH_INDEX.search(keyword, null, 0, 0).getTotal();
+        }
         String sql = """
             SELECT COUNT(*) FROM users 
             WHERE username LIKE ? OR phone LIKE ? OR real_name LIKE ?
@@ -227,38 +323,54 @@ public class UserDao extends BaseDao<User> {
      * Search users with filters (keyword, verificationStatus, role)
      */
     public List<User> searchByFilters(String keyword, Integer verificationStatus, String role, int page, int pageSize) {
+        if (keyword != null && !keyword.isEmpty() && useSearchIndex()) {
+            List<Long> ids = SEARCH_INDEX.search(keyword, filterOf(verificationStatus, role),
+                (page - 1) * pageSize, pageSize).getIds();
+            return inOrder(ids, findByIds(ids));
+        }
         StringBuilder sql = new StringBuilder("SELECT * FROM users WHERE 1=1");
         java.util.List<Object> params = new java.util.ArrayList<>();
-        if (keyword != null && !keyword.isEmpty()) {
-            sql.append(" AND (username LIKE ? OR phone LIKE ? OR real_name LIKE ?)");
-            String pattern = "%" + keyword + "%";
-            params.add(pattern);
-            params.add(pattern);
-            params.add(pattern);
-        }
-        if (verificationStatus != null) {
-            sql.append(" AND verification_status = ?");
-            params.add(verificationStatus);
-        }
-        if (role != null && !role.isEmpty()) {
-            sql.append(" AND role = ?");
-            params.add(role);
-        }
+        appendFilters(sql, params, keyword, verificationStatus, role);
         sql.append(" ORDER BY created_at DESC LIMIT ? OFFSET ?");
         params.add(pageSize);
         params.add((page - 1) * pageSize);
         return executeQuery(sql.toString(), params.toArray());
     }
 
+    /**
+     * Keyset paginated variant of searchByFilters, ordered by created_at, id descending
+     */
+    public CursorPage<User> searchByFiltersByCursor(String keyword, Integer verificationStatus, String role,
+            PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM users WHERE 1=1");
+        java.util.List<Object> params = new java.util.ArrayList<>();
+        appendFilters(sql, params, keyword, verificationStatus, role);
+        return executeKeysetQuery(sql, params, "", cursor, pageSize, User::getCreatedAt, User::getId);
+    }
+
     public long countByFilters(String keyword, Integer verificationStatus, String role) {
+        if (keyword != null && !keyword.isEmpty() && useSearchIndex()) {
+            return SEARCH_INDEX.search(keyword, filterOf(verificationStatus, role), 0, 0).getTotal();
+        }
         StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM users WHERE 1=1");
         java.util.List<Object> params = new java.util.ArrayList<>();
+        appendFilters(sql, params, keyword, verificationStatus, role);
+        return executeCount(sql.toString(), params.toArray());
+    }
+
+    private void appendFilters(StringBuilder sql, java.util.List<Object> params,
+            String keyword, Integer verificationStatus, String role) {
         if (keyword != null && !keyword.isEmpty()) {
-            sql.append(" AND (username LIKE ? OR phone LIKE ? OR real_name LIKE ?)");
-            String pattern = "%" + keyword + "%";
-            params.add(pattern);
-            params.add(pattern);
-            params.add(pattern);
+            List<Long> ids = useSearchIndex() ? SEARCH_INDEX.matchIds(keyword, SearchIndex.MAX_ID_MATCHES) : null;
+            if (ids != null) {
+                appendIdIn(sql, params, "id", ids);
+            } else {
+                sql.append(" AND (username LIKE ? OR phone LIKE ? OR real_name LIKE ?)");
+                String pattern = "%" + keyword + "%";
+                params.add(pattern);
+                params.add(pattern);
+                params.add(pattern);
+            }
         }
         if (verificationStatus != null) {
             sql.append(" AND verification_status = ?");
@@ -268,7 +380,6 @@ public class UserDao extends BaseDao<User> {
             sql.append(" AND role = ?");
             params.add(role);
         }
-        return executeCount(sql.toString(), params.toArray());
     }
 
     /**
@@ -279,7 +390,9 @@ public class UserDao extends BaseDao<User> {
                      "vip_level = CASE WHEN COALESCE(cumulative_spending,0) + ? > 5000 THEN 2 " +
                      "WHEN COALESCE(cumulative_spending,0) + ? >= 1000 THEN 1 ELSE 0 END, " +
                      "updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, amount, amount, amount, userId);
+        int result = executeUpdate(sql, amount, amount, amount, userId);
+        CACHE.invalidate(userId);
+        return result;
     }
 
     /**
@@ -287,6 +400,68 @@ public class UserDao extends BaseDao<User> {
      */
     public int setVipLevel(Long userId, Integer level) {
         String sql = "UPDATE users SET vip_level = ?, updated_at = NOW() WHERE id = ?";
-        return executeUpdate(sql, level, userId);
+        int result = executeUpdate(sql, level, userId);
+        CACHE.invalidate(userId);
+        return result;
+    }
+
+    private static Predicate<User> filterOf(Integer verificationStatus, String role) {
+        return u -> (verificationStatus == null || verificationStatus.equals(u.getVerificationStatus()))
+            && (role == null || role.isEmpty() || role.equals(u.getRole()));
+    }
+
+    private static final String INDEX_COLUMNS =
+        "SELECT id, username, phone, real_name, verification_status, role, created_at FROM users";
+
+    private List<User> findAllForIndex() {
+        return queryIndexEntries(INDEX_COLUMNS);
+    }
+
+    private User findIndexEntry(Long id) {
+        List<User> users = queryIndexEntries(INDEX_COLUMNS + " WHERE id = ?", id);
+        return users != null && !users.isEmpty() ? users.get(0) : null;
+    }
+
+    /**
+     * Users holding only the indexed columns; null on error, which also drops the index
+     * so it is reloaded instead of silently missing a user
+     */
+    private List<User> queryIndexEntries(String sql, Object... params) {
+        List<User> users = new ArrayList<>();
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            setParameters(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    User user = new User();
+                    user.setId(getLong(rs, "id"));
+                    user.setUsername(getString(rs, "username"));
+                    user.setPhone(getString(rs, "phone"));
+                    user.setRealName(getString(rs, "real_name"));
+                    user.setVerificationStatus(getInt(rs, "verification_status"));
+                    user.setRole(getString(rs, "role"));
+                    user.setCreatedAt(getLocalDateTime(rs, "created_at"));
+                    users.add(user);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error loading user search entries: {}", sql, e);
+            DatabaseUtil.markFailed(e);
+            SEARCH_INDEX.invalidate();
+            return null;
+        }
+        return users;
+    }
+
+    private boolean useSearchIndex() {
+        return SearchIndex.ENABLED && SEARCH_INDEX.ensureLoaded(this::findAllForIndex, SearchIndex.MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Invalidate the cached user and re-index its searchable fields
+     */
+    private void refreshCaches(Long id) {
+        CACHE.invalidate(id);
+        SEARCH_INDEX.refresh(id, this::findIndexEntry);
     }
 }
@@ -0,0 +1,528 @@
+package com.carrental.dao;
+
+import com.carrental.model.Vehicle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index over bookable vehicles (status 1, 2, 3 or 5) backing VehicleDao.findAvailable
+ * and the date-range search in VehicleDao.queryAvailableBetween. The plain listing is
+ * restricted to the rentable ones (status = 1) through a separate bitset.
+ *
+ * Each vehicle occupies a slot; equality filters are answered with per-attribute bitsets
+ * and the supported sort orders are kept as slot arrays sorted by price, rating, order
+ * count and the default (is_hot, created_at) order. A query intersects the bitsets and
+ * walks one sorted array once, producing both the requested page and the total.
+ *
+ * The index is loaded lazily and kept consistent by VehicleDao, which refreshes single
+ * vehicles after create/update/updateStatus and order count write-back, and drops them on delete.
+ * A full reload happens after app.vehicle.index.maxAgeSeconds to pick up changes made
+ * outside this process.
+ */
+public class VehicleAvailabilityIndex {
+    private static final Logger logger = LoggerFactory.getLogger(VehicleAvailabilityIndex.class);
+    private static final VehicleAvailabilityIndex INSTANCE = new VehicleAvailabilityIndex();
+
+    private static final int RENTABLE_STATUS = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes writers (including their DB reads) without blocking readers
+    private final Object writeMonitor = new Object();
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+
+    private volatile boolean loaded;
+    private volatile long loadedAt;
+
+    private Vehicle[] slots = new Vehicle[64];
+    private int slotCount;
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final BitSet rentable = new BitSet();
+
+    private final Map<String, BitSet> byCategory = new HashMap<>();
+    private final Map<String, BitSet> byBrand = new HashMap<>();
+    private final Map<String, BitSet> byCity = new HashMap<>();
+    private final Map<String, BitSet> byFuelType = new HashMap<>();
+    private final Map<Long, BitSet> byStore = new HashMap<>();
+    private final TreeMap<Integer, BitSet> bySeats = new TreeMap<>();
+
+    private final SortedSlots byPrice = new SortedSlots(
+        Comparator.comparing(Vehicle::getDailyPrice, Comparator.nullsFirst(Comparator.<BigDecimal>naturalOrder()))
+            .thenComparing(Vehicle::getId));
+    private final SortedSlots byRating = new SortedSlots(
+        Comparator.comparing(Vehicle::getRating, Comparator.nullsLast(Comparator.<BigDecimal>reverseOrder()))
+            .thenComparing(Vehicle::getId));
+    private final SortedSlots byOrderCount = new SortedSlots(
+        Comparator.comparing(Vehicle::getOrderCount, Comparator.nullsLast(Comparator.<Integer>reverseOrder()))
+            .thenComparing(Vehicle::getId));
+    private final SortedSlots byDefault = new SortedSlots(
+        Comparator.comparing((Vehicle v) -> Boolean.TRUE.equals(v.getIsHot()) ? 0 : 1)
+            .thenComparing(Vehicle::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(Vehicle::getId, Comparator.reverseOrder()));
+
+    private VehicleAvailabilityIndex() {}
+
+    public static VehicleAvailabilityIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Load the index on first use, and reload it once it is older than maxAgeMillis.
+     * Returns false if the index could not be loaded and callers should fall back to SQL.
+     */
+    public boolean ensureLoaded(Supplier<List<Vehicle>> loader, long maxAgeMillis) {
+        if (!loaded) {
+            synchronized (writeMonitor) {
+                if (!loaded) {
+                    reload(loader);
+                }
+            }
+            return loaded;
+        }
+        if (maxAgeMillis > 0 && System.currentTimeMillis() - loadedAt > maxAgeMillis
+                && reloading.compareAndSet(false, true)) {
+            try {
+                synchronized (writeMonitor) {
+                    reload(loader);
+                }
+            } finally {
+                reloading.set(false);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drop all data; the next query reloads from the database
+     */
+    public void invalidate() {
+        synchronized (writeMonitor) {
+            loaded = false;
+        }
+    }
+
+    /**
+     * Re-read a single vehicle and apply it to the index
+     */
+    public void refresh(Long id, Function<Long, Vehicle> loader) {
+        if (id == null || !loaded) {
+            return;
+        }
+        synchronized (writeMonitor) {
+            if (!loaded) {
+                return;
+            }
+            Vehicle current = loader.apply(id);
+            lock.writeLock().lock();
+            try {
+                removeSlot(id);
+                if (current != null && VehicleDao.isBookable(current.getStatus())) {
+                    addSlot(current);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove a vehicle from the index
+     */
+    public void remove(Long id) {
+        if (id == null || !loaded) {
+            return;
+        }
+        synchronized (writeMonitor) {
+            lock.writeLock().lock();
+            try {
+                removeSlot(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Filter, sort and page rentable vehicles in a single pass over one sorted array.
+     * Semantics follow the SQL in VehicleDao.findAvailable/countAvailable.
+     */
+    public Page query(String category, String brand, Long storeId, String city,
+            String fuelType, Integer minSeats, BigDecimal minPrice, BigDecimal maxPrice,
+            String sortBy, int page, int pageSize) {
+        lock.readLock().lock();
+        try {
+            BitSet candidates = (BitSet) rentable.clone();
+            return select(candidates, category, brand, storeId, city, fuelType, minSeats,
+                minPrice, maxPrice, sortBy, page, pageSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Like query(), over every bookable vehicle except those in reservedIds, i.e. the
+     * vehicles whose calendars leave the requested period free
+     */
+    public Page queryExcluding(Collection<Long> reservedIds, String category, String brand,
+            Long storeId, String city, String fuelType, Integer minSeats, BigDecimal minPrice,
+            BigDecimal maxPrice, String sortBy, int page, int pageSize) {
+        lock.readLock().lock();
+        try {
+            BitSet candidates = (BitSet) live.clone();
+            for (Long id : reservedIds) {
+                Integer slot = slotById.get(id);
+                if (slot != null) {
+                    candidates.clear(slot);
+                }
+            }
+            return select(candidates, category, brand, storeId, city, fuelType, minSeats,
+                minPrice, maxPrice, sortBy, page, pageSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Narrow candidates by the filters and walk one sorted array; caller holds the read lock
+     */
+    private Page select(BitSet candidates, String category, String brand, Long storeId, String city,
+            String fuelType, Integer minSeats, BigDecimal minPrice, BigDecimal maxPrice,
+            String sortBy, int page, int pageSize) {
+        if (!intersect(candidates, byCategory, key(category))
+                || !intersect(candidates, byBrand, key(brand))
+                || !intersect(candidates, byCity, key(city))
+                || !intersect(candidates, byFuelType, key(fuelType))) {
+            return new Page(new ArrayList<>(), 0);
+        }
+        if (storeId != null) {
+            BitSet set = byStore.get(storeId);
+            if (set == null) {
+                return new Page(new ArrayList<>(), 0);
+            }
+            candidates.and(set);
+        }
+        if (minSeats != null) {
+            BitSet seats = new BitSet();
+            for (BitSet set : bySeats.tailMap(minSeats, true).values()) {
+                seats.or(set);
+            }
+            candidates.and(seats);
+        }
+
+        boolean priceFilter = minPrice != null || maxPrice != null;
+        int offset = Math.max(0, (page - 1) * pageSize);
+        int limit = Math.max(0, pageSize);
+        List<Vehicle> list = new ArrayList<>(Math.min(limit, 64));
+        // Without a price filter the total is known up front and the walk can stop early
+        long total = priceFilter ? 0 : candidates.cardinality();
+        if (!priceFilter && (limit == 0 || offset >= total)) {
+            return new Page(list, total);
+        }
+
+        SortedSlots order = resolveOrder(sortBy);
+        boolean reverse = "price_desc".equals(sortBy);
+        long matched = 0;
+        for (int i = 0; i < order.size; i++) {
+            int slot = order.ordered[reverse ? order.size - 1 - i : i];
+            if (!candidates.get(slot)) {
+                continue;
+            }
+            Vehicle v = slots[slot];
+            if (priceFilter && !inPriceRange(v.getDailyPrice(), minPrice, maxPrice)) {
+                continue;
+            }
+            if (matched >= offset && list.size() < limit) {
+                list.add(new Vehicle(v));
+            }
+            matched++;
+            if (!priceFilter && list.size() >= limit) {
+                break;
+            }
+        }
+        return new Page(list, priceFilter ? matched : total);
+    }
+
+    /**
+     * Number of vehicles currently indexed
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void reload(Supplier<List<Vehicle>> loader) {
+        List<Vehicle> vehicles;
+        try {
+            vehicles = loader.get();
+        } catch (Exception e) {
+            logger.error("Failed to load vehicle availability index", e);
+            return;
+        }
+        if (vehicles == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (Vehicle v : vehicles) {
+                if (v.getId() != null && VehicleDao.isBookable(v.getStatus())) {
+                    addAttributes(v, allocateSlot(v));
+                }
+            }
+            byPrice.rebuild();
+            byRating.rebuild();
+            byOrderCount.rebuild();
+            byDefault.rebuild();
+            loaded = true;
+            loadedAt = System.currentTimeMillis();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Vehicle availability index loaded with {} vehicles", slotById.size());
+    }
+
+    private void clear() {
+        Arrays.fill(slots, null);
+        slotCount = 0;
+        freeSlots.clear();
+        slotById.clear();
+        live.clear();
+        rentable.clear();
+        byCategory.clear();
+        byBrand.clear();
+        byCity.clear();
+        byFuelType.clear();
+        byStore.clear();
+        bySeats.clear();
+        byPrice.size = 0;
+        byRating.size = 0;
+        byOrderCount.size = 0;
+        byDefault.size = 0;
+    }
+
+    private int allocateSlot(Vehicle v) {
+        int slot;
+        if (!freeSlots.isEmpty()) {
+            slot = freeSlots.pop();
+        } else {
+            slot = slotCount++;
+            if (slot >= slots.length) {
+                slots = Arrays.copyOf(slots, slots.length * 2);
+            }
+        }
+        slots[slot] = v;
+        slotById.put(v.getId(), slot);
+        live.set(slot);
+        if (v.getStatus() != null && v.getStatus() == RENTABLE_STATUS) {
+            rentable.set(slot);
+        }
+        return slot;
+    }
+
+    private void addSlot(Vehicle v) {
+        int slot = allocateSlot(v);
+        addAttributes(v, slot);
+        byPrice.insert(slot);
+        byRating.insert(slot);
+        byOrderCount.insert(slot);
+        byDefault.insert(slot);
+    }
+
+    private void removeSlot(Long id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        // Sorted arrays are searched with the old values, so remove before clearing the slot
+        byPrice.remove(slot);
+        byRating.remove(slot);
+        byOrderCount.remove(slot);
+        byDefault.remove(slot);
+        Vehicle v = slots[slot];
+        clearBit(byCategory, key(v.getCategory()), slot);
+        clearBit(byBrand, key(v.getBrand()), slot);
+        clearBit(byCity, key(v.getStoreCity()), slot);
+        clearBit(byFuelType, key(v.getFuelType()), slot);
+        clearBit(byStore, v.getStoreId(), slot);
+        clearBit(bySeats, v.getSeats(), slot);
+        live.clear(slot);
+        rentable.clear(slot);
+        slots[slot] = null;
+        freeSlots.push(slot);
+    }
+
+    private void addAttributes(Vehicle v, int slot) {
+        setBit(byCategory, key(v.getCategory()), slot);
+        setBit(byBrand, key(v.getBrand()), slot);
+        setBit(byCity, key(v.getStoreCity()), slot);
+        setBit(byFuelType, key(v.getFuelType()), slot);
+        setBit(byStore, v.getStoreId(), slot);
+        setBit(bySeats, v.getSeats(), slot);
+    }
+
+    private SortedSlots resolveOrder(String sortBy) {
+        if ("price_asc".equals(sortBy) || "price_desc".equals(sortBy)) {
+            return byPrice;
+        } else if ("rating".equals(sortBy)) {
+            return byRating;
+        } else if ("popular".equals(sortBy)) {
+            return byOrderCount;
+        }
+        return byDefault;
+    }
+
+    /**
+     * Returns false when the filter is set but no vehicle has that value
+     */
+    private static boolean intersect(BitSet candidates, Map<String, BitSet> index, String value) {
+        if (value == null) {
+            return true;
+        }
+        BitSet set = index.get(value);
+        if (set == null) {
+            return false;
+        }
+        candidates.and(set);
+        return true;
+    }
+
+    private static boolean inPriceRange(BigDecimal price, BigDecimal minPrice, BigDecimal maxPrice) {
+        if (price == null) {
+            return false;
+        }
+        if (minPrice != null && price.compareTo(minPrice) < 0) {
+            return false;
+        }
+        return maxPrice == null || price.compareTo(maxPrice) <= 0;
+    }
+
+    // MySQL compares these columns with a case-insensitive collation; mirror that here
+    private static String key(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static <K> void setBit(Map<K, BitSet> index, K key, int slot) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new BitSet()).set(slot);
+        }
+    }
+
+    private static <K> void clearBit(Map<K, BitSet> index, K key, int slot) {
+        if (key == null) {
+            return;
+        }
+        BitSet set = index.get(key);
+        if (set != null) {
+            set.clear(slot);
+            if (set.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Slot numbers kept sorted by a total order over the vehicles they hold
+     */
+    private final class SortedSlots {
+        private final Comparator<Vehicle> comparator;
+        private int[] ordered = new int[64];
+        private int size;
+
+        SortedSlots(Comparator<Vehicle> comparator) {
+            this.comparator = comparator;
+        }
+
+        void insert(int slot) {
+            int pos = search(slot);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ordered.length) {
+                ordered = Arrays.copyOf(ordered, size * 2);
+            }
+            System.arraycopy(ordered, pos, ordered, pos + 1, size - pos);
+            ordered[pos] = slot;
+            size++;
+        }
+
+        void remove(int slot) {
+            int pos = search(slot);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(ordered, pos + 1, ordered, pos, size - pos - 1);
+            size--;
+        }
+
+        void rebuild() {
+            Integer[] all = new Integer[slotById.size()];
+            int n = 0;
+            for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+                all[n++] = slot;
+            }
+            Arrays.sort(all, 0, n, (a, b) -> comparator.compare(vehicleAt(a), vehicleAt(b)));
+            if (ordered.length < n) {
+                ordered = new int[Math.max(n, 64)];
+            }
+            for (int i = 0; i < n; i++) {
+                ordered[i] = all[i];
+            }
+            size = n;
+        }
+
+        private int search(int slot) {
+            Vehicle target = vehicleAt(slot);
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = comparator.compare(vehicleAt(ordered[mid]), target);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    private Vehicle vehicleAt(int slot) {
+        return slots[slot];
+    }
+
+    /**
+     * One page of results plus the total number of matches
+     */
+    public static final class Page {
+        private final List<Vehicle> list;
+        private final long total;
+
+        public Page(List<Vehicle> list, long total) {
+            this.list = list;
+            this.total = total;
+        }
+
+        public List<Vehicle> getList() { return list; }
+        public long getTotal() { return total; }
+    }
+}
@@ -0,0 +1,253 @@
+package com.carrental.dao;
+
+import com.carrental.util.DatabaseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind accumulator for vehicles.view_count and vehicles.order_count.
+ *
+ * Increments land in per-vehicle LongAdders, which spread concurrent updates over
+ * striped cells instead of one InnoDB row lock. A single scheduler thread applies
+ * the accumulated deltas every flushIntervalMillis with one UPDATE ... CASE statement
+ * per chunk of vehicles. Each counter remembers how much of its sum has been written,
+ * so increments racing with a flush are never lost and a failed flush is simply
+ * retried on the next run. shutdown() writes whatever is still pending.
+ */
+public final class VehicleCounterBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(VehicleCounterBuffer.class);
+
+    /** Vehicles per UPDATE; each one binds five parameters */
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+
+    private static volatile VehicleCounterBuffer instance;
+
+    private final boolean enabled;
+    private final long flushIntervalMillis;
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService scheduler;
+    private final VehicleDao vehicleDao = new VehicleDao();
+    private volatile boolean running = true;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsUpdated = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    private static final class Counter {
+        final LongAdder views = new LongAdder();
+        final LongAdder orders = new LongAdder();
+        // Guarded by flushLock
+        long flushedViews;
+        long flushedOrders;
+    }
+
+    private static final class Delta {
+        final Long id;
+        final Counter counter;
+        final long views;
+        final long orders;
+
+        Delta(Long id, Counter counter, long views, long orders) {
+            this.id = id;
+            this.counter = counter;
+            this.views = views;
+            this.orders = orders;
+        }
+    }
+
+    private VehicleCounterBuffer() {
+        enabled = Boolean.parseBoolean(DatabaseUtil.getProperty("app.vehicle.counters.enabled", "true"));
+        flushIntervalMillis = Math.max(100L, Long.parseLong(
+            DatabaseUtil.getProperty("app.vehicle.counters.flushIntervalMillis", "5000")));
+        if (enabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "vehicle-counter-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay(this::flushQuietly,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    public static VehicleCounterBuffer getInstance() {
+        VehicleCounterBuffer local = instance;
+        if (local == null) {
+            synchronized (VehicleCounterBuffer.class) {
+                local = instance;
+                if (local == null) {
+                    local = new VehicleCounterBuffer();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Stop the flusher if it was ever started, writing all pending deltas.
+     */
+    public static void shutdownIfStarted() {
+        VehicleCounterBuffer local = instance;
+        if (local != null) {
+            local.shutdown();
+        }
+    }
+
+    /**
+     * @return false when buffering is off and the caller should update the row itself
+     */
+    public boolean addView(Long vehicleId) {
+        if (!enabled || !running || vehicleId == null) {
+            return false;
+        }
+        counters.computeIfAbsent(vehicleId, k -> new Counter()).views.increment();
+        return true;
+    }
+
+    /**
+     * @return false when buffering is off and the caller should update the row itself
+     */
+    public boolean addOrder(Long vehicleId) {
+        if (!enabled || !running || vehicleId == null) {
+            return false;
+        }
+        counters.computeIfAbsent(vehicleId, k -> new Counter()).orders.increment();
+        return true;
+    }
+
+    /**
+     * Write all pending deltas now
+     */
+    public void flush() throws SQLException {
+        List<Long> orderCountChanged = new ArrayList<>();
+        synchronized (flushLock) {
+            List<Delta> pending = new ArrayList<>();
+            for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+                Counter c = entry.getValue();
+                long views = c.views.sum() - c.flushedViews;
+                long orders = c.orders.sum() - c.flushedOrders;
+                if (views != 0 || orders != 0) {
+                    pending.add(new Delta(entry.getKey(), c, views, orders));
+                }
+            }
+            for (int from = 0; from < pending.size(); from += MAX_IDS_PER_STATEMENT) {
+                List<Delta> chunk = pending.subList(from, Math.min(pending.size(), from + MAX_IDS_PER_STATEMENT));
+                rowsUpdated.addAndGet(update(chunk));
+                for (Delta d : chunk) {
+                    d.counter.flushedViews += d.views;
+                    d.counter.flushedOrders += d.orders;
+                    if (d.orders != 0) {
+                        orderCountChanged.add(d.id);
+                    }
+                }
+            }
+            flushes.incrementAndGet();
+        }
+        // order_count feeds the availability index sort order and the entity cache
+        vehicleDao.refreshAfterCounterFlush(orderCountChanged);
+    }
+
+    /**
+     * Stop buffering and write what is still pending. Later increments go straight to the database.
+     */
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushQuietly();
+        logger.info("Vehicle counter buffer stopped, {} rows updated", rowsUpdated.get());
+    }
+
+    /**
+     * Counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        long pendingViews = 0;
+        long pendingOrders = 0;
+        synchronized (flushLock) {
+            for (Counter c : counters.values()) {
+                pendingViews += c.views.sum() - c.flushedViews;
+                pendingOrders += c.orders.sum() - c.flushedOrders;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running);
+        stats.put("trackedVehicles", counters.size());
+        stats.put("pendingViews", pendingViews);
+        stats.put("pendingOrders", pendingOrders);
+        stats.put("flushes", flushes.get());
+        stats.put("rowsUpdated", rowsUpdated.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("flushIntervalMillis", flushIntervalMillis);
+        return stats;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            failedFlushes.incrementAndGet();
+            logger.error("Failed to flush vehicle counters, will retry", e);
+        } catch (RuntimeException e) {
+            // Keep the scheduled task alive
+            failedFlushes.incrementAndGet();
+            logger.error("Unexpected error flushing vehicle counters", e);
+        }
+    }
+
+    private int update(List<Delta> chunk) throws SQLException {
+        StringBuilder views = new StringBuilder("view_count = view_count + CASE id");
+        StringBuilder orders = new StringBuilder("order_count = order_count + CASE id");
+        StringBuilder in = new StringBuilder();
+        List<Object> params = new ArrayList<>(chunk.size() * 5);
+        List<Object> orderParams = new ArrayList<>(chunk.size() * 2);
+        List<Object> idParams = new ArrayList<>(chunk.size());
+        for (Delta d : chunk) {
+            views.append(" WHEN ? THEN ?");
+            orders.append(" WHEN ? THEN ?");
+            in.append(in.length() == 0 ? "?" : ", ?");
+            params.add(d.id);
+            params.add(d.views);
+            orderParams.add(d.id);
+            orderParams.add(d.orders);
+            idParams.add(d.id);
+        }
+        params.addAll(orderParams);
+        params.addAll(idParams);
+        String sql = "UPDATE vehicles SET " + views + " ELSE 0 END, " + orders + " ELSE 0 END"
+            + " WHERE id IN (" + in + ")";
+        try (Connection conn = DatabaseUtil.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            BaseDao.setParameters(stmt, params.toArray());
+            return stmt.executeUpdate();
+        }
+    }
+}
@@ -2,19 +2,42 @@ package com.carrental.dao;
 
 import com.carrental.model.Vehicle;
 import com.carrental.model.VehicleStatusLog;
+import com.carrental.util.DatabaseUtil;
 import com.carrental.util.LogContext;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Vehicle Data Access Object
  */
 public class VehicleDao extends BaseDao<Vehicle> {
 
+    private static final EntityCache<Vehicle> CACHE = EntityCache.create("vehicles", 60, 5000, Vehicle::new);
+
+    private static final boolean INDEX_ENABLED = Boolean.parseBoolean(
+        DatabaseUtil.getProperty("app.vehicle.index.enabled", "true"));
+    private static final long INDEX_MAX_AGE_MILLIS = Long.parseLong(
+        DatabaseUtil.getProperty("app.vehicle.index.maxAgeSeconds", "300")) * 1000L;
+
     private final VehicleStatusLogDao vehicleStatusLogDao = new VehicleStatusLogDao();
+    private final OrderDao orderDao = new OrderDao();
+    private final VehicleAvailabilityIndex availabilityIndex = VehicleAvailabilityIndex.getInstance();
+
+    /** Keyword index over rentable vehicles: brand, model, series, plate number */
+    private static final SearchIndex<Vehicle> SEARCH_INDEX = new SearchIndex<>("vehicles", Vehicle::getId,
+        v -> new String[] {v.getBrand(), v.getModel(), v.getSeries(), v.getPlateNumber()},
+        new int[] {3, 3, 2, 4},
+        Comparator.comparing((Vehicle v) -> Boolean.TRUE.equals(v.getIsHot()) ? 0 : 1)
+            .thenComparing(Vehicle::getOrderCount, Comparator.nullsLast(Comparator.<Integer>reverseOrder()))
+            .thenComparing(Vehicle::getId, Comparator.reverseOrder()));
 
     @Override
     protected Vehicle mapRow(ResultSet rs) throws SQLException {
@@ -75,7 +98,16 @@ public class VehicleDao extends BaseDao<Vehicle> {
             LEFT JOIN stores s ON v.store_id = s.id 
             WHERE v.id = ?
             """;
-        return executeQuerySingle(sql, id);
+        return CACHE.get(id, key -> executeQuerySingle(sql, key));
+    }
+
+    /**
+     * Find vehicles by IDs, keyed by ID; uncached ones are loaded in one query
+     */
+    public Map<Long, Vehicle> findByIds(Collection<Long> ids) {
+        return CACHE.getAll(ids, missing -> executeQueryByIds(
+            "SELECT v.*, s.name as store_name, s.city as store_city "
+            + "FROM vehicles v LEFT JOIN stores s ON v.store_id = s.id WHERE v.id IN ", missing, Vehicle::getId));
     }
 
     /**
@@ -106,7 +138,7 @@ public class VehicleDao extends BaseDao<Vehicle> {
             VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 
                 ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW(), NOW())
             """;
-        return executeInsert(sql, vehicle.getVin(), vehicle.getPlateNumber(),
+        Long id = executeInsert(sql, vehicle.getVin(), vehicle.getPlateNumber(),
             vehicle.getBrand(), vehicle.getModel(), vehicle.getSeries(),
             vehicle.getYear(), vehicle.getColor(), vehicle.getSeats(),
             vehicle.getFuelType(), vehicle.getTransmission(), vehicle.getCategory(),
@@ -119,6 +151,8 @@ public class VehicleDao extends BaseDao<Vehicle> {
             vehicle.getLastMaintenanceDate(), vehicle.getViewCount(),
             vehicle.getOrderCount(), vehicle.getRating(), vehicle.getIsHot(),
             vehicle.getIsNew(), vehicle.getNoDeposit());
+        refreshCaches(id);
+        return id;
     }
 
     /**
@@ -135,7 +169,7 @@ public class VehicleDao extends BaseDao<Vehicle> {
                 last_maintenance_date = ?, is_hot = ?, is_new = ?, no_deposit = ?, updated_at = NOW()
             WHERE id = ?
             """;
-        return executeUpdate(sql, vehicle.getVin(), vehicle.getPlateNumber(),
+        int result = executeUpdate(sql, vehicle.getVin(), vehicle.getPlateNumber(),
             vehicle.getBrand(), vehicle.getModel(), vehicle.getSeries(),
             vehicle.getYear(), vehicle.getColor(), vehicle.getSeats(),
             vehicle.getFuelType(), vehicle.getTransmission(), vehicle.getCategory(),
@@ -145,6 +179,10 @@ public class VehicleDao extends BaseDao<Vehicle> {
             vehicle.getFeatures(), vehicle.getDescription(),
             vehicle.getLastMaintenanceDate(), vehicle.getIsHot(),
             vehicle.getIsNew(), vehicle.getNoDeposit(), vehicle.getId());
+        if (result > 0) {
+            refreshCaches(vehicle.getId());
+        }
+        return result;
     }
 
     /**
@@ -156,6 +194,9 @@ public class VehicleDao extends BaseDao<Vehicle> {
 
         String sql = "UPDATE vehicles SET status = ?, updated_at = NOW() WHERE id = ?";
         int result = executeUpdate(sql, status, id);
+        if (result > 0) {
+            refreshCaches(id);
+        }
 
         if (result > 0 && (fromStatus == null || !fromStatus.equals(status))) {
             try {
@@ -171,7 +212,7 @@ public class VehicleDao extends BaseDao<Vehicle> {
                 log.setOperatorName(LogContext.getUsername());
                 log.setOperatorRole(LogContext.getRole());
                 log.setRemark(null);
-                vehicleStatusLogDao.create(log);
+                DatabaseUtil.afterCommit(() -> vehicleStatusLogDao.append(log));
             } catch (Exception ignored) {
                 // Avoid breaking main flow if logging fails.
             }
@@ -181,19 +222,72 @@ public class VehicleDao extends BaseDao<Vehicle> {
     }
 
     /**
-     * Increment view count
+     * Mark a rentable vehicle as booked after a reservation was taken. A vehicle that is
+     * already booked, out on rent or being cleaned keeps its status.
+     */
+    public int markBooked(Long id) {
+        Vehicle current = findById(id);
+        if (current == null || current.getStatus() == null || current.getStatus() != 1) {
+            return 0;
+        }
+        return updateStatus(id, 2);
+    }
+
+    /**
+     * Settle the status once one of the vehicle's orders no longer holds it: booked (2)
+     * while other reservations remain, otherwise rentable (1). Only vehicles that are
+     * rentable, booked or being cleaned are touched, so a car out on another rental,
+     * in maintenance or offline is left alone.
+     */
+    public int releaseBooking(Long id, boolean stillReserved) {
+        Vehicle current = findById(id);
+        if (current == null || current.getStatus() == null) {
+            return 0;
+        }
+        int status = current.getStatus();
+        int target = stillReserved ? 2 : 1;
+        if ((status != 1 && status != 2 && status != 5) || status == target) {
+            return 0;
+        }
+        return updateStatus(id, target);
+    }
+
+    /**
+     * Increment view count through VehicleCounterBuffer, which writes it back in batches.
+     * The cached copy is deliberately left alone: a view count up to one TTL behind is
+     * fine and detail pages would otherwise never hit.
      */
-    public int incrementViewCount(Long id) {
+    public void incrementViewCount(Long id) {
+        if (VehicleCounterBuffer.getInstance().addView(id)) {
+            return;
+        }
         String sql = "UPDATE vehicles SET view_count = view_count + 1 WHERE id = ?";
-        return executeUpdate(sql, id);
+        executeUpdate(sql, id);
+    }
+
+    /**
+     * Increment order count; buffered like view counts, caches refresh once it is written
+     */
+    public void incrementOrderCount(Long id) {
+        // The buffer flushes on its own schedule, so only count orders that were committed
+        DatabaseUtil.afterCommit(() -> {
+            if (VehicleCounterBuffer.getInstance().addOrder(id)) {
+                return;
+            }
+            String sql = "UPDATE vehicles SET order_count = order_count + 1 WHERE id = ?";
+            if (executeUpdate(sql, id) > 0) {
+                refreshCaches(id);
+            }
+        });
     }
 
     /**
-     * Increment order count
+     * Called by VehicleCounterBuffer after it wrote order_count deltas
      */
-    public int incrementOrderCount(Long id) {
-        String sql = "UPDATE vehicles SET order_count = order_count + 1 WHERE id = ?";
-        return executeUpdate(sql, id);
+    void refreshAfterCounterFlush(Collection<Long> ids) {
+        for (Long id : ids) {
+            refreshCaches(id);
+        }
     }
 
     /**
@@ -202,6 +296,10 @@ public class VehicleDao extends BaseDao<Vehicle> {
     public List<Vehicle> findAvailable(String category, String brand, Long storeId, String city,
             String fuelType, Integer minSeats, java.math.BigDecimal minPrice, 
             java.math.BigDecimal maxPrice, String sortBy, int page, int pageSize) {
+        if (useIndex()) {
+            return availabilityIndex.query(category, brand, storeId, city, fuelType, minSeats,
+                minPrice, maxPrice, sortBy, page, pageSize).getList();
+        }
         StringBuilder sql = new StringBuilder("""
             SELECT v.*, s.name as store_name, s.city as store_city 
             FROM vehicles v 
@@ -209,53 +307,10 @@ public class VehicleDao extends BaseDao<Vehicle> {
             WHERE v.status = 1
             """);
         List<Object> params = new ArrayList<>();
-        
-        if (category != null && !category.isEmpty()) {
-            sql.append(" AND v.category = ?");
-            params.add(category);
-        }
-        if (brand != null && !brand.isEmpty()) {
-            sql.append(" AND v.brand = ?");
-            params.add(brand);
-        }
-        if (storeId != null) {
-            sql.append(" AND v.store_id = ?");
-            params.add(storeId);
-        }
-        if (city != null && !city.isEmpty()) {
-            sql.append(" AND s.city = ?");
-            params.add(city);
-        }
-        if (fuelType != null && !fuelType.isEmpty()) {
-            sql.append(" AND v.fuel_type = ?");
-            params.add(fuelType);
-        }
-        if (minSeats != null) {
-            sql.append(" AND v.seats >= ?");
-            params.add(minSeats);
-        }
-        if (minPrice != null) {
-            sql.append(" AND v.daily_price >= ?");
-            params.add(minPrice);
-        }
-        if (maxPrice != null) {
-            sql.append(" AND v.daily_price <= ?");
-            params.add(maxPrice);
-        }
-
-        // Sorting
-        if ("price_asc".equals(sortBy)) {
-            sql.append(" ORDER BY v.daily_price ASC");
-        } else if ("price_desc".equals(sortBy)) {
-            sql.append(" ORDER BY v.daily_price DESC");
-        } else if ("rating".equals(sortBy)) {
-            sql.append(" ORDER BY v.rating DESC");
-        } else if ("popular".equals(sortBy)) {
-            sql.append(" ORDER BY v.order_count DESC");
-        } else {
-            sql.append(" ORDER BY v.is_hot DESC, v.created_at DESC");
-        }
+        appendAvailableFilters(sql, params, category, brand, storeId, city, fuelType, minSeats,
+            minPrice, maxPrice);
 
+        appendAvailableOrder(sql, sortBy);
         sql.append(" LIMIT ? OFFSET ?");
         params.add(pageSize);
         params.add((page - 1) * pageSize);
@@ -269,6 +324,10 @@ public class VehicleDao extends BaseDao<Vehicle> {
     public long countAvailable(String category, String brand, Long storeId, String city,
             String fuelType, Integer minSeats, java.math.BigDecimal minPrice, 
             java.math.BigDecimal maxPrice) {
+        if (useIndex()) {
+            return availabilityIndex.query(category, brand, storeId, city, fuelType, minSeats,
+                minPrice, maxPrice, null, 1, 0).getTotal();
+        }
         StringBuilder sql = new StringBuilder("""
             SELECT COUNT(*) 
             FROM vehicles v 
@@ -276,7 +335,86 @@ public class VehicleDao extends BaseDao<Vehicle> {
             WHERE v.status = 1
             """);
         List<Object> params = new ArrayList<>();
-        
+        appendAvailableFilters(sql, params, category, brand, storeId, city, fuelType, minSeats,
+            minPrice, maxPrice);
+
+        return executeCount(sql.toString(), params.toArray());
+    }
+
+    /**
+     * Page of available vehicles plus total in one pass over the availability index.
+     * Falls back to findAvailable + countAvailable when the index is disabled or unavailable.
+     */
+    public VehicleAvailabilityIndex.Page queryAvailable(String category, String brand, Long storeId,
+            String city, String fuelType, Integer minSeats, java.math.BigDecimal minPrice,
+            java.math.BigDecimal maxPrice, String sortBy, int page, int pageSize) {
+        if (useIndex()) {
+            return availabilityIndex.query(category, brand, storeId, city, fuelType, minSeats,
+                minPrice, maxPrice, sortBy, page, pageSize);
+        }
+        List<Vehicle> list = findAvailable(category, brand, storeId, city, fuelType, minSeats,
+            minPrice, maxPrice, sortBy, page, pageSize);
+        long total = countAvailable(category, brand, storeId, city, fuelType, minSeats,
+            minPrice, maxPrice);
+        return new VehicleAvailabilityIndex.Page(list, total);
+    }
+
+    /**
+     * Vehicles that can be booked for the whole of [from, to): bookable status and no
+     * active order overlapping the period. Filters, sorting and paging match queryAvailable.
+     * The availability index is intersected with the vehicles OrderDao reports as reserved
+     * in the period; without the index or the reservation book this runs an anti-join on orders.
+     */
+    public VehicleAvailabilityIndex.Page queryAvailableBetween(LocalDateTime from, LocalDateTime to,
+            String category, String brand, Long storeId, String city, String fuelType,
+            Integer minSeats, java.math.BigDecimal minPrice, java.math.BigDecimal maxPrice,
+            String sortBy, int page, int pageSize) {
+        if (useIndex()) {
+            Set<Long> reserved = orderDao.findReservedVehicleIds(from, to);
+            if (reserved != null) {
+                return availabilityIndex.queryExcluding(reserved, category, brand, storeId, city,
+                    fuelType, minSeats, minPrice, maxPrice, sortBy, page, pageSize);
+            }
+        }
+        LocalDateTime paddedFrom = from.minusMinutes(OrderDao.TURNAROUND_MINUTES);
+        LocalDateTime paddedTo = to.plusMinutes(OrderDao.TURNAROUND_MINUTES);
+        String where = """
+            FROM vehicles v
+            LEFT JOIN stores s ON v.store_id = s.id
+            WHERE v.status IN (1, 2, 3, 5)
+              AND NOT EXISTS (
+                SELECT 1 FROM orders o
+                WHERE o.vehicle_id = v.id AND o.status IN %s
+                  AND o.pickup_time < ? AND o.return_time > ?)
+            """.formatted(OrderDao.RESERVING_STATUS_SQL);
+        StringBuilder filter = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        params.add(paddedTo);
+        params.add(paddedFrom);
+        appendAvailableFilters(filter, params, category, brand, storeId, city, fuelType, minSeats,
+            minPrice, maxPrice);
+
+        long total = executeCount("SELECT COUNT(*) " + where + filter, params.toArray());
+        StringBuilder sql = new StringBuilder("SELECT v.*, s.name as store_name, s.city as store_city ")
+            .append(where).append(filter);
+        appendAvailableOrder(sql, sortBy);
+        sql.append(" LIMIT ? OFFSET ?");
+        params.add(pageSize);
+        params.add((page - 1) * pageSize);
+        return new VehicleAvailabilityIndex.Page(executeQuery(sql.toString(), params.toArray()), total);
+    }
+
+    /**
+     * Whether a vehicle in this status can take new reservations: rentable, booked,
+     * rented out or being cleaned. Offline, maintenance and accident vehicles cannot.
+     */
+    public static boolean isBookable(Integer status) {
+        return status != null && (status == 1 || status == 2 || status == 3 || status == 5);
+    }
+
+    private static void appendAvailableFilters(StringBuilder sql, List<Object> params, String category,
+            String brand, Long storeId, String city, String fuelType, Integer minSeats,
+            java.math.BigDecimal minPrice, java.math.BigDecimal maxPrice) {
         if (category != null && !category.isEmpty()) {
             sql.append(" AND v.category = ?");
             params.add(category);
@@ -309,14 +447,30 @@ public class VehicleDao extends BaseDao<Vehicle> {
             sql.append(" AND v.daily_price <= ?");
             params.add(maxPrice);
         }
+    }
 
-        return executeCount(sql.toString(), params.toArray());
+    private static void appendAvailableOrder(StringBuilder sql, String sortBy) {
+        if ("price_asc".equals(sortBy)) {
+            sql.append(" ORDER BY v.daily_price ASC");
+        } else if ("price_desc".equals(sortBy)) {
+            sql.append(" ORDER BY v.daily_price DESC");
+        } else if ("rating".equals(sortBy)) {
+            sql.append(" ORDER BY v.rating DESC");
+        } else if ("popular".equals(sortBy)) {
+            sql.append(" ORDER BY v.order_count DESC");
+        } else {
+            sql.append(" ORDER BY v.is_hot DESC, v.created_at DESC");
+        }
     }
 
     /**
      * Search vehicles
      */
     public List<Vehicle> search(String keyword, int page, int pageSize) {
+        if (useSearchIndex()) {
+            List<Long> ids = SEARCH_INDEX.search(keyword, null, (page - 1) * pageSize, pageSize).getIds();
+            return inOrder(ids, findByIds(ids));
+        }
         String sql = """
             SELECT v.*, s.name as store_name, s.city as store_city 
             FROM vehicles v 
@@ -387,6 +541,20 @@ public class VehicleDao extends BaseDao<Vehicle> {
         return executeQuery(sql, pageSize, (page - 1) * pageSize);
     }
 
+    /**
+     * Keyset paginated variant of findAll, ordered by created_at, id descending
+     */
+    public CursorPage<Vehicle> findAllByCursor(PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT v.*, s.name as store_name, s.city as store_city
+            FROM vehicles v
+            LEFT JOIN stores s ON v.store_id = s.id
+            WHERE 1=1
+            """);
+        return executeKeysetQuery(sql, new ArrayList<>(), "v.", cursor, pageSize,
+            Vehicle::getCreatedAt, Vehicle::getId);
+    }
+
     /**
      * Count all vehicles
      */
@@ -469,6 +637,69 @@ public class VehicleDao extends BaseDao<Vehicle> {
      */
     public int deleteById(Long id) {
         String sql = "DELETE FROM vehicles WHERE id = ?";
-        return executeUpdate(sql, id);
+        int result = executeUpdate(sql, id);
+        CACHE.invalidate(id);
+        if (result > 0 && INDEX_ENABLED) {
+            availabilityIndex.remove(id);
+        }
+        if (result > 0) {
+            SEARCH_INDEX.remove(id);
+        }
+        return result;
+    }
+
+    /**
+     * Drop every cached vehicle, e.g. after a store rename changes the joined columns
+     */
+    static void invalidateCache() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * Load all rentable vehicles for the availability index
+     */
+    private List<Vehicle> findAllRentable() {
+        String sql = """
+            SELECT v.*, s.name as store_name, s.city as store_city
+            FROM vehicles v
+            LEFT JOIN stores s ON v.store_id = s.id
+            WHERE v.status = 1
+            """;
+        return executeQuery(sql);
+    }
+
+    /**
+     * Load all bookable vehicles for the availability index
+     */
+    private List<Vehicle> findAllBookable() {
+        String sql = """
+            SELECT v.*, s.name as store_name, s.city as store_city
+            FROM vehicles v
+            LEFT JOIN stores s ON v.store_id = s.id
+            WHERE v.status IN (1, 2, 3, 5)
+            """;
+        return executeQuery(sql);
+    }
+
+    private boolean useIndex() {
+        return INDEX_ENABLED && availabilityIndex.ensureLoaded(this::findAllBookable, INDEX_MAX_AGE_MILLIS);
+    }
+
+    private boolean useSearchIndex() {
+        return SearchIndex.ENABLED && SEARCH_INDEX.ensureLoaded(this::findAllRentable, SearchIndex.MAX_AGE_MILLIS);
+    }
+
+    private void refreshCaches(Long id) {
+        CACHE.invalidate(id);
+        // The indexes re-read the row, so inside a transaction they wait for the commit
+        DatabaseUtil.afterCommit(() -> {
+            if (INDEX_ENABLED && id != null) {
+                availabilityIndex.refresh(id, this::findById);
+            }
+            SEARCH_INDEX.refresh(id, key -> {
+                Vehicle v = findById(key);
+                return v != null && v.getStatus() != null && v.getStatus() == 1 ? v : null;
+            });
+        });
     }
 }
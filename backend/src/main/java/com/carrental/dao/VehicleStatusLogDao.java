@@ -2,6 +2,7 @@ package com.carrental.dao;
 
 import com.carrental.model.VehicleStatusLog;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
@@ -10,6 +11,10 @@ import java.util.List;
 
 public class VehicleStatusLogDao extends BaseDao<VehicleStatusLog> {
 
+    private static final AsyncLogWriter.Table TABLE = new AsyncLogWriter.Table("vehicle_status_logs",
+        "vehicle_id, vehicle_name, plate_number, from_status, to_status, "
+        + "operator_id, operator_name, operator_role, remark, created_at");
+
     @Override
     protected VehicleStatusLog mapRow(ResultSet rs) throws SQLException {
         VehicleStatusLog log = new VehicleStatusLog();
@@ -40,29 +45,18 @@ public class VehicleStatusLogDao extends BaseDao<VehicleStatusLog> {
             log.getRemark());
     }
 
+    public void append(VehicleStatusLog log) {
+        AsyncLogWriter.getInstance().submit(TABLE, log.getVehicleId(), log.getVehicleName(),
+            log.getPlateNumber(), log.getFromStatus(), log.getToStatus(),
+            log.getOperatorId(), log.getOperatorName(), log.getOperatorRole(),
+            log.getRemark(), AsyncLogWriter.now());
+    }
+
     public List<VehicleStatusLog> findAll(String vehicle, Integer status,
             LocalDateTime startDate, LocalDateTime endDate, int page, int pageSize) {
         StringBuilder sql = new StringBuilder("SELECT * FROM vehicle_status_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
-
-        if (vehicle != null && !vehicle.isBlank()) {
-            sql.append(" AND (vehicle_name LIKE ? OR plate_number LIKE ?)");
-            String like = "%" + vehicle + "%";
-            params.add(like);
-            params.add(like);
-        }
-        if (status != null) {
-            sql.append(" AND to_status = ?");
-            params.add(status);
-        }
-        if (startDate != null) {
-            sql.append(" AND created_at >= ?");
-            params.add(startDate);
-        }
-        if (endDate != null) {
-            sql.append(" AND created_at <= ?");
-            params.add(endDate);
-        }
+        appendFilters(sql, params, vehicle, status, startDate, endDate);
 
         sql.append(" ORDER BY created_at DESC LIMIT ? OFFSET ?");
         params.add(pageSize);
@@ -71,11 +65,37 @@ public class VehicleStatusLogDao extends BaseDao<VehicleStatusLog> {
         return executeQuery(sql.toString(), params.toArray());
     }
 
+    public CursorPage<VehicleStatusLog> findAllByCursor(String vehicle, Integer status,
+            LocalDateTime startDate, LocalDateTime endDate, PageCursor cursor, int pageSize) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM vehicle_status_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, vehicle, status, startDate, endDate);
+        return executeKeysetQuery(sql, params, "", cursor, pageSize,
+            VehicleStatusLog::getCreatedAt, VehicleStatusLog::getId);
+    }
+
+    public long streamAll(String vehicle, Integer status,
+            LocalDateTime startDate, LocalDateTime endDate,
+            RowHandler<VehicleStatusLog> handler) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM vehicle_status_logs WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, vehicle, status, startDate, endDate);
+        sql.append(" ORDER BY created_at DESC, id DESC");
+        return streamQuery(sql.toString(), handler, params.toArray());
+    }
+
     public long countAll(String vehicle, Integer status,
             LocalDateTime startDate, LocalDateTime endDate) {
         StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM vehicle_status_logs WHERE 1=1");
         List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, vehicle, status, startDate, endDate);
 
+        return executeCount(sql.toString(), params.toArray());
+    }
+
+    private void appendFilters(StringBuilder sql, List<Object> params,
+            String vehicle, Integer status,
+            LocalDateTime startDate, LocalDateTime endDate) {
         if (vehicle != null && !vehicle.isBlank()) {
             sql.append(" AND (vehicle_name LIKE ? OR plate_number LIKE ?)");
             String like = "%" + vehicle + "%";
@@ -94,7 +114,5 @@ public class VehicleStatusLogDao extends BaseDao<VehicleStatusLog> {
             sql.append(" AND created_at <= ?");
             params.add(endDate);
         }
-
-        return executeCount(sql.toString(), params.toArray());
     }
 }
@@ -0,0 +1,15 @@
+package com.carrental.dto;
+
+/**
+ * Body of POST /api/marketing/claim-coupon
+ */
+public class CouponClaimRequest implements Validatable {
+    private Long couponId;
+
+    @Override
+    public String validate() {
+        return couponId == null ? "couponId 为必填" : null;
+    }
+
+    public Long getCouponId() { return couponId; }
+}
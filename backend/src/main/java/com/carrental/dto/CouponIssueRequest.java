@@ -0,0 +1,29 @@
+package com.carrental.dto;
+
+import java.util.List;
+
+/**
+ * Body of POST /api/admin/coupons/issue
+ */
+public class CouponIssueRequest implements Validatable {
+    private Long couponId;
+    private List<Long> userIds;
+    private String note;
+
+    @Override
+    public String validate() {
+        if (couponId == null || userIds == null || userIds.isEmpty()) {
+            return "couponId 和 userIds 为必填";
+        }
+        if (userIds.contains(null)) {
+            return "userIds 不能包含空值";
+        }
+        return null;
+    }
+
+    public Long getCouponId() { return couponId; }
+
+    public List<Long> getUserIds() { return userIds; }
+
+    public String getNote() { return note; }
+}
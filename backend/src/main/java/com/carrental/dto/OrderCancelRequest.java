@@ -0,0 +1,18 @@
+package com.carrental.dto;
+
+/**
+ * Body of POST /api/orders/cancel
+ */
+public class OrderCancelRequest implements Validatable {
+    private Long orderId;
+    private String reason;
+
+    @Override
+    public String validate() {
+        return orderId == null ? "orderId 为必填" : null;
+    }
+
+    public Long getOrderId() { return orderId; }
+
+    public String getReason() { return reason; }
+}
@@ -0,0 +1,69 @@
+package com.carrental.dto;
+
+import com.google.gson.JsonElement;
+
+import java.math.BigDecimal;
+
+/**
+ * Body of POST /api/orders/create and /api/orders/calculate
+ */
+public class OrderCreateRequest implements Validatable {
+    private Long vehicleId;
+    private Long pickupStoreId;
+    private Long returnStoreId;
+    private String pickupTime;
+    private String returnTime;
+    private String insuranceType;
+    private JsonElement addServices;
+    private Long couponId;
+    private String deliveryAddress;
+    private String deliveryCity;
+    private String deliveryDistrict;
+    private BigDecimal deliveryLng;
+    private BigDecimal deliveryLat;
+
+    @Override
+    public String validate() {
+        if (vehicleId == null || pickupStoreId == null) {
+            return "车辆和取车门店为必填";
+        }
+        if (pickupTime == null || pickupTime.isEmpty() || returnTime == null || returnTime.isEmpty()) {
+            return "取车和还车时间为必填";
+        }
+        return null;
+    }
+
+    public Long getVehicleId() { return vehicleId; }
+
+    public Long getPickupStoreId() { return pickupStoreId; }
+
+    /**
+     * Return store, defaulting to the pickup store
+     */
+    public Long getReturnStoreId() { return returnStoreId != null ? returnStoreId : pickupStoreId; }
+
+    public String getPickupTime() { return pickupTime; }
+
+    public String getReturnTime() { return returnTime; }
+
+    public String getInsuranceType() { return insuranceType; }
+
+    /**
+     * Selected add-on services as a JSON string, as stored on the order
+     */
+    public String getAddServicesJson() {
+        return addServices == null || addServices.isJsonNull() ? null : addServices.toString();
+    }
+
+    public Long getCouponId() { return couponId; }
+
+    public String getDeliveryAddress() { return deliveryAddress; }
+
+    public String getDeliveryCity() { return deliveryCity; }
+
+    public String getDeliveryDistrict() { return deliveryDistrict; }
+
+    public BigDecimal getDeliveryLng() { return deliveryLng; }
+
+    public BigDecimal getDeliveryLat() { return deliveryLat; }
+}
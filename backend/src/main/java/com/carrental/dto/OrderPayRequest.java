@@ -0,0 +1,21 @@
+package com.carrental.dto;
+
+/**
+ * Body of POST /api/orders/pay
+ */
+public class OrderPayRequest implements Validatable {
+    private Long orderId;
+    private Integer paymentMethod;
+
+    @Override
+    public String validate() {
+        if (orderId == null || paymentMethod == null) {
+            return "orderId 和 paymentMethod 为必填";
+        }
+        return null;
+    }
+
+    public Long getOrderId() { return orderId; }
+
+    public Integer getPaymentMethod() { return paymentMethod; }
+}
@@ -0,0 +1,57 @@
+package com.carrental.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Body of POST /api/orders/quotes
+ */
+public class OrderQuoteRequest implements Validatable {
+    private List<Long> vehicleIds;
+    private Long pickupStoreId;
+    private Long returnStoreId;
+    private String pickupTime;
+    private String returnTime;
+    private String insuranceType;
+    private Long couponId;
+
+    @Override
+    public String validate() {
+        if (vehicleIds == null || vehicleIds.isEmpty()) {
+            return "车辆列表不能为空";
+        }
+        if (pickupTime == null || pickupTime.isEmpty() || returnTime == null || returnTime.isEmpty()) {
+            return "取车和还车时间为必填";
+        }
+        return null;
+    }
+
+    /**
+     * Requested vehicle ids without nulls or duplicates, in request order
+     */
+    public List<Long> getVehicleIds() {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(vehicleIds));
+        ids.removeIf(Objects::isNull);
+        return ids;
+    }
+
+    /**
+     * Pickup store, or null to use each vehicle's own store
+     */
+    public Long getPickupStoreId() { return pickupStoreId; }
+
+    /**
+     * Return store, or null to return where picked up
+     */
+    public Long getReturnStoreId() { return returnStoreId; }
+
+    public String getPickupTime() { return pickupTime; }
+
+    public String getReturnTime() { return returnTime; }
+
+    public String getInsuranceType() { return insuranceType; }
+
+    public Long getCouponId() { return couponId; }
+}
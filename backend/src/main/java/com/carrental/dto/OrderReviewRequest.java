@@ -0,0 +1,37 @@
+package com.carrental.dto;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Body of POST /api/orders/review
+ */
+public class OrderReviewRequest implements Validatable {
+    private Long orderId;
+    private Integer rating;
+    private String review;
+    private JsonElement reviewImages;
+
+    @Override
+    public String validate() {
+        if (orderId == null || rating == null) {
+            return "orderId 和 rating 为必填";
+        }
+        if (rating < 1 || rating > 5) {
+            return "评分需在1到5之间";
+        }
+        return null;
+    }
+
+    public Long getOrderId() { return orderId; }
+
+    public Integer getRating() { return rating; }
+
+    public String getReview() { return review; }
+
+    /**
+     * Review image URLs as a JSON string, as stored on the order
+     */
+    public String getReviewImagesJson() {
+        return reviewImages == null || reviewImages.isJsonNull() ? null : reviewImages.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.carrental.dto;
+
+/**
+ * Body of POST /api/marketing/exchange-points
+ */
+public class PointsExchangeRequest implements Validatable {
+    private Integer itemId;
+    private Integer points;
+
+    @Override
+    public String validate() {
+        if (itemId == null || points == null) {
+            return "itemId 和 points 为必填";
+        }
+        if (points <= 0) {
+            return "兑换积分必须大于0";
+        }
+        return null;
+    }
+
+    public Integer getItemId() { return itemId; }
+
+    public Integer getPoints() { return points; }
+}
@@ -0,0 +1,12 @@
+package com.carrental.dto;
+
+/**
+ * Request body that can check its own required fields and ranges
+ */
+public interface Validatable {
+
+    /**
+     * @return an error message for the client, or null when the body is valid
+     */
+    String validate();
+}
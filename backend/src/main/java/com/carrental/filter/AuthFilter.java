@@ -2,9 +2,11 @@ package com.carrental.filter;
 
 import com.carrental.dao.AdminOperationLogDao;
 import com.carrental.model.AdminOperationLog;
+import com.carrental.util.ClientAddress;
 import com.carrental.util.JsonUtil;
 import com.carrental.util.JwtUtil;
 import com.carrental.util.LogContext;
+import com.carrental.util.PrefixTrie;
 import jakarta.servlet.*;
 import jakarta.servlet.annotation.WebFilter;
 import jakarta.servlet.http.HttpServletRequest;
@@ -21,8 +23,8 @@ import java.util.List;
 @WebFilter(filterName = "AuthFilter", urlPatterns = "/api/*")
 public class AuthFilter implements Filter {
 
-    // Public endpoints that don't require authentication
-    private static final List<String> PUBLIC_PATHS = Arrays.asList(
+    // Public endpoint prefixes that don't require authentication, compiled into a trie
+    private static final PrefixTrie<Boolean> PUBLIC_PATHS = compile(Arrays.asList(
         "/api/auth/login",
         "/api/auth/register",
         "/api/auth/forgot-password",
@@ -39,7 +41,25 @@ public class AuthFilter implements Filter {
         // Alipay callbacks must be public (signature verification is done in servlet)
         "/api/pay/alipay/notify",
         "/api/pay/alipay/return"
-    );
+    ));
+
+    // Public endpoints that still identify the caller when a valid token is sent
+    private static final PrefixTrie<Boolean> OPTIONAL_AUTH_PATHS = compile(Arrays.asList(
+        "/api/orders/quotes"
+    ));
+
+    // Audit log module by admin path prefix; longest prefix wins
+    private static final PrefixTrie<String> ADMIN_MODULES = new PrefixTrie<String>()
+        .put("/api/admin/orders", "orders")
+        .put("/api/admin/vehicles", "vehicles")
+        .put("/api/admin/users", "users")
+        .put("/api/admin/coupons", "marketing")
+        .put("/api/admin/user-coupons", "marketing")
+        .put("/api/admin/stores", "stores")
+        .put("/api/admin/reviews", "reviews")
+        .put("/api/admin/after-sales", "after-sales")
+        .put("/api/admin/dashboard", "dashboard")
+        .put("/api/admin/maintenance", "maintenance");
 
     private final AdminOperationLogDao adminOperationLogDao = new AdminOperationLogDao();
 
@@ -72,6 +92,27 @@ public class AuthFilter implements Filter {
             return;
         }
 
+        // Catalog quotes: anonymous callers get list prices, signed-in ones their promotions
+        if (OPTIONAL_AUTH_PATHS.matchesPrefix(relativePath)) {
+            String optionalHeader = httpRequest.getHeader("Authorization");
+            JwtUtil.TokenClaims optionalClaims = optionalHeader != null && optionalHeader.startsWith("Bearer ")
+                ? JwtUtil.verifyCached(optionalHeader.substring(7))
+                : null;
+            if (optionalClaims != null) {
+                httpRequest.setAttribute("userId", optionalClaims.getUserId());
+                httpRequest.setAttribute("username", optionalClaims.getUsername());
+                httpRequest.setAttribute("role", optionalClaims.getRole());
+                LogContext.set(optionalClaims.getUserId(), optionalClaims.getUsername(), optionalClaims.getRole(),
+                    ClientAddress.of(httpRequest), httpRequest.getHeader("User-Agent"));
+            }
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                LogContext.clear();
+            }
+            return;
+        }
+
         // Get token from Authorization header
         String authHeader = httpRequest.getHeader("Authorization");
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -80,14 +121,15 @@ public class AuthFilter implements Filter {
         }
 
         String token = authHeader.substring(7);
-        if (!JwtUtil.isTokenValid(token)) {
+        JwtUtil.TokenClaims claims = JwtUtil.verifyCached(token);
+        if (claims == null) {
             JsonUtil.writeError(httpResponse, 401, "未授权：令牌无效或已过期");
             return;
         }
 
-        Long userId = JwtUtil.getUserId(token);
-        String username = JwtUtil.getUsername(token);
-        String role = JwtUtil.getRole(token);
+        Long userId = claims.getUserId();
+        String username = claims.getUsername();
+        String role = claims.getRole();
 
         // Check admin access for admin endpoints
         if (relativePath.startsWith("/api/admin/")) {
@@ -101,7 +143,7 @@ public class AuthFilter implements Filter {
         httpRequest.setAttribute("userId", userId);
         httpRequest.setAttribute("username", username);
         httpRequest.setAttribute("role", role);
-        LogContext.set(userId, username, role, getClientIp(httpRequest), httpRequest.getHeader("User-Agent"));
+        LogContext.set(userId, username, role, ClientAddress.of(httpRequest), httpRequest.getHeader("User-Agent"));
 
         boolean shouldAudit = relativePath.startsWith("/api/admin/")
             && !relativePath.startsWith("/api/admin/logs");
@@ -121,13 +163,16 @@ public class AuthFilter implements Filter {
         }
     }
 
-    private boolean isPublicPath(String path) {
-        for (String publicPath : PUBLIC_PATHS) {
-            if (path.startsWith(publicPath)) {
-                return true;
-            }
+    private static PrefixTrie<Boolean> compile(List<String> prefixes) {
+        PrefixTrie<Boolean> trie = new PrefixTrie<>();
+        for (String prefix : prefixes) {
+            trie.put(prefix, Boolean.TRUE);
         }
-        return false;
+        return trie;
+    }
+
+    private boolean isPublicPath(String path) {
+        return PUBLIC_PATHS.matchesPrefix(path);
     }
 
     private boolean shouldLogMethod(String method) {
@@ -147,26 +192,17 @@ public class AuthFilter implements Filter {
             log.setAction(resolveAction(request.getMethod(), relativePath));
             log.setTarget(resolveTarget(relativePath));
             log.setResult(status >= 200 && status < 400 ? "success" : "fail");
-            log.setIp(getClientIp(request));
+            log.setIp(ClientAddress.of(request));
             log.setRemark(resolveRemark(request));
-            adminOperationLogDao.create(log);
+            adminOperationLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking main flow if log insert fails.
         }
     }
 
     private String resolveModule(String relativePath) {
-        if (relativePath.startsWith("/api/admin/orders")) return "orders";
-        if (relativePath.startsWith("/api/admin/vehicles")) return "vehicles";
-        if (relativePath.startsWith("/api/admin/users")) return "users";
-        if (relativePath.startsWith("/api/admin/coupons")) return "marketing";
-        if (relativePath.startsWith("/api/admin/user-coupons")) return "marketing";
-        if (relativePath.startsWith("/api/admin/stores")) return "stores";
-        if (relativePath.startsWith("/api/admin/reviews")) return "reviews";
-        if (relativePath.startsWith("/api/admin/after-sales")) return "after-sales";
-        if (relativePath.startsWith("/api/admin/dashboard")) return "dashboard";
-        if (relativePath.startsWith("/api/admin/maintenance")) return "maintenance";
-        return "admin";
+        String module = ADMIN_MODULES.longestPrefixValue(relativePath);
+        return module != null ? module : "admin";
     }
 
     private String resolveAction(String method, String relativePath) {
@@ -190,20 +226,6 @@ public class AuthFilter implements Filter {
         return query != null && !query.isBlank() ? "query=" + query : "";
     }
 
-    private String getClientIp(HttpServletRequest request) {
-        String forwarded = request.getHeader("X-Forwarded-For");
-        if (forwarded != null && !forwarded.isBlank()) {
-            String[] parts = forwarded.split(",");
-            if (parts.length > 0 && !parts[0].isBlank()) {
-                return parts[0].trim();
-            }
-        }
-        String realIp = request.getHeader("X-Real-IP");
-        if (realIp != null && !realIp.isBlank()) {
-            return realIp.trim();
-        }
-        return request.getRemoteAddr();
-    }
 
     private static class StatusCaptureResponseWrapper extends HttpServletResponseWrapper {
         private int status = HttpServletResponse.SC_OK;
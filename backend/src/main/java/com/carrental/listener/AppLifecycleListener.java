@@ -0,0 +1,40 @@
+package com.carrental.listener;
+
+import com.carrental.dao.AsyncLogWriter;
+import com.carrental.dao.DashboardSnapshotEngine;
+import com.carrental.dao.SearchIndex;
+import com.carrental.dao.VehicleCounterBuffer;
+import com.carrental.util.BlobStores;
+import com.carrental.util.DatabaseUtil;
+import com.carrental.util.FanOut;
+import com.carrental.util.ImageDerivatives;
+import com.carrental.util.PricingEngine;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * Application lifecycle hooks for background workers and shared resources
+ */
+@WebListener
+public class AppLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // Background workers start lazily on first use
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        BlobStores.shutdownIfStarted();
+        DashboardSnapshotEngine.shutdownIfStarted();
+        FanOut.shutdownIfStarted();
+        ImageDerivatives.shutdownIfStarted();
+        PricingEngine.shutdownIfStarted();
+        SearchIndex.shutdownIfStarted();
+        VehicleCounterBuffer.shutdownIfStarted();
+        // Drain queued log rows while the pool is still open
+        AsyncLogWriter.shutdownIfStarted();
+        DatabaseUtil.closePool();
+    }
+}
@@ -36,6 +36,32 @@ public class Coupon implements Serializable {
     // Constructors
     public Coupon() {}
 
+    /**
+     * Copy constructor, used to hand out snapshots of cached coupons
+     */
+    public Coupon(Coupon other) {
+        this.id = other.id;
+        this.code = other.code;
+        this.name = other.name;
+        this.description = other.description;
+        this.type = other.type;
+        this.minAmount = other.minAmount;
+        this.discountAmount = other.discountAmount;
+        this.discountRate = other.discountRate;
+        this.maxDiscount = other.maxDiscount;
+        this.totalCount = other.totalCount;
+        this.usedCount = other.usedCount;
+        this.perUserLimit = other.perUserLimit;
+        this.startTime = other.startTime;
+        this.endTime = other.endTime;
+        this.applicableCategories = other.applicableCategories;
+        this.applicableVehicles = other.applicableVehicles;
+        this.status = other.status;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.vipLevelRequired = other.vipLevelRequired;
+    }
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -29,6 +29,27 @@ public class Store implements Serializable {
     // Constructors
     public Store() {}
 
+    /**
+     * Copy constructor, used to hand out snapshots of cached stores
+     */
+    public Store(Store other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.address = other.address;
+        this.city = other.city;
+        this.district = other.district;
+        this.latitude = other.latitude;
+        this.longitude = other.longitude;
+        this.phone = other.phone;
+        this.businessHours = other.businessHours;
+        this.image = other.image;
+        this.status = other.status;
+        this.vehicleCount = other.vehicleCount;
+        this.availableCount = other.availableCount;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
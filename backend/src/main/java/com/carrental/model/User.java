@@ -44,6 +44,37 @@ public class User implements Serializable {
         this.vipLevel = 0;
     }
 
+    /**
+     * Copy constructor, used to hand out snapshots of cached users
+     */
+    public User(User other) {
+        this.id = other.id;
+        this.username = other.username;
+        this.password = other.password;
+        this.email = other.email;
+        this.phone = other.phone;
+        this.realName = other.realName;
+        this.idCard = other.idCard;
+        this.driverLicense = other.driverLicense;
+        this.driverLicenseImage = other.driverLicenseImage;
+        this.idCardFront = other.idCardFront;
+        this.idCardBack = other.idCardBack;
+        this.verificationStatus = other.verificationStatus;
+        this.avatar = other.avatar;
+        this.gender = other.gender;
+        this.birthday = other.birthday;
+        this.role = other.role;
+        this.status = other.status;
+        this.balance = other.balance;
+        this.points = other.points;
+        this.inviteCode = other.inviteCode;
+        this.inviterId = other.inviterId;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.cumulativeSpending = other.cumulativeSpending;
+        this.vipLevel = other.vipLevel;
+    }
+
     public User(String username, String password, String phone) {
         this.username = username;
         this.password = password;
@@ -54,6 +54,51 @@ public class Vehicle implements Serializable {
     // Constructors
     public Vehicle() {}
 
+    /**
+     * Copy constructor, used to hand out snapshots of cached vehicles
+     */
+    public Vehicle(Vehicle other) {
+        this.id = other.id;
+        this.vin = other.vin;
+        this.plateNumber = other.plateNumber;
+        this.brand = other.brand;
+        this.model = other.model;
+        this.series = other.series;
+        this.year = other.year;
+        this.color = other.color;
+        this.seats = other.seats;
+        this.fuelType = other.fuelType;
+        this.transmission = other.transmission;
+        this.category = other.category;
+        this.storeId = other.storeId;
+        this.storeName = other.storeName;
+        this.storeCity = other.storeCity;
+        this.dailyPrice = other.dailyPrice;
+        this.weeklyPrice = other.weeklyPrice;
+        this.monthlyPrice = other.monthlyPrice;
+        this.deposit = other.deposit;
+        this.mileage = other.mileage;
+        this.status = other.status;
+        this.mainImage = other.mainImage;
+        this.images = other.images;
+        this.features = other.features;
+        this.description = other.description;
+        this.purchaseDate = other.purchaseDate;
+        this.purchasePrice = other.purchasePrice;
+        this.insuranceExpiry = other.insuranceExpiry;
+        this.inspectionExpiry = other.inspectionExpiry;
+        this.registrationExpiry = other.registrationExpiry;
+        this.lastMaintenanceDate = other.lastMaintenanceDate;
+        this.viewCount = other.viewCount;
+        this.orderCount = other.orderCount;
+        this.rating = other.rating;
+        this.isHot = other.isHot;
+        this.isNew = other.isNew;
+        this.noDeposit = other.noDeposit;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
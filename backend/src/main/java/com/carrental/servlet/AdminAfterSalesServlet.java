@@ -190,7 +190,7 @@ public class AdminAfterSalesServlet extends HttpServlet {
             log.setOperatorName(resolveOperatorName(request, order));
             log.setOperatorRole((String) request.getAttribute("role"));
             log.setMessage(message);
-            orderEventLogDao.create(log);
+            orderEventLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking main flow if logging fails.
         }
@@ -210,7 +210,7 @@ public class AdminAfterSalesServlet extends HttpServlet {
             log.setOperatorId((Long) request.getAttribute("userId"));
             log.setOperatorName(resolveOperatorName(request, order));
             log.setRemark(remark);
-            fundsFlowLogDao.create(log);
+            fundsFlowLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking main flow if logging fails.
         }
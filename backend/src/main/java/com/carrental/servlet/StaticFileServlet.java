@@ -1,24 +1,88 @@
 package com.carrental.servlet;
 
+import com.carrental.util.BlobStores;
+import com.carrental.util.DatabaseUtil;
+import com.carrental.util.ImageDerivatives;
+import com.carrental.util.StaticFileCache;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
 
-// Serve both uploaded files and frontend public images
+/**
+ * Serve uploaded blobs, legacy uploads and frontend public images.
+ *
+ * Responses carry a strong ETag (size + modification time), Last-Modified and
+ * Cache-Control so browsers revalidate with a 304 instead of downloading again.
+ * Single byte ranges are honoured. When the client accepts it, a precompressed
+ * sibling (name.br / name.gz) that is at least as new as the file is sent instead.
+ * Small files come from an in-memory LRU; large ones use the container's sendfile
+ * support when available and FileChannel otherwise. Images requested with ?w=
+ * are answered with a resized copy from ImageDerivatives when one can be made.
+ */
 @WebServlet(name = "StaticFileServlet", urlPatterns = {"/uploads/*", "/images/*"})
 public class StaticFileServlet extends HttpServlet {
 
     private static final String FRONTEND_IMAGES_DIR = "D:\\java\\javaweb\\frontend\\public\\images";
+    // "/uploads/blob/{key}" is served from the BlobStore
+    private static final String BLOB_DIR = BlobStores.URL_PREFIX.substring("/uploads/".length());
+
+    private static final long MAX_AGE_SECONDS = Long.parseLong(
+        DatabaseUtil.getProperty("app.static.maxAgeSeconds", "86400"));
+    // Tomcat only uses sendfile above its own threshold (48 KB by default)
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    private static final StaticFileCache CACHE = new StaticFileCache(
+        Long.parseLong(DatabaseUtil.getProperty("app.static.cacheMaxBytes", "33554432")),
+        Long.parseLong(DatabaseUtil.getProperty("app.static.cacheMaxFileBytes", "262144")));
+
+    private static final class Variant {
+        final Path path;
+        final BasicFileAttributes attrs;
+        final String encoding;
+
+        Variant(Path path, BasicFileAttributes attrs, String encoding) {
+            this.path = path;
+            this.attrs = attrs;
+            this.encoding = encoding;
+        }
+
+        String etag() {
+            String tag = Long.toHexString(attrs.size()) + "-" + Long.toHexString(attrs.lastModifiedTime().toMillis());
+            return "\"" + (encoding == null ? tag : tag + "-" + encoding) + "\"";
+        }
+    }
+
+    public static Map<String, Object> getCacheStats() {
+        return CACHE.getStats();
+    }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        serve(req, resp, true);
+    }
+
+    @Override
+    protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        serve(req, resp, false);
+    }
+
+    private void serve(HttpServletRequest req, HttpServletResponse resp, boolean sendBody) throws IOException {
         String servletPath = req.getServletPath(); // "/uploads" or "/images"
         String pathInfo = req.getPathInfo(); // /<filename or subpath>
         if (pathInfo == null || pathInfo.equals("/") || pathInfo.length() < 2) {
@@ -27,34 +91,284 @@ public class StaticFileServlet extends HttpServlet {
         }
 
         String filename = pathInfo.substring(1); // remove leading '/'
-        File file;
-
-        if ("/images".equals(servletPath)) {
-            // serve from frontend public images directory
-            File imagesDir = new File(FRONTEND_IMAGES_DIR);
-            file = new File(imagesDir, filename);
+        Path file;
+        // Blob URLs name their content, so they can be cached forever
+        boolean immutable = "/uploads".equals(servletPath) && filename.startsWith(BLOB_DIR);
+        if (immutable) {
+            file = BlobStores.get().resolve(filename.substring(BLOB_DIR.length()));
+            if (file == null) {
+                resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
         } else {
-            // default: serve from workingDir/uploads
-            String workingDir = new File(".").getCanonicalPath();
-            File uploadsDir = new File(workingDir, "uploads");
-            file = new File(uploadsDir, filename);
+            Path root;
+            if ("/images".equals(servletPath)) {
+                // serve from frontend public images directory
+                root = new File(FRONTEND_IMAGES_DIR).toPath();
+            } else {
+                // default: serve from workingDir/uploads
+                root = new File(new File(".").getCanonicalPath(), "uploads").toPath();
+            }
+            root = root.toAbsolutePath().normalize();
+            file = root.resolve(filename).normalize();
+            // Reject ../ escapes out of the served directory
+            if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+                resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
         }
 
-        if (!file.exists() || !file.isFile()) {
-            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
+        Integer width = parseWidth(req.getParameter("w"));
+        if (width != null && ImageDerivatives.isSupported(file.getFileName().toString())) {
+            Path derived = ImageDerivatives.getInstance().resolve(file, width);
+            if (derived != null) {
+                file = derived;
+            }
         }
 
-        String mimeType = URLConnection.guessContentTypeFromName(file.getName());
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        String range = req.getHeader("Range");
+        // Ranges always refer to the identity representation
+        Variant variant = range == null ? precompressed(req, file, attrs) : null;
+        if (variant == null) {
+            variant = new Variant(file, attrs, null);
+        }
+
+        String mimeType = URLConnection.guessContentTypeFromName(file.getFileName().toString());
         if (mimeType == null) mimeType = "application/octet-stream";
+        String etag = variant.etag();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        resp.setHeader("ETag", etag);
+        resp.setDateHeader("Last-Modified", lastModified);
+        resp.setHeader("Cache-Control", immutable
+            ? "public, max-age=31536000, immutable"
+            : "public, max-age=" + MAX_AGE_SECONDS);
+        resp.setHeader("Accept-Ranges", "bytes");
+        resp.setHeader("Vary", "Accept-Encoding");
+
+        if (notModified(req, etag, lastModified)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long size = variant.attrs.size();
+        long start = 0;
+        long end = size - 1;
+        if (range != null && ifRangeMatches(req, etag, lastModified)) {
+            long[] parsed = parseRange(range, size);
+            if (parsed == null) {
+                resp.setHeader("Content-Range", "bytes */" + size);
+                resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                resp.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
         resp.setContentType(mimeType);
-        resp.setContentLengthLong(file.length());
+        if (variant.encoding != null) {
+            resp.setHeader("Content-Encoding", variant.encoding);
+        }
+        long length = end - start + 1;
+        resp.setContentLengthLong(length);
+        if (!sendBody || length <= 0) {
+            return;
+        }
+
+        byte[] cached = CACHE.get(variant.path, size, variant.attrs.lastModifiedTime().toMillis());
+        if (cached != null) {
+            resp.getOutputStream().write(cached, (int) start, (int) length);
+            return;
+        }
+        if (length >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(req.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            // Container copies file to socket in the kernel after this method returns
+            req.setAttribute("org.apache.tomcat.sendfile.filename", variant.path.toString());
+            req.setAttribute("org.apache.tomcat.sendfile.start", start);
+            req.setAttribute("org.apache.tomcat.sendfile.end", end + 1);
+            return;
+        }
+        transfer(variant.path, start, length, resp.getOutputStream());
+    }
+
+    private static Integer parseWidth(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return null;
+        }
+        try {
+            int width = Integer.parseInt(raw);
+            return width > 0 ? width : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Precompressed sibling the client accepts, preferring brotli
+     */
+    private static Variant precompressed(HttpServletRequest req, Path file, BasicFileAttributes attrs) throws IOException {
+        String accept = req.getHeader("Accept-Encoding");
+        if (accept == null) {
+            return null;
+        }
+        if (acceptsEncoding(accept, "br")) {
+            Variant v = sibling(file, attrs, ".br", "br");
+            if (v != null) return v;
+        }
+        if (acceptsEncoding(accept, "gzip")) {
+            return sibling(file, attrs, ".gz", "gzip");
+        }
+        return null;
+    }
+
+    private static Variant sibling(Path file, BasicFileAttributes original, String suffix, String encoding)
+            throws IOException {
+        Path candidate = file.resolveSibling(file.getFileName() + suffix);
+        if (!Files.isRegularFile(candidate)) {
+            return null;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(candidate, BasicFileAttributes.class);
+        // A stale variant would serve old content under the new file's name
+        if (attrs.lastModifiedTime().compareTo(original.lastModifiedTime()) < 0) {
+            return null;
+        }
+        return new Variant(candidate, attrs, encoding);
+    }
+
+    private static boolean acceptsEncoding(String header, String encoding) {
+        for (String part : header.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equalsIgnoreCase(encoding)) {
+                continue;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean notModified(HttpServletRequest req, String etag, long lastModified) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if ("*".equals(ifNoneMatch.trim())) {
+                return true;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long since = dateHeader(req, "If-Modified-Since");
+        // HTTP dates have second precision
+        return since >= 0 && lastModified / 1000 <= since / 1000;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest req, String etag, long lastModified) {
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"")) {
+            return ifRange.trim().equals(etag);
+        }
+        long date = dateHeader(req, "If-Range");
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    private static long dateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parse a single "bytes=" range.
+     *
+     * @return {start, end} inclusive, an empty array to serve the whole file
+     *         (unsupported or multiple ranges), or null when unsatisfiable
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                long requestedEnd = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (requestedEnd < start) {
+                    // Syntactically invalid, so the header is ignored
+                    return new long[0];
+                }
+                end = Math.min(requestedEnd, size - 1);
+            }
+            if (start >= size) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
 
-        try (FileInputStream in = new FileInputStream(file)) {
-            byte[] buffer = new byte[8192];
-            int len;
-            while ((len = in.read(buffer)) != -1) {
-                resp.getOutputStream().write(buffer, 0, len);
+    private static void transfer(Path path, long start, long length, ServletOutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = length;
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(remaining, 64 * 1024));
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < buffer.capacity()) {
+                    buffer.limit((int) remaining);
+                }
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                position += read;
+                remaining -= read;
             }
         }
     }
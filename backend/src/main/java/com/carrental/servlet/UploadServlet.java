@@ -1,5 +1,8 @@
 package com.carrental.servlet;
 
+import com.carrental.util.BlobStore;
+import com.carrental.util.BlobStores;
+import com.carrental.util.ImageDerivatives;
 import com.carrental.util.JsonUtil;
 import jakarta.servlet.annotation.MultipartConfig;
 import jakarta.servlet.annotation.WebServlet;
@@ -7,25 +10,26 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.Part;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.UUID;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Stores uploads in the content-addressed BlobStore. Identical files share one copy,
+ * and the returned URL never changes for a given content.
+ */
 @WebServlet(name = "UploadServlet", urlPatterns = {"/api/upload"})
 @MultipartConfig(fileSizeThreshold = 1024 * 1024, // 1MB
         maxFileSize = 10 * 1024 * 1024, // 10MB
         maxRequestSize = 50 * 1024 * 1024)
 public class UploadServlet extends HttpServlet {
-
-    // Preferred frontend images directory (as requested)
-    private static final String FRONTEND_IMAGES_DIR = "D:\\java\\javaweb\\frontend\\public\\images";
-    private static final String DEFAULT_SUBDIR = "message"; // default subdir when not provided
-    // Fallback uploads directory (working dir/uploads)
-    private static final String UPLOAD_ROOT_DIR = "uploads";
+    private static final Logger logger = LoggerFactory.getLogger(UploadServlet.class);
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
@@ -36,112 +40,35 @@ public class UploadServlet extends HttpServlet {
                 return;
             }
 
-            String submittedFileName = Paths.get(filePart.getSubmittedFileName()).getFileName().toString();
+            String submittedFileName = filePart.getSubmittedFileName() != null
+                ? Paths.get(filePart.getSubmittedFileName()).getFileName().toString()
+                : "";
             String ext = "";
             int idx = submittedFileName.lastIndexOf('.');
-            if (idx > 0) ext = submittedFileName.substring(idx);
-
-            // Determine desired base name from request (plateNumber or baseName), sanitize it
-            String baseFromClient = null;
-            String plateParam = req.getParameter("plateNumber");
-            String baseParam = req.getParameter("baseName");
-            if (plateParam != null && !plateParam.isEmpty()) baseFromClient = plateParam;
-            else if (baseParam != null && !baseParam.isEmpty()) baseFromClient = baseParam;
+            if (idx > 0) ext = submittedFileName.substring(idx + 1).toLowerCase();
+            // Keys only carry short alphanumeric extensions
+            if (!ext.matches("[a-z0-9]{1,10}")) ext = "";
 
-            String sanitizedBase = null;
-            if (baseFromClient != null) {
-                // allow letters, numbers, '-', '_' and remove spaces and other chars
-                sanitizedBase = baseFromClient.replaceAll("[^a-zA-Z0-9_-]", "");
-                if (sanitizedBase.isEmpty()) sanitizedBase = null;
-                // limit length to avoid very long filenames
-                if (sanitizedBase != null && sanitizedBase.length() > 64) {
-                    sanitizedBase = sanitizedBase.substring(0, 64);
-                }
+            BlobStore store = BlobStores.get();
+            BlobStore.StoredBlob blob;
+            try (InputStream in = filePart.getInputStream()) {
+                blob = store.put(in, ext);
             }
+            Path saved = store.resolve(blob.getKey());
 
-            String fileName;
-            if (sanitizedBase != null) {
-                // If plate number was provided, use the plate as the filename (no UUID) so it can be referenced by plate
-                if (plateParam != null && !plateParam.isEmpty()) {
-                    fileName = sanitizedBase + ext; // e.g. HABC123.jpg
-                } else {
-                    // use base name + uuid to avoid overwriting existing files when baseName is used
-                    fileName = sanitizedBase + "_" + UUID.randomUUID() + ext;
-                }
-            } else {
-                fileName = UUID.randomUUID() + ext;
+            // Thumbnails and resized copies are produced in the background
+            if (saved != null) {
+                ImageDerivatives.getInstance().pregenerate(saved);
             }
 
-            // read optional folder parameter to decide subdirectory under frontend/public/images
-            String folderParam = req.getParameter("folder");
-            String subdir = DEFAULT_SUBDIR;
-            if (folderParam != null && !folderParam.isEmpty()) {
-                // sanitize folder name: allow letters, numbers, '-', '_'
-                String cleaned = folderParam.replaceAll("[^a-zA-Z0-9_-]", "");
-                if (!cleaned.isEmpty()) {
-                    subdir = cleaned;
-                }
-            } else if (plateParam != null && !plateParam.isEmpty()) {
-                // if uploading with plate number and no folder specified, store under 'vehicles'
-                subdir = "vehicles";
-            }
-
-            // Try to save into frontend public images/<subdir> folder if available
-            File frontendImagesDir = new File(FRONTEND_IMAGES_DIR);
-            File frontendSubDir = new File(frontendImagesDir, subdir);
-            File outFile;
-            if (frontendSubDir.exists() && frontendSubDir.isDirectory() && frontendSubDir.canWrite()) {
-                outFile = new File(frontendSubDir, fileName);
-            } else if (frontendImagesDir.exists() && frontendImagesDir.isDirectory() && frontendImagesDir.canWrite()) {
-                // try to create subdir
-                if (!frontendSubDir.exists()) {
-                    boolean created = frontendSubDir.mkdirs();
-                    if (!created) {
-                        JsonUtil.writeError(resp, 500, "无法创建上传目录: " + frontendSubDir.getAbsolutePath());
-                        return;
-                    }
-                }
-                outFile = new File(frontendSubDir, fileName);
-            } else {
-                // fallback to uploads folder in working directory
-                String workingDir = new File(".").getCanonicalPath();
-                File uploadDir = new File(workingDir, UPLOAD_ROOT_DIR);
-                if (!uploadDir.exists()) {
-                    boolean ok = uploadDir.mkdirs();
-                    if (!ok) {
-                        JsonUtil.writeError(resp, 500, "无法创建上传目录");
-                        return;
-                    }
-                }
-                // create folder inside uploads
-                File uploadSub = new File(uploadDir, subdir);
-                if (!uploadSub.exists()) {
-                    boolean created = uploadSub.mkdirs();
-                    if (!created) {
-                        JsonUtil.writeError(resp, 500, "无法创建上传目录: " + uploadSub.getAbsolutePath());
-                        return;
-                    }
-                }
-                outFile = new File(uploadSub, fileName);
-            }
-
-            try (InputStream in = filePart.getInputStream(); FileOutputStream out = new FileOutputStream(outFile)) {
-                byte[] buffer = new byte[8192];
-                int len;
-                while ((len = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, len);
-                }
-            }
-
-            // Return a frontend-usable URL: use relative /images/<subdir>/<fileName> so Vite (dev) serves it on :3000
-            String publicPath = "/images/" + subdir + "/" + fileName;
-
-            java.util.Map<String, Object> result = new java.util.HashMap<>();
-            result.put("url", publicPath);
-            result.put("savedPath", outFile.getAbsolutePath());
+            Map<String, Object> result = new HashMap<>();
+            result.put("url", BlobStores.urlOf(blob.getKey()));
+            result.put("key", blob.getKey());
+            result.put("size", blob.getSize());
+            result.put("deduplicated", blob.isDeduplicated());
             JsonUtil.writeSuccess(resp, result);
         } catch (Exception e) {
-            System.err.println("UploadServlet error: " + e.getMessage());
+            logger.error("Upload failed", e);
             JsonUtil.writeError(resp, 500, "上传失败: " + e.getMessage());
         }
     }
@@ -2,10 +2,13 @@ package com.carrental.servlet.admin;
 
 import com.carrental.dao.CouponDao;
 import com.carrental.dao.UserDao;
+import com.carrental.dto.CouponIssueRequest;
 import com.carrental.model.Coupon;
 import com.carrental.model.User;
 import com.carrental.util.DatabaseUtil;
 import com.carrental.util.JsonUtil;
+import com.carrental.util.RequestBinder;
+import com.carrental.util.RouteTable;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -31,100 +34,62 @@ public class AdminCouponServlet extends HttpServlet {
     private final CouponDao couponDao = new CouponDao();
     private final UserDao userDao = new UserDao();
 
+    private final RouteTable routes = new RouteTable()
+        .get("/", (req, resp, p) -> handleList(req, resp))
+        .get("/{id}", (req, resp, p) -> {
+            Long id = parseId(resp, p.get("id"));
+            if (id != null) handleGet(req, resp, id);
+        })
+        .post("/", (req, resp, p) -> handleCreate(req, resp))
+        .post("/issue", (req, resp, p) -> handleIssue(req, resp))
+        .put("/{id}", (req, resp, p) -> {
+            Long id = parseId(resp, p.get("id"));
+            if (id != null) handleUpdate(req, resp, id);
+        })
+        .delete("/{id}", (req, resp, p) -> {
+            Long id = parseId(resp, p.get("id"));
+            if (id != null) handleDelete(req, resp, id);
+        });
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        if (!isAdmin(request)) {
-            JsonUtil.writeError(response, 403, "无权限");
-            return;
-        }
-
-        String pathInfo = request.getPathInfo();
-        if (pathInfo == null || "/".equals(pathInfo)) {
-            handleList(request, response);
-        } else {
-            // /{id}
-            String[] parts = pathInfo.split("/");
-            if (parts.length >= 2) {
-                try {
-                    Long id = Long.parseLong(parts[1]);
-                    handleGet(request, response, id);
-                } catch (NumberFormatException e) {
-                    JsonUtil.writeError(response, 400, "无效的ID");
-                }
-            } else {
-                JsonUtil.writeError(response, 404, "接口不存在");
-            }
-        }
+        dispatch(request, response);
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        if (!isAdmin(request)) {
-            JsonUtil.writeError(response, 403, "无权限");
-            return;
-        }
-
-        String pathInfo = request.getPathInfo();
-        if ("/issue".equals(pathInfo)) {
-            handleIssue(request, response);
-        } else if (pathInfo == null || "/".equals(pathInfo)) {
-            handleCreate(request, response);
-        } else {
-            JsonUtil.writeError(response, 404, "接口不存在");
-        }
+        dispatch(request, response);
     }
 
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        if (!isAdmin(request)) {
-            JsonUtil.writeError(response, 403, "无权限");
-            return;
-        }
-
-        String pathInfo = request.getPathInfo();
-        if (pathInfo != null && pathInfo.startsWith("/")) {
-            String[] parts = pathInfo.split("/");
-            if (parts.length >= 2) {
-                try {
-                    Long id = Long.parseLong(parts[1]);
-                    handleUpdate(request, response, id);
-                } catch (NumberFormatException e) {
-                    JsonUtil.writeError(response, 400, "无效的ID");
-                }
-            } else {
-                JsonUtil.writeError(response, 404, "接口不存在");
-            }
-        } else {
-            JsonUtil.writeError(response, 404, "接口不存在");
-        }
+        dispatch(request, response);
     }
 
     @Override
     protected void doDelete(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
+        dispatch(request, response);
+    }
+
+    private void dispatch(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
         if (!isAdmin(request)) {
             JsonUtil.writeError(response, 403, "无权限");
             return;
         }
+        routes.dispatch(request, response);
+    }
 
-        String pathInfo = request.getPathInfo();
-        if (pathInfo != null && pathInfo.startsWith("/")) {
-            String[] parts = pathInfo.split("/");
-            if (parts.length >= 2) {
-                try {
-                    Long id = Long.parseLong(parts[1]);
-                    handleDelete(request, response, id);
-                } catch (NumberFormatException e) {
-                    JsonUtil.writeError(response, 400, "无效的ID");
-                }
-            } else {
-                JsonUtil.writeError(response, 404, "接口不存在");
-            }
-        } else {
-            JsonUtil.writeError(response, 404, "接口不存在");
+    private Long parseId(HttpServletResponse response, String raw) throws IOException {
+        try {
+            return Long.parseLong(raw);
+        } catch (NumberFormatException e) {
+            JsonUtil.writeError(response, 400, "无效的ID");
+            return null;
         }
     }
 
@@ -296,15 +261,12 @@ public class AdminCouponServlet extends HttpServlet {
     }
 
     private void handleIssue(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        Map<String, Object> body = JsonUtil.fromJson(request, Map.class);
-        Long couponId = body.get("couponId") == null ? null : ((Number) body.get("couponId")).longValue();
-        List<Object> userIdsObj = (List<Object>) body.get("userIds");
-        String note = (String) body.get("note");
-
-        if (couponId == null || userIdsObj == null || userIdsObj.isEmpty()) {
-            JsonUtil.writeError(response, 400, "couponId 和 userIds 为必填");
+        CouponIssueRequest body = RequestBinder.bind(request, response, CouponIssueRequest.class);
+        if (body == null) {
             return;
         }
+        Long couponId = body.getCouponId();
+        String note = body.getNote();
 
         Long adminId = (Long) request.getAttribute("userId");
         if (adminId == null) {
@@ -321,9 +283,11 @@ public class AdminCouponServlet extends HttpServlet {
         List<Long> success = new ArrayList<>();
         List<Map<String, Object>> failed = new ArrayList<>();
 
-        for (Object uidObj : userIdsObj) {
-            Long userId = ((Number) uidObj).longValue();
-            User user = userDao.findById(userId);
+        List<Long> userIds = body.getUserIds();
+        Map<Long, User> users = userDao.findByIds(userIds);
+
+        for (Long userId : userIds) {
+            User user = users.get(userId);
             if (user == null) {
                 Map<String, Object> f = new HashMap<>();
                 f.put("userId", userId);
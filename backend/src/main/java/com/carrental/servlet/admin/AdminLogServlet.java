@@ -1,15 +1,19 @@
 package com.carrental.servlet.admin;
 
 import com.carrental.dao.AdminOperationLogDao;
+import com.carrental.dao.AsyncLogWriter;
+import com.carrental.dao.CursorPage;
 import com.carrental.dao.FundsFlowLogDao;
 import com.carrental.dao.LoginSecurityLogDao;
 import com.carrental.dao.OrderEventLogDao;
+import com.carrental.dao.PageCursor;
 import com.carrental.dao.VehicleStatusLogDao;
 import com.carrental.model.AdminOperationLog;
 import com.carrental.model.FundsFlowLog;
 import com.carrental.model.LoginSecurityLog;
 import com.carrental.model.OrderEventLog;
 import com.carrental.model.VehicleStatusLog;
+import com.carrental.util.CsvWriter;
 import com.carrental.util.JsonUtil;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -34,28 +38,37 @@ public class AdminLogServlet extends HttpServlet {
 
     private static final DateTimeFormatter DATE_TIME_FORMATTER =
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String EXPORT_SUFFIX = "/export";
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         String pathInfo = request.getPathInfo();
+        // "/<type>/export" streams the same filtered list as CSV
+        boolean export = pathInfo != null && pathInfo.endsWith(EXPORT_SUFFIX);
+        if (export) {
+            pathInfo = pathInfo.substring(0, pathInfo.length() - EXPORT_SUFFIX.length());
+        }
 
         if ("/login-security".equals(pathInfo)) {
-            handleLoginSecurity(request, response);
+            handleLoginSecurity(request, response, export);
         } else if ("/operation-audit".equals(pathInfo)) {
-            handleOperationAudit(request, response);
+            handleOperationAudit(request, response, export);
         } else if ("/order-events".equals(pathInfo)) {
-            handleOrderEvents(request, response);
+            handleOrderEvents(request, response, export);
         } else if ("/funds-flow".equals(pathInfo)) {
-            handleFundsFlow(request, response);
+            handleFundsFlow(request, response, export);
         } else if ("/vehicle-status".equals(pathInfo)) {
-            handleVehicleStatus(request, response);
+            handleVehicleStatus(request, response, export);
+        } else if ("/writer-stats".equals(pathInfo)) {
+            JsonUtil.writeSuccess(response, AsyncLogWriter.getInstance().getStats());
         } else {
             JsonUtil.writeError(response, 404, "not_found");
         }
     }
 
-    private void handleLoginSecurity(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    private void handleLoginSecurity(HttpServletRequest request, HttpServletResponse response,
+            boolean export) throws IOException {
         int page = parseInt(request.getParameter("page"), 1);
         int pageSize = parseInt(request.getParameter("pageSize"), 10);
         String account = request.getParameter("account");
@@ -63,12 +76,30 @@ public class AdminLogServlet extends HttpServlet {
         LocalDateTime startDate = parseStartDate(request.getParameter("startDate"));
         LocalDateTime endDate = parseEndDate(request.getParameter("endDate"));
 
+        if (export) {
+            writeCsv(response, "login_security_logs",
+                new String[] {"ID", "用户ID", "账号", "IP", "地点", "设备", "结果", "说明", "时间"},
+                csv -> loginSecurityLogDao.streamAll(account, result, startDate, endDate, log -> csv.writeRow(
+                    CsvWriter.text(log.getId()), CsvWriter.text(log.getUserId()), log.getAccount(),
+                    log.getIp(), log.getLocation(), log.getDevice(), log.getResult(), log.getMessage(),
+                    formatDateTime(log.getCreatedAt()))));
+            return;
+        }
+
+        if (request.getParameter("cursor") != null) {
+            CursorPage<LoginSecurityLog> slice = loginSecurityLogDao.findAllByCursor(account, result, startDate, endDate,
+                PageCursor.decode(request.getParameter("cursor")), pageSize);
+            JsonUtil.writeCursorPage(response, slice.getList(), pageSize, slice.getNextCursor());
+            return;
+        }
+
         List<LoginSecurityLog> list = loginSecurityLogDao.findAll(account, result, startDate, endDate, page, pageSize);
         long total = loginSecurityLogDao.countAll(account, result, startDate, endDate);
         JsonUtil.writePaginated(response, list, page, pageSize, total);
     }
 
-    private void handleOperationAudit(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    private void handleOperationAudit(HttpServletRequest request, HttpServletResponse response,
+            boolean export) throws IOException {
         int page = parseInt(request.getParameter("page"), 1);
         int pageSize = parseInt(request.getParameter("pageSize"), 10);
         String operator = request.getParameter("operator");
@@ -77,12 +108,30 @@ public class AdminLogServlet extends HttpServlet {
         LocalDateTime startDate = parseStartDate(request.getParameter("startDate"));
         LocalDateTime endDate = parseEndDate(request.getParameter("endDate"));
 
+        if (export) {
+            writeCsv(response, "operation_audit_logs",
+                new String[] {"ID", "操作人ID", "操作人", "角色", "模块", "操作", "对象", "结果", "IP", "备注", "时间"},
+                csv -> adminOperationLogDao.streamAll(operator, module, result, startDate, endDate, log -> csv.writeRow(
+                    CsvWriter.text(log.getId()), CsvWriter.text(log.getOperatorId()), log.getOperatorName(),
+                    log.getOperatorRole(), log.getModule(), log.getAction(), log.getTarget(), log.getResult(),
+                    log.getIp(), log.getRemark(), formatDateTime(log.getCreatedAt()))));
+            return;
+        }
+
+        if (request.getParameter("cursor") != null) {
+            CursorPage<AdminOperationLog> slice = adminOperationLogDao.findAllByCursor(operator, module, result, startDate, endDate,
+                PageCursor.decode(request.getParameter("cursor")), pageSize);
+            JsonUtil.writeCursorPage(response, slice.getList(), pageSize, slice.getNextCursor());
+            return;
+        }
+
         List<AdminOperationLog> list = adminOperationLogDao.findAll(operator, module, result, startDate, endDate, page, pageSize);
         long total = adminOperationLogDao.countAll(operator, module, result, startDate, endDate);
         JsonUtil.writePaginated(response, list, page, pageSize, total);
     }
 
-    private void handleOrderEvents(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    private void handleOrderEvents(HttpServletRequest request, HttpServletResponse response,
+            boolean export) throws IOException {
         int page = parseInt(request.getParameter("page"), 1);
         int pageSize = parseInt(request.getParameter("pageSize"), 10);
         String orderNo = request.getParameter("orderNo");
@@ -91,12 +140,30 @@ public class AdminLogServlet extends HttpServlet {
         LocalDateTime startDate = parseStartDate(request.getParameter("startDate"));
         LocalDateTime endDate = parseEndDate(request.getParameter("endDate"));
 
+        if (export) {
+            writeCsv(response, "order_event_logs",
+                new String[] {"ID", "订单ID", "订单号", "事件", "阶段", "操作人ID", "操作人", "角色", "说明", "时间"},
+                csv -> orderEventLogDao.streamAll(orderNo, eventType, operator, startDate, endDate, log -> csv.writeRow(
+                    CsvWriter.text(log.getId()), CsvWriter.text(log.getOrderId()), log.getOrderNo(),
+                    log.getEventType(), log.getStage(), CsvWriter.text(log.getOperatorId()), log.getOperatorName(),
+                    log.getOperatorRole(), log.getMessage(), formatDateTime(log.getCreatedAt()))));
+            return;
+        }
+
+        if (request.getParameter("cursor") != null) {
+            CursorPage<OrderEventLog> slice = orderEventLogDao.findAllByCursor(orderNo, eventType, operator, startDate, endDate,
+                PageCursor.decode(request.getParameter("cursor")), pageSize);
+            JsonUtil.writeCursorPage(response, slice.getList(), pageSize, slice.getNextCursor());
+            return;
+        }
+
         List<OrderEventLog> list = orderEventLogDao.findAll(orderNo, eventType, operator, startDate, endDate, page, pageSize);
         long total = orderEventLogDao.countAll(orderNo, eventType, operator, startDate, endDate);
         JsonUtil.writePaginated(response, list, page, pageSize, total);
     }
 
-    private void handleFundsFlow(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    private void handleFundsFlow(HttpServletRequest request, HttpServletResponse response,
+            boolean export) throws IOException {
         int page = parseInt(request.getParameter("page"), 1);
         int pageSize = parseInt(request.getParameter("pageSize"), 10);
         String keyword = request.getParameter("keyword");
@@ -105,12 +172,31 @@ public class AdminLogServlet extends HttpServlet {
         LocalDateTime startDate = parseStartDate(request.getParameter("startDate"));
         LocalDateTime endDate = parseEndDate(request.getParameter("endDate"));
 
+        if (export) {
+            writeCsv(response, "funds_flow_logs",
+                new String[] {"ID", "流水号", "订单ID", "订单号", "类型", "金额", "渠道", "操作人ID", "操作人", "备注", "时间"},
+                csv -> fundsFlowLogDao.streamAll(keyword, type, channel, startDate, endDate, log -> csv.writeRow(
+                    CsvWriter.text(log.getId()), log.getFlowNo(), CsvWriter.text(log.getOrderId()), log.getOrderNo(),
+                    log.getType(), CsvWriter.text(log.getAmount()), log.getChannel(),
+                    CsvWriter.text(log.getOperatorId()), log.getOperatorName(), log.getRemark(),
+                    formatDateTime(log.getCreatedAt()))));
+            return;
+        }
+
+        if (request.getParameter("cursor") != null) {
+            CursorPage<FundsFlowLog> slice = fundsFlowLogDao.findAllByCursor(keyword, type, channel, startDate, endDate,
+                PageCursor.decode(request.getParameter("cursor")), pageSize);
+            JsonUtil.writeCursorPage(response, slice.getList(), pageSize, slice.getNextCursor());
+            return;
+        }
+
         List<FundsFlowLog> list = fundsFlowLogDao.findAll(keyword, type, channel, startDate, endDate, page, pageSize);
         long total = fundsFlowLogDao.countAll(keyword, type, channel, startDate, endDate);
         JsonUtil.writePaginated(response, list, page, pageSize, total);
     }
 
-    private void handleVehicleStatus(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    private void handleVehicleStatus(HttpServletRequest request, HttpServletResponse response,
+            boolean export) throws IOException {
         int page = parseInt(request.getParameter("page"), 1);
         int pageSize = parseInt(request.getParameter("pageSize"), 10);
         String vehicle = request.getParameter("vehicle");
@@ -118,11 +204,52 @@ public class AdminLogServlet extends HttpServlet {
         LocalDateTime startDate = parseStartDate(request.getParameter("startDate"));
         LocalDateTime endDate = parseEndDate(request.getParameter("endDate"));
 
+        if (export) {
+            writeCsv(response, "vehicle_status_logs",
+                new String[] {"ID", "车辆ID", "车辆", "车牌", "原状态", "新状态", "操作人ID", "操作人", "角色", "备注", "时间"},
+                csv -> vehicleStatusLogDao.streamAll(vehicle, status, startDate, endDate, log -> csv.writeRow(
+                    CsvWriter.text(log.getId()), CsvWriter.text(log.getVehicleId()), log.getVehicleName(),
+                    log.getPlateNumber(), CsvWriter.text(log.getFromStatus()), CsvWriter.text(log.getToStatus()),
+                    CsvWriter.text(log.getOperatorId()), log.getOperatorName(), log.getOperatorRole(),
+                    log.getRemark(), formatDateTime(log.getCreatedAt()))));
+            return;
+        }
+
+        if (request.getParameter("cursor") != null) {
+            CursorPage<VehicleStatusLog> slice = vehicleStatusLogDao.findAllByCursor(vehicle, status, startDate, endDate,
+                PageCursor.decode(request.getParameter("cursor")), pageSize);
+            JsonUtil.writeCursorPage(response, slice.getList(), pageSize, slice.getNextCursor());
+            return;
+        }
+
         List<VehicleStatusLog> list = vehicleStatusLogDao.findAll(vehicle, status, startDate, endDate, page, pageSize);
         long total = vehicleStatusLogDao.countAll(vehicle, status, startDate, endDate);
         JsonUtil.writePaginated(response, list, page, pageSize, total);
     }
 
+    private interface CsvBody {
+        void write(CsvWriter csv) throws IOException;
+    }
+
+    private void writeCsv(HttpServletResponse response, String name, String[] headers, CsvBody body)
+            throws IOException {
+        String filename = name + "_export_" + LocalDate.now() + ".csv";
+        try (CsvWriter csv = CsvWriter.forDownload(response, filename)) {
+            csv.writeRow(headers);
+            body.write(csv);
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.reset();
+            JsonUtil.writeError(response, 500, "导出失败");
+        }
+    }
+
+    private String formatDateTime(LocalDateTime value) {
+        return value != null ? value.format(DATE_TIME_FORMATTER) : "";
+    }
+
     private int parseInt(String value, int defaultValue) {
         try {
             return value == null ? defaultValue : Integer.parseInt(value);
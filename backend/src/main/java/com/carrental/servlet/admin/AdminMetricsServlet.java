@@ -0,0 +1,58 @@
+package com.carrental.servlet.admin;
+
+import com.carrental.dao.AsyncLogWriter;
+import com.carrental.dao.EntityCache;
+import com.carrental.dao.OrderDao;
+import com.carrental.dao.UserDao;
+import com.carrental.dao.VehicleCounterBuffer;
+import com.carrental.servlet.StaticFileServlet;
+import com.carrental.util.BlobStores;
+import com.carrental.util.DatabaseUtil;
+import com.carrental.util.FanOut;
+import com.carrental.util.ImageDerivatives;
+import com.carrental.util.JsonUtil;
+import com.carrental.util.LoginThrottle;
+import com.carrental.util.PricingEngine;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runtime metrics of in-process caches and background workers
+ */
+@WebServlet(name = "AdminMetricsServlet", urlPatterns = {"/api/admin/metrics/*"})
+public class AdminMetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String pathInfo = request.getPathInfo();
+
+        if (pathInfo == null || "/".equals(pathInfo)) {
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("caches", EntityCache.allStats());
+            metrics.put("logWriter", AsyncLogWriter.getInstance().getStats());
+            metrics.put("vehicleCounters", VehicleCounterBuffer.getInstance().getStats());
+            metrics.put("dbPool", DatabaseUtil.getPoolStats());
+            metrics.put("fanOut", FanOut.getStats());
+            metrics.put("staticFiles", StaticFileServlet.getCacheStats());
+            metrics.put("imageDerivatives", ImageDerivatives.getInstance().getStats());
+            metrics.put("blobStore", BlobStores.get().getStats());
+            metrics.put("loginThrottle", LoginThrottle.getInstance().getStats());
+            metrics.put("unknownAccounts", UserDao.getUnknownAccountStats());
+            metrics.put("reservations", OrderDao.getReservationStats());
+            metrics.put("pricing", PricingEngine.getInstance().getStats());
+            JsonUtil.writeSuccess(response, metrics);
+        } else if ("/caches".equals(pathInfo)) {
+            JsonUtil.writeSuccess(response, EntityCache.allStats());
+        } else {
+            JsonUtil.writeError(response, 404, "接口不存在");
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package com.carrental.servlet.admin;
 
+import com.carrental.dao.CursorPage;
 import com.carrental.dao.FundsFlowLogDao;
 import com.carrental.dao.OrderDao;
 import com.carrental.dao.OrderEventLogDao;
+import com.carrental.dao.PageCursor;
 import com.carrental.dao.VehicleDao;
 import com.carrental.dao.UserDao;
 import com.carrental.model.FundsFlowLog;
 import com.carrental.model.Order;
 import com.carrental.model.OrderEventLog;
 import com.carrental.model.Vehicle;
+import com.carrental.util.CsvWriter;
 import com.carrental.util.JsonUtil;
+import com.carrental.util.RouteTable;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -37,48 +41,31 @@ public class AdminOrderServlet extends HttpServlet {
     private static final DateTimeFormatter DATE_FORMATTER = 
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private final RouteTable routes = new RouteTable()
+        .get("/", (req, resp, p) -> handleList(req, resp))
+        .get("/list", (req, resp, p) -> handleList(req, resp))
+        .get("/detail/{orderNoOrId}", (req, resp, p) -> handleDetail(req, resp, p.get("orderNoOrId")))
+        .get("/pending", (req, resp, p) -> handlePending(req, resp))
+        .get("/stats", (req, resp, p) -> handleStats(req, resp))
+        .get("/export", (req, resp, p) -> handleExport(req, resp))
+        .post("/approve", (req, resp, p) -> handleApprove(req, resp))
+        .post("/reject", (req, resp, p) -> handleReject(req, resp))
+        .post("/pickup", (req, resp, p) -> handlePickup(req, resp))
+        .post("/return", (req, resp, p) -> handleReturn(req, resp))
+        .post("/complete", (req, resp, p) -> handleComplete(req, resp))
+        .post("/refund", (req, resp, p) -> handleRefund(req, resp))
+        .post("/delete", (req, resp, p) -> handleDelete(req, resp));
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        String pathInfo = request.getPathInfo();
-
-        if (pathInfo == null || "/".equals(pathInfo) || "/list".equals(pathInfo)) {
-            handleList(request, response);
-        } else if (pathInfo.startsWith("/detail/")) {
-            handleDetail(request, response, pathInfo.substring(8));
-        } else if ("/pending".equals(pathInfo)) {
-            handlePending(request, response);
-        } else if ("/stats".equals(pathInfo)) {
-            handleStats(request, response);
-        } else if ("/export".equals(pathInfo)) {
-            handleExport(request, response);
-        } else {
-            JsonUtil.writeError(response, 404, "接口不存在");
-        }
+        routes.dispatch(request, response);
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        String pathInfo = request.getPathInfo();
-
-        if ("/approve".equals(pathInfo)) {
-            handleApprove(request, response);
-        } else if ("/reject".equals(pathInfo)) {
-            handleReject(request, response);
-        } else if ("/pickup".equals(pathInfo)) {
-            handlePickup(request, response);
-        } else if ("/return".equals(pathInfo)) {
-            handleReturn(request, response);
-        } else if ("/complete".equals(pathInfo)) {
-            handleComplete(request, response);
-        } else if ("/refund".equals(pathInfo)) {
-            handleRefund(request, response);
-        } else if ("/delete".equals(pathInfo)) {
-            handleDelete(request, response);
-        } else {
-            JsonUtil.writeError(response, 404, "接口不存在");
-        }
+        routes.dispatch(request, response);
     }
 
     private void handleList(HttpServletRequest request, HttpServletResponse response)
@@ -100,6 +87,14 @@ public class AdminOrderServlet extends HttpServlet {
         LocalDateTime endDate = endDateStr != null ? 
             LocalDateTime.parse(endDateStr + " 23:59:59", DATE_FORMATTER) : null;
 
+        String cursor = request.getParameter("cursor");
+        if (cursor != null) {
+            CursorPage<Order> slice = orderDao.findAllByCursor(status, storeId, orderNo, startDate, endDate,
+                PageCursor.decode(cursor), pageSize);
+            JsonUtil.writeCursorPage(response, slice.getList(), pageSize, slice.getNextCursor());
+            return;
+        }
+
         List<Order> orders = orderDao.findAll(status, storeId, orderNo, startDate, endDate, page, pageSize);
         long total = orderDao.countAll(status, storeId, orderNo, startDate, endDate);
 
@@ -139,16 +134,18 @@ public class AdminOrderServlet extends HttpServlet {
     private void handleStats(HttpServletRequest request, HttpServletResponse response)
             throws IOException {
         Map<String, Object> stats = new HashMap<>();
+        String[] names = {"total", "pending", "waitingPayment", "waitingPickup", "inUse",
+            "waitingReturn", "waitingSettle", "completed", "cancelled"};
+        Integer[] statuses = {null, 1, 3, 4, 5, 6, 7, 8, 0};
 
-        stats.put("total", orderDao.countAll(null, null, null, null, null));
-        stats.put("pending", orderDao.countAll(1, null, null, null, null));
-        stats.put("waitingPayment", orderDao.countAll(3, null, null, null, null));
-        stats.put("waitingPickup", orderDao.countAll(4, null, null, null, null));
-        stats.put("inUse", orderDao.countAll(5, null, null, null, null));
-        stats.put("waitingReturn", orderDao.countAll(6, null, null, null, null));
-        stats.put("waitingSettle", orderDao.countAll(7, null, null, null, null));
-        stats.put("completed", orderDao.countAll(8, null, null, null, null));
-        stats.put("cancelled", orderDao.countAll(0, null, null, null, null));
+        Map<Integer, Long> counts = orderDao.countByStatus();
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        for (int i = 0; i < names.length; i++) {
+            stats.put(names[i], statuses[i] == null ? total : counts.getOrDefault(statuses[i], 0L));
+        }
 
         JsonUtil.writeSuccess(response, stats);
     }
@@ -166,9 +163,6 @@ public class AdminOrderServlet extends HttpServlet {
         LocalDateTime endDate = endDateStr != null ?
             LocalDateTime.parse(endDateStr + " 23:59:59", DATE_FORMATTER) : null;
 
-        List<Order> orders = orderDao.findAll(status, null, null, startDate, endDate, 1, 10000);
-
-        // Prepare CSV
         // Define headers
         String[] headers = new String[] {
             "订单ID", "订单号", "用户ID", "用户姓名", "手机号", "车辆ID", "车辆名", "车牌",
@@ -177,79 +171,46 @@ public class AdminOrderServlet extends HttpServlet {
             "状态", "创建时间"
         };
 
-        // Build CSV content using StringBuilder
-        StringBuilder sb = new StringBuilder();
-        // header line
-        for (int i = 0; i < headers.length; i++) {
-            sb.append(escapeCsv(headers[i]));
-            if (i < headers.length - 1) sb.append(',');
-        }
-        sb.append('\n');
-
-        // data lines
-        for (Order o : orders) {
-            List<String> cols = new ArrayList<>();
-            cols.add(o.getId() != null ? o.getId().toString() : "");
-            cols.add(o.getOrderNo());
-            cols.add(o.getUserId() != null ? o.getUserId().toString() : "");
-            cols.add(o.getUserName());
-            cols.add(o.getUserPhone());
-            cols.add(o.getVehicleId() != null ? o.getVehicleId().toString() : "");
-            cols.add(o.getVehicleName());
-            cols.add(o.getVehiclePlate());
-            cols.add(o.getPickupStoreName());
-            cols.add(o.getReturnStoreName());
-            cols.add(formatDateTime(o.getPickupTime()));
-            cols.add(formatDateTime(o.getReturnTime()));
-            cols.add(o.getRentalDays() != null ? o.getRentalDays().toString() : "");
-            cols.add(o.getDailyPrice() != null ? o.getDailyPrice().toString() : "");
-            cols.add(o.getRentalAmount() != null ? o.getRentalAmount().toString() : "");
-            cols.add(o.getDeposit() != null ? o.getDeposit().toString() : "");
-            cols.add(o.getInsuranceAmount() != null ? o.getInsuranceAmount().toString() : "");
-            cols.add(o.getServiceAmount() != null ? o.getServiceAmount().toString() : "");
-            cols.add(o.getDiscountAmount() != null ? o.getDiscountAmount().toString() : "");
-            cols.add(o.getExtraAmount() != null ? o.getExtraAmount().toString() : "");
-            cols.add(o.getTotalAmount() != null ? o.getTotalAmount().toString() : "");
-            cols.add(o.getPaidAmount() != null ? o.getPaidAmount().toString() : "");
-            cols.add(o.getRefundAmount() != null ? o.getRefundAmount().toString() : "");
-            cols.add(o.getStatus() != null ? o.getStatus().toString() : "");
-            cols.add(formatDateTime(o.getCreatedAt()));
-
-            for (int i = 0; i < cols.size(); i++) {
-                sb.append(escapeCsv(cols.get(i)));
-                if (i < cols.size() - 1) sb.append(',');
-            }
-            sb.append('\n');
-        }
-
-        // Set response headers for file download
+        // Stream rows straight from the database cursor to the response, no row cap
         String filename = "orders_export_" + java.time.LocalDate.now().toString() + ".csv";
-        response.setContentType("text/csv; charset=UTF-8");
-        response.setCharacterEncoding("UTF-8");
-        // For browsers to handle utf-8 bom, write BOM
-        byte[] bom = new byte[] {(byte)0xEF, (byte)0xBB, (byte)0xBF};
-        response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
-
-        // Write BOM + content
-        try {
-            response.getOutputStream().write(bom);
-            response.getOutputStream().write(sb.toString().getBytes("UTF-8"));
-            response.getOutputStream().flush();
+        try (CsvWriter csv = CsvWriter.forDownload(response, filename)) {
+            csv.writeRow(headers);
+            orderDao.streamAll(status, null, null, startDate, endDate, o -> csv.writeRow(
+                CsvWriter.text(o.getId()),
+                o.getOrderNo(),
+                CsvWriter.text(o.getUserId()),
+                o.getUserName(),
+                o.getUserPhone(),
+                CsvWriter.text(o.getVehicleId()),
+                o.getVehicleName(),
+                o.getVehiclePlate(),
+                o.getPickupStoreName(),
+                o.getReturnStoreName(),
+                formatDateTime(o.getPickupTime()),
+                formatDateTime(o.getReturnTime()),
+                CsvWriter.text(o.getRentalDays()),
+                CsvWriter.text(o.getDailyPrice()),
+                CsvWriter.text(o.getRentalAmount()),
+                CsvWriter.text(o.getDeposit()),
+                CsvWriter.text(o.getInsuranceAmount()),
+                CsvWriter.text(o.getServiceAmount()),
+                CsvWriter.text(o.getDiscountAmount()),
+                CsvWriter.text(o.getExtraAmount()),
+                CsvWriter.text(o.getTotalAmount()),
+                CsvWriter.text(o.getPaidAmount()),
+                CsvWriter.text(o.getRefundAmount()),
+                CsvWriter.text(o.getStatus()),
+                formatDateTime(o.getCreatedAt())));
         } catch (IOException e) {
-            // Fallback to JSON error
+            if (response.isCommitted()) {
+                // Part of the file is already sent; abort so the download is visibly incomplete
+                throw e;
+            }
+            response.reset();
             JsonUtil.writeError(response, 500, "导出失败");
         }
     }
 
-    private static String escapeCsv(String value) {
-        if (value == null) return "";
-        String v = value.replace("\"", "\"\"");
-        if (v.contains(",") || v.contains("\n") || v.contains("\r") || v.contains("\"") ) {
-            return "\"" + v + "\"";
-        }
-        return v;
-    }
-
     private static String formatDateTime(java.time.LocalDateTime dt) {
         if (dt == null) return "";
         return dt.format(DATE_FORMATTER);
@@ -300,7 +261,7 @@ public class AdminOrderServlet extends HttpServlet {
         int result = orderDao.updateStatus(orderId, 2); // 审核失败
         if (result > 0) {
             // Release vehicle
-            vehicleDao.updateStatus(order.getVehicleId(), 1);
+            vehicleDao.releaseBooking(order.getVehicleId(), orderDao.hasActiveReservation(order.getVehicleId()));
             String msg = reason != null && !reason.isBlank() ? "rejected:" + reason : "rejected";
             logOrderEvent(order, request, "reviewed", "review", msg);
             JsonUtil.writeSuccess(response, "已拒绝", null);
@@ -406,8 +367,8 @@ public class AdminOrderServlet extends HttpServlet {
 
         int result = orderDao.updateStatus(orderId, 8); // 已完成
         if (result > 0) {
-            // Update vehicle status to available
-            vehicleDao.updateStatus(order.getVehicleId(), 1);
+            // Update vehicle status to available, or booked if later reservations remain
+            vehicleDao.releaseBooking(order.getVehicleId(), orderDao.hasActiveReservation(order.getVehicleId()));
             logOrderEvent(order, request, "complete", "settlement", "order_completed");
             
             // Refund deposit to user if there's a deposit
@@ -477,7 +438,7 @@ public class AdminOrderServlet extends HttpServlet {
         if (result > 0) {
             // Release vehicle if applicable
             if (order.getStatus() < 5) {
-                vehicleDao.updateStatus(order.getVehicleId(), 1);
+                vehicleDao.releaseBooking(order.getVehicleId(), orderDao.hasActiveReservation(order.getVehicleId()));
             }
             logOrderEvent(order, request, "refund", "settlement", "order_refunded");
             logFundsFlow(order, request, "refund", "offline", refundAmount, "manual_refund");
@@ -541,7 +502,7 @@ public class AdminOrderServlet extends HttpServlet {
             log.setOperatorName(resolveOperatorName(request, order));
             log.setOperatorRole((String) request.getAttribute("role"));
             log.setMessage(message);
-            orderEventLogDao.create(log);
+            orderEventLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking main flow if logging fails.
         }
@@ -561,7 +522,7 @@ public class AdminOrderServlet extends HttpServlet {
             log.setOperatorId((Long) request.getAttribute("userId"));
             log.setOperatorName(resolveOperatorName(request, order));
             log.setRemark(remark);
-            fundsFlowLogDao.create(log);
+            fundsFlowLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking main flow if logging fails.
         }
@@ -4,12 +4,16 @@ import com.carrental.dao.VehicleDao;
 import com.carrental.dao.StoreDao;
 import com.carrental.model.Vehicle;
 import com.carrental.model.Store;
+import com.carrental.util.BlobStores;
+import com.carrental.util.FanOut;
 import com.carrental.util.JsonUtil;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -21,6 +25,7 @@ import java.util.*;
  */
 @WebServlet(name = "AdminVehicleServlet", urlPatterns = {"/api/admin/vehicles/*"})
 public class AdminVehicleServlet extends HttpServlet {
+    private static final Logger logger = LoggerFactory.getLogger(AdminVehicleServlet.class);
 
     private final VehicleDao vehicleDao = new VehicleDao();
     private final StoreDao storeDao = new StoreDao();
@@ -155,15 +160,22 @@ public class AdminVehicleServlet extends HttpServlet {
     private void handleStats(HttpServletRequest request, HttpServletResponse response)
             throws IOException {
         Map<String, Object> stats = new HashMap<>();
+        String[] names = {"available", "booked", "rented", "maintenance", "cleaning", "accident", "offline"};
+        int[] statuses = {1, 2, 3, 4, 5, 6, 0};
+
+        try (FanOut scope = FanOut.open()) {
+            FanOut.Task<Long> total = scope.fork(vehicleDao::count, 0L);
+            List<FanOut.Task<Long>> counts = new ArrayList<>(statuses.length);
+            for (int status : statuses) {
+                counts.add(scope.fork(() -> vehicleDao.countByStatus(status), 0L));
+            }
+            scope.join();
 
-        stats.put("total", vehicleDao.count());
-        stats.put("available", vehicleDao.countByStatus(1));
-        stats.put("booked", vehicleDao.countByStatus(2));
-        stats.put("rented", vehicleDao.countByStatus(3));
-        stats.put("maintenance", vehicleDao.countByStatus(4));
-        stats.put("cleaning", vehicleDao.countByStatus(5));
-        stats.put("accident", vehicleDao.countByStatus(6));
-        stats.put("offline", vehicleDao.countByStatus(0));
+            stats.put("total", total.get());
+            for (int i = 0; i < names.length; i++) {
+                stats.put(names[i], counts.get(i).get());
+            }
+        }
 
         JsonUtil.writeSuccess(response, stats);
     }
@@ -185,6 +197,7 @@ public class AdminVehicleServlet extends HttpServlet {
         Long id = vehicleDao.create(vehicle);
         if (id != null) {
             vehicle.setId(id);
+            BlobStores.retain(blobKeys(vehicle));
             
             // Update store vehicle count
             if (vehicle.getStoreId() != null) {
@@ -209,10 +222,12 @@ public class AdminVehicleServlet extends HttpServlet {
         }
 
         Long oldStoreId = existing.getStoreId();
+        Set<String> oldBlobs = blobKeys(existing);
         populateVehicle(existing, body);
 
         int result = vehicleDao.update(existing);
         if (result > 0) {
+            BlobStores.replace(oldBlobs, blobKeys(existing));
             // Update store vehicle counts if store changed
             if (oldStoreId != null && !oldStoreId.equals(existing.getStoreId())) {
                 updateStoreVehicleCount(oldStoreId);
@@ -326,6 +341,7 @@ public class AdminVehicleServlet extends HttpServlet {
             // perform physical delete
             int deleted = vehicleDao.deleteById(id);
             if (deleted > 0) {
+                BlobStores.release(blobKeys(vehicle));
                 if (vehicle.getStoreId() != null) {
                     long total = vehicleDao.countByStore(vehicle.getStoreId());
                     int available = (int) vehicleDao.countByStatus(1);
@@ -372,6 +388,32 @@ public class AdminVehicleServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Keys of the uploaded blobs referenced by mainImage and images
+     */
+    private static Set<String> blobKeys(Vehicle vehicle) {
+        List<String> urls = new ArrayList<>();
+        if (vehicle.getMainImage() != null) {
+            urls.add(vehicle.getMainImage());
+        }
+        String images = vehicle.getImages();
+        if (images != null && !images.isEmpty()) {
+            try {
+                Object parsed = JsonUtil.fromJson(images, Object.class);
+                if (parsed instanceof List) {
+                    for (Object url : (List<?>) parsed) {
+                        if (url instanceof String) {
+                            urls.add((String) url);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // Malformed images column; nothing to release
+            }
+        }
+        return BlobStores.keysOf(urls);
+    }
+
     private void populateVehicle(Vehicle vehicle, Map<String, Object> body) {
         if (body.containsKey("vin")) vehicle.setVin((String) body.get("vin"));
         if (body.containsKey("plateNumber")) vehicle.setPlateNumber((String) body.get("plateNumber"));
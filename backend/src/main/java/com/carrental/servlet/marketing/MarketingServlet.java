@@ -2,10 +2,14 @@ package com.carrental.servlet.marketing;
 
 import com.carrental.dao.CouponDao;
 import com.carrental.dao.UserDao;
+import com.carrental.dto.CouponClaimRequest;
+import com.carrental.dto.PointsExchangeRequest;
 import com.carrental.model.Coupon;
 import com.carrental.model.User;
 import com.carrental.util.JsonUtil;
 import com.carrental.util.DatabaseUtil;
+import com.carrental.util.PricingEngine;
+import com.carrental.util.RequestBinder;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -72,8 +76,6 @@ public class MarketingServlet extends HttpServlet {
         // 满减活动
         Map<String, Object> promo1 = new HashMap<>();
         promo1.put("id", 1);
-        promo1.put("title", "首单立减50元");
-        promo1.put("description", "新用户首单租车，立减50元");
         promo1.put("type", "new_user");
         // corresponds to frontend/public/images/promo/first.png
         promo1.put("image", "/images/promo/first.png");
@@ -82,8 +84,6 @@ public class MarketingServlet extends HttpServlet {
         // 限时折扣
         Map<String, Object> promo2 = new HashMap<>();
         promo2.put("id", 2);
-        promo2.put("title", "周末特惠8折");
-        promo2.put("description", "每周五至周日租车享8折优惠");
         promo2.put("type", "weekend");
         // corresponds to frontend/public/images/promo/weekend.png
         promo2.put("image", "/images/promo/weekend.png");
@@ -92,8 +92,6 @@ public class MarketingServlet extends HttpServlet {
         // 连租优惠
         Map<String, Object> promo3 = new HashMap<>();
         promo3.put("id", 3);
-        promo3.put("title", "租7天送1天");
-        promo3.put("description", "连续租车满7天，赠送1天免费用车");
         promo3.put("type", "long_term");
         // corresponds to frontend/public/images/promo/seven.png
         promo3.put("image", "/images/promo/seven.png");
@@ -102,13 +100,20 @@ public class MarketingServlet extends HttpServlet {
         // 第二单半价
         Map<String, Object> promo4 = new HashMap<>();
         promo4.put("id", 4);
-        promo4.put("title", "第二单半价");
-        promo4.put("description", "同月内第二次租车享5折优惠");
         promo4.put("type", "second_order");
         // corresponds to frontend/public/images/promo/half.png
         promo4.put("image", "/images/promo/half.png");
         promotions.add(promo4);
 
+        // Only list what the pricing engine actually applies, worded from its configured values
+        PricingEngine pricing = PricingEngine.getInstance();
+        promotions.removeIf(promo -> !pricing.isPromotionEnabled((String) promo.get("type")));
+        for (Map<String, Object> promo : promotions) {
+            String type = (String) promo.get("type");
+            promo.put("title", pricing.promotionTitle(type));
+            promo.put("description", pricing.promotionDescription(type));
+        }
+
         JsonUtil.writeSuccess(response, promotions);
     }
 
@@ -214,8 +219,11 @@ public class MarketingServlet extends HttpServlet {
             return;
         }
 
-        Map<String, Object> body = JsonUtil.fromJson(request, Map.class);
-        Long couponId = ((Number) body.get("couponId")).longValue();
+        CouponClaimRequest body = RequestBinder.bind(request, response, CouponClaimRequest.class);
+        if (body == null) {
+            return;
+        }
+        Long couponId = body.getCouponId();
 
         Coupon coupon = couponDao.findById(couponId);
         if (coupon == null) {
@@ -307,9 +315,12 @@ public class MarketingServlet extends HttpServlet {
             return;
         }
 
-        Map<String, Object> body = JsonUtil.fromJson(request, Map.class);
-        Integer itemId = ((Number) body.get("itemId")).intValue();
-        Integer points = ((Number) body.get("points")).intValue();
+        PointsExchangeRequest body = RequestBinder.bind(request, response, PointsExchangeRequest.class);
+        if (body == null) {
+            return;
+        }
+        Integer itemId = body.getItemId();
+        Integer points = body.getPoints();
 
         User user = userDao.findById(userId);
         if (user == null) {
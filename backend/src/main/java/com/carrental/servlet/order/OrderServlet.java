@@ -1,13 +1,21 @@
 package com.carrental.servlet.order;
 
+import com.carrental.dao.CursorPage;
+import com.carrental.dao.DataLoader;
 import com.carrental.dao.FundsFlowLogDao;
 import com.carrental.dao.OrderDao;
 import com.carrental.dao.OrderEventLogDao;
+import com.carrental.dao.PageCursor;
 import com.carrental.dao.AfterSalesOrderDao;
 import com.carrental.dao.VehicleDao;
 import com.carrental.dao.UserDao;
 import com.carrental.dao.CouponDao;
 import com.carrental.dao.StoreDao;
+import com.carrental.dto.OrderCancelRequest;
+import com.carrental.dto.OrderCreateRequest;
+import com.carrental.dto.OrderPayRequest;
+import com.carrental.dto.OrderQuoteRequest;
+import com.carrental.dto.OrderReviewRequest;
 import com.carrental.model.AfterSalesOrder;
 import com.carrental.model.FundsFlowLog;
 import com.carrental.model.Order;
@@ -16,18 +24,28 @@ import com.carrental.model.Vehicle;
 import com.carrental.model.User;
 import com.carrental.model.Coupon;
 import com.carrental.model.Store;
+import com.carrental.util.DatabaseUtil;
+import com.carrental.util.FanOut;
 import com.carrental.util.JsonUtil;
+import com.carrental.util.PricingEngine;
+import com.carrental.util.RequestBinder;
+import com.carrental.util.RequestLoaders;
+import com.carrental.util.RouteTable;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 /**
@@ -35,6 +53,7 @@ import java.util.*;
  */
 @WebServlet(name = "OrderServlet", urlPatterns = {"/api/orders/*"})
 public class OrderServlet extends HttpServlet {
+    private static final Logger logger = LoggerFactory.getLogger(OrderServlet.class);
 
     private final OrderDao orderDao = new OrderDao();
     private final AfterSalesOrderDao afterSalesOrderDao = new AfterSalesOrderDao();
@@ -48,50 +67,44 @@ public class OrderServlet extends HttpServlet {
     private static final DateTimeFormatter DATE_FORMATTER = 
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private final RouteTable routes = new RouteTable()
+        .get("/", (req, resp, p) -> handleList(req, resp, currentUserId(req)))
+        .get("/list", (req, resp, p) -> handleList(req, resp, currentUserId(req)))
+        .get("/detail/{id}", (req, resp, p) -> handleDetail(req, resp, currentUserId(req), p.get("id")))
+        .post("/create", (req, resp, p) -> handleCreate(req, resp, currentUserId(req)))
+        .post("/pay", (req, resp, p) -> handlePay(req, resp, currentUserId(req)))
+        .post("/cancel", (req, resp, p) -> handleCancel(req, resp, currentUserId(req)))
+        .post("/review", (req, resp, p) -> handleReview(req, resp, currentUserId(req)))
+        .post("/calculate", (req, resp, p) -> handleCalculate(req, resp, currentUserId(req)))
+        .post("/quotes", (req, resp, p) -> handleQuotes(req, resp, currentUserId(req)));
+
+    private static final int MAX_QUOTE_VEHICLES = Integer.parseInt(
+        DatabaseUtil.getProperty("app.pricing.bulk.maxVehicles", "100"));
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        String pathInfo = request.getPathInfo();
-        Long userId = (Long) request.getAttribute("userId");
-
-        if (userId == null) {
-            JsonUtil.writeError(response, 401, "请先登录");
-            return;
-        }
-
-        if (pathInfo == null || "/".equals(pathInfo) || "/list".equals(pathInfo)) {
-            handleList(request, response, userId);
-        } else if (pathInfo.startsWith("/detail/")) {
-            handleDetail(request, response, userId, pathInfo.substring(8));
-        } else {
-            JsonUtil.writeError(response, 404, "接口不存在");
-        }
+        dispatch(request, response);
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        String pathInfo = request.getPathInfo();
-        Long userId = (Long) request.getAttribute("userId");
+        dispatch(request, response);
+    }
 
-        if (userId == null) {
+    private void dispatch(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        // Quotes are public (see AuthFilter); everything else needs a signed-in user
+        if (currentUserId(request) == null && !"/quotes".equals(request.getPathInfo())) {
             JsonUtil.writeError(response, 401, "请先登录");
             return;
         }
+        routes.dispatch(request, response);
+    }
 
-        if ("/create".equals(pathInfo)) {
-            handleCreate(request, response, userId);
-        } else if ("/pay".equals(pathInfo)) {
-            handlePay(request, response, userId);
-        } else if ("/cancel".equals(pathInfo)) {
-            handleCancel(request, response, userId);
-        } else if ("/review".equals(pathInfo)) {
-            handleReview(request, response, userId);
-        } else if ("/calculate".equals(pathInfo)) {
-            handleCalculate(request, response, userId);
-        } else {
-            JsonUtil.writeError(response, 404, "接口不存在");
-        }
+    private static Long currentUserId(HttpServletRequest request) {
+        return (Long) request.getAttribute("userId");
     }
 
     private void handleList(HttpServletRequest request, HttpServletResponse response,
@@ -104,11 +117,17 @@ public class OrderServlet extends HttpServlet {
         int page = pageStr != null ? Integer.parseInt(pageStr) : 1;
         int pageSize = pageSizeStr != null ? Integer.parseInt(pageSizeStr) : 10;
 
+        String cursor = request.getParameter("cursor");
+        if (cursor != null) {
+            CursorPage<Order> slice = orderDao.findByUserByCursor(userId, status, PageCursor.decode(cursor), pageSize);
+            attachAfterSalesSummaries(request, slice.getList());
+            JsonUtil.writeCursorPage(response, slice.getList(), pageSize, slice.getNextCursor());
+            return;
+        }
+
         List<Order> orders = orderDao.findByUser(userId, status, page, pageSize);
         long total = orderDao.countByUser(userId, status);
-        for (Order order : orders) {
-            attachAfterSalesSummary(order);
-        }
+        attachAfterSalesSummaries(request, orders);
 
         JsonUtil.writePaginated(response, orders, page, pageSize, total);
     }
@@ -133,25 +152,36 @@ public class OrderServlet extends HttpServlet {
             return;
         }
 
-        attachAfterSalesSummary(order);
-
-        // Get vehicle and store details
-        Vehicle vehicle = vehicleDao.findById(order.getVehicleId());
-        Store pickupStore = storeDao.findById(order.getPickupStoreId());
-        Store returnStore = storeDao.findById(order.getReturnStoreId());
-
+        // After-sales summary, vehicle and stores are independent lookups
+        Order found = order;
         Map<String, Object> result = new HashMap<>();
-        result.put("order", order);
-        result.put("vehicle", vehicle);
-        result.put("pickupStore", pickupStore);
-        result.put("returnStore", returnStore);
+        try (FanOut scope = FanOut.open()) {
+            FanOut.Task<Boolean> afterSales = scope.fork(() -> {
+                attachAfterSalesSummary(found);
+                return Boolean.TRUE;
+            });
+            FanOut.Task<Vehicle> vehicle = scope.fork(() -> vehicleDao.findById(found.getVehicleId()));
+            FanOut.Task<Store> pickupStore = scope.fork(() -> storeDao.findById(found.getPickupStoreId()));
+            FanOut.Task<Store> returnStore = Objects.equals(order.getReturnStoreId(), order.getPickupStoreId())
+                ? pickupStore
+                : scope.fork(() -> storeDao.findById(found.getReturnStoreId()));
+            scope.join();
+
+            result.put("order", order);
+            result.put("vehicle", vehicle.get());
+            result.put("pickupStore", pickupStore.get());
+            result.put("returnStore", returnStore.get());
+        }
 
         JsonUtil.writeSuccess(response, result);
     }
 
     private void handleCreate(HttpServletRequest request, HttpServletResponse response,
             Long userId) throws IOException {
-        Map<String, Object> body = JsonUtil.fromJson(request, Map.class);
+        OrderCreateRequest body = RequestBinder.bind(request, response, OrderCreateRequest.class);
+        if (body == null) {
+            return;
+        }
 
         // Get user
         User user = userDao.findById(userId);
@@ -167,24 +197,19 @@ public class OrderServlet extends HttpServlet {
         }
 
         // Parse order details
-        Long vehicleId = ((Number) body.get("vehicleId")).longValue();
-        Long pickupStoreId = ((Number) body.get("pickupStoreId")).longValue();
-        Long returnStoreId = body.get("returnStoreId") != null ? 
-            ((Number) body.get("returnStoreId")).longValue() : pickupStoreId;
-        String pickupTimeStr = (String) body.get("pickupTime");
-        String returnTimeStr = (String) body.get("returnTime");
-        String insuranceType = (String) body.get("insuranceType");
-        String addServices = body.get("addServices") != null ? 
-            JsonUtil.toJson(body.get("addServices")) : null;
-        Long couponId = body.get("couponId") != null ? 
-            ((Number) body.get("couponId")).longValue() : null;
-        String deliveryAddress = (String) body.get("deliveryAddress");
-        String deliveryCity = (String) body.get("deliveryCity");
-        String deliveryDistrict = (String) body.get("deliveryDistrict");
-        BigDecimal deliveryLng = body.get("deliveryLng") != null ?
-            new BigDecimal(body.get("deliveryLng").toString()) : null;
-        BigDecimal deliveryLat = body.get("deliveryLat") != null ?
-            new BigDecimal(body.get("deliveryLat").toString()) : null;
+        Long vehicleId = body.getVehicleId();
+        Long pickupStoreId = body.getPickupStoreId();
+        Long returnStoreId = body.getReturnStoreId();
+        String pickupTimeStr = body.getPickupTime();
+        String returnTimeStr = body.getReturnTime();
+        String insuranceType = body.getInsuranceType();
+        String addServices = body.getAddServicesJson();
+        Long couponId = body.getCouponId();
+        String deliveryAddress = body.getDeliveryAddress();
+        String deliveryCity = body.getDeliveryCity();
+        String deliveryDistrict = body.getDeliveryDistrict();
+        BigDecimal deliveryLng = body.getDeliveryLng();
+        BigDecimal deliveryLat = body.getDeliveryLat();
 
         // Validate vehicle
         Vehicle vehicle = vehicleDao.findById(vehicleId);
@@ -192,7 +217,8 @@ public class OrderServlet extends HttpServlet {
             JsonUtil.writeError(response, 404, "车辆不存在");
             return;
         }
-        if (vehicle.getStatus() != 1) {
+        // Booked or rented cars can still take other periods; overlaps are refused on insert
+        if (!VehicleDao.isBookable(vehicle.getStatus())) {
             JsonUtil.writeError(response, 400, "车辆当前不可租用");
             return;
         }
@@ -218,55 +244,12 @@ public class OrderServlet extends HttpServlet {
             return;
         }
 
-        // Calculate rental days and amounts
-        long hours = ChronoUnit.HOURS.between(pickupTime, returnTime);
-        int rentalDays = (int) Math.ceil(hours / 24.0);
-        if (rentalDays < 1) rentalDays = 1;
-
+        // Price the rental: rate plan, best promotion, then coupon
+        Coupon coupon = couponId != null ? couponDao.findById(couponId) : null;
+        PricingEngine.Quote quote = PricingEngine.getInstance().quote(vehicle, pickupTime, returnTime,
+            insuranceType, !pickupStoreId.equals(returnStoreId), coupon, customerOf(userId));
         BigDecimal dailyPrice = vehicle.getDailyPrice();
-        BigDecimal rentalAmount = dailyPrice.multiply(BigDecimal.valueOf(rentalDays));
-        BigDecimal deposit = vehicle.getDeposit();
-        BigDecimal insuranceAmount = BigDecimal.ZERO;
-        BigDecimal serviceAmount = BigDecimal.ZERO;
-        BigDecimal discountAmount = BigDecimal.ZERO;
-
-        // Calculate insurance
-        if ("basic".equals(insuranceType)) {
-            insuranceAmount = BigDecimal.valueOf(30).multiply(BigDecimal.valueOf(rentalDays));
-        } else if ("premium".equals(insuranceType)) {
-            insuranceAmount = BigDecimal.valueOf(60).multiply(BigDecimal.valueOf(rentalDays));
-        }
-
-        // Calculate discount from coupon
-        Coupon coupon = null;
-        if (couponId != null) {
-            coupon = couponDao.findById(couponId);
-            if (coupon != null && coupon.getStatus() == 1) {
-                if (coupon.getType() == 1 && rentalAmount.compareTo(coupon.getMinAmount()) >= 0) {
-                    discountAmount = coupon.getDiscountAmount();
-                } else if (coupon.getType() == 2) {
-                    discountAmount = rentalAmount.multiply(
-                        BigDecimal.ONE.subtract(coupon.getDiscountRate()));
-                    if (coupon.getMaxDiscount() != null && 
-                        discountAmount.compareTo(coupon.getMaxDiscount()) > 0) {
-                        discountAmount = coupon.getMaxDiscount();
-                    }
-                } else if (coupon.getType() == 3) {
-                    discountAmount = coupon.getDiscountAmount();
-                }
-            }
-        }
-
-        //异地还车费
-        if (!pickupStoreId.equals(returnStoreId)) {
-            serviceAmount = serviceAmount.add(BigDecimal.valueOf(200));
-        }
-
-        BigDecimal totalAmount = rentalAmount
-            .add(deposit)
-            .add(insuranceAmount)
-            .add(serviceAmount)
-            .subtract(discountAmount);
+        BigDecimal totalAmount = quote.getTotalAmount();
 
         // Create order
         Order order = new Order();
@@ -283,14 +266,14 @@ public class OrderServlet extends HttpServlet {
         order.setReturnStoreName(returnStore.getName());
         order.setPickupTime(pickupTime);
         order.setReturnTime(returnTime);
-        order.setRentalDays(rentalDays);
+        order.setRentalDays(quote.getRentalDays());
         order.setDailyPrice(dailyPrice);
-        order.setRentalAmount(rentalAmount);
-        order.setDeposit(deposit);
-        order.setInsuranceAmount(insuranceAmount);
-        order.setServiceAmount(serviceAmount);
+        order.setRentalAmount(quote.getRentalAmount());
+        order.setDeposit(quote.getDeposit());
+        order.setInsuranceAmount(quote.getInsuranceAmount());
+        order.setServiceAmount(quote.getServiceAmount());
         order.setExtraAmount(BigDecimal.ZERO);
-        order.setDiscountAmount(discountAmount);
+        order.setDiscountAmount(quote.getDiscountAmount());
         order.setTotalAmount(totalAmount);
         order.setPaidAmount(BigDecimal.ZERO);
         order.setRefundAmount(BigDecimal.ZERO);
@@ -306,21 +289,40 @@ public class OrderServlet extends HttpServlet {
         order.setDeliveryLng(deliveryLng);
         order.setDeliveryLat(deliveryLat);
 
-        Long orderId = orderDao.create(order);
+        // Order, vehicle status and coupon usage are written on one connection and committed together
+        Coupon usedCoupon = coupon;
+        Long orderId;
+        try {
+            orderId = DatabaseUtil.inTransaction(() -> {
+                Long id = orderDao.createIfFree(order);
+                if (id == null || id == OrderDao.OVERLAPPING) {
+                    DatabaseUtil.setRollbackOnly();
+                    return id;
+                }
+
+                // Update vehicle status
+                vehicleDao.markBooked(vehicleId); // 预订中
+                vehicleDao.incrementOrderCount(vehicleId);
+
+                // Update coupon if used
+                if (usedCoupon != null) {
+                    couponDao.incrementUsedCount(couponId);
+                    // Mark user's claimed coupon as used so it's no longer available
+                    couponDao.markUserCouponUsed(userId, couponId);
+                }
+                return id;
+            });
+        } catch (SQLException e) {
+            logger.error("Order creation rolled back for vehicle {}", vehicleId, e);
+            orderId = null;
+        }
         if (orderId == null) {
             JsonUtil.writeError(response, 500, "创建订单失败");
             return;
         }
-
-        // Update vehicle status
-        vehicleDao.updateStatus(vehicleId, 2); // 预订中
-        vehicleDao.incrementOrderCount(vehicleId);
-
-        // Update coupon if used
-        if (coupon != null) {
-            couponDao.incrementUsedCount(couponId);
-            // Mark user's claimed coupon as used so it's no longer available
-            couponDao.markUserCouponUsed(userId, couponId);
+        if (orderId == OrderDao.OVERLAPPING) {
+            JsonUtil.writeError(response, 409, "该时间段车辆已被预订，请选择其他时间");
+            return;
         }
 
         order.setId(orderId);
@@ -330,9 +332,12 @@ public class OrderServlet extends HttpServlet {
 
     private void handlePay(HttpServletRequest request, HttpServletResponse response,
             Long userId) throws IOException {
-        Map<String, Object> body = JsonUtil.fromJson(request, Map.class);
-        Long orderId = ((Number) body.get("orderId")).longValue();
-        Integer paymentMethod = ((Number) body.get("paymentMethod")).intValue();
+        OrderPayRequest body = RequestBinder.bind(request, response, OrderPayRequest.class);
+        if (body == null) {
+            return;
+        }
+        Long orderId = body.getOrderId();
+        Integer paymentMethod = body.getPaymentMethod();
 
         Order order = orderDao.findById(orderId);
         if (order == null) {
@@ -354,7 +359,7 @@ public class OrderServlet extends HttpServlet {
 
         if (result > 0) {
             // Update vehicle status
-            vehicleDao.updateStatus(order.getVehicleId(), 2);
+            vehicleDao.markBooked(order.getVehicleId());
             logOrderEvent(order, request, "paid", "payment", "payment_success");
             logFundsFlow(order, request, "income", mapPaymentChannel(paymentMethod),
                 order.getTotalAmount(), "order_payment");
@@ -366,9 +371,12 @@ public class OrderServlet extends HttpServlet {
 
     private void handleCancel(HttpServletRequest request, HttpServletResponse response,
             Long userId) throws IOException {
-        Map<String, Object> body = JsonUtil.fromJson(request, Map.class);
-        Long orderId = ((Number) body.get("orderId")).longValue();
-        String reason = (String) body.get("reason");
+        OrderCancelRequest body = RequestBinder.bind(request, response, OrderCancelRequest.class);
+        if (body == null) {
+            return;
+        }
+        Long orderId = body.getOrderId();
+        String reason = body.getReason();
 
         Order order = orderDao.findById(orderId);
         if (order == null) {
@@ -387,7 +395,7 @@ public class OrderServlet extends HttpServlet {
         int result = orderDao.cancel(orderId, reason);
         if (result > 0) {
             // Release vehicle
-            vehicleDao.updateStatus(order.getVehicleId(), 1);
+            vehicleDao.releaseBooking(order.getVehicleId(), orderDao.hasActiveReservation(order.getVehicleId()));
             logOrderEvent(order, request, "cancel", "order", "order_cancelled");
             JsonUtil.writeSuccess(response, "订单已取消", null);
         } else {
@@ -397,12 +405,14 @@ public class OrderServlet extends HttpServlet {
 
     private void handleReview(HttpServletRequest request, HttpServletResponse response,
             Long userId) throws IOException {
-        Map<String, Object> body = JsonUtil.fromJson(request, Map.class);
-        Long orderId = ((Number) body.get("orderId")).longValue();
-        Integer rating = ((Number) body.get("rating")).intValue();
-        String review = (String) body.get("review");
-        String reviewImages = body.get("reviewImages") != null ?
-            JsonUtil.toJson(body.get("reviewImages")) : null;
+        OrderReviewRequest body = RequestBinder.bind(request, response, OrderReviewRequest.class);
+        if (body == null) {
+            return;
+        }
+        Long orderId = body.getOrderId();
+        Integer rating = body.getRating();
+        String review = body.getReview();
+        String reviewImages = body.getReviewImagesJson();
 
         Order order = orderDao.findById(orderId);
         if (order == null) {
@@ -435,17 +445,18 @@ public class OrderServlet extends HttpServlet {
 
     private void handleCalculate(HttpServletRequest request, HttpServletResponse response,
             Long userId) throws IOException {
-        Map<String, Object> body = JsonUtil.fromJson(request, Map.class);
-
-        Long vehicleId = ((Number) body.get("vehicleId")).longValue();
-        String pickupTimeStr = (String) body.get("pickupTime");
-        String returnTimeStr = (String) body.get("returnTime");
-        Long pickupStoreId = ((Number) body.get("pickupStoreId")).longValue();
-        Long returnStoreId = body.get("returnStoreId") != null ?
-            ((Number) body.get("returnStoreId")).longValue() : pickupStoreId;
-        String insuranceType = (String) body.get("insuranceType");
-        Long couponId = body.get("couponId") != null ?
-            ((Number) body.get("couponId")).longValue() : null;
+        OrderCreateRequest body = RequestBinder.bind(request, response, OrderCreateRequest.class);
+        if (body == null) {
+            return;
+        }
+
+        Long vehicleId = body.getVehicleId();
+        String pickupTimeStr = body.getPickupTime();
+        String returnTimeStr = body.getReturnTime();
+        Long pickupStoreId = body.getPickupStoreId();
+        Long returnStoreId = body.getReturnStoreId();
+        String insuranceType = body.getInsuranceType();
+        Long couponId = body.getCouponId();
 
         Vehicle vehicle = vehicleDao.findById(vehicleId);
         if (vehicle == null) {
@@ -456,64 +467,130 @@ public class OrderServlet extends HttpServlet {
         LocalDateTime pickupTime = LocalDateTime.parse(pickupTimeStr, DATE_FORMATTER);
         LocalDateTime returnTime = LocalDateTime.parse(returnTimeStr, DATE_FORMATTER);
 
-        long hours = ChronoUnit.HOURS.between(pickupTime, returnTime);
-        int rentalDays = (int) Math.ceil(hours / 24.0);
-        if (rentalDays < 1) rentalDays = 1;
+        Coupon coupon = couponId != null ? couponDao.findById(couponId) : null;
+        PricingEngine.Quote quote = PricingEngine.getInstance().quote(vehicle, pickupTime, returnTime,
+            insuranceType, !pickupStoreId.equals(returnStoreId), coupon, customerOf(userId));
 
-        BigDecimal dailyPrice = vehicle.getDailyPrice();
-        BigDecimal rentalAmount = dailyPrice.multiply(BigDecimal.valueOf(rentalDays));
-        BigDecimal deposit = vehicle.getDeposit();
-        BigDecimal insuranceAmount = BigDecimal.ZERO;
-        BigDecimal serviceAmount = BigDecimal.ZERO;
-        BigDecimal discountAmount = BigDecimal.ZERO;
-
-        if ("basic".equals(insuranceType)) {
-            insuranceAmount = BigDecimal.valueOf(30).multiply(BigDecimal.valueOf(rentalDays));
-        } else if ("premium".equals(insuranceType)) {
-            insuranceAmount = BigDecimal.valueOf(60).multiply(BigDecimal.valueOf(rentalDays));
-        }
-
-        if (couponId != null) {
-            Coupon coupon = couponDao.findById(couponId);
-            if (coupon != null && coupon.getStatus() == 1) {
-                if (coupon.getType() == 1 && rentalAmount.compareTo(coupon.getMinAmount()) >= 0) {
-                    discountAmount = coupon.getDiscountAmount();
-                } else if (coupon.getType() == 2) {
-                    discountAmount = rentalAmount.multiply(
-                        BigDecimal.ONE.subtract(coupon.getDiscountRate()));
-                    if (coupon.getMaxDiscount() != null &&
-                        discountAmount.compareTo(coupon.getMaxDiscount()) > 0) {
-                        discountAmount = coupon.getMaxDiscount();
-                    }
-                } else if (coupon.getType() == 3) {
-                    discountAmount = coupon.getDiscountAmount();
-                }
-            }
+        JsonUtil.writeSuccess(response, quote.toMap());
+    }
+
+    /**
+     * Quote many vehicles for one period, e.g. a catalog page. Vehicles, stores and the
+     * coupon come from the entity caches in batched lookups, fetched concurrently with the
+     * customer's order history; the list size is capped by app.pricing.bulk.maxVehicles.
+     * Anonymous callers (userId null) get prices without customer promotions or a coupon.
+     */
+    private void handleQuotes(HttpServletRequest request, HttpServletResponse response,
+            Long userId) throws IOException {
+        OrderQuoteRequest body = RequestBinder.bind(request, response, OrderQuoteRequest.class);
+        if (body == null) {
+            return;
+        }
+        List<Long> vehicleIds = body.getVehicleIds();
+        if (vehicleIds.size() > MAX_QUOTE_VEHICLES) {
+            JsonUtil.writeError(response, 400, "一次最多报价" + MAX_QUOTE_VEHICLES + "辆车");
+            return;
+        }
+
+        LocalDateTime pickupTime;
+        LocalDateTime returnTime;
+        try {
+            pickupTime = LocalDateTime.parse(body.getPickupTime(), DATE_FORMATTER);
+            returnTime = LocalDateTime.parse(body.getReturnTime(), DATE_FORMATTER);
+        } catch (DateTimeParseException e) {
+            JsonUtil.writeError(response, 400, "时间格式不正确，应为 yyyy-MM-dd HH:mm:ss");
+            return;
+        }
+        if (!returnTime.isAfter(pickupTime)) {
+            JsonUtil.writeError(response, 400, "还车时间必须晚于取车时间");
+            return;
         }
 
-        if (!pickupStoreId.equals(returnStoreId)) {
-            serviceAmount = serviceAmount.add(BigDecimal.valueOf(200));
+        Long pickupStoreId = body.getPickupStoreId();
+        Long returnStoreId = body.getReturnStoreId();
+        Set<Long> storeIds = new HashSet<>();
+        if (pickupStoreId != null) storeIds.add(pickupStoreId);
+        if (returnStoreId != null) storeIds.add(returnStoreId);
+        Long couponId = userId != null ? body.getCouponId() : null;
+
+        Map<Long, Vehicle> vehicles;
+        Map<Long, Store> stores;
+        Coupon coupon;
+        PricingEngine.Customer customer;
+        Set<Long> reserved;
+        try (FanOut scope = FanOut.open()) {
+            FanOut.Task<Map<Long, Vehicle>> vehicleTask = scope.fork(() -> vehicleDao.findByIds(vehicleIds),
+                Collections.emptyMap());
+            FanOut.Task<Map<Long, Store>> storeTask = storeIds.isEmpty()
+                ? null : scope.fork(() -> storeDao.findByIds(storeIds), Collections.emptyMap());
+            FanOut.Task<Coupon> couponTask = couponId != null ? scope.fork(() -> couponDao.findById(couponId)) : null;
+            FanOut.Task<PricingEngine.Customer> customerTask = userId != null
+                ? scope.fork(() -> customerOf(userId), PricingEngine.Customer.UNKNOWN) : null;
+            FanOut.Task<Set<Long>> reservedTask = scope.fork(
+                () -> orderDao.findReservedAmong(vehicleIds, pickupTime, returnTime));
+            scope.join();
+
+            vehicles = vehicleTask.get();
+            stores = storeTask != null ? storeTask.get() : Collections.emptyMap();
+            coupon = couponTask != null ? couponTask.get() : null;
+            customer = customerTask != null ? customerTask.get() : PricingEngine.Customer.UNKNOWN;
+            reserved = reservedTask.get();
+        }
+        if (!stores.keySet().containsAll(storeIds)) {
+            JsonUtil.writeError(response, 404, "门店不存在");
+            return;
         }
 
-        BigDecimal totalAmount = rentalAmount
-            .add(deposit)
-            .add(insuranceAmount)
-            .add(serviceAmount)
-            .subtract(discountAmount);
+        List<Vehicle> found = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : vehicleIds) {
+            Vehicle vehicle = vehicles.get(id);
+            if (vehicle != null) {
+                found.add(vehicle);
+            } else {
+                missing.add(id);
+            }
+        }
+        Map<Long, PricingEngine.Quote> quotes = PricingEngine.getInstance().quoteAll(found, pickupTime, returnTime,
+            body.getInsuranceType(), pickupStoreId, returnStoreId, coupon, customer);
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("rentalDays", rentalDays);
-        result.put("dailyPrice", dailyPrice);
-        result.put("rentalAmount", rentalAmount);
-        result.put("deposit", deposit);
-        result.put("insuranceAmount", insuranceAmount);
-        result.put("serviceAmount", serviceAmount);
-        result.put("discountAmount", discountAmount);
-        result.put("totalAmount", totalAmount);
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (Vehicle vehicle : found) {
+            PricingEngine.Quote quote = quotes.get(vehicle.getId());
+            if (quote == null) {
+                missing.add(vehicle.getId());
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("vehicleId", vehicle.getId());
+            // Without reservation data nothing is offered as bookable; createIfFree has the final say
+            item.put("bookable", reserved != null && !reserved.contains(vehicle.getId())
+                && VehicleDao.isBookable(vehicle.getStatus()));
+            item.putAll(quote.toMap());
+            items.add(item);
+        }
 
+        Map<String, Object> result = new HashMap<>();
+        result.put("rentalDays", PricingEngine.rentalDays(pickupTime, returnTime));
+        result.put("quotes", items);
+        result.put("missing", missing);
         JsonUtil.writeSuccess(response, result);
     }
 
+    /**
+     * Order history the promotions look at: orders placed so far, and this month
+     */
+    private PricingEngine.Customer customerOf(Long userId) {
+        long placed = orderDao.countPlacedByUser(userId, null);
+        long thisMonth = placed <= 0 ? placed
+            : orderDao.countPlacedByUser(userId, LocalDate.now().withDayOfMonth(1).atStartOfDay());
+        if (placed < 0 || thisMonth < 0) {
+            // Order history unavailable: no customer promotion rather than a wrong one
+            return PricingEngine.Customer.UNKNOWN;
+        }
+        return new PricingEngine.Customer(placed, thisMonth);
+    }
+
     private String generateOrderNo() {
         return "CR" + System.currentTimeMillis() + 
             String.format("%04d", new Random().nextInt(10000));
@@ -523,6 +600,23 @@ public class OrderServlet extends HttpServlet {
         return String.format("%06d", new Random().nextInt(1000000));
     }
 
+    /**
+     * Attach after-sales summaries to a page of orders with one batched query
+     */
+    private void attachAfterSalesSummaries(HttpServletRequest request, List<Order> orders) {
+        DataLoader<AfterSalesOrder> loader = RequestLoaders.get(request, "afterSales.latestByOrder",
+            () -> new DataLoader<>(afterSalesOrderDao::findLatestByOrderIds));
+        for (Order order : orders) {
+            loader.want(order.getId());
+        }
+        for (Order order : orders) {
+            AfterSalesOrder aso = loader.get(order.getId());
+            if (aso != null) {
+                applyAfterSalesSummary(order, aso);
+            }
+        }
+    }
+
     private void attachAfterSalesSummary(Order order) {
         if (order == null || order.getId() == null) {
             return;
@@ -532,18 +626,22 @@ public class OrderServlet extends HttpServlet {
             if (aso == null) {
                 return;
             }
-            order.setAfterSalesId(aso.getId());
-            order.setAfterSalesType(aso.getType());
-            order.setAfterSalesStatus(aso.getStatus());
-            order.setAfterSalesRefundAmount(aso.getRefundAmount());
-            order.setAfterSalesApprovedRefundAmount(aso.getApprovedRefundAmount());
-            order.setAfterSalesAuditRemark(aso.getAuditRemark());
-            order.setAfterSalesAuditTime(aso.getAuditTime());
+            applyAfterSalesSummary(order, aso);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    private void applyAfterSalesSummary(Order order, AfterSalesOrder aso) {
+        order.setAfterSalesId(aso.getId());
+        order.setAfterSalesType(aso.getType());
+        order.setAfterSalesStatus(aso.getStatus());
+        order.setAfterSalesRefundAmount(aso.getRefundAmount());
+        order.setAfterSalesApprovedRefundAmount(aso.getApprovedRefundAmount());
+        order.setAfterSalesAuditRemark(aso.getAuditRemark());
+        order.setAfterSalesAuditTime(aso.getAuditTime());
+    }
+
     private void logOrderEvent(Order order, HttpServletRequest request,
             String eventType, String stage, String message) {
         if (order == null) return;
@@ -557,7 +655,7 @@ public class OrderServlet extends HttpServlet {
             log.setOperatorName(resolveOperatorName(request, order));
             log.setOperatorRole((String) request.getAttribute("role"));
             log.setMessage(message);
-            orderEventLogDao.create(log);
+            orderEventLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking main flow if logging fails.
         }
@@ -577,7 +675,7 @@ public class OrderServlet extends HttpServlet {
             log.setOperatorId((Long) request.getAttribute("userId"));
             log.setOperatorName(resolveOperatorName(request, order));
             log.setRemark(remark);
-            fundsFlowLogDao.create(log);
+            fundsFlowLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking main flow if logging fails.
         }
@@ -208,7 +208,7 @@ public class AlipayServlet extends HttpServlet {
         // Update payment to paid. payment_method=2 means alipay (new convention).
         int updated = orderDao.updatePayment(order.getId(), 2, tradeNo == null ? "" : tradeNo, notifyAmount);
         if (updated > 0) {
-            vehicleDao.updateStatus(order.getVehicleId(), 2);
+            vehicleDao.markBooked(order.getVehicleId());
             logOrderEvent(order, "paid", "payment", "alipay_paid");
             logFundsFlow(order, "income", "alipay", notifyAmount, "alipay_payment");
             writePlain(response, "success");
@@ -294,7 +294,7 @@ public class AlipayServlet extends HttpServlet {
 
         int updated = orderDao.updatePayment(order.getId(), 2, tradeNo == null ? "" : tradeNo, returnAmount);
         if (updated > 0) {
-            vehicleDao.updateStatus(order.getVehicleId(), 2);
+            vehicleDao.markBooked(order.getVehicleId());
             logOrderEvent(order, "paid", "payment", "alipay_paid");
             logFundsFlow(order, "income", "alipay", returnAmount, "alipay_payment");
             logger.info("Alipay return updated order: out_trade_no={}, id={}", outTradeNo, order.getId());
@@ -317,7 +317,7 @@ public class AlipayServlet extends HttpServlet {
             log.setOperatorName(order.getUserName());
             log.setOperatorRole("user");
             log.setMessage(message);
-            orderEventLogDao.create(log);
+            orderEventLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking payment flow if logging fails.
         }
@@ -337,7 +337,7 @@ public class AlipayServlet extends HttpServlet {
             log.setOperatorId(order.getUserId());
             log.setOperatorName(order.getUserName());
             log.setRemark(remark);
-            fundsFlowLogDao.create(log);
+            fundsFlowLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking payment flow if logging fails.
         }
@@ -4,8 +4,10 @@ import com.carrental.dao.LoginSecurityLogDao;
 import com.carrental.dao.UserDao;
 import com.carrental.model.LoginSecurityLog;
 import com.carrental.model.User;
+import com.carrental.util.ClientAddress;
 import com.carrental.util.JsonUtil;
 import com.carrental.util.JwtUtil;
+import com.carrental.util.LoginThrottle;
 import com.carrental.util.PasswordUtil;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -27,6 +29,7 @@ public class AuthServlet extends HttpServlet {
     
     private final UserDao userDao = new UserDao();
     private final LoginSecurityLogDao loginSecurityLogDao = new LoginSecurityLogDao();
+    private final LoginThrottle loginThrottle = LoginThrottle.getInstance();
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
@@ -56,16 +59,23 @@ public class AuthServlet extends HttpServlet {
             return;
         }
 
-        // Try to find user by username, phone, or email
-        User user = userDao.findByUsername(username);
-        if (user == null) {
-            user = userDao.findByPhone(username);
-        }
-        if (user == null) {
-            user = userDao.findByEmail(username);
+        // Refuse throttled attempts before any lookup or password hashing
+        String ip = ClientAddress.of(request);
+        LoginThrottle.Decision decision = loginThrottle.check(username, ip);
+        if (!decision.isAllowed()) {
+            if (decision.isFirstInBucket()) {
+                logLoginAttempt(request, null, username, "fail", "throttled_" + decision.getReason());
+            }
+            response.setHeader("Retry-After", String.valueOf(decision.getRetryAfterSeconds()));
+            JsonUtil.writeError(response, 429, "登录尝试过于频繁，请" + decision.getRetryAfterSeconds() + "秒后再试");
+            return;
         }
 
+        // Username, phone or email, resolved in one query
+        User user = userDao.findByAccount(username);
+
         if (user == null) {
+            // The failure reserved by check() stands
             logLoginAttempt(request, null, username, "fail", "user_not_found");
             JsonUtil.writeError(response, 401, "用户不存在");
             return;
@@ -79,6 +89,7 @@ public class AuthServlet extends HttpServlet {
         }
 
         if (user.getStatus() != 1) {
+            loginThrottle.release(decision);
             logLoginAttempt(request, user, username, "fail", "account_disabled");
             JsonUtil.writeError(response, 403, "账号已被禁用");
             return;
@@ -91,6 +102,7 @@ public class AuthServlet extends HttpServlet {
         result.put("token", token);
         result.put("user", sanitizeUser(user));
 
+        loginThrottle.recordSuccess(username, decision);
         logLoginAttempt(request, user, username, "success", "login_success");
         JsonUtil.writeSuccess(response, "登录成功", result);
     }
@@ -209,29 +221,14 @@ public class AuthServlet extends HttpServlet {
             LoginSecurityLog log = new LoginSecurityLog();
             log.setUserId(user != null ? user.getId() : null);
             log.setAccount(account);
-            log.setIp(getClientIp(request));
+            log.setIp(ClientAddress.of(request));
             log.setLocation(null);
             log.setDevice(request.getHeader("User-Agent"));
             log.setResult(result);
             log.setMessage(message);
-            loginSecurityLogDao.create(log);
+            loginSecurityLogDao.append(log);
         } catch (Exception ignored) {
             // Avoid breaking login flow if logging fails.
         }
     }
-
-    private String getClientIp(HttpServletRequest request) {
-        String forwarded = request.getHeader("X-Forwarded-For");
-        if (forwarded != null && !forwarded.isBlank()) {
-            String[] parts = forwarded.split(",");
-            if (parts.length > 0 && !parts[0].isBlank()) {
-                return parts[0].trim();
-            }
-        }
-        String realIp = request.getHeader("X-Real-IP");
-        if (realIp != null && !realIp.isBlank()) {
-            return realIp.trim();
-        }
-        return request.getRemoteAddr();
-    }
 }
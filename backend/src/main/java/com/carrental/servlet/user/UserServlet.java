@@ -2,6 +2,7 @@ package com.carrental.servlet.user;
 
 import com.carrental.dao.UserDao;
 import com.carrental.model.User;
+import com.carrental.util.BlobStores;
 import com.carrental.util.JsonUtil;
 import com.carrental.util.PasswordUtil;
 import jakarta.servlet.ServletException;
@@ -20,9 +21,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.imageio.ImageIO;
@@ -165,6 +169,10 @@ public class UserServlet extends HttpServlet {
 
         int result = userDao.update(user);
         if (result > 0) {
+            if (avatarProvided) {
+                BlobStores.replace(BlobStores.keysOf(Collections.singletonList(oldAvatar)),
+                    BlobStores.keysOf(Collections.singletonList(newAvatar)));
+            }
             if (avatarProvided && oldAvatar != null && !oldAvatar.isEmpty()) {
                 if (newAvatar == null || newAvatar.isEmpty() || !oldAvatar.equals(newAvatar)) {
                     deleteOldAvatarIfNeeded(oldAvatar);
@@ -222,10 +230,19 @@ public class UserServlet extends HttpServlet {
                 return;
             }
 
+            User user = userDao.findById(userId);
+            if (user == null) {
+                JsonUtil.writeError(response, 404, "用户不存在");
+                return;
+            }
+            Set<String> oldImages = verificationImages(user.getIdCardFront(), user.getIdCardBack(),
+                user.getDriverLicenseImage());
+
             int result = userDao.updateVerification(userId, realName, idCard,
                 driverLicense, driverLicenseImage, idCardFront, idCardBack, 1);
 
             if (result > 0) {
+                BlobStores.replace(oldImages, verificationImages(idCardFront, idCardBack, driverLicenseImage));
                 JsonUtil.writeSuccess(response, "提交成功，等待审核", null);
             } else {
                 JsonUtil.writeError(response, 500, "提交失败");
@@ -391,6 +408,14 @@ public class UserServlet extends HttpServlet {
          return result;
      }
 
+    /**
+     * Blob keys of the uploaded ID card and driving licence photos
+     */
+    private static Set<String> verificationImages(String idCardFront, String idCardBack,
+            String driverLicenseImage) {
+        return BlobStores.keysOf(Arrays.asList(idCardFront, idCardBack, driverLicenseImage));
+    }
+
     private void deleteOldAvatarIfNeeded(String avatarPath) {
         try {
             if (avatarPath == null || avatarPath.isEmpty()) return;
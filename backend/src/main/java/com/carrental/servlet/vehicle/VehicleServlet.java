@@ -1,10 +1,12 @@
 package com.carrental.servlet.vehicle;
 
+import com.carrental.dao.VehicleAvailabilityIndex;
 import com.carrental.dao.VehicleDao;
 import com.carrental.dao.StoreDao;
 import com.carrental.model.Vehicle;
 import com.carrental.model.Store;
 import com.carrental.util.JsonUtil;
+import com.carrental.util.RouteTable;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -13,6 +15,9 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 /**
@@ -21,31 +26,26 @@ import java.util.*;
 @WebServlet(name = "VehicleServlet", urlPatterns = {"/api/vehicles/*"})
 public class VehicleServlet extends HttpServlet {
 
+    private static final DateTimeFormatter DATE_FORMATTER =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private final VehicleDao vehicleDao = new VehicleDao();
     private final StoreDao storeDao = new StoreDao();
 
+    private final RouteTable routes = new RouteTable()
+        .get("/", (req, resp, p) -> handleList(req, resp))
+        .get("/list", (req, resp, p) -> handleList(req, resp))
+        .get("/search", (req, resp, p) -> handleSearch(req, resp))
+        .get("/categories", (req, resp, p) -> handleCategories(req, resp))
+        .get("/brands", (req, resp, p) -> handleBrands(req, resp))
+        .get("/hot", (req, resp, p) -> handleHot(req, resp))
+        .get("/new", (req, resp, p) -> handleNew(req, resp))
+        .get("/detail/{id}", (req, resp, p) -> handleDetail(req, resp, p.get("id")));
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        String pathInfo = request.getPathInfo();
-
-        if (pathInfo == null || "/".equals(pathInfo) || "/list".equals(pathInfo)) {
-            handleList(request, response);
-        } else if ("/search".equals(pathInfo)) {
-            handleSearch(request, response);
-        } else if ("/categories".equals(pathInfo)) {
-            handleCategories(request, response);
-        } else if ("/brands".equals(pathInfo)) {
-            handleBrands(request, response);
-        } else if ("/hot".equals(pathInfo)) {
-            handleHot(request, response);
-        } else if ("/new".equals(pathInfo)) {
-            handleNew(request, response);
-        } else if (pathInfo.startsWith("/detail/")) {
-            handleDetail(request, response, pathInfo.substring(8));
-        } else {
-            JsonUtil.writeError(response, 404, "接口不存在");
-        }
+        routes.dispatch(request, response);
     }
 
     private void handleList(HttpServletRequest request, HttpServletResponse response)
@@ -70,10 +70,32 @@ public class VehicleServlet extends HttpServlet {
         int page = pageStr != null ? Integer.parseInt(pageStr) : 1;
         int pageSize = pageSizeStr != null ? Integer.parseInt(pageSizeStr) : 10;
 
-        List<Vehicle> vehicles = vehicleDao.findAvailable(category, brand, storeId, city,
-            fuelType, minSeats, minPrice, maxPrice, sortBy, page, pageSize);
-        long total = vehicleDao.countAvailable(category, brand, storeId, city,
-            fuelType, minSeats, minPrice, maxPrice);
+        // With pickupTime/returnTime, list vehicles free for that whole period instead of rentable right now
+        String pickupTimeStr = request.getParameter("pickupTime");
+        String returnTimeStr = request.getParameter("returnTime");
+        VehicleAvailabilityIndex.Page result;
+        if (pickupTimeStr != null && !pickupTimeStr.isEmpty() && returnTimeStr != null && !returnTimeStr.isEmpty()) {
+            LocalDateTime pickupTime;
+            LocalDateTime returnTime;
+            try {
+                pickupTime = LocalDateTime.parse(pickupTimeStr, DATE_FORMATTER);
+                returnTime = LocalDateTime.parse(returnTimeStr, DATE_FORMATTER);
+            } catch (DateTimeParseException e) {
+                JsonUtil.writeError(response, 400, "时间格式不正确，应为 yyyy-MM-dd HH:mm:ss");
+                return;
+            }
+            if (!returnTime.isAfter(pickupTime)) {
+                JsonUtil.writeError(response, 400, "还车时间必须晚于取车时间");
+                return;
+            }
+            result = vehicleDao.queryAvailableBetween(pickupTime, returnTime, category, brand, storeId,
+                city, fuelType, minSeats, minPrice, maxPrice, sortBy, page, pageSize);
+        } else {
+            result = vehicleDao.queryAvailable(category, brand, storeId, city,
+                fuelType, minSeats, minPrice, maxPrice, sortBy, page, pageSize);
+        }
+        List<Vehicle> vehicles = result.getList();
+        long total = result.getTotal();
 
         // Normalize images
         if (vehicles != null) {
@@ -0,0 +1,75 @@
+package com.carrental.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed storage for uploaded files.
+ *
+ * A blob is identified by a key derived from its bytes (see LocalBlobStore), so storing
+ * the same content twice yields the same key and one copy on disk. References count
+ * the records pointing at a blob: callers retain() a key when they save it and
+ * release() it when they drop it. Uploading takes no reference, so content that is
+ * never attached, or whose last reference went away, is left for reapUnreferenced().
+ * Obtain the configured implementation through BlobStores.get().
+ */
+public interface BlobStore {
+
+    /**
+     * Result of storing content
+     */
+    final class StoredBlob {
+        private final String key;
+        private final long size;
+        private final boolean deduplicated;
+
+        public StoredBlob(String key, long size, boolean deduplicated) {
+            this.key = key;
+            this.size = size;
+            this.deduplicated = deduplicated;
+        }
+
+        public String getKey() { return key; }
+        public long getSize() { return size; }
+        /** True when identical content was already stored */
+        public boolean isDeduplicated() { return deduplicated; }
+    }
+
+    /**
+     * Store content read from in without taking a reference. Storing content that is
+     * already present restarts its grace period before it can be reaped.
+     *
+     * @param extension file extension without the dot, used for the content type; may be empty
+     */
+    StoredBlob put(InputStream in, String extension) throws IOException;
+
+    /**
+     * Local file holding the blob, or null if the key is unknown or malformed
+     */
+    Path resolve(String key);
+
+    /**
+     * Add a reference to an existing blob
+     */
+    void retain(String key) throws IOException;
+
+    /**
+     * Drop a reference
+     *
+     * @return true when this was the last reference; the content stays until reaped
+     */
+    boolean release(String key) throws IOException;
+
+    /**
+     * Delete blobs without references that have not been stored, retained or released
+     * for at least graceMillis
+     *
+     * @return keys of the deleted blobs
+     */
+    List<String> reapUnreferenced(long graceMillis) throws IOException;
+
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,184 @@
+package com.carrental.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access to the configured BlobStore and its public URLs.
+ *
+ * app.blob.store.class names the implementation (LocalBlobStore by default); it needs
+ * a public no-argument constructor. Blobs are published as /uploads/blob/{key},
+ * which StaticFileServlet resolves through the same store.
+ *
+ * Once the store is created a background reaper runs every
+ * app.blob.reaper.intervalMinutes (0 disables it) and deletes blobs that no record has
+ * referenced for app.blob.orphanGraceMinutes, together with their resized copies. Every
+ * write that stores a blob URL in a record (vehicle images, user avatars and verification
+ * photos) must therefore take a reference through retain / replace, and drop it through
+ * release / replace when the record stops pointing at the blob.
+ */
+public final class BlobStores {
+    private static final Logger logger = LoggerFactory.getLogger(BlobStores.class);
+
+    public static final String URL_PREFIX = "/uploads/blob/";
+
+    private static volatile BlobStore instance;
+    private static ScheduledExecutorService reaper;
+
+    private BlobStores() {
+    }
+
+    public static BlobStore get() {
+        BlobStore local = instance;
+        if (local == null) {
+            synchronized (BlobStores.class) {
+                local = instance;
+                if (local == null) {
+                    String className = DatabaseUtil.getProperty("app.blob.store.class", LocalBlobStore.class.getName());
+                    try {
+                        local = (BlobStore) Class.forName(className).getDeclaredConstructor().newInstance();
+                    } catch (ReflectiveOperationException | ClassCastException e) {
+                        throw new IllegalStateException("Cannot create blob store " + className, e);
+                    }
+                    instance = local;
+                    startReaper(local);
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Stop the reaper if the store was ever created
+     */
+    public static void shutdownIfStarted() {
+        synchronized (BlobStores.class) {
+            if (reaper != null) {
+                reaper.shutdownNow();
+                reaper = null;
+            }
+        }
+    }
+
+    private static void startReaper(BlobStore store) {
+        long intervalMinutes = Long.parseLong(DatabaseUtil.getProperty("app.blob.reaper.intervalMinutes", "60"));
+        if (intervalMinutes <= 0) {
+            return;
+        }
+        long graceMillis = TimeUnit.MINUTES.toMillis(
+            Long.parseLong(DatabaseUtil.getProperty("app.blob.orphanGraceMinutes", "1440")));
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "blob-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        reaper.scheduleWithFixedDelay(() -> {
+            try {
+                List<String> reaped = store.reapUnreferenced(graceMillis);
+                for (String key : reaped) {
+                    ImageDerivatives.getInstance().evict(key);
+                }
+                if (!reaped.isEmpty()) {
+                    logger.info("Reaped {} unreferenced blobs", reaped.size());
+                }
+            } catch (Exception e) {
+                logger.warn("Blob reaping failed: {}", e.toString());
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    public static String urlOf(String key) {
+        return URL_PREFIX + key;
+    }
+
+    /**
+     * Blob key referenced by url, or null when url does not point into the store
+     */
+    public static String keyOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        int at = url.indexOf(URL_PREFIX);
+        if (at < 0) {
+            return null;
+        }
+        String key = url.substring(at + URL_PREFIX.length());
+        int query = key.indexOf('?');
+        if (query >= 0) {
+            key = key.substring(0, query);
+        }
+        return LocalBlobStore.isKey(key) ? key : null;
+    }
+
+    /**
+     * Take a reference for each key once the current transaction has committed
+     */
+    public static void retain(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        DatabaseUtil.afterCommit(() -> {
+            for (String key : keys) {
+                try {
+                    get().retain(key);
+                } catch (IOException e) {
+                    logger.warn("Failed to retain blob {}: {}", key, e.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop the reference for each key once the current transaction has committed;
+     * blobs left without references are deleted later by the reaper
+     */
+    public static void release(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        DatabaseUtil.afterCommit(() -> {
+            for (String key : keys) {
+                try {
+                    get().release(key);
+                } catch (IOException e) {
+                    logger.warn("Failed to release blob {}: {}", key, e.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Move a record's references from oldKeys to newKeys; keys in both are left alone
+     */
+    public static void replace(Set<String> oldKeys, Set<String> newKeys) {
+        Set<String> added = new LinkedHashSet<>(newKeys);
+        added.removeAll(oldKeys);
+        Set<String> removed = new LinkedHashSet<>(oldKeys);
+        removed.removeAll(newKeys);
+        retain(added);
+        release(removed);
+    }
+
+    /**
+     * Distinct blob keys among urls
+     */
+    public static Set<String> keysOf(Collection<String> urls) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String url : urls) {
+            String key = keyOf(url);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
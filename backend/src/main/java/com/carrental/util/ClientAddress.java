@@ -0,0 +1,57 @@
+package com.carrental.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Address of the client behind a request.
+ *
+ * X-Forwarded-For and X-Real-IP are set by whoever sends the request, so they are only
+ * believed when the connection comes from one of app.http.trustedProxies. The
+ * forwarded chain is then read from the right, skipping further trusted proxies, and
+ * the first other address is the client. Anything else is keyed on getRemoteAddr().
+ */
+public final class ClientAddress {
+
+    private static final Set<String> TRUSTED_PROXIES = Arrays.stream(
+            DatabaseUtil.getProperty("app.http.trustedProxies", "127.0.0.1,0:0:0:0:0:0:0:1,::1").split(","))
+        .map(String::trim)
+        .filter(s -> !s.isEmpty())
+        .collect(Collectors.toUnmodifiableSet());
+
+    private ClientAddress() {
+    }
+
+    public static String of(HttpServletRequest request) {
+        String remote = request.getRemoteAddr();
+        if (remote == null || !TRUSTED_PROXIES.contains(remote)) {
+            return remote;
+        }
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (forwarded != null && !forwarded.isBlank()) {
+            String[] hops = forwarded.split(",");
+            String client = null;
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (hop.isEmpty()) {
+                    continue;
+                }
+                client = hop;
+                if (!TRUSTED_PROXIES.contains(hop)) {
+                    break;
+                }
+            }
+            if (client != null) {
+                return client;
+            }
+        }
+        String realIp = request.getHeader("X-Real-IP");
+        if (realIp != null && !realIp.isBlank()) {
+            return realIp.trim();
+        }
+        return remote;
+    }
+}
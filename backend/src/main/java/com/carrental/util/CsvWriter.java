@@ -0,0 +1,70 @@
+package com.carrental.util;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal CSV writer that streams rows straight to the servlet output stream
+ */
+public class CsvWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Writer writer;
+    private long rowCount;
+
+    private CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Set download headers and open a writer on the response. A UTF-8 BOM is written
+     * first so spreadsheet applications detect the encoding of Chinese text.
+     */
+    public static CsvWriter forDownload(HttpServletResponse response, String filename) throws IOException {
+        response.setContentType("text/csv; charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+        response.getOutputStream().write(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+        return new CsvWriter(writer);
+    }
+
+    public void writeRow(String... cols) throws IOException {
+        for (int i = 0; i < cols.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(cols[i]));
+        }
+        writer.write('\n');
+        rowCount++;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+    public static String escape(String value) {
+        if (value == null) return "";
+        String v = value.replace("\"", "\"\"");
+        if (v.contains(",") || v.contains("\n") || v.contains("\r") || v.contains("\"")) {
+            return "\"" + v + "\"";
+        }
+        return v;
+    }
+
+    public static String text(Object value) {
+        return value != null ? value.toString() : "";
+    }
+}
@@ -2,14 +2,26 @@ package com.carrental.util;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Database utility class for managing database connections
@@ -20,6 +32,62 @@ public class DatabaseUtil {
     private static HikariDataSource dataSource;
     private static final Properties properties = new Properties();
 
+    // Optional admission gate (db.admission.enabled): one permit per pooled connection
+    private static Semaphore admission;
+    private static long admissionTimeoutMillis;
+    private static final AtomicLong admissionRejected = new AtomicLong();
+
+    // Transaction bound to the current thread by inTransaction()
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+    private static final AtomicLong commits = new AtomicLong();
+    private static final AtomicLong rollbacks = new AtomicLong();
+
+    /**
+     * Work run by inTransaction(); DAO calls made inside share its connection
+     */
+    @FunctionalInterface
+    public interface TransactionWork<T> {
+        T run() throws SQLException;
+    }
+
+    private static final class Transaction {
+        final Connection connection;
+        final Connection shared;
+        boolean rollbackOnly;
+        SQLException failure;
+        final List<Runnable> afterCommit = new ArrayList<>();
+        final List<Runnable> afterCompletion = new ArrayList<>();
+
+        Transaction(Connection connection) {
+            this.connection = connection;
+            // DAOs close what getConnection() hands out; the transaction keeps it open until it ends
+            this.shared = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "isClosed":
+                            return connection.isClosed();
+                        case "commit":
+                        case "rollback":
+                        case "setAutoCommit":
+                            if (args == null || args.length == 0 || !(args[0] instanceof java.sql.Savepoint)) {
+                                // Nested code does not get to end the outer transaction
+                                return null;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        }
+    }
+
     static {
         try {
             loadProperties();
@@ -55,6 +123,9 @@ public class DatabaseUtil {
             properties.getProperty("db.pool.maxLifetime", "1800000")));
         config.setConnectionTimeout(Long.parseLong(
             properties.getProperty("db.pool.connectionTimeout", "30000")));
+        // Negative starts the pool without a first connection, e.g. for unit tests without MySQL
+        config.setInitializationFailTimeout(Long.parseLong(
+            properties.getProperty("db.pool.initializationFailTimeout", "1")));
         
         config.addDataSourceProperty("cachePrepStmts", "true");
         config.addDataSourceProperty("prepStmtCacheSize", "250");
@@ -62,13 +133,220 @@ public class DatabaseUtil {
         
         dataSource = new HikariDataSource(config);
         logger.info("Database connection pool initialized successfully");
+
+        if (Boolean.parseBoolean(properties.getProperty("db.admission.enabled", "false"))) {
+            admission = new Semaphore(config.getMaximumPoolSize(), true);
+            admissionTimeoutMillis = Long.parseLong(
+                properties.getProperty("db.admission.timeoutMillis", "5000"));
+            logger.info("Database admission gate enabled with {} permits", config.getMaximumPoolSize());
+        }
     }
 
     /**
      * Get a connection from the pool
      */
     public static Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        Transaction tx = CURRENT.get();
+        if (tx != null) {
+            return tx.shared;
+        }
+        if (admission == null) {
+            return dataSource.getConnection();
+        }
+        return admit();
+    }
+
+    /**
+     * Wait in a FIFO queue for one of the pool's permits before borrowing a connection.
+     *
+     * With many request threads (the container pool, FanOut workers) the gate keeps the number
+     * of callers contending inside Hikari at the pool size and fails fast with a
+     * transient error once db.admission.timeoutMillis passes. The permit is returned
+     * when the caller closes the connection.
+     */
+    private static Connection admit() throws SQLException {
+        boolean acquired;
+        try {
+            acquired = admission.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("等待数据库连接时被中断", e);
+        }
+        if (!acquired) {
+            admissionRejected.incrementAndGet();
+            throw new SQLTransientConnectionException("数据库繁忙，请稍后重试");
+        }
+        Connection conn;
+        try {
+            conn = dataSource.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            admission.release();
+            throw e;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                    try {
+                        conn.close();
+                    } finally {
+                        admission.release();
+                    }
+                    return null;
+                }
+                try {
+                    return method.invoke(conn, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+
+    /**
+     * Run work as one transaction: every getConnection() on this thread until it returns
+     * gets the same connection, and the statements are committed together at the end.
+     *
+     * The transaction is rolled back if work throws, if it called setRollbackOnly(), or
+     * if a DAO reported a swallowed SQLException through markFailed(); in the last case
+     * the failure is rethrown here so callers cannot mistake a partial write for success.
+     * A call made while a transaction is already open simply joins it. Connections are
+     * bound to the calling thread, so work handed to FanOut or other executors runs
+     * outside the transaction.
+     */
+    public static <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        if (CURRENT.get() != null) {
+            return work.run();
+        }
+        return inTransaction(getConnection(), work);
+    }
+
+    /**
+     * Run work as a new transaction on connection, which is closed when it ends
+     */
+    static <T> T inTransaction(Connection connection, TransactionWork<T> work) throws SQLException {
+        Transaction tx = new Transaction(connection);
+        boolean committed = false;
+        try {
+            tx.connection.setAutoCommit(false);
+            CURRENT.set(tx);
+            T result = work.run();
+            if (tx.failure != null) {
+                throw tx.failure;
+            }
+            if (!tx.rollbackOnly) {
+                tx.connection.commit();
+                committed = true;
+            }
+            return result;
+        } finally {
+            CURRENT.remove();
+            if (!committed) {
+                try {
+                    tx.connection.rollback();
+                } catch (SQLException e) {
+                    logger.warn("Rollback failed", e);
+                }
+                rollbacks.incrementAndGet();
+            } else {
+                commits.incrementAndGet();
+            }
+            try {
+                tx.connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.warn("Could not restore auto-commit", e);
+            }
+            tx.connection.close();
+            // Cache invalidations first, so afterCommit work that reloads rows sees the new ones
+            runAll(tx.afterCompletion);
+            if (committed) {
+                runAll(tx.afterCommit);
+            }
+        }
+    }
+
+    /**
+     * Whether the current thread is inside inTransaction()
+     */
+    public static boolean isInTransaction() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Roll the current transaction back instead of committing it, without an exception
+     */
+    public static void setRollbackOnly() {
+        Transaction tx = CURRENT.get();
+        if (tx != null) {
+            tx.rollbackOnly = true;
+        }
+    }
+
+    /**
+     * Record an SQLException that a DAO logged and swallowed; the current transaction
+     * will roll back and rethrow the first one. Does nothing outside a transaction.
+     */
+    public static void markFailed(SQLException e) {
+        Transaction tx = CURRENT.get();
+        if (tx != null && tx.failure == null) {
+            tx.failure = e;
+        }
+    }
+
+    /**
+     * Run action once the current transaction has committed, or right away outside one.
+     * Meant for in-memory state (indexes, counters, logs) that must not see rolled-back writes.
+     */
+    public static void afterCommit(Runnable action) {
+        Transaction tx = CURRENT.get();
+        if (tx != null) {
+            tx.afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Run action when the current transaction ends either way, before any afterCommit
+     * actions; does nothing outside one
+     */
+    public static void afterCompletion(Runnable action) {
+        Transaction tx = CURRENT.get();
+        if (tx != null) {
+            tx.afterCompletion.add(action);
+        }
+    }
+
+    private static void runAll(List<Runnable> actions) {
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                logger.error("Transaction callback failed", e);
+            }
+        }
+    }
+
+    /**
+     * Pool and admission gate counters for monitoring
+     */
+    public static Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        HikariPoolMXBean pool = dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+        if (pool != null) {
+            stats.put("active", pool.getActiveConnections());
+            stats.put("idle", pool.getIdleConnections());
+            stats.put("total", pool.getTotalConnections());
+            stats.put("waiting", pool.getThreadsAwaitingConnection());
+        }
+        stats.put("admissionEnabled", admission != null);
+        if (admission != null) {
+            stats.put("admissionAvailable", admission.availablePermits());
+            stats.put("admissionQueued", admission.getQueueLength());
+            stats.put("admissionRejected", admissionRejected.get());
+        }
+        stats.put("transactionCommits", commits.get());
+        stats.put("transactionRollbacks", rollbacks.get());
+        return stats;
     }
 
     /**
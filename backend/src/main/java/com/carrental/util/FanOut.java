@@ -0,0 +1,257 @@
+package com.carrental.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs independent lookups of one request concurrently and waits for all of them.
+ *
+ * <pre>
+ * try (FanOut scope = FanOut.open()) {
+ *     FanOut.Task&lt;Vehicle&gt; vehicle = scope.fork(() -&gt; vehicleDao.findById(id));
+ *     FanOut.Task&lt;Long&gt; count = scope.fork(() -&gt; orderDao.countAll(...), 0L);
+ *     scope.join();
+ *     ... vehicle.get(), count.get()
+ * }
+ * </pre>
+ *
+ * Tasks run on a shared bounded pool (app.fanout.threads) so a burst of requests
+ * cannot borrow more connections than the pool can spare; when the pool is saturated,
+ * or when called from inside a task, fork() runs the call on the caller's thread.
+ * join() waits at most each task's own timeout (app.fanout.timeoutMillis by default),
+ * and a task that fails or times out yields its fallback value, the same way DAOs
+ * return null/0 on SQL errors. close() cancels whatever has not finished.
+ */
+public final class FanOut implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(FanOut.class);
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+        DatabaseUtil.getProperty("app.fanout.enabled", "true"));
+    private static final long DEFAULT_TIMEOUT_MILLIS = Long.parseLong(
+        DatabaseUtil.getProperty("app.fanout.timeoutMillis", "5000"));
+
+    private static final ThreadLocal<Boolean> IN_TASK = new ThreadLocal<>();
+    private static volatile ThreadPoolExecutor executor;
+
+    private static final AtomicLong forked = new AtomicLong();
+    private static final AtomicLong inline = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong timedOut = new AtomicLong();
+
+    private final List<Task<?>> tasks = new ArrayList<>();
+
+    private FanOut() {
+    }
+
+    public static FanOut open() {
+        return new FanOut();
+    }
+
+    /**
+     * Handle to one forked call
+     */
+    public static final class Task<T> {
+        private final FutureTask<T> future;
+        private final T fallback;
+        private final long deadlineNanos;
+        private T value;
+        private Throwable failure;
+        private boolean done;
+
+        private Task(FutureTask<T> future, T fallback, long timeoutMillis) {
+            this.future = future;
+            this.fallback = fallback;
+            this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        }
+
+        /**
+         * Result after join(); the fallback if the call failed or timed out
+         */
+        public T get() {
+            if (!done) {
+                throw new IllegalStateException("FanOut.join() has not been called");
+            }
+            return failure == null ? value : fallback;
+        }
+
+        /**
+         * Why the call produced no value, or null
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        private void await() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                long remaining = deadlineNanos - System.nanoTime();
+                value = future.get(Math.max(0L, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                timedOut.incrementAndGet();
+                failure = e;
+            } catch (ExecutionException e) {
+                failed.incrementAndGet();
+                failure = e.getCause();
+            } catch (CancellationException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                failure = e;
+            }
+        }
+    }
+
+    public <T> Task<T> fork(Callable<T> call) {
+        return fork(call, null, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public <T> Task<T> fork(Callable<T> call, T fallback) {
+        return fork(call, fallback, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public <T> Task<T> fork(Callable<T> call, T fallback, long timeoutMillis) {
+        Object logContext = LogContext.capture();
+        FutureTask<T> future = new FutureTask<>(() -> {
+            Boolean nested = IN_TASK.get();
+            IN_TASK.set(Boolean.TRUE);
+            LogContext.restore(logContext);
+            try {
+                return call.call();
+            } finally {
+                if (nested == null) {
+                    IN_TASK.remove();
+                    LogContext.clear();
+                }
+            }
+        });
+        Task<T> task = new Task<>(future, fallback, timeoutMillis);
+        tasks.add(task);
+        forked.incrementAndGet();
+
+        if (!ENABLED || IN_TASK.get() != null) {
+            runInline(future);
+            return task;
+        }
+        try {
+            executor().execute(future);
+        } catch (RejectedExecutionException e) {
+            runInline(future);
+        }
+        return task;
+    }
+
+    /**
+     * Wait for every forked task, up to its own timeout
+     */
+    public FanOut join() {
+        for (Task<?> task : tasks) {
+            task.await();
+        }
+        return this;
+    }
+
+    /**
+     * First failure among the joined tasks, or null when all of them succeeded
+     */
+    public Throwable firstFailure() {
+        for (Task<?> task : tasks) {
+            if (task.done && task.failure != null) {
+                return task.failure;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cancel tasks that are still running, e.g. when the caller bailed out early
+     */
+    @Override
+    public void close() {
+        for (Task<?> task : tasks) {
+            if (!task.future.isDone()) {
+                task.future.cancel(true);
+            }
+            if (task.done && task.failure != null && !(task.failure instanceof CancellationException)) {
+                logger.warn("Fan-out task failed: {}", task.failure.toString());
+            }
+        }
+    }
+
+    private static void runInline(FutureTask<?> future) {
+        inline.incrementAndGet();
+        Object logContext = LogContext.capture();
+        future.run();
+        // The task clears the log context of the thread it ran on
+        LogContext.restore(logContext);
+    }
+
+    private static ThreadPoolExecutor executor() {
+        ThreadPoolExecutor local = executor;
+        if (local == null) {
+            synchronized (FanOut.class) {
+                local = executor;
+                if (local == null) {
+                    int threads = Math.max(1, Integer.parseInt(
+                        DatabaseUtil.getProperty("app.fanout.threads", "8")));
+                    AtomicInteger counter = new AtomicInteger();
+                    local = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(threads * 4), r -> {
+                            Thread t = new Thread(r, "fan-out-" + counter.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+                    local.allowCoreThreadTimeOut(true);
+                    executor = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Stop the worker pool if it was ever started.
+     */
+    public static void shutdownIfStarted() {
+        ThreadPoolExecutor local = executor;
+        if (local != null) {
+            local.shutdownNow();
+        }
+    }
+
+    /**
+     * Counters for monitoring
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        ThreadPoolExecutor local = executor;
+        stats.put("enabled", ENABLED);
+        stats.put("forked", forked.get());
+        stats.put("inline", inline.get());
+        stats.put("failed", failed.get());
+        stats.put("timedOut", timedOut.get());
+        stats.put("activeThreads", local != null ? local.getActiveCount() : 0);
+        stats.put("queued", local != null ? local.getQueue().size() : 0);
+        return stats;
+    }
+}
@@ -0,0 +1,427 @@
+package com.carrental.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resized copies of uploaded images, cached on disk.
+ *
+ * Requested widths snap up to the nearest configured size (app.image.widths) so the
+ * cache stays bounded. A derivative is named after the SHA-256 of the original's bytes
+ * plus the width, e.g. image-cache/3f/3fa4...-w320.jpg, so replacing an upload simply
+ * produces new names and identical uploads share files. Images are decoded with source
+ * subsampling where possible, scaled, and re-encoded without any of the original
+ * metadata (EXIF, GPS, comments). Work runs on a small bounded pool; when it is busy
+ * or too slow the caller gets null and serves the original instead.
+ */
+public final class ImageDerivatives {
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivatives.class);
+
+    private static volatile ImageDerivatives instance;
+
+    private final boolean enabled;
+    private final int[] widths;
+    private final Path cacheDir;
+    private final float jpegQuality;
+    private final long maxPixels;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor workers;
+
+    // Source file identity (path, size, mtime) -> content hash, so hot images are not rehashed
+    private final Map<String, String> hashes = new ConcurrentHashMap<>();
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    // Targets whose original is not wider than the target width
+    private final Set<Path> notNeeded = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    private ImageDerivatives() {
+        enabled = Boolean.parseBoolean(DatabaseUtil.getProperty("app.image.derivatives.enabled", "true"));
+        widths = Arrays.stream(DatabaseUtil.getProperty("app.image.widths", "160,320,640,1280").split(","))
+            .map(String::trim).filter(s -> !s.isEmpty()).mapToInt(Integer::parseInt)
+            .filter(w -> w > 0).sorted().distinct().toArray();
+        cacheDir = Paths.get(DatabaseUtil.getProperty("app.image.cacheDir", "image-cache")).toAbsolutePath().normalize();
+        jpegQuality = Float.parseFloat(DatabaseUtil.getProperty("app.image.jpegQuality", "0.82"));
+        maxPixels = Long.parseLong(DatabaseUtil.getProperty("app.image.maxPixels", "40000000"));
+        timeoutMillis = Long.parseLong(DatabaseUtil.getProperty("app.image.timeoutMillis", "10000"));
+        int threads = Math.max(1, Integer.parseInt(DatabaseUtil.getProperty("app.image.workers", "2")));
+        AtomicInteger counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, Integer.parseInt(
+                DatabaseUtil.getProperty("app.image.queueCapacity", "64")))), r -> {
+                Thread t = new Thread(r, "image-worker-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    public static ImageDerivatives getInstance() {
+        ImageDerivatives local = instance;
+        if (local == null) {
+            synchronized (ImageDerivatives.class) {
+                local = instance;
+                if (local == null) {
+                    local = new ImageDerivatives();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Stop the worker pool if it was ever started.
+     */
+    public static void shutdownIfStarted() {
+        ImageDerivatives local = instance;
+        if (local != null) {
+            local.workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether derivatives can be made for this file name
+     */
+    public static boolean isSupported(String fileName) {
+        String ext = extension(fileName);
+        return "jpg".equals(ext) || "jpeg".equals(ext) || "png".equals(ext)
+            || "gif".equals(ext) || "bmp".equals(ext);
+    }
+
+    /**
+     * Derivative of original for the requested width, generating it if needed.
+     *
+     * @return path of the derivative, or null when the original should be served
+     *         (disabled, unsupported, not wider than the requested size, busy or failed)
+     */
+    public Path resolve(Path original, int requestedWidth) {
+        if (!enabled || widths.length == 0 || !isSupported(original.getFileName().toString())) {
+            return null;
+        }
+        int width = snap(requestedWidth);
+        try {
+            Path target = targetPath(original, width);
+            if (Files.isRegularFile(target)) {
+                diskHits.incrementAndGet();
+                return target;
+            }
+            if (notNeeded.contains(target)) {
+                return null;
+            }
+            CompletableFuture<Path> future = submit(original, target, width);
+            Path result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (result == null) {
+                fallbacks.incrementAndGet();
+            }
+            return result;
+        } catch (RejectedExecutionException | TimeoutException e) {
+            fallbacks.incrementAndGet();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException | ExecutionException e) {
+            failures.incrementAndGet();
+            logger.warn("Failed to derive image {} at width {}: {}", original, width, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Queue every configured size of a freshly uploaded image; never blocks the upload
+     */
+    public void pregenerate(Path original) {
+        if (!enabled || !isSupported(original.getFileName().toString())) {
+            return;
+        }
+        for (int width : widths) {
+            try {
+                Path target = targetPath(original, width);
+                if (!Files.isRegularFile(target)) {
+                    submit(original, target, width);
+                }
+            } catch (RejectedExecutionException e) {
+                // Pool busy; remaining sizes are generated lazily on first request
+                return;
+            } catch (IOException e) {
+                logger.warn("Failed to queue image derivatives for {}: {}", original, e.toString());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Delete every cached derivative of a blob whose content is gone
+     *
+     * @return number of files removed
+     */
+    public int evict(String blobKey) {
+        if (!LocalBlobStore.isKey(blobKey)) {
+            return 0;
+        }
+        int dot = blobKey.indexOf('.');
+        String hash = dot < 0 ? blobKey : blobKey.substring(0, dot);
+        Path dir = cacheDir.resolve(hash.substring(0, 2));
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, hash + "-w*")) {
+            for (Path file : files) {
+                notNeeded.remove(file);
+                if (Files.deleteIfExists(file)) {
+                    removed++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to remove derivatives of blob {}: {}", blobKey, e.toString());
+        }
+        evicted.addAndGet(removed);
+        return removed;
+    }
+
+    private int snap(int requested) {
+        for (int width : widths) {
+            if (width >= requested) {
+                return width;
+            }
+        }
+        return widths[widths.length - 1];
+    }
+
+    private CompletableFuture<Path> submit(Path original, Path target, int width) {
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(target, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    created.complete(generate(original, target, width));
+                } catch (Exception e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(target, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(target, created);
+            throw e;
+        }
+        return created;
+    }
+
+    private Path targetPath(Path original, int width) throws IOException {
+        String hash = contentHash(original);
+        String ext = isOpaqueFormat(original) ? "jpg" : "png";
+        return cacheDir.resolve(hash.substring(0, 2)).resolve(hash + "-w" + width + "." + ext);
+    }
+
+    private String contentHash(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        if (LocalBlobStore.isKey(name)) {
+            // Blob store files are already named after their SHA-256
+            return dot < 0 ? name : name.substring(0, dot);
+        }
+        String key = file + "|" + Files.size(file) + "|" + Files.getLastModifiedTime(file).toMillis();
+        String hash = hashes.get(key);
+        if (hash != null) {
+            return hash;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        hash = sb.toString();
+        if (hashes.size() > 10_000) {
+            hashes.clear();
+        }
+        hashes.put(key, hash);
+        return hash;
+    }
+
+    /**
+     * @return the derivative, or null when the original is not wider than width
+     */
+    private Path generate(Path original, Path target, int width) throws IOException {
+        if (Files.isRegularFile(target)) {
+            return target;
+        }
+        BufferedImage source;
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int srcWidth = reader.getWidth(0);
+                int srcHeight = reader.getHeight(0);
+                if ((long) srcWidth * srcHeight > maxPixels) {
+                    throw new IOException("Image too large: " + srcWidth + "x" + srcHeight);
+                }
+                if (srcWidth <= width) {
+                    if (notNeeded.size() > 10_000) {
+                        notNeeded.clear();
+                    }
+                    notNeeded.add(target);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                // Decode at most 2x the target so huge photos are not fully materialised
+                int step = srcWidth / (width * 2);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        boolean jpeg = target.getFileName().toString().endsWith(".jpg");
+        BufferedImage scaled = scale(source, width, jpeg);
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "derive-", ".tmp");
+        try {
+            write(scaled, tmp, jpeg);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        generated.incrementAndGet();
+        return target;
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, boolean opaque) {
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        // Halve in steps, then finish with one bilinear pass; a single large step aliases badly
+        do {
+            int nextW = Math.max(width, w / 2);
+            int nextH = Math.max(1, (int) Math.round((double) h * nextW / w));
+            BufferedImage next = new BufferedImage(nextW, nextH, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (opaque) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, nextW, nextH);
+                }
+                g.drawImage(current, 0, 0, nextW, nextH, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+            w = nextW;
+            h = nextH;
+        } while (w > width);
+        return current;
+    }
+
+    private void write(BufferedImage image, Path file, boolean jpeg) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(jpeg ? "jpeg" : "png").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (jpeg) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            // No metadata argument: nothing from the original file is carried over
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static boolean isOpaqueFormat(Path file) {
+        String ext = extension(file.getFileName().toString());
+        return "jpg".equals(ext) || "jpeg".equals(ext) || "bmp".equals(ext);
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("widths", widths);
+        stats.put("generated", generated.get());
+        stats.put("diskHits", diskHits.get());
+        stats.put("fallbacks", fallbacks.get());
+        stats.put("failures", failures.get());
+        stats.put("evicted", evicted.get());
+        stats.put("activeWorkers", workers.getActiveCount());
+        stats.put("queued", workers.getQueue().size());
+        return stats;
+    }
+}
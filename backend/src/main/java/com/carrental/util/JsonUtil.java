@@ -1,23 +1,32 @@
 package com.carrental.util;
 
+import com.carrental.model.AdminOperationLog;
+import com.carrental.model.FundsFlowLog;
+import com.carrental.model.LoginSecurityLog;
+import com.carrental.model.Order;
+import com.carrental.model.OrderEventLog;
+import com.carrental.model.User;
+import com.carrental.model.Vehicle;
+import com.carrental.model.VehicleStatusLog;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
- * JSON utility class for request/response handling
+ * JSON utility class for request/response handling.
+ * Responses are serialized straight into the response writer and request bodies are
+ * parsed straight from the request reader, so no intermediate JSON string is built.
  */
 public class JsonUtil {
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
@@ -32,18 +41,29 @@ public class JsonUtil {
                     new JsonPrimitive(src.format(DATE_FORMATTER)))
             .create();
 
+    static {
+        // Build the reflective adapters of the large list models up front instead of on the first request
+        for (Class<?> type : new Class<?>[] {Order.class, Vehicle.class, User.class, AdminOperationLog.class,
+                FundsFlowLog.class, LoginSecurityLog.class, OrderEventLog.class, VehicleStatusLog.class}) {
+            gson.getAdapter(type);
+        }
+    }
+
+    /**
+     * Writes the "data" member of a response envelope
+     */
+    @FunctionalInterface
+    private interface DataWriter {
+        void write(JsonWriter out) throws IOException;
+    }
+
     /**
      * Parse JSON from request body
      */
     public static <T> T fromJson(HttpServletRequest request, Class<T> clazz) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        try (BufferedReader reader = request.getReader()) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-            }
+        try (Reader reader = request.getReader()) {
+            return gson.fromJson(reader, clazz);
         }
-        return gson.fromJson(sb.toString(), clazz);
     }
 
     /**
@@ -67,7 +87,9 @@ public class JsonUtil {
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
         try (PrintWriter writer = response.getWriter()) {
-            writer.write(gson.toJson(data));
+            JsonWriter out = gson.newJsonWriter(writer);
+            writeValue(out, data);
+            out.flush();
         }
     }
 
@@ -75,22 +97,14 @@ public class JsonUtil {
      * Write success response
      */
     public static void writeSuccess(HttpServletResponse response, Object data) throws IOException {
-        Map<String, Object> result = new HashMap<>();
-        result.put("code", 200);
-        result.put("message", "success");
-        result.put("data", data);
-        writeJson(response, result);
+        writeEnvelope(response, 200, "success", out -> writeValue(out, data));
     }
 
     /**
      * Write success response with message
      */
     public static void writeSuccess(HttpServletResponse response, String message, Object data) throws IOException {
-        Map<String, Object> result = new HashMap<>();
-        result.put("code", 200);
-        result.put("message", message);
-        result.put("data", data);
-        writeJson(response, result);
+        writeEnvelope(response, 200, message, out -> writeValue(out, data));
     }
 
     /**
@@ -98,11 +112,7 @@ public class JsonUtil {
      */
     public static void writeError(HttpServletResponse response, int code, String message) throws IOException {
         response.setStatus(code >= 400 && code < 600 ? code : 400);
-        Map<String, Object> result = new HashMap<>();
-        result.put("code", code);
-        result.put("message", message);
-        result.put("data", null);
-        writeJson(response, result);
+        writeEnvelope(response, code, message, JsonWriter::nullValue);
     }
 
     /**
@@ -110,18 +120,59 @@ public class JsonUtil {
      */
     public static void writePaginated(HttpServletResponse response, Object data,
                                       int page, int pageSize, long total) throws IOException {
-        Map<String, Object> result = new HashMap<>();
-        result.put("code", 200);
-        result.put("message", "success");
-
-        Map<String, Object> pagination = new HashMap<>();
-        pagination.put("list", data);
-        pagination.put("page", page);
-        pagination.put("pageSize", pageSize);
-        pagination.put("total", total);
-        pagination.put("totalPages", (int) Math.ceil((double) total / pageSize));
-
-        result.put("data", pagination);
-        writeJson(response, result);
+        writeEnvelope(response, 200, "success", out -> {
+            out.beginObject();
+            out.name("list");
+            writeValue(out, data);
+            out.name("page").value(page);
+            out.name("pageSize").value(pageSize);
+            out.name("total").value(total);
+            out.name("totalPages").value((int) Math.ceil((double) total / pageSize));
+            out.endObject();
+        });
+    }
+
+    /**
+     * Write a keyset paginated response; nextCursor is omitted on the last page
+     */
+    public static void writeCursorPage(HttpServletResponse response, Object data,
+                                       int pageSize, String nextCursor) throws IOException {
+        writeEnvelope(response, 200, "success", out -> {
+            out.beginObject();
+            out.name("list");
+            writeValue(out, data);
+            out.name("pageSize").value(pageSize);
+            out.name("nextCursor").value(nextCursor);
+            out.name("hasMore").value(nextCursor != null);
+            out.endObject();
+        });
+    }
+
+    /**
+     * Stream {"code", "message", "data"} into the response. Null members are omitted,
+     * as with the Gson defaults used for everything else.
+     */
+    private static void writeEnvelope(HttpServletResponse response, int code, String message,
+                                      DataWriter data) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        try (PrintWriter writer = response.getWriter()) {
+            JsonWriter out = gson.newJsonWriter(writer);
+            out.beginObject();
+            out.name("code").value(code);
+            out.name("message").value(message);
+            out.name("data");
+            data.write(out);
+            out.endObject();
+            out.flush();
+        }
+    }
+
+    private static void writeValue(JsonWriter out, Object data) throws IOException {
+        if (data == null) {
+            out.nullValue();
+        } else {
+            gson.toJson(data, data.getClass(), out);
+        }
     }
 }
@@ -9,9 +9,12 @@ import org.slf4j.LoggerFactory;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * JWT utility class for token generation and validation
@@ -21,11 +24,57 @@ public class JwtUtil {
     private static final String SECRET;
     private static final long EXPIRATION;
     private static final SecretKey KEY;
+    private static final int CACHE_MAX_ENTRIES;
+
+    /** Share of the least recently used entries dropped when the cache is full */
+    private static final int EVICT_DIVISOR = 8;
+
+    /** Verified claims keyed by token string; entries die with the token's own expiry */
+    private static final Map<String, CachedClaims> CLAIMS_CACHE = new ConcurrentHashMap<>();
+    /** Access sequence for LRU order; unlike the clock it never ties within a burst */
+    private static final AtomicLong ACCESS_SEQ = new AtomicLong();
 
     static {
         SECRET = DatabaseUtil.getProperty("jwt.secret", "default-secret-key-for-development-only");
         EXPIRATION = Long.parseLong(DatabaseUtil.getProperty("jwt.expiration", "86400000"));
         KEY = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        CACHE_MAX_ENTRIES = Integer.parseInt(DatabaseUtil.getProperty("jwt.cache.maxEntries", "10000"));
+    }
+
+    /**
+     * Claims of a verified, unexpired token
+     */
+    public static final class TokenClaims {
+        private final Long userId;
+        private final String username;
+        private final String role;
+        private final long expiresAtMillis;
+
+        TokenClaims(Long userId, String username, String role, long expiresAtMillis) {
+            this.userId = userId;
+            this.username = username;
+            this.role = role;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public Long getUserId() { return userId; }
+        public String getUsername() { return username; }
+        public String getRole() { return role; }
+        public long getExpiresAtMillis() { return expiresAtMillis; }
+
+        public boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+
+    private static final class CachedClaims {
+        final TokenClaims claims;
+        volatile long lastUsed;
+
+        CachedClaims(TokenClaims claims) {
+            this.claims = claims;
+            this.lastUsed = ACCESS_SEQ.incrementAndGet();
+        }
     }
 
     /**
@@ -62,6 +111,82 @@ public class JwtUtil {
         }
     }
 
+    /**
+     * Verify the token once and extract all claims; null when invalid or expired
+     */
+    public static TokenClaims verify(String token) {
+        Claims claims = parseToken(token);
+        if (claims == null || claims.getExpiration() == null) {
+            return null;
+        }
+        long expiresAt = claims.getExpiration().getTime();
+        if (expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        Object userId = claims.get("userId");
+        return new TokenClaims(userId instanceof Number ? ((Number) userId).longValue() : null,
+            claims.getSubject(), (String) claims.get("role"), expiresAt);
+    }
+
+    /**
+     * Like verify, but remembers verified tokens until they expire so repeat requests
+     * with the same token cost one map lookup instead of an HMAC check and JSON parse.
+     * Invalid tokens are never cached.
+     */
+    public static TokenClaims verifyCached(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        CachedClaims cached = CLAIMS_CACHE.get(token);
+        if (cached != null) {
+            if (!cached.claims.isExpired(now)) {
+                cached.lastUsed = ACCESS_SEQ.incrementAndGet();
+                return cached.claims;
+            }
+            CLAIMS_CACHE.remove(token, cached);
+            return null;
+        }
+
+        TokenClaims claims = verify(token);
+        if (claims != null) {
+            if (CLAIMS_CACHE.size() >= CACHE_MAX_ENTRIES) {
+                evictCache(now);
+            }
+            CLAIMS_CACHE.put(token, new CachedClaims(claims));
+        }
+        return claims;
+    }
+
+    /**
+     * Drop expired entries; if the cache is still full, drop the least recently used
+     * eighth so a burst of new tokens evicts idle ones instead of emptying the cache
+     */
+    private static synchronized void evictCache(long now) {
+        if (CLAIMS_CACHE.size() < CACHE_MAX_ENTRIES) {
+            return;
+        }
+        CLAIMS_CACHE.values().removeIf(c -> c.claims.isExpired(now));
+        int size = CLAIMS_CACHE.size();
+        if (size < CACHE_MAX_ENTRIES) {
+            return;
+        }
+        long[] lastUsed = new long[size];
+        int n = 0;
+        for (CachedClaims entry : CLAIMS_CACHE.values()) {
+            if (n == lastUsed.length) {
+                break;
+            }
+            lastUsed[n++] = entry.lastUsed;
+        }
+        if (n == 0) {
+            return;
+        }
+        Arrays.sort(lastUsed, 0, n);
+        long cutoff = lastUsed[Math.max(0, n / EVICT_DIVISOR - 1)];
+        CLAIMS_CACHE.values().removeIf(c -> c.lastUsed <= cutoff);
+    }
+
     /**
      * Check if token is valid
      */
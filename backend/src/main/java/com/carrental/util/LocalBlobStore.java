@@ -0,0 +1,256 @@
+package com.carrental.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * BlobStore on the local file system.
+ *
+ * Keys are the hex SHA-256 of the content plus the extension, e.g. "9f86d0...08.jpg",
+ * stored at root/9f/86/9f86d0...08.jpg so no directory grows past a few thousand
+ * entries. Uploads are streamed into root/tmp while being hashed and then renamed
+ * into place atomically, so a blob is either complete or absent. The reference
+ * count lives next to the blob in a small ".refs" file, updated under a lock striped
+ * by key; a blob without one has no references. The blob's modification time marks
+ * when it was last stored, retained or released, which is what the reaper's grace
+ * period is measured from.
+ */
+public class LocalBlobStore implements BlobStore {
+    private static final Logger logger = LoggerFactory.getLogger(LocalBlobStore.class);
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,10})?");
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path root;
+    private final Path tmpDir;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+
+    public LocalBlobStore() throws IOException {
+        this(Paths.get(DatabaseUtil.getProperty("app.blob.root", "blob-store")));
+    }
+
+    public LocalBlobStore(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.tmpDir = this.root.resolve("tmp");
+        Files.createDirectories(tmpDir);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Whether s has the shape of a key produced by this store
+     */
+    public static boolean isKey(String s) {
+        return s != null && KEY.matcher(s).matches();
+    }
+
+    @Override
+    public StoredBlob put(InputStream in, String extension) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".tmp");
+        try {
+            long size;
+            try (DigestInputStream hashing = new DigestInputStream(in, digest)) {
+                size = Files.copy(hashing, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String ext = extension == null ? "" : extension.toLowerCase();
+            String key = toHex(digest.digest()) + (ext.isEmpty() ? "" : "." + ext);
+            if (!isKey(key)) {
+                throw new IOException("Unsupported extension: " + extension);
+            }
+            Path target = pathOf(key);
+            synchronized (lockFor(key)) {
+                boolean exists = Files.isRegularFile(target);
+                if (!exists) {
+                    Files.createDirectories(target.getParent());
+                    try {
+                        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (FileAlreadyExistsException e) {
+                        exists = true;
+                    }
+                }
+                if (exists) {
+                    // A re-upload of an unreferenced blob must not be reaped before it is attached
+                    touch(target);
+                    deduplicated.incrementAndGet();
+                    bytesSaved.addAndGet(size);
+                } else {
+                    stored.incrementAndGet();
+                }
+                return new StoredBlob(key, size, exists);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public Path resolve(String key) {
+        if (!isKey(key)) {
+            return null;
+        }
+        Path path = pathOf(key);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    @Override
+    public void retain(String key) throws IOException {
+        if (!isKey(key)) {
+            throw new NoSuchFileException(key);
+        }
+        synchronized (lockFor(key)) {
+            // Checked under the lock so the reaper cannot delete the blob in between
+            if (!Files.isRegularFile(pathOf(key))) {
+                throw new NoSuchFileException(key);
+            }
+            writeRefs(key, readRefs(key) + 1);
+            touch(pathOf(key));
+        }
+    }
+
+    @Override
+    public boolean release(String key) throws IOException {
+        if (!isKey(key)) {
+            return false;
+        }
+        synchronized (lockFor(key)) {
+            Path blob = pathOf(key);
+            if (!Files.isRegularFile(blob)) {
+                return false;
+            }
+            long refs = readRefs(key) - 1;
+            if (refs > 0) {
+                writeRefs(key, refs);
+                return false;
+            }
+            Files.deleteIfExists(refsOf(key));
+            touch(blob);
+            return true;
+        }
+    }
+
+    @Override
+    public List<String> reapUnreferenced(long graceMillis) throws IOException {
+        long cutoff = System.currentTimeMillis() - Math.max(0, graceMillis);
+        List<Path> candidates = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            files.filter(p -> !p.startsWith(tmpDir))
+                .filter(p -> isKey(p.getFileName().toString()))
+                .forEach(candidates::add);
+        }
+        List<String> reaped = new ArrayList<>();
+        for (Path blob : candidates) {
+            String key = blob.getFileName().toString();
+            synchronized (lockFor(key)) {
+                try {
+                    if (readRefs(key) > 0
+                            || Files.getLastModifiedTime(blob).toMillis() > cutoff) {
+                        continue;
+                    }
+                    Files.deleteIfExists(blob);
+                    Files.deleteIfExists(refsOf(key));
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+            }
+            deleted.incrementAndGet();
+            reaped.add(key);
+        }
+        return reaped;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", "local");
+        stats.put("root", root.toString());
+        stats.put("stored", stored.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("bytesSaved", bytesSaved.get());
+        stats.put("deleted", deleted.get());
+        return stats;
+    }
+
+    private Path pathOf(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private Path refsOf(String key) {
+        Path blob = pathOf(key);
+        return blob.resolveSibling(blob.getFileName() + ".refs");
+    }
+
+    private Object lockFor(String key) {
+        return locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+
+    private long readRefs(String key) throws IOException {
+        Path refs = refsOf(key);
+        if (!Files.exists(refs)) {
+            return 0;
+        }
+        String text = new String(Files.readAllBytes(refs), StandardCharsets.US_ASCII).trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            // Unreadable count: keep the blob alive rather than risk deleting a referenced file
+            logger.warn("Corrupt reference count for blob {}: '{}'", key, text);
+            return 1;
+        }
+    }
+
+    private static void touch(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private void writeRefs(String key, long refs) throws IOException {
+        Path target = refsOf(key);
+        Path tmp = Files.createTempFile(tmpDir, "refs-", ".tmp");
+        try {
+            Files.write(tmp, Long.toString(refs).getBytes(StandardCharsets.US_ASCII));
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -47,6 +47,21 @@ public final class LogContext {
         HOLDER.remove();
     }
 
+    /**
+     * Capture the current context so a request continued on another thread can restore it
+     */
+    public static Object capture() {
+        return HOLDER.get();
+    }
+
+    public static void restore(Object captured) {
+        if (captured instanceof Context) {
+            HOLDER.set((Context) captured);
+        } else {
+            HOLDER.remove();
+        }
+    }
+
     private static final class Context {
         private Long userId;
         private String username;
@@ -0,0 +1,378 @@
+package com.carrental.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Sliding-window limiter for failed logins, keyed by account and by client IP.
+ *
+ * Each key owns a ring of time buckets (app.login.throttle.windowSeconds split into
+ * app.login.throttle.buckets); a bucket is reused once its slot comes round again, so
+ * counting is a handful of atomic operations and no lock is taken on the hot path.
+ * check() reserves the attempt as a failure in the same step as comparing against the
+ * limit, and a success hands the reservation back. An account or IP
+ * whose failures in the window reach its limit is refused until enough buckets have
+ * aged out. The check is meant to run before any user lookup or password hashing.
+ * At most app.login.throttle.maxKeys accounts and IPs are tracked; making room first
+ * drops keys with nothing left in the window, then the least recently failed ones.
+ * State is kept in memory only and resets on restart.
+ */
+public final class LoginThrottle {
+
+    private static volatile LoginThrottle instance;
+
+    private final boolean enabled;
+    private final int accountMaxFailures;
+    private final int ipMaxFailures;
+    private final int buckets;
+    private final long bucketMillis;
+    private final int maxKeys;
+    private final LongSupplier clock;
+
+    private final Map<String, Window> accounts = new ConcurrentHashMap<>();
+    private final Map<String, Window> ips = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+    private final Object keyLock = new Object();
+
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong throttledByAccount = new AtomicLong();
+    private final AtomicLong throttledByIp = new AtomicLong();
+    private final AtomicLong evictedKeys = new AtomicLong();
+
+    /**
+     * Outcome of check(); retryAfterSeconds is 0 when the attempt may proceed.
+     *
+     * An allowed decision holds one reserved failure on the account and the IP, taken in
+     * the same step as the limit check, so concurrent attempts cannot all slip under the
+     * limit. A failed attempt keeps it; recordSuccess() or release() hands it back.
+     */
+    public static final class Decision {
+        private static final Decision ALLOW = new Decision(null, 0, false);
+
+        private final String reason;
+        private final long retryAfterSeconds;
+        private final boolean firstInBucket;
+        private final Window accountWindow;
+        private final Window ipWindow;
+        private final long bucket;
+
+        private Decision(String reason, long retryAfterSeconds, boolean firstInBucket) {
+            this(reason, retryAfterSeconds, firstInBucket, null, null, 0);
+        }
+
+        private Decision(String reason, long retryAfterSeconds, boolean firstInBucket,
+                Window accountWindow, Window ipWindow, long bucket) {
+            this.reason = reason;
+            this.retryAfterSeconds = retryAfterSeconds;
+            this.firstInBucket = firstInBucket;
+            this.accountWindow = accountWindow;
+            this.ipWindow = ipWindow;
+            this.bucket = bucket;
+        }
+
+        public boolean isAllowed() { return reason == null; }
+        /** "account" or "ip" when throttled */
+        public String getReason() { return reason; }
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+        /** Whether this is the first refusal for the key in the current bucket, used to sample logging */
+        public boolean isFirstInBucket() { return firstInBucket; }
+    }
+
+    /**
+     * Each slot packs the bucket it counts for (high bits) with its count (low COUNT_BITS),
+     * so recycling a slot for a new bucket and counting into it are one compare-and-set
+     * and no increment can be lost to a concurrent reset.
+     */
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final class Window {
+        final AtomicLongArray slots = new AtomicLongArray(buckets);
+        final AtomicLong lastRefusedBucket = new AtomicLong(-1);
+        volatile long lastTouched;
+
+        Window(long bucket) {
+            lastTouched = bucket;
+        }
+
+        void add(long bucket) {
+            int slot = (int) (bucket % buckets);
+            while (true) {
+                long current = slots.get(slot);
+                long next;
+                if ((current >>> COUNT_BITS) != bucket) {
+                    next = (bucket << COUNT_BITS) | 1;
+                } else if ((current & COUNT_MASK) < COUNT_MASK) {
+                    next = current + 1;
+                } else {
+                    break;
+                }
+                if (slots.compareAndSet(slot, current, next)) {
+                    break;
+                }
+            }
+            lastTouched = bucket;
+        }
+
+        /**
+         * Take back one count added in bucket; nothing to do once the slot has moved on
+         */
+        void remove(long bucket) {
+            int slot = (int) (bucket % buckets);
+            while (true) {
+                long current = slots.get(slot);
+                if ((current >>> COUNT_BITS) != bucket || (current & COUNT_MASK) == 0) {
+                    return;
+                }
+                if (slots.compareAndSet(slot, current, current - 1)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Count one attempt unless that would take the window over limit
+         */
+        boolean tryReserve(long bucket, int limit) {
+            add(bucket);
+            if (sum(bucket) > limit) {
+                remove(bucket);
+                return false;
+            }
+            return true;
+        }
+
+        int sum(long bucket) {
+            int total = 0;
+            for (int i = 0; i < buckets; i++) {
+                total += countIn(slots.get(i), bucket);
+            }
+            return total;
+        }
+
+        /**
+         * Buckets until the sum drops below limit
+         */
+        long bucketsUntilBelow(long bucket, int limit) {
+            int total = sum(bucket);
+            for (long age = 0; age < buckets; age++) {
+                long oldest = bucket - buckets + 1 + age;
+                long packed = slots.get((int) Math.floorMod(oldest, (long) buckets));
+                if ((packed >>> COUNT_BITS) == oldest) {
+                    total -= (int) (packed & COUNT_MASK);
+                }
+                if (total < limit) {
+                    return age + 1;
+                }
+            }
+            return buckets;
+        }
+
+        private int countIn(long packed, long bucket) {
+            long stamp = packed >>> COUNT_BITS;
+            return stamp > bucket - buckets && stamp <= bucket ? (int) (packed & COUNT_MASK) : 0;
+        }
+    }
+
+    private LoginThrottle() {
+        this(Boolean.parseBoolean(DatabaseUtil.getProperty("app.login.throttle.enabled", "true")),
+            Integer.parseInt(DatabaseUtil.getProperty("app.login.throttle.accountMaxFailures", "5")),
+            Integer.parseInt(DatabaseUtil.getProperty("app.login.throttle.ipMaxFailures", "20")),
+            Long.parseLong(DatabaseUtil.getProperty("app.login.throttle.windowSeconds", "900")),
+            Integer.parseInt(DatabaseUtil.getProperty("app.login.throttle.buckets", "15")),
+            Integer.parseInt(DatabaseUtil.getProperty("app.login.throttle.maxKeys", "200000")),
+            System::currentTimeMillis);
+    }
+
+    /**
+     * Explicit settings and clock, for tests
+     */
+    LoginThrottle(boolean enabled, int accountMaxFailures, int ipMaxFailures, long windowSeconds,
+            int buckets, int maxKeys, LongSupplier clock) {
+        this.enabled = enabled;
+        this.accountMaxFailures = accountMaxFailures;
+        this.ipMaxFailures = ipMaxFailures;
+        this.buckets = Math.max(1, buckets);
+        this.bucketMillis = Math.max(1000L, windowSeconds * 1000 / this.buckets);
+        this.maxKeys = Math.max(2, maxKeys);
+        this.clock = clock;
+    }
+
+    public static LoginThrottle getInstance() {
+        LoginThrottle local = instance;
+        if (local == null) {
+            synchronized (LoginThrottle.class) {
+                local = instance;
+                if (local == null) {
+                    local = new LoginThrottle();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Whether a login for account from ip may be attempted now. An allowed attempt is
+     * already counted as a failure until recordSuccess() or release() gives it back.
+     */
+    public Decision check(String account, String ip) {
+        if (!enabled) {
+            return Decision.ALLOW;
+        }
+        long bucket = clock.getAsLong() / bucketMillis;
+        Window byIp = ip != null ? window(ips, ip, bucket) : null;
+        if (byIp != null && !byIp.tryReserve(bucket, ipMaxFailures)) {
+            throttledByIp.incrementAndGet();
+            return refuse("ip", byIp, bucket, ipMaxFailures);
+        }
+        Window byAccount = account != null ? window(accounts, normalize(account), bucket) : null;
+        if (byAccount != null && !byAccount.tryReserve(bucket, accountMaxFailures)) {
+            if (byIp != null) {
+                byIp.remove(bucket);
+            }
+            throttledByAccount.incrementAndGet();
+            return refuse("account", byAccount, bucket, accountMaxFailures);
+        }
+        maybeSweep(bucket);
+        allowed.incrementAndGet();
+        return new Decision(null, 0, false, byAccount, byIp, bucket);
+    }
+
+    /**
+     * A successful login clears the account's failures and returns the IP's reservation;
+     * the IP keeps the rest of its history
+     */
+    public void recordSuccess(String account, Decision decision) {
+        if (!enabled) {
+            return;
+        }
+        if (decision.ipWindow != null) {
+            decision.ipWindow.remove(decision.bucket);
+        }
+        if (account != null) {
+            accounts.remove(normalize(account));
+        }
+    }
+
+    /**
+     * The attempt ended without testing a password (e.g. a disabled account): return both reservations
+     */
+    public void release(Decision decision) {
+        if (decision.ipWindow != null) {
+            decision.ipWindow.remove(decision.bucket);
+        }
+        if (decision.accountWindow != null) {
+            decision.accountWindow.remove(decision.bucket);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedAccounts", accounts.size());
+        stats.put("trackedIps", ips.size());
+        stats.put("allowed", allowed.get());
+        stats.put("throttledByAccount", throttledByAccount.get());
+        stats.put("throttledByIp", throttledByIp.get());
+        stats.put("evictedKeys", evictedKeys.get());
+        stats.put("windowSeconds", bucketMillis * buckets / 1000);
+        return stats;
+    }
+
+    private Decision refuse(String reason, Window window, long bucket, int limit) {
+        long retryAfter = Math.max(1, window.bucketsUntilBelow(bucket, limit) * bucketMillis / 1000);
+        long previous = window.lastRefusedBucket.get();
+        boolean first = previous != bucket && window.lastRefusedBucket.compareAndSet(previous, bucket);
+        return new Decision(reason, retryAfter, first);
+    }
+
+    private Window window(Map<String, Window> map, String key, long bucket) {
+        Window window = map.get(key);
+        if (window != null) {
+            return window;
+        }
+        // New keys are added under one lock so the cap holds however many threads race
+        synchronized (keyLock) {
+            window = map.get(key);
+            if (window == null) {
+                if (accounts.size() + ips.size() >= maxKeys) {
+                    makeRoom(bucket);
+                }
+                window = new Window(bucket);
+                map.put(key, window);
+            }
+            return window;
+        }
+    }
+
+    /**
+     * Drop keys with no failures left in the window, at most once per bucket
+     */
+    private void maybeSweep(long bucket) {
+        long last = lastSweep.get();
+        if (last == bucket || !lastSweep.compareAndSet(last, bucket)) {
+            return;
+        }
+        sweep(accounts, bucket - buckets);
+        sweep(ips, bucket - buckets);
+    }
+
+    /**
+     * Called under keyLock when full: drop expired keys, then the least recently failed
+     * eighth, so the next adds do not each pay for a full scan
+     */
+    private void makeRoom(long bucket) {
+        int before = accounts.size() + ips.size();
+        sweep(accounts, bucket - buckets);
+        sweep(ips, bucket - buckets);
+        int target = maxKeys - Math.max(1, maxKeys / 8);
+        if (accounts.size() + ips.size() > target) {
+            long[] touched = new long[accounts.size() + ips.size()];
+            int n = 0;
+            for (Window w : accounts.values()) {
+                if (n < touched.length) touched[n++] = w.lastTouched;
+            }
+            for (Window w : ips.values()) {
+                if (n < touched.length) touched[n++] = w.lastTouched;
+            }
+            Arrays.sort(touched, 0, n);
+            int excess = n - target;
+            if (excess > 0) {
+                // Ties at the cutoff are only dropped until the target is met
+                long cutoff = touched[excess - 1];
+                evictUpTo(accounts, cutoff, target);
+                evictUpTo(ips, cutoff, target);
+            }
+        }
+        evictedKeys.addAndGet(Math.max(0, before - accounts.size() - ips.size()));
+    }
+
+    private void evictUpTo(Map<String, Window> map, long touchedAtOrBefore, int target) {
+        for (Iterator<Window> it = map.values().iterator();
+                it.hasNext() && accounts.size() + ips.size() > target; ) {
+            if (it.next().lastTouched <= touchedAtOrBefore) {
+                it.remove();
+            }
+        }
+    }
+
+    private void sweep(Map<String, Window> map, long touchedAtOrBefore) {
+        for (Iterator<Window> it = map.values().iterator(); it.hasNext(); ) {
+            if (it.next().lastTouched <= touchedAtOrBefore) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String normalize(String account) {
+        return account.trim().toLowerCase(Locale.ROOT);
+    }
+}
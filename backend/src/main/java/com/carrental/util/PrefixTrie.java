@@ -0,0 +1,62 @@
+package com.carrental.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Character trie answering "which registered prefix does this string start with"
+ * in one pass over the string, independent of how many prefixes are registered.
+ */
+public class PrefixTrie<V> {
+
+    private static final class Node<V> {
+        final Map<Character, Node<V>> children = new HashMap<>();
+        V value;
+    }
+
+    private final Node<V> root = new Node<>();
+
+    public PrefixTrie<V> put(String prefix, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), k -> new Node<>());
+        }
+        node.value = value;
+        return this;
+    }
+
+    /**
+     * Value of the longest registered prefix of text, or null
+     */
+    public V longestPrefixValue(String text) {
+        Node<V> node = root;
+        V found = root.value;
+        for (int i = 0; i < text.length() && node != null; i++) {
+            node = node.children.get(text.charAt(i));
+            if (node != null && node.value != null) {
+                found = node.value;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Whether any registered prefix is a prefix of text
+     */
+    public boolean matchesPrefix(String text) {
+        Node<V> node = root;
+        if (node.value != null) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            node = node.children.get(text.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            if (node.value != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
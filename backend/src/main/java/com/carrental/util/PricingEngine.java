@@ -0,0 +1,579 @@
+package com.carrental.util;
+
+import com.carrental.model.Coupon;
+import com.carrental.model.Vehicle;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prices rentals from rate plans, promotions and coupons.
+ *
+ * The rules in app.pricing.* are compiled once into an immutable evaluator working in
+ * integer cents. Each distinct (daily, weekly, monthly) rate plan gets a table with the
+ * cheapest rental price for 1..app.pricing.rateTable.days days, built once and shared by
+ * every vehicle with that plan, so a quote is a table lookup plus a few promotion rules.
+ *
+ * Rental amount: best mix of daily, 7-day and 30-day rates (missing rates are skipped).
+ * Promotions (app.pricing.promotions) do not stack; the largest discount applies. A coupon
+ * is applied on top, against the rental amount left after the promotion. Deposit,
+ * insurance per day and the one-way fee are added as before.
+ */
+public final class PricingEngine {
+
+    private static volatile PricingEngine instance;
+
+    /** Promotion types, matching the ids shown by MarketingServlet */
+    public static final String PROMO_NEW_USER = "new_user";
+    public static final String PROMO_WEEKEND = "weekend";
+    public static final String PROMO_LONG_TERM = "long_term";
+    public static final String PROMO_SECOND_ORDER = "second_order";
+
+    private final Map<String, Long> insurancePerDay;
+    private final long oneWayFee;
+    private final int tableDays;
+    private final List<Promotion> promotions;
+    private final Map<RatePlan, long[]> rateTables = new ConcurrentHashMap<>();
+
+    private final int bulkThreads;
+    private final int bulkChunkSize;
+    private volatile ThreadPoolExecutor workers;
+
+    private final AtomicLong quotes = new AtomicLong();
+    private final AtomicLong bulkRequests = new AtomicLong();
+    private final AtomicLong forkedChunks = new AtomicLong();
+
+    /**
+     * What the promotions need to know about the customer
+     */
+    public static final class Customer {
+        public static final Customer UNKNOWN = new Customer(-1, -1);
+
+        private final long previousOrders;
+        private final long ordersThisMonth;
+
+        /**
+         * @param previousOrders  orders placed before, not counting cancelled or rejected ones; -1 if unknown
+         * @param ordersThisMonth of those, the ones placed this calendar month; -1 if unknown
+         */
+        public Customer(long previousOrders, long ordersThisMonth) {
+            this.previousOrders = previousOrders;
+            this.ordersThisMonth = ordersThisMonth;
+        }
+    }
+
+    /**
+     * Price breakdown of one rental
+     */
+    public static final class Quote {
+        private final int rentalDays;
+        private final BigDecimal dailyPrice;
+        private final BigDecimal rentalAmount;
+        private final BigDecimal deposit;
+        private final BigDecimal insuranceAmount;
+        private final BigDecimal serviceAmount;
+        private final BigDecimal promotionDiscount;
+        private final BigDecimal couponDiscount;
+        private final BigDecimal totalAmount;
+        private final String promotion;
+        private final String promotionTitle;
+
+        private Quote(int rentalDays, BigDecimal dailyPrice, long rental, BigDecimal deposit, long insurance,
+                long service, long promotionDiscount, long couponDiscount, Promotion promotion) {
+            this.rentalDays = rentalDays;
+            this.dailyPrice = dailyPrice;
+            this.rentalAmount = fromCents(rental);
+            this.deposit = deposit;
+            this.insuranceAmount = fromCents(insurance);
+            this.serviceAmount = fromCents(service);
+            this.promotionDiscount = fromCents(promotionDiscount);
+            this.couponDiscount = fromCents(couponDiscount);
+            this.totalAmount = fromCents(rental + insurance + service - promotionDiscount - couponDiscount)
+                .add(deposit);
+            this.promotion = promotion != null ? promotion.type : null;
+            this.promotionTitle = promotion != null ? promotion.title : null;
+        }
+
+        public int getRentalDays() { return rentalDays; }
+        public BigDecimal getDailyPrice() { return dailyPrice; }
+        public BigDecimal getRentalAmount() { return rentalAmount; }
+        public BigDecimal getDeposit() { return deposit; }
+        public BigDecimal getInsuranceAmount() { return insuranceAmount; }
+        public BigDecimal getServiceAmount() { return serviceAmount; }
+        public BigDecimal getPromotionDiscount() { return promotionDiscount; }
+        public BigDecimal getCouponDiscount() { return couponDiscount; }
+        /** Promotion plus coupon, as stored in orders.discount_amount */
+        public BigDecimal getDiscountAmount() { return promotionDiscount.add(couponDiscount); }
+        public BigDecimal getTotalAmount() { return totalAmount; }
+        /** Applied promotion type, or null */
+        public String getPromotion() { return promotion; }
+
+        /**
+         * Response body of /api/orders/calculate
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("rentalDays", rentalDays);
+            map.put("dailyPrice", dailyPrice);
+            map.put("rentalAmount", rentalAmount);
+            map.put("deposit", deposit);
+            map.put("insuranceAmount", insuranceAmount);
+            map.put("serviceAmount", serviceAmount);
+            map.put("promotionDiscount", promotionDiscount);
+            map.put("couponDiscount", couponDiscount);
+            map.put("discountAmount", getDiscountAmount());
+            map.put("totalAmount", totalAmount);
+            map.put("promotion", promotion);
+            map.put("promotionTitle", promotionTitle);
+            return map;
+        }
+    }
+
+    /**
+     * A compiled promotion: its discount in cents for a rental, 0 when it does not apply
+     */
+    private abstract static class Promotion {
+        final String type;
+        final String title;
+        final String description;
+
+        Promotion(String type, String title, String description) {
+            this.type = type;
+            this.title = title;
+            this.description = description;
+        }
+
+        abstract long discount(long rental, int days, LocalDateTime pickup, Customer customer);
+    }
+
+    private static final class RatePlan {
+        final long daily;
+        final long weekly;
+        final long monthly;
+
+        RatePlan(long daily, long weekly, long monthly) {
+            this.daily = daily;
+            this.weekly = weekly;
+            this.monthly = monthly;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RatePlan)) {
+                return false;
+            }
+            RatePlan other = (RatePlan) o;
+            return daily == other.daily && weekly == other.weekly && monthly == other.monthly;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(daily) * 961 + Long.hashCode(weekly) * 31 + Long.hashCode(monthly);
+        }
+    }
+
+    private PricingEngine() {
+        Map<String, Long> insurance = new HashMap<>();
+        insurance.put("basic", toCents(new BigDecimal(DatabaseUtil.getProperty("app.pricing.insurance.basic", "30"))));
+        insurance.put("premium", toCents(new BigDecimal(DatabaseUtil.getProperty("app.pricing.insurance.premium", "60"))));
+        insurancePerDay = Collections.unmodifiableMap(insurance);
+        oneWayFee = toCents(new BigDecimal(DatabaseUtil.getProperty("app.pricing.oneWayFee", "200")));
+        tableDays = Math.max(30, Integer.parseInt(DatabaseUtil.getProperty("app.pricing.rateTable.days", "90")));
+        bulkThreads = Math.max(1, Integer.parseInt(DatabaseUtil.getProperty("app.pricing.bulk.threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        bulkChunkSize = Math.max(1, Integer.parseInt(DatabaseUtil.getProperty("app.pricing.bulk.chunkSize", "32")));
+        promotions = compilePromotions(DatabaseUtil.getProperty("app.pricing.promotions",
+            PROMO_NEW_USER + "," + PROMO_WEEKEND + "," + PROMO_LONG_TERM + "," + PROMO_SECOND_ORDER));
+    }
+
+    public static PricingEngine getInstance() {
+        PricingEngine local = instance;
+        if (local == null) {
+            synchronized (PricingEngine.class) {
+                local = instance;
+                if (local == null) {
+                    local = new PricingEngine();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * Rental days billed for [pickup, return): started 24-hour periods, at least one
+     */
+    public static int rentalDays(LocalDateTime pickupTime, LocalDateTime returnTime) {
+        long hours = ChronoUnit.HOURS.between(pickupTime, returnTime);
+        return (int) Math.max(1, (hours + 23) / 24);
+    }
+
+    /**
+     * Price one rental. coupon may be null; it only counts when enabled (status 1).
+     */
+    public Quote quote(Vehicle vehicle, LocalDateTime pickupTime, LocalDateTime returnTime,
+            String insuranceType, boolean oneWay, Coupon coupon, Customer customer) {
+        quotes.incrementAndGet();
+        int days = rentalDays(pickupTime, returnTime);
+        long rental = rentalCents(vehicle, days);
+        Long insuranceDaily = insuranceType != null ? insurancePerDay.get(insuranceType) : null;
+        long insurance = insuranceDaily != null ? insuranceDaily * days : 0;
+        long service = oneWay ? oneWayFee : 0;
+
+        Promotion best = null;
+        long promotionDiscount = 0;
+        for (Promotion promotion : promotions) {
+            long discount = Math.min(rental, promotion.discount(rental, days, pickupTime, customer));
+            if (discount > promotionDiscount) {
+                promotionDiscount = discount;
+                best = promotion;
+            }
+        }
+        long couponDiscount = Math.min(rental - promotionDiscount, couponCents(coupon, rental - promotionDiscount));
+
+        BigDecimal deposit = vehicle.getDeposit() != null ? vehicle.getDeposit() : BigDecimal.ZERO;
+        return new Quote(days, vehicle.getDailyPrice(), rental, deposit, insurance, service,
+            promotionDiscount, couponDiscount, best);
+    }
+
+    /**
+     * Quote a list of vehicles for the same period and options, keyed by vehicle id in
+     * list order; vehicles without a daily price are left out. The pickup store defaults
+     * to each vehicle's own store and the return store to the pickup store.
+     *
+     * Lists longer than app.pricing.bulk.chunkSize are split into chunks priced on the
+     * bulk worker pool, no more chunks than workers; the caller prices the first chunk
+     * and then runs any chunk no worker has started yet, so a busy pool only costs
+     * parallelism.
+     */
+    public Map<Long, Quote> quoteAll(List<Vehicle> vehicles, LocalDateTime pickupTime, LocalDateTime returnTime,
+            String insuranceType, Long pickupStoreId, Long returnStoreId, Coupon coupon, Customer customer) {
+        bulkRequests.incrementAndGet();
+        int size = vehicles.size();
+        Quote[] results = new Quote[size];
+        int chunks = Math.min(bulkThreads, (size + bulkChunkSize - 1) / bulkChunkSize);
+        if (chunks > 1) {
+            int step = (size + chunks - 1) / chunks;
+            List<FutureTask<Void>> forked = new ArrayList<>();
+            for (int from = step; from < size; from += step) {
+                int start = from;
+                int end = Math.min(size, from + step);
+                FutureTask<Void> task = new FutureTask<>(() -> quoteRange(results, vehicles, start, end,
+                    pickupTime, returnTime, insuranceType, pickupStoreId, returnStoreId, coupon, customer), null);
+                forked.add(task);
+                try {
+                    workers().execute(task);
+                    forkedChunks.incrementAndGet();
+                } catch (RejectedExecutionException e) {
+                    // Left for the caller below
+                }
+            }
+            quoteRange(results, vehicles, 0, step, pickupTime, returnTime, insuranceType,
+                pickupStoreId, returnStoreId, coupon, customer);
+            for (FutureTask<Void> task : forked) {
+                // No-op if a worker already took it; otherwise the caller runs it now
+                task.run();
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Bulk quote failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Bulk quote interrupted", e);
+                }
+            }
+        } else {
+            quoteRange(results, vehicles, 0, size, pickupTime, returnTime, insuranceType,
+                pickupStoreId, returnStoreId, coupon, customer);
+        }
+
+        Map<Long, Quote> result = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (results[i] != null) {
+                result.put(vehicles.get(i).getId(), results[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether a promotion type is active, so listings show only what is applied
+     */
+    public boolean isPromotionEnabled(String type) {
+        return promotion(type) != null;
+    }
+
+    /**
+     * Display title of an enabled promotion, built from its configured values; null when disabled
+     */
+    public String promotionTitle(String type) {
+        Promotion promotion = promotion(type);
+        return promotion != null ? promotion.title : null;
+    }
+
+    /**
+     * One-line description of an enabled promotion; null when disabled
+     */
+    public String promotionDescription(String type) {
+        Promotion promotion = promotion(type);
+        return promotion != null ? promotion.description : null;
+    }
+
+    private Promotion promotion(String type) {
+        for (Promotion promotion : promotions) {
+            if (promotion.type.equals(type)) {
+                return promotion;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stop the bulk worker pool if it was ever started
+     */
+    public static void shutdownIfStarted() {
+        PricingEngine local = instance;
+        if (local != null && local.workers != null) {
+            local.workers.shutdownNow();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("quotes", quotes.get());
+        stats.put("rateTables", rateTables.size());
+        stats.put("tableDays", tableDays);
+        stats.put("bulkRequests", bulkRequests.get());
+        stats.put("forkedChunks", forkedChunks.get());
+        List<String> types = new ArrayList<>();
+        for (Promotion promotion : promotions) {
+            types.add(promotion.type);
+        }
+        stats.put("promotions", types);
+        return stats;
+    }
+
+    private void quoteRange(Quote[] target, List<Vehicle> vehicles, int from, int to,
+            LocalDateTime pickupTime, LocalDateTime returnTime, String insuranceType,
+            Long pickupStoreId, Long returnStoreId, Coupon coupon, Customer customer) {
+        for (int i = from; i < to; i++) {
+            Vehicle vehicle = vehicles.get(i);
+            if (vehicle == null || vehicle.getDailyPrice() == null) {
+                continue;
+            }
+            Long pickup = pickupStoreId != null ? pickupStoreId : vehicle.getStoreId();
+            Long dropOff = returnStoreId != null ? returnStoreId : pickup;
+            target[i] = quote(vehicle, pickupTime, returnTime, insuranceType,
+                !Objects.equals(pickup, dropOff), coupon, customer);
+        }
+    }
+
+    private ThreadPoolExecutor workers() {
+        ThreadPoolExecutor local = workers;
+        if (local == null) {
+            synchronized (this) {
+                local = workers;
+                if (local == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    local = new ThreadPoolExecutor(bulkThreads, bulkThreads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(bulkThreads * 4), r -> {
+                            Thread t = new Thread(r, "pricing-" + counter.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+                    local.allowCoreThreadTimeOut(true);
+                    workers = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    private long rentalCents(Vehicle vehicle, int days) {
+        RatePlan plan = new RatePlan(toCents(vehicle.getDailyPrice()), optionalCents(vehicle.getWeeklyPrice()),
+            optionalCents(vehicle.getMonthlyPrice()));
+        long[] table = rateTables.get(plan);
+        if (table == null) {
+            table = rateTables.computeIfAbsent(plan, this::buildTable);
+        }
+        if (days < table.length) {
+            return table[days];
+        }
+        // Past the table, add whole months (or 30 days at the best rate) to a tabled remainder
+        int months = (days - table.length) / 30 + 1;
+        return table[days - months * 30] + months * table[30];
+    }
+
+    /**
+     * Cheapest price for 0..tableDays days using 1-, 7- and 30-day rates. A longer block
+     * may cover fewer days (a week can be cheaper than six single days), so each entry
+     * is also capped by the entries after it.
+     */
+    private long[] buildTable(RatePlan plan) {
+        int size = tableDays + 1;
+        int reach = size + 30;
+        long[] cost = new long[reach];
+        for (int n = 1; n < reach; n++) {
+            long best = cost[n - 1] + plan.daily;
+            if (plan.weekly > 0 && n >= 7) {
+                best = Math.min(best, cost[n - 7] + plan.weekly);
+            }
+            if (plan.monthly > 0 && n >= 30) {
+                best = Math.min(best, cost[n - 30] + plan.monthly);
+            }
+            cost[n] = best;
+        }
+        for (int n = reach - 2; n >= 1; n--) {
+            cost[n] = Math.min(cost[n], cost[n + 1]);
+        }
+        long[] table = new long[size];
+        System.arraycopy(cost, 0, table, 0, size);
+        return table;
+    }
+
+    /**
+     * Coupon discount in cents against the rental amount: 1 = amount off above a minimum,
+     * 2 = rate (e.g. 0.9 for 10% off) with an optional cap, 3 = fixed amount
+     */
+    private static long couponCents(Coupon coupon, long rental) {
+        if (coupon == null || coupon.getStatus() == null || coupon.getStatus() != 1 || coupon.getType() == null) {
+            return 0;
+        }
+        switch (coupon.getType()) {
+            case 1:
+                long min = optionalCents(coupon.getMinAmount());
+                return rental >= min ? optionalCents(coupon.getDiscountAmount()) : 0;
+            case 2:
+                if (coupon.getDiscountRate() == null) {
+                    return 0;
+                }
+                long discount = applyRate(rental, BigDecimal.ONE.subtract(coupon.getDiscountRate()));
+                long cap = optionalCents(coupon.getMaxDiscount());
+                return cap > 0 ? Math.min(discount, cap) : discount;
+            case 3:
+                return optionalCents(coupon.getDiscountAmount());
+            default:
+                return 0;
+        }
+    }
+
+    private static List<Promotion> compilePromotions(String config) {
+        List<Promotion> list = new ArrayList<>();
+        for (String raw : config.split(",")) {
+            String type = raw.trim().toLowerCase(Locale.ROOT);
+            switch (type) {
+                case PROMO_NEW_USER:
+                    BigDecimal newUserAmount = new BigDecimal(DatabaseUtil.getProperty("app.pricing.promo.newUser.amount", "50"));
+                    long amount = toCents(newUserAmount);
+                    String yuan = plain(newUserAmount);
+                    list.add(new Promotion(type, "首单立减" + yuan + "元", "新用户首单租车，立减" + yuan + "元") {
+                        @Override
+                        long discount(long rental, int days, LocalDateTime pickup, Customer customer) {
+                            return customer.previousOrders == 0 ? amount : 0;
+                        }
+                    });
+                    break;
+                case PROMO_WEEKEND:
+                    BigDecimal weekendRate = new BigDecimal(DatabaseUtil.getProperty("app.pricing.promo.weekend.rate", "0.8"));
+                    BigDecimal weekendOff = BigDecimal.ONE.subtract(weekendRate);
+                    list.add(new Promotion(type, "周末特惠" + zhe(weekendRate) + "折",
+                            "每周五至周日租车享" + zhe(weekendRate) + "折优惠") {
+                        @Override
+                        long discount(long rental, int days, LocalDateTime pickup, Customer customer) {
+                            int weekendDays = weekendDays(pickup.getDayOfWeek(), days);
+                            return weekendDays == 0 ? 0 : applyRate(rental * weekendDays / days, weekendOff);
+                        }
+                    });
+                    break;
+                case PROMO_LONG_TERM:
+                    int paidDays = Integer.parseInt(DatabaseUtil.getProperty("app.pricing.promo.longTerm.paidDays", "7"));
+                    int freeDays = Integer.parseInt(DatabaseUtil.getProperty("app.pricing.promo.longTerm.freeDays", "1"));
+                    list.add(new Promotion(type, "租" + paidDays + "天送" + freeDays + "天",
+                            "连续租车满" + paidDays + "天，赠送" + freeDays + "天免费用车") {
+                        @Override
+                        long discount(long rental, int days, LocalDateTime pickup, Customer customer) {
+                            int free = days / (paidDays + freeDays) * freeDays;
+                            return free == 0 ? 0 : rental * free / days;
+                        }
+                    });
+                    break;
+                case PROMO_SECOND_ORDER:
+                    BigDecimal secondRate = new BigDecimal(DatabaseUtil.getProperty("app.pricing.promo.secondOrder.rate", "0.5"));
+                    BigDecimal secondOff = BigDecimal.ONE.subtract(secondRate);
+                    String secondTitle = secondRate.compareTo(new BigDecimal("0.5")) == 0
+                        ? "第二单半价" : "第二单" + zhe(secondRate) + "折";
+                    list.add(new Promotion(type, secondTitle, "同月内第二次租车享" + zhe(secondRate) + "折优惠") {
+                        @Override
+                        long discount(long rental, int days, LocalDateTime pickup, Customer customer) {
+                            return customer.ordersThisMonth == 1 ? applyRate(rental, secondOff) : 0;
+                        }
+                    });
+                    break;
+                default:
+                    break;
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Rate as the Chinese discount figure, e.g. 0.8 -> "8", 0.85 -> "8.5"
+     */
+    private static String zhe(BigDecimal rate) {
+        return plain(rate.movePointRight(1));
+    }
+
+    private static String plain(BigDecimal value) {
+        return value.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Billing days falling on Friday to Sunday, for a rental starting on first
+     */
+    private static int weekendDays(DayOfWeek first, int days) {
+        int count = days / 7 * 3;
+        int start = first.getValue() - 1;
+        for (int i = 0; i < days % 7; i++) {
+            if ((start + i) % 7 >= 4) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long applyRate(long cents, BigDecimal rate) {
+        return BigDecimal.valueOf(cents).multiply(rate).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    private static long optionalCents(BigDecimal amount) {
+        return amount != null && amount.signum() > 0 ? toCents(amount) : 0;
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
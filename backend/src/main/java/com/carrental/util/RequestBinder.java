@@ -0,0 +1,47 @@
+package com.carrental.util;
+
+import com.carrental.dto.Validatable;
+import com.google.gson.JsonParseException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Binds JSON request bodies to typed request classes.
+ *
+ * Gson builds one adapter per request class and caches it, and numeric fields are
+ * read straight into their declared types, so no generic map or boxed Double is
+ * created per value.
+ */
+public final class RequestBinder {
+
+    private RequestBinder() {}
+
+    /**
+     * Parse and validate the body. On failure a 400 error has already been written
+     * and null is returned, so callers simply return.
+     */
+    public static <T> T bind(HttpServletRequest request, HttpServletResponse response, Class<T> type)
+            throws IOException {
+        T body;
+        try {
+            body = JsonUtil.fromJson(request, type);
+        } catch (JsonParseException | NumberFormatException e) {
+            JsonUtil.writeError(response, 400, "请求参数格式错误");
+            return null;
+        }
+        if (body == null) {
+            JsonUtil.writeError(response, 400, "请求体不能为空");
+            return null;
+        }
+        if (body instanceof Validatable) {
+            String error = ((Validatable) body).validate();
+            if (error != null) {
+                JsonUtil.writeError(response, 400, error);
+                return null;
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,31 @@
+package com.carrental.util;
+
+import com.carrental.dao.DataLoader;
+import jakarta.servlet.ServletRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Request-scoped registry of DataLoaders, stored as a request attribute so every
+ * helper touched while handling one request shares the same batches.
+ */
+public final class RequestLoaders {
+    private static final String ATTRIBUTE = RequestLoaders.class.getName();
+
+    private RequestLoaders() {}
+
+    /**
+     * The loader registered under name for this request, created on first use
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> DataLoader<V> get(ServletRequest request, String name, Supplier<DataLoader<V>> factory) {
+        Map<String, DataLoader<?>> loaders = (Map<String, DataLoader<?>>) request.getAttribute(ATTRIBUTE);
+        if (loaders == null) {
+            loaders = new HashMap<>();
+            request.setAttribute(ATTRIBUTE, loaders);
+        }
+        return (DataLoader<V>) loaders.computeIfAbsent(name, k -> factory.get());
+    }
+}
@@ -0,0 +1,136 @@
+package com.carrental.util;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-servlet route table matched against request.getPathInfo().
+ *
+ * Patterns are split into segments and stored in a trie, e.g. "/detail/{id}" is a
+ * literal node "detail" followed by a parameter node bound to "id". Literal segments
+ * take precedence over parameters. Matching walks the path once, so lookup cost
+ * depends on the path length rather than on the number of routes. A null or "/"
+ * pathInfo matches the root pattern "/". Tables are filled once when the servlet is
+ * created and only read afterwards.
+ */
+public class RouteTable {
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(HttpServletRequest request, HttpServletResponse response, Map<String, String> params)
+                throws ServletException, IOException;
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        final Map<String, Handler> handlers = new HashMap<>();
+        Node param;
+        String paramName;
+    }
+
+    private final Node root = new Node();
+
+    public RouteTable get(String pattern, Handler handler) {
+        return add("GET", pattern, handler);
+    }
+
+    public RouteTable post(String pattern, Handler handler) {
+        return add("POST", pattern, handler);
+    }
+
+    public RouteTable put(String pattern, Handler handler) {
+        return add("PUT", pattern, handler);
+    }
+
+    public RouteTable delete(String pattern, Handler handler) {
+        return add("DELETE", pattern, handler);
+    }
+
+    public RouteTable add(String method, String pattern, Handler handler) {
+        Node node = root;
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                String name = segment.substring(1, segment.length() - 1);
+                if (node.param == null) {
+                    node.param = new Node();
+                    node.paramName = name;
+                } else if (!node.paramName.equals(name)) {
+                    throw new IllegalArgumentException("Conflicting parameter names at " + pattern);
+                }
+                node = node.param;
+            } else {
+                node = node.children.computeIfAbsent(segment, k -> new Node());
+            }
+        }
+        if (node.handlers.putIfAbsent(method, handler) != null) {
+            throw new IllegalArgumentException("Duplicate route " + method + " " + pattern);
+        }
+        return this;
+    }
+
+    /**
+     * Run the handler for the request's method and pathInfo, or write a 404 error.
+     *
+     * @return false when no route matched
+     */
+    public boolean dispatch(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String path = request.getPathInfo();
+        Map<String, String> params = new HashMap<>(4);
+        Node node = match(root, path == null ? "" : path, 0, params);
+        Handler handler = null;
+        if (node != null) {
+            String method = request.getMethod();
+            handler = node.handlers.get("HEAD".equals(method) ? "GET" : method);
+        }
+        if (handler == null) {
+            JsonUtil.writeError(response, 404, "接口不存在");
+            return false;
+        }
+        handler.handle(request, response, params.isEmpty() ? Collections.emptyMap() : params);
+        return true;
+    }
+
+    /**
+     * Match path[from..] below node, trying the literal child before the parameter child
+     */
+    private static Node match(Node node, String path, int from, Map<String, String> params) {
+        int start = from;
+        while (start < path.length() && path.charAt(start) == '/') {
+            start++;
+        }
+        if (start >= path.length()) {
+            return node.handlers.isEmpty() ? null : node;
+        }
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        }
+        String segment = path.substring(start, end);
+
+        Node literal = node.children.get(segment);
+        if (literal != null) {
+            Node found = match(literal, path, end, params);
+            if (found != null) {
+                return found;
+            }
+        }
+        if (node.param != null) {
+            Node found = match(node.param, path, end, params);
+            if (found != null) {
+                params.put(node.paramName, segment);
+                return found;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,97 @@
+package com.carrental.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte-bounded LRU of small static files, keyed by path.
+ *
+ * An entry is only returned while the file still has the size and modification time
+ * it had when it was read, so replaced uploads are picked up on the next request
+ * without any invalidation hook. Files above maxFileBytes are never cached; those
+ * are streamed from disk by the caller.
+ */
+public class StaticFileCache {
+
+    private final long maxBytes;
+    private final long maxFileBytes;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class Entry {
+        final byte[] content;
+        final long lastModified;
+
+        Entry(byte[] content, long lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+    }
+
+    public StaticFileCache(long maxBytes, long maxFileBytes) {
+        this.maxBytes = maxBytes;
+        this.maxFileBytes = Math.min(maxFileBytes, maxBytes);
+    }
+
+    /**
+     * Content of file if it is small enough to cache, otherwise null
+     *
+     * @param size         current size of the file
+     * @param lastModified current modification time of the file
+     */
+    public byte[] get(Path file, long size, long lastModified) throws IOException {
+        if (size > maxFileBytes) {
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(file);
+            if (entry != null && entry.lastModified == lastModified && entry.content.length == size) {
+                hits.incrementAndGet();
+                return entry.content;
+            }
+        }
+        misses.incrementAndGet();
+        byte[] content = Files.readAllBytes(file);
+        if (content.length != size) {
+            // Changed while reading; serve it but don't cache a torn version
+            return content;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(file, new Entry(content, lastModified));
+            if (previous != null) {
+                totalBytes -= previous.content.length;
+            }
+            totalBytes += content.length;
+            Iterator<Entry> it = entries.values().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                totalBytes -= it.next().content.length;
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Counters for monitoring
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
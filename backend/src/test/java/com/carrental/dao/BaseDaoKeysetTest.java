@@ -0,0 +1,124 @@
+package com.carrental.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BaseDaoKeysetTest {
+
+    private static final class Row {
+        final LocalDateTime createdAt;
+        final Long id;
+
+        Row(LocalDateTime createdAt, Long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Records the statement instead of running it and answers with canned rows
+     */
+    private static final class CapturingDao extends BaseDao<Row> {
+        String sql;
+        List<Object> params;
+        List<Row> rows = new ArrayList<>();
+
+        @Override
+        protected Row mapRow(ResultSet rs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected List<Row> executeQuery(String sql, Object... params) {
+            this.sql = sql;
+            this.params = Arrays.asList(params);
+            return new ArrayList<>(rows);
+        }
+
+        CursorPage<Row> page(String where, List<Object> params, String alias, PageCursor cursor, int pageSize) {
+            return executeKeysetQuery(new StringBuilder(where), params, alias, cursor, pageSize,
+                r -> r.createdAt, r -> r.id);
+        }
+    }
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Test
+    void firstPageHasNoKeysetPredicate() {
+        CapturingDao dao = new CapturingDao();
+        dao.page("SELECT * FROM orders WHERE user_id = ?", List.of(7L), "", null, 10);
+
+        assertEquals("SELECT * FROM orders WHERE user_id = ? ORDER BY created_at DESC, id DESC LIMIT ?", dao.sql);
+        assertEquals(List.of(7L, 11), dao.params);
+    }
+
+    @Test
+    void laterPagesSeekPastTheCursorWithTieBreakOnId() {
+        CapturingDao dao = new CapturingDao();
+        dao.page("SELECT v.* FROM vehicles v WHERE 1=1", new ArrayList<>(), "v.", new PageCursor(T0, 42), 20);
+
+        assertEquals("SELECT v.* FROM vehicles v WHERE 1=1"
+            + " AND (v.created_at < ? OR (v.created_at = ? AND v.id < ?))"
+            + " ORDER BY v.created_at DESC, v.id DESC LIMIT ?", dao.sql);
+        assertEquals(List.of(T0, T0, 42L, 21), dao.params);
+    }
+
+    @Test
+    void callerParamsAreNotModified() {
+        CapturingDao dao = new CapturingDao();
+        List<Object> params = new ArrayList<>(List.of("x"));
+        dao.page("SELECT * FROM t WHERE a = ?", params, "", new PageCursor(T0, 1), 5);
+
+        assertEquals(List.of("x"), params);
+    }
+
+    @Test
+    void extraRowYieldsCursorOfLastReturnedRow() {
+        CapturingDao dao = new CapturingDao();
+        for (int i = 0; i < 4; i++) {
+            dao.rows.add(new Row(T0.minusMinutes(i), 100L - i));
+        }
+        CursorPage<Row> page = dao.page("SELECT * FROM t WHERE 1=1", new ArrayList<>(), "", null, 3);
+
+        assertEquals(3, page.getList().size());
+        PageCursor next = PageCursor.decode(page.getNextCursor());
+        assertNotNull(next);
+        assertEquals(T0.minusMinutes(2), next.getCreatedAt());
+        assertEquals(98L, next.getId());
+    }
+
+    @Test
+    void shortPageEndsTheListing() {
+        CapturingDao dao = new CapturingDao();
+        dao.rows.add(new Row(T0, 1L));
+        CursorPage<Row> page = dao.page("SELECT * FROM t WHERE 1=1", new ArrayList<>(), "", null, 3);
+
+        assertEquals(1, page.getList().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void cursorRoundTripsAndRejectsGarbage() {
+        PageCursor cursor = new PageCursor(T0, 9);
+        PageCursor decoded = PageCursor.decode(cursor.encode());
+        assertEquals(T0, decoded.getCreatedAt());
+        assertEquals(9L, decoded.getId());
+
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(" "));
+        assertNull(PageCursor.decode("not-a-cursor"));
+        assertFalse(cursor.encode().contains("="));
+        assertTrue(cursor.encode().matches("[A-Za-z0-9_-]+"));
+    }
+}
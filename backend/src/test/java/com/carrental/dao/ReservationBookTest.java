@@ -0,0 +1,134 @@
+package com.carrental.dao;
+
+import com.carrental.dao.ReservationBook.Reservation;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reservations start ten days out, since the book drops anything that has already ended
+ */
+class ReservationBookTest {
+
+    private final LocalDateTime day = LocalDateTime.now().plusDays(10).truncatedTo(ChronoUnit.DAYS);
+    private final ReservationBook book = new ReservationBook();
+
+    private LocalDateTime at(long days) {
+        return day.plusDays(days);
+    }
+
+    private void load(Reservation... reservations) {
+        assertTrue(book.ensureLoaded(() -> new ArrayList<>(List.of(reservations)), 0));
+    }
+
+    private Long conflictId(Long vehicleId, LocalDateTime start, LocalDateTime end) {
+        Reservation conflict = book.findConflict(vehicleId, start, end);
+        return conflict != null ? conflict.getOrderId() : null;
+    }
+
+    @Test
+    void overlappingRangesConflictAndTouchingOnesDoNot() {
+        load(new Reservation(1L, 7L, at(2), at(4)));
+
+        assertEquals(1L, conflictId(7L, at(3), at(5)));
+        assertEquals(1L, conflictId(7L, at(1), at(3)));
+        assertEquals(1L, conflictId(7L, at(1), at(6)));
+        assertEquals(1L, conflictId(7L, at(2).plusHours(6), at(3)));
+        assertNull(conflictId(7L, at(4), at(6)));
+        assertNull(conflictId(7L, at(0), at(2)));
+        assertNull(conflictId(8L, at(2), at(4)));
+    }
+
+    @Test
+    void onlyTheNeighbourBeforeTheEndIsConsulted() {
+        load(new Reservation(1L, 7L, at(0), at(1)),
+            new Reservation(2L, 7L, at(3), at(4)),
+            new Reservation(3L, 7L, at(6), at(8)));
+
+        assertNull(conflictId(7L, at(1), at(3)));
+        assertNull(conflictId(7L, at(4), at(6)));
+        assertEquals(2L, conflictId(7L, at(2), at(5)));
+        assertEquals(3L, conflictId(7L, at(5), at(9)));
+        assertEquals(3L, conflictId(7L, at(7), at(20)));
+    }
+
+    @Test
+    void legacyOverlapsFallBackToAScan() {
+        // Order 2 sits inside order 1, so the last one starting before the probe is not the clash
+        load(new Reservation(1L, 7L, at(0), at(5)),
+            new Reservation(2L, 7L, at(1), at(2)));
+
+        assertEquals(1L, conflictId(7L, at(3), at(4)));
+        assertNull(conflictId(7L, at(5), at(6)));
+    }
+
+    @Test
+    void addedReservationsBlockAndReleasedOnesFree() {
+        load();
+        book.add(new Reservation(10L, 7L, at(1), at(3)));
+        assertEquals(10L, conflictId(7L, at(2), at(4)));
+        assertTrue(book.hasReservations(7L));
+
+        book.release(10L);
+        assertNull(conflictId(7L, at(2), at(4)));
+        assertFalse(book.hasReservations(7L));
+        book.release(10L);
+        book.release(99L);
+        assertEquals(1L, book.getStats().get("released"));
+    }
+
+    @Test
+    void addingAnOrderAgainMovesIt() {
+        load(new Reservation(1L, 7L, at(1), at(2)));
+        book.add(new Reservation(1L, 7L, at(5), at(6)));
+
+        assertNull(conflictId(7L, at(1), at(2)));
+        assertEquals(1L, conflictId(7L, at(5), at(6)));
+        assertEquals(1, book.getStats().get("reservations"));
+    }
+
+    @Test
+    void reservedVehiclesListsThoseTakenDuringTheRange() {
+        load(new Reservation(1L, 7L, at(1), at(3)),
+            new Reservation(2L, 8L, at(3), at(5)),
+            new Reservation(3L, 9L, at(10), at(11)));
+
+        assertEquals(Set.of(7L, 8L), book.reservedVehicles(at(2), at(4)));
+        assertEquals(Set.of(8L), book.reservedVehicles(at(3), at(10)));
+        assertEquals(Set.of(), book.reservedVehicles(at(5), at(10)));
+    }
+
+    @Test
+    void reservationsThatHaveEndedAreDropped() {
+        LocalDateTime now = LocalDateTime.now();
+        load(new Reservation(1L, 7L, now.minusDays(3), now.minusDays(1)));
+
+        assertEquals(1, book.getStats().get("reservations"));
+        assertFalse(book.hasReservations(7L));
+        assertEquals(0, book.getStats().get("reservations"));
+    }
+
+    @Test
+    void nothingIsRecordedUntilTheBookHasLoaded() {
+        book.add(new Reservation(1L, 7L, at(1), at(2)));
+        assertNull(conflictId(7L, at(1), at(2)));
+
+        assertFalse(book.ensureLoaded(() -> {
+            throw new IllegalStateException("database down");
+        }, 0));
+        assertFalse(book.ensureLoaded(() -> null, 0));
+        assertEquals(false, book.getStats().get("loaded"));
+
+        load(new Reservation(2L, 7L, at(1), at(2)));
+        assertEquals(2L, conflictId(7L, at(1), at(2)));
+    }
+}
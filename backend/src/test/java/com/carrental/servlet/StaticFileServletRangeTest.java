@@ -0,0 +1,58 @@
+package com.carrental.servlet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StaticFileServletRangeTest {
+
+    private static final long SIZE = 1000;
+
+    private static void assertRange(String header, long start, long end) {
+        assertArrayEquals(new long[]{start, end}, StaticFileServlet.parseRange(header, SIZE), header);
+    }
+
+    private static void assertWholeFile(String header) {
+        assertArrayEquals(new long[0], StaticFileServlet.parseRange(header, SIZE), header);
+    }
+
+    @Test
+    void closedRange() {
+        assertRange("bytes=0-499", 0, 499);
+        assertRange("bytes=500-999", 500, 999);
+        assertRange("bytes= 10 - 19 ", 10, 19);
+    }
+
+    @Test
+    void openEndedRangeRunsToTheLastByte() {
+        assertRange("bytes=900-", 900, 999);
+    }
+
+    @Test
+    void endPastTheFileIsClamped() {
+        assertRange("bytes=990-5000", 990, 999);
+    }
+
+    @Test
+    void suffixRangeServesTheLastBytes() {
+        assertRange("bytes=-100", 900, 999);
+        assertRange("bytes=-5000", 0, 999);
+    }
+
+    @Test
+    void unsatisfiableRangesReturnNull() {
+        assertNull(StaticFileServlet.parseRange("bytes=1000-", SIZE));
+        assertNull(StaticFileServlet.parseRange("bytes=2000-3000", SIZE));
+        assertNull(StaticFileServlet.parseRange("bytes=-0", SIZE));
+    }
+
+    @Test
+    void unsupportedOrInvalidHeadersServeTheWholeFile() {
+        assertWholeFile("items=0-10");
+        assertWholeFile("bytes=0-10,20-30");
+        assertWholeFile("bytes=abc");
+        assertWholeFile("bytes=x-10");
+        assertWholeFile("bytes=50-10");
+    }
+}
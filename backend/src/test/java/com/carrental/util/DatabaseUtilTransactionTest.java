@@ -0,0 +1,152 @@
+package com.carrental.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs inTransaction on a fake connection that records the calls it receives
+ */
+class DatabaseUtilTransactionTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private final Connection connection = (Connection) Proxy.newProxyInstance(
+        Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            String name = method.getName();
+            calls.add(name.equals("setAutoCommit") ? name + "(" + args[0] + ")" : name);
+            if (method.getReturnType() == boolean.class) {
+                return false;
+            }
+            return null;
+        });
+
+    @Test
+    void commitsWhenWorkReturns() throws SQLException {
+        String result = DatabaseUtil.inTransaction(connection, () -> {
+            assertTrue(DatabaseUtil.isInTransaction());
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(List.of("setAutoCommit(false)", "commit", "setAutoCommit(true)", "close"), calls);
+        assertFalse(DatabaseUtil.isInTransaction());
+    }
+
+    @Test
+    void rollsBackWhenWorkThrows() {
+        SQLException failure = new SQLException("duplicate key");
+        SQLException thrown = assertThrows(SQLException.class,
+            () -> DatabaseUtil.inTransaction(connection, () -> {
+                throw failure;
+            }));
+
+        assertSame(failure, thrown);
+        assertEquals(List.of("setAutoCommit(false)", "rollback", "setAutoCommit(true)", "close"), calls);
+        assertFalse(DatabaseUtil.isInTransaction());
+    }
+
+    @Test
+    void rollsBackOnRuntimeExceptions() {
+        assertThrows(IllegalStateException.class, () -> DatabaseUtil.inTransaction(connection, () -> {
+            throw new IllegalStateException("bug");
+        }));
+
+        assertTrue(calls.contains("rollback"));
+        assertFalse(calls.contains("commit"));
+    }
+
+    @Test
+    void setRollbackOnlyRollsBackWithoutAnException() throws SQLException {
+        Integer result = DatabaseUtil.inTransaction(connection, () -> {
+            DatabaseUtil.setRollbackOnly();
+            return 42;
+        });
+
+        assertEquals(42, result);
+        assertTrue(calls.contains("rollback"));
+        assertFalse(calls.contains("commit"));
+    }
+
+    @Test
+    void failureSwallowedByADaoIsRethrown() {
+        SQLException swallowed = new SQLException("lock wait timeout");
+        SQLException thrown = assertThrows(SQLException.class,
+            () -> DatabaseUtil.inTransaction(connection, () -> {
+                DatabaseUtil.markFailed(swallowed);
+                DatabaseUtil.markFailed(new SQLException("later"));
+                return 1;
+            }));
+
+        assertSame(swallowed, thrown);
+        assertTrue(calls.contains("rollback"));
+        assertFalse(calls.contains("commit"));
+    }
+
+    @Test
+    void afterCommitRunsOnlyOnceCommittedAndAfterTheConnectionIsClosed() throws SQLException {
+        DatabaseUtil.inTransaction(connection, () -> {
+            DatabaseUtil.afterCommit(() -> calls.add("afterCommit"));
+            DatabaseUtil.afterCompletion(() -> calls.add("afterCompletion"));
+            return null;
+        });
+        // Cache invalidations (afterCompletion) run before anything that may reload a row
+        assertEquals(List.of("setAutoCommit(false)", "commit", "setAutoCommit(true)", "close",
+            "afterCompletion", "afterCommit"), calls);
+
+        calls.clear();
+        DatabaseUtil.inTransaction(connection, () -> {
+            DatabaseUtil.afterCommit(() -> calls.add("afterCommit"));
+            DatabaseUtil.afterCompletion(() -> calls.add("afterCompletion"));
+            DatabaseUtil.setRollbackOnly();
+            return null;
+        });
+        assertEquals(List.of("setAutoCommit(false)", "rollback", "setAutoCommit(true)", "close",
+            "afterCompletion"), calls);
+    }
+
+    @Test
+    void afterCommitOutsideATransactionRunsRightAway() {
+        DatabaseUtil.afterCommit(() -> calls.add("afterCommit"));
+        DatabaseUtil.afterCompletion(() -> calls.add("afterCompletion"));
+
+        assertEquals(List.of("afterCommit"), calls);
+    }
+
+    @Test
+    void nestedCallsJoinAndCannotEndTheOuterTransaction() throws SQLException {
+        DatabaseUtil.inTransaction(connection, () -> DatabaseUtil.inTransaction(() -> {
+            Connection shared = DatabaseUtil.getConnection();
+            shared.setAutoCommit(true);
+            shared.commit();
+            shared.close();
+            shared.rollback();
+            return null;
+        }));
+
+        assertEquals(List.of("setAutoCommit(false)", "commit", "setAutoCommit(true)", "close"), calls);
+    }
+
+    @Test
+    void failureInANestedCallRollsBackTheWholeTransaction() {
+        assertThrows(SQLException.class, () -> DatabaseUtil.inTransaction(connection, () -> {
+            DatabaseUtil.inTransaction(() -> {
+                DatabaseUtil.markFailed(new SQLException("inner write failed"));
+                return null;
+            });
+            return null;
+        }));
+
+        assertTrue(calls.contains("rollback"));
+        assertFalse(calls.contains("commit"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.carrental.util;
+
+import com.carrental.dto.OrderCreateRequest;
+import com.carrental.model.Vehicle;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streamed JSON responses and request bodies against the string-building code they
+ * replaced (a HashMap envelope serialized to one String, a body concatenated line by
+ * line before parsing). Responses are encoded as UTF-8 into a discarding stream and
+ * the request body is an order-create payload.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JsonUtilBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonUtilBenchmark {
+
+    /** Rows in the listed page */
+    @Param({"20", "200"})
+    public int rows;
+
+    private List<Vehicle> page;
+    private String body;
+    private HttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        page = new ArrayList<>(rows);
+        for (long id = 1; id <= rows; id++) {
+            page.add(vehicle(id));
+        }
+        body = "{\"vehicleId\": 12, \"pickupStoreId\": 3, \"returnStoreId\": 5,"
+            + " \"pickupTime\": \"2025-05-01 10:00:00\", \"returnTime\": \"2025-05-04 10:00:00\","
+            + " \"insuranceType\": \"premium\", \"addServices\": [\"child_seat\", \"gps\"],"
+            + " \"couponId\": 88, \"deliveryAddress\": \"朝阳区建国路88号\", \"deliveryCity\": \"北京\","
+            + " \"deliveryDistrict\": \"朝阳区\", \"deliveryLng\": 116.4612, \"deliveryLat\": 39.9087}";
+        // Container writers are buffered, so small writes do not each reach the encoder
+        response = (HttpServletResponse) Proxy.newProxyInstance(
+            HttpServletResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class},
+            (p, method, args) -> "getWriter".equals(method.getName())
+                ? new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8), 8192))
+                : null);
+    }
+
+    @Benchmark
+    public void writePaginatedStreamed() throws IOException {
+        JsonUtil.writePaginated(response, page, 1, rows, 1000);
+    }
+
+    @Benchmark
+    public void writePaginatedViaString() throws IOException {
+        Map<String, Object> result = new HashMap<>();
+        result.put("code", 200);
+        result.put("message", "success");
+        Map<String, Object> pagination = new HashMap<>();
+        pagination.put("list", page);
+        pagination.put("page", 1);
+        pagination.put("pageSize", rows);
+        pagination.put("total", 1000L);
+        pagination.put("totalPages", (int) Math.ceil(1000.0 / rows));
+        result.put("data", pagination);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        try (PrintWriter writer = response.getWriter()) {
+            writer.write(JsonUtil.toJson(result));
+        }
+    }
+
+    @Benchmark
+    public OrderCreateRequest readBodyStreamed() throws IOException {
+        return JsonUtil.fromJson(request(), OrderCreateRequest.class);
+    }
+
+    @Benchmark
+    public OrderCreateRequest readBodyViaString() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader reader = request().getReader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line);
+            }
+        }
+        return JsonUtil.fromJson(sb.toString(), OrderCreateRequest.class);
+    }
+
+    private HttpServletRequest request() {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+            HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+            (p, method, args) -> new BufferedReader(new StringReader(body)));
+    }
+
+    private static Vehicle vehicle(long id) {
+        Vehicle v = new Vehicle();
+        v.setId(id);
+        v.setPlateNumber("京A" + (10000 + id));
+        v.setBrand("丰田");
+        v.setModel("凯美瑞");
+        v.setSeries("2.0L 豪华版");
+        v.setYear(2023);
+        v.setColor("白色");
+        v.setSeats(5);
+        v.setFuelType("汽油");
+        v.setTransmission("自动");
+        v.setCategory("中型车");
+        v.setStoreId(3L);
+        v.setStoreName("北京朝阳门店");
+        v.setStoreCity("北京");
+        v.setDailyPrice(new BigDecimal("268.00"));
+        v.setWeeklyPrice(new BigDecimal("1580.00"));
+        v.setDeposit(new BigDecimal("3000.00"));
+        v.setMileage(18500);
+        v.setStatus(1);
+        v.setMainImage("/uploads/vehicle/ab/cd/abcdef0123456789.jpg");
+        v.setFeatures("[\"蓝牙\",\"倒车影像\",\"定速巡航\"]");
+        v.setDescription("车况良好，定期保养，适合商务出行和家庭自驾。");
+        v.setInsuranceExpiry(LocalDate.of(2026, 12, 31));
+        v.setRating(new BigDecimal("4.8"));
+        v.setIsHot(id % 3 == 0);
+        v.setCreatedAt(LocalDateTime.of(2024, 5, 1, 9, 30).plusMinutes(id));
+        return v;
+    }
+}
@@ -0,0 +1,85 @@
+package com.carrental.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonUtilTest {
+
+    @Test
+    void successEnvelopeWrapsData() throws Exception {
+        ServletStubs.CapturedResponse resp = new ServletStubs.CapturedResponse();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", 5);
+        data.put("at", LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+        JsonUtil.writeSuccess(resp.proxy, data);
+
+        assertEquals("{\"code\":200,\"message\":\"success\",\"data\":{\"id\":5,\"at\":\"2024-01-02 03:04:05\"}}",
+            resp.body.toString());
+        assertEquals("application/json", resp.calls.get("setContentType"));
+        assertEquals("UTF-8", resp.calls.get("setCharacterEncoding"));
+    }
+
+    @Test
+    void errorSetsStatusAndOmitsData() throws Exception {
+        ServletStubs.CapturedResponse resp = new ServletStubs.CapturedResponse();
+        JsonUtil.writeError(resp.proxy, 404, "订单不存在");
+
+        assertEquals(404, resp.calls.get("setStatus"));
+        assertEquals("{\"code\":404,\"message\":\"订单不存在\"}", resp.body.toString());
+    }
+
+    @Test
+    void nonHttpErrorCodesFallBackToBadRequestStatus() throws Exception {
+        ServletStubs.CapturedResponse resp = new ServletStubs.CapturedResponse();
+        JsonUtil.writeError(resp.proxy, 1001, "x");
+
+        assertEquals(400, resp.calls.get("setStatus"));
+        assertEquals("{\"code\":1001,\"message\":\"x\"}", resp.body.toString());
+    }
+
+    @Test
+    void paginatedEnvelopeCountsPages() throws Exception {
+        ServletStubs.CapturedResponse resp = new ServletStubs.CapturedResponse();
+        JsonUtil.writePaginated(resp.proxy, List.of("a", "b"), 2, 10, 21);
+
+        assertEquals("{\"code\":200,\"message\":\"success\",\"data\":{\"list\":[\"a\",\"b\"],"
+            + "\"page\":2,\"pageSize\":10,\"total\":21,\"totalPages\":3}}", resp.body.toString());
+    }
+
+    @Test
+    void lastCursorPageOmitsNextCursor() throws Exception {
+        ServletStubs.CapturedResponse more = new ServletStubs.CapturedResponse();
+        JsonUtil.writeCursorPage(more.proxy, List.of(1), 1, "abc");
+        assertEquals("{\"code\":200,\"message\":\"success\",\"data\":{\"list\":[1],"
+            + "\"pageSize\":1,\"nextCursor\":\"abc\",\"hasMore\":true}}", more.body.toString());
+
+        ServletStubs.CapturedResponse last = new ServletStubs.CapturedResponse();
+        JsonUtil.writeCursorPage(last.proxy, List.of(), 1, null);
+        assertEquals("{\"code\":200,\"message\":\"success\",\"data\":{\"list\":[],"
+            + "\"pageSize\":1,\"hasMore\":false}}", last.body.toString());
+    }
+
+    @Test
+    void outputIsHtmlSafe() throws Exception {
+        ServletStubs.CapturedResponse resp = new ServletStubs.CapturedResponse();
+        JsonUtil.writeSuccess(resp.proxy, "<script>");
+
+        assertEquals("{\"code\":200,\"message\":\"success\",\"data\":\"\\u003cscript\\u003e\"}", resp.body.toString());
+    }
+
+    @Test
+    void requestBodyIsParsedFromTheReader() throws Exception {
+        HttpServletRequest request = ServletStubs.jsonRequest("{\"username\":\"alice\",\"n\":3}");
+        Map<?, ?> body = JsonUtil.fromJson(request, Map.class);
+
+        assertEquals("alice", body.get("username"));
+        assertEquals(3.0, body.get("n"));
+    }
+}
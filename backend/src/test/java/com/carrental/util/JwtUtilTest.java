@@ -0,0 +1,69 @@
+package com.carrental.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * jwt.cache.maxEntries is 16 in the test properties
+ */
+class JwtUtilTest {
+
+    @Test
+    void verifiesClaimsOfAGeneratedToken() {
+        String token = JwtUtil.generateToken(1L, "alice", "user");
+        JwtUtil.TokenClaims claims = JwtUtil.verifyCached(token);
+
+        assertNotNull(claims);
+        assertEquals(1L, claims.getUserId());
+        assertEquals("alice", claims.getUsername());
+        assertEquals("user", claims.getRole());
+    }
+
+    @Test
+    void repeatVerificationIsServedFromTheCache() {
+        String token = JwtUtil.generateToken(2L, "bob", "admin");
+        assertSame(JwtUtil.verifyCached(token), JwtUtil.verifyCached(token));
+    }
+
+    @Test
+    void invalidTokensAreRejected() {
+        String token = JwtUtil.generateToken(3L, "carol", "user");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertNull(JwtUtil.verifyCached(tampered));
+        assertNull(JwtUtil.verifyCached("not.a.token"));
+        assertNull(JwtUtil.verifyCached(""));
+        assertNull(JwtUtil.verifyCached(null));
+    }
+
+    @Test
+    void fullCacheEvictsIdleEntriesAndKeepsRecentlyUsedOnes() {
+        List<String> tokens = new ArrayList<>();
+        List<JwtUtil.TokenClaims> first = new ArrayList<>();
+        for (long id = 100; id < 116; id++) {
+            String token = JwtUtil.generateToken(id, "u" + id, "user");
+            tokens.add(token);
+            first.add(JwtUtil.verifyCached(token));
+        }
+        // Touch the oldest token so it is the most recently used
+        JwtUtil.TokenClaims hot = JwtUtil.verifyCached(tokens.get(0));
+        JwtUtil.TokenClaims newest = JwtUtil.verifyCached(tokens.get(15));
+
+        // Another burst forces an eviction
+        for (long id = 200; id < 204; id++) {
+            JwtUtil.verifyCached(JwtUtil.generateToken(id, "u" + id, "user"));
+        }
+
+        assertSame(hot, JwtUtil.verifyCached(tokens.get(0)), "recently used entry kept");
+        assertNotSame(first.get(1), JwtUtil.verifyCached(tokens.get(1)), "least recently used entry evicted");
+        assertSame(newest, JwtUtil.verifyCached(tokens.get(15)), "cache not emptied");
+    }
+}
@@ -0,0 +1,180 @@
+package com.carrental.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Account limit 3, IP limit 5, a 60s window in six 10s buckets, on a hand-driven clock
+ */
+class LoginThrottleTest {
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    private LoginThrottle throttle(int maxKeys) {
+        return new LoginThrottle(true, 3, 5, 60, 6, maxKeys, now::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        now.addAndGet(seconds * 1000);
+    }
+
+    @Test
+    void accountIsRefusedOnceItsFailuresReachTheLimit() {
+        LoginThrottle throttle = throttle(1000);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(throttle.check("alice", "10.0.0." + i).isAllowed());
+        }
+
+        LoginThrottle.Decision refused = throttle.check("alice", "10.0.0.9");
+        assertFalse(refused.isAllowed());
+        assertEquals("account", refused.getReason());
+        assertEquals(60, refused.getRetryAfterSeconds());
+        assertTrue(refused.isFirstInBucket());
+        assertFalse(throttle.check("alice", "10.0.0.9").isFirstInBucket());
+    }
+
+    @Test
+    void accountKeysIgnoreCaseAndSurroundingSpace() {
+        LoginThrottle throttle = throttle(1000);
+        throttle.check("Alice", null);
+        throttle.check(" alice ", null);
+        throttle.check("ALICE", null);
+
+        assertFalse(throttle.check("alice", null).isAllowed());
+    }
+
+    @Test
+    void failuresAgeOutBucketByBucket() {
+        LoginThrottle throttle = throttle(1000);
+        throttle.check("bob", null);
+        throttle.check("bob", null);
+        advanceSeconds(30);
+        throttle.check("bob", null);
+        assertFalse(throttle.check("bob", null).isAllowed());
+
+        // The first two failures leave the window 60s after they were counted
+        advanceSeconds(20);
+        assertFalse(throttle.check("bob", null).isAllowed());
+        advanceSeconds(10);
+        assertTrue(throttle.check("bob", null).isAllowed());
+        assertTrue(throttle.check("bob", null).isAllowed());
+        assertFalse(throttle.check("bob", null).isAllowed());
+    }
+
+    @Test
+    void ipIsRefusedAcrossAccounts() {
+        LoginThrottle throttle = throttle(1000);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(throttle.check("user" + i, "10.0.0.1").isAllowed());
+        }
+
+        LoginThrottle.Decision refused = throttle.check("someone-else", "10.0.0.1");
+        assertEquals("ip", refused.getReason());
+        assertTrue(throttle.check("someone-else", "10.0.0.2").isAllowed());
+    }
+
+    @Test
+    void successClearsTheAccountAndReturnsTheIpReservation() {
+        LoginThrottle throttle = throttle(1000);
+        throttle.check("carol", "10.0.0.1");
+        throttle.check("carol", "10.0.0.1");
+        throttle.check("dave", "10.0.0.1");
+        throttle.check("dave", "10.0.0.1");
+        LoginThrottle.Decision ok = throttle.check("carol", "10.0.0.1");
+        throttle.recordSuccess("carol", ok);
+
+        // carol starts over; the IP still holds dave's two failures and carol's first two
+        assertTrue(throttle.check("carol", "10.0.0.2").isAllowed());
+        assertTrue(throttle.check("carol", "10.0.0.2").isAllowed());
+        assertTrue(throttle.check("eve", "10.0.0.1").isAllowed());
+        assertEquals("ip", throttle.check("eve", "10.0.0.1").getReason());
+    }
+
+    @Test
+    void releaseReturnsBothReservations() {
+        LoginThrottle throttle = throttle(1000);
+        for (int i = 0; i < 10; i++) {
+            LoginThrottle.Decision decision = throttle.check("frank", "10.0.0.1");
+            assertTrue(decision.isAllowed());
+            throttle.release(decision);
+        }
+    }
+
+    @Test
+    void refusalByAccountDoesNotCountAgainstTheIp() {
+        LoginThrottle throttle = throttle(1000);
+        for (int i = 0; i < 3; i++) {
+            throttle.check("victim", "10.0.0.1");
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("account", throttle.check("victim", "10.0.0.2").getReason());
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(throttle.check("other" + i, "10.0.0.2").isAllowed());
+        }
+    }
+
+    @Test
+    void trackedKeysStayWithinMaxKeys() {
+        LoginThrottle throttle = throttle(8);
+        for (int i = 0; i < 50; i++) {
+            throttle.check("spray" + i, null);
+            Map<String, Object> stats = throttle.getStats();
+            assertTrue((Integer) stats.get("trackedAccounts") + (Integer) stats.get("trackedIps") <= 8);
+        }
+        assertTrue((Long) throttle.getStats().get("evictedKeys") > 0);
+        // The most recent key survives eviction
+        throttle.check("spray49", null);
+        throttle.check("spray49", null);
+        assertFalse(throttle.check("spray49", null).isAllowed());
+    }
+
+    @Test
+    void disabledThrottleAllowsEverything() {
+        LoginThrottle throttle = new LoginThrottle(false, 3, 5, 60, 6, 1000, now::get);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(throttle.check("alice", "10.0.0.1").isAllowed());
+        }
+    }
+
+    @Test
+    void concurrentAttemptsCannotSlipUnderTheLimit() throws Exception {
+        LoginThrottle throttle = throttle(1000);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> attempts = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                String ip = "10.0.1." + i;
+                attempts.add(pool.submit(() -> {
+                    start.await();
+                    return throttle.check("target", ip).isAllowed();
+                }));
+            }
+            start.countDown();
+            int allowed = 0;
+            for (Future<Boolean> attempt : attempts) {
+                if (attempt.get(10, TimeUnit.SECONDS)) {
+                    allowed++;
+                }
+            }
+            assertEquals(3, allowed);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
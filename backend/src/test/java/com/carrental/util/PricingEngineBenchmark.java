@@ -0,0 +1,100 @@
+package com.carrental.util;
+
+import com.carrental.model.Coupon;
+import com.carrental.model.Vehicle;
+import com.carrental.util.PricingEngine.Customer;
+import com.carrental.util.PricingEngine.Quote;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PricingEngine with the default app.pricing.* settings: one quote, and quoteAll over a
+ * catalog page whose vehicles share a handful of rate plans. The rental spans a weekend
+ * and a coupon applies, so every promotion rule is evaluated.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=PricingEngineBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PricingEngineBenchmark {
+
+    private static final LocalDateTime PICKUP = LocalDateTime.of(2030, 1, 10, 10, 0);
+    private static final Customer CUSTOMER = new Customer(3, 1);
+
+    /** Rental length in days */
+    @Param({"3", "45"})
+    public int days;
+
+    private final PricingEngine engine = PricingEngine.getInstance();
+    private Vehicle vehicle;
+    private Coupon coupon;
+
+    @Setup
+    public void setUp() {
+        vehicle = vehicle(2);
+        coupon = new Coupon();
+        coupon.setStatus(1);
+        coupon.setType(2);
+        coupon.setDiscountRate(new BigDecimal("0.9"));
+        coupon.setMaxDiscount(new BigDecimal("100"));
+    }
+
+    @State(Scope.Benchmark)
+    public static class Page {
+        /** Vehicles on the quoted page */
+        @Param({"20", "200"})
+        public int vehicles;
+
+        private List<Vehicle> list;
+
+        @Setup
+        public void setUp() {
+            list = new ArrayList<>(vehicles);
+            for (long id = 1; id <= vehicles; id++) {
+                list.add(vehicle(id));
+            }
+        }
+    }
+
+    @Benchmark
+    public Quote quote() {
+        return engine.quote(vehicle, PICKUP, PICKUP.plusDays(days), "basic", true, coupon, CUSTOMER);
+    }
+
+    @Benchmark
+    public Map<Long, Quote> quoteAll(Page page) {
+        return engine.quoteAll(page.list, PICKUP, PICKUP.plusDays(days), "basic", 1L, null, coupon, CUSTOMER);
+    }
+
+    /** Eight rate plans; every other vehicle has a monthly price */
+    private static Vehicle vehicle(long id) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setId(id);
+        vehicle.setStoreId(id % 4);
+        vehicle.setDailyPrice(BigDecimal.valueOf(150 + id % 8 * 20));
+        vehicle.setWeeklyPrice(BigDecimal.valueOf(900 + id % 8 * 100));
+        vehicle.setMonthlyPrice(id % 2 == 0 ? BigDecimal.valueOf(3200 + id % 8 * 300) : null);
+        vehicle.setDeposit(new BigDecimal("3000"));
+        return vehicle;
+    }
+}
@@ -0,0 +1,248 @@
+package com.carrental.util;
+
+import com.carrental.model.Coupon;
+import com.carrental.model.Vehicle;
+import com.carrental.util.PricingEngine.Customer;
+import com.carrental.util.PricingEngine.Quote;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uses the default pricing settings: new user 50 off, weekend 20% off, rent 7 get 1 free,
+ * second order in a month half price; insurance 30 / 60 a day and a 200 one-way fee
+ */
+class PricingEngineTest {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2030, 1, 7, 10, 0);
+    private static final LocalDateTime FRIDAY = MONDAY.plusDays(4);
+    /** Returning customer with no order yet this month: no customer promotion applies */
+    private static final Customer REGULAR = new Customer(5, 0);
+
+    private final PricingEngine engine = PricingEngine.getInstance();
+
+    private static Vehicle vehicle(long id, String daily, String weekly, String monthly) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setId(id);
+        vehicle.setStoreId(1L);
+        vehicle.setDailyPrice(daily != null ? new BigDecimal(daily) : null);
+        vehicle.setWeeklyPrice(weekly != null ? new BigDecimal(weekly) : null);
+        vehicle.setMonthlyPrice(monthly != null ? new BigDecimal(monthly) : null);
+        vehicle.setDeposit(new BigDecimal("500"));
+        return vehicle;
+    }
+
+    private static Vehicle standard() {
+        return vehicle(1L, "100", "550", "2000");
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertEquals(new BigDecimal(expected).setScale(2), actual.setScale(2));
+    }
+
+    private Quote quote(LocalDateTime pickup, int days, Customer customer) {
+        return engine.quote(standard(), pickup, pickup.plusDays(days), null, false, null, customer);
+    }
+
+    private Quote quoteWithCoupon(Coupon coupon, Customer customer) {
+        return engine.quote(standard(), MONDAY, MONDAY.plusDays(2), null, false, coupon, customer);
+    }
+
+    @Test
+    void rentalDaysCountStartedDays() {
+        assertEquals(DayOfWeek.MONDAY, MONDAY.getDayOfWeek());
+        assertEquals(1, PricingEngine.rentalDays(MONDAY, MONDAY));
+        assertEquals(1, PricingEngine.rentalDays(MONDAY, MONDAY.plusHours(1)));
+        assertEquals(1, PricingEngine.rentalDays(MONDAY, MONDAY.plusHours(24)));
+        assertEquals(2, PricingEngine.rentalDays(MONDAY, MONDAY.plusHours(25)));
+        assertEquals(3, PricingEngine.rentalDays(MONDAY, MONDAY.plusDays(3)));
+    }
+
+    @Test
+    void rentalAmountUsesTheCheapestMixOfRates() {
+        assertAmount("100", quote(MONDAY, 1, REGULAR).getRentalAmount());
+        assertAmount("500", quote(MONDAY, 5, REGULAR).getRentalAmount());
+        // Six single days cost more than a week
+        assertAmount("550", quote(MONDAY, 6, REGULAR).getRentalAmount());
+        assertAmount("650", quote(MONDAY, 8, REGULAR).getRentalAmount());
+        // Four weeks and a few days cost more than a month
+        assertAmount("2000", quote(MONDAY, 25, REGULAR).getRentalAmount());
+        assertAmount("2850", quote(MONDAY, 40, REGULAR).getRentalAmount());
+    }
+
+    @Test
+    void rentalsPastTheTableAddWholeMonths() {
+        // 100 days: three months plus a week and three days
+        assertAmount("6850", quote(MONDAY, 100, REGULAR).getRentalAmount());
+        assertAmount("24000", quote(MONDAY, 360, REGULAR).getRentalAmount());
+    }
+
+    @Test
+    void missingWeeklyAndMonthlyRatesAreSkipped() {
+        Vehicle dailyOnly = vehicle(2L, "100", null, "0");
+        Quote quote = engine.quote(dailyOnly, MONDAY, MONDAY.plusDays(10), null, false, null, REGULAR);
+
+        assertAmount("1000", quote.getRentalAmount());
+    }
+
+    @Test
+    void regularWeekdayRentalHasNoPromotion() {
+        Quote quote = quote(MONDAY, 2, REGULAR);
+
+        assertNull(quote.getPromotion());
+        assertAmount("0", quote.getDiscountAmount());
+        assertAmount("700", quote.getTotalAmount());
+    }
+
+    @Test
+    void newUserGetsAFixedAmountOff() {
+        Quote quote = quote(MONDAY, 2, new Customer(0, 0));
+
+        assertEquals(PricingEngine.PROMO_NEW_USER, quote.getPromotion());
+        assertAmount("50", quote.getPromotionDiscount());
+        assertAmount("650", quote.getTotalAmount());
+    }
+
+    @Test
+    void weekendDiscountCoversOnlyFridayToSunday() {
+        // Thursday and Friday: half the rental is on the weekend
+        Quote quote = quote(FRIDAY.minusDays(1), 2, REGULAR);
+
+        assertEquals(PricingEngine.PROMO_WEEKEND, quote.getPromotion());
+        assertAmount("20", quote.getPromotionDiscount());
+        assertNull(quote(MONDAY, 4, REGULAR).getPromotion());
+    }
+
+    @Test
+    void longTermRentalGetsFreeDays() {
+        Quote quote = quote(MONDAY, 8, REGULAR);
+
+        // One of eight days free beats 20% off the three weekend days
+        assertEquals(PricingEngine.PROMO_LONG_TERM, quote.getPromotion());
+        assertAmount("81.25", quote.getPromotionDiscount());
+    }
+
+    @Test
+    void secondOrderInAMonthIsHalfPrice() {
+        Quote quote = quote(MONDAY, 2, new Customer(3, 1));
+
+        assertEquals(PricingEngine.PROMO_SECOND_ORDER, quote.getPromotion());
+        assertAmount("100", quote.getPromotionDiscount());
+        assertNull(quote(MONDAY, 2, new Customer(3, 2)).getPromotion());
+    }
+
+    @Test
+    void promotionsDoNotStackAndTheLargestWins() {
+        // New user 50 off beats 20% off a 200 weekend rental
+        Quote shortWeekend = quote(FRIDAY, 2, new Customer(0, 0));
+        assertEquals(PricingEngine.PROMO_NEW_USER, shortWeekend.getPromotion());
+        assertAmount("50", shortWeekend.getPromotionDiscount());
+
+        // 20% off a 300 weekend rental beats it
+        Quote longWeekend = quote(FRIDAY, 3, new Customer(0, 0));
+        assertEquals(PricingEngine.PROMO_WEEKEND, longWeekend.getPromotion());
+        assertAmount("60", longWeekend.getPromotionDiscount());
+    }
+
+    @Test
+    void unknownCustomersGetNoCustomerPromotions() {
+        assertNull(quote(MONDAY, 2, Customer.UNKNOWN).getPromotion());
+    }
+
+    @Test
+    void couponsApplyAfterThePromotion() {
+        Coupon threshold = new Coupon();
+        threshold.setStatus(1);
+        threshold.setType(1);
+        threshold.setDiscountAmount(new BigDecimal("30"));
+        threshold.setMinAmount(new BigDecimal("150"));
+        // 200 less the 50 new-user discount still reaches the minimum
+        assertAmount("30", quoteWithCoupon(threshold, new Customer(0, 0)).getCouponDiscount());
+        threshold.setMinAmount(new BigDecimal("180"));
+        Quote belowMinimum = quoteWithCoupon(threshold, new Customer(0, 0));
+        assertAmount("0", belowMinimum.getCouponDiscount());
+        assertAmount("50", belowMinimum.getDiscountAmount());
+
+        Coupon rate = new Coupon();
+        rate.setStatus(1);
+        rate.setType(2);
+        rate.setDiscountRate(new BigDecimal("0.9"));
+        assertAmount("20", quoteWithCoupon(rate, REGULAR).getCouponDiscount());
+        rate.setMaxDiscount(new BigDecimal("15"));
+        assertAmount("15", quoteWithCoupon(rate, REGULAR).getCouponDiscount());
+
+        Coupon fixed = new Coupon();
+        fixed.setStatus(1);
+        fixed.setType(3);
+        fixed.setDiscountAmount(new BigDecimal("500"));
+        Quote capped = quoteWithCoupon(fixed, new Customer(0, 0));
+        assertAmount("150", capped.getCouponDiscount());
+        assertAmount("500", capped.getTotalAmount());
+
+        fixed.setStatus(0);
+        assertAmount("0", quoteWithCoupon(fixed, REGULAR).getCouponDiscount());
+    }
+
+    @Test
+    void insuranceAndOneWayFeeAreAddedWithTheDeposit() {
+        Quote quote = engine.quote(standard(), MONDAY, MONDAY.plusDays(2), "premium", true, null, REGULAR);
+
+        assertAmount("120", quote.getInsuranceAmount());
+        assertAmount("200", quote.getServiceAmount());
+        assertAmount("500", quote.getDeposit());
+        assertAmount("1020", quote.getTotalAmount());
+        assertAmount("0", engine.quote(standard(), MONDAY, MONDAY.plusDays(2), "none", false, null, REGULAR)
+            .getInsuranceAmount());
+    }
+
+    @Test
+    void bulkQuotesMatchSingleQuotesInListOrder() {
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (long id = 1; id <= 150; id++) {
+            Vehicle vehicle = vehicle(id, String.valueOf(80 + id % 7 * 10), id % 2 == 0 ? "500" : null, null);
+            vehicle.setStoreId(id % 3);
+            vehicles.add(vehicle);
+        }
+        vehicles.get(10).setDailyPrice(null);
+
+        Map<Long, Quote> quotes = engine.quoteAll(vehicles, FRIDAY, FRIDAY.plusDays(9), "basic",
+            null, 1L, null, new Customer(0, 0));
+
+        assertEquals(149, quotes.size());
+        assertFalse(quotes.containsKey(11L));
+        long expectedId = 1;
+        for (Map.Entry<Long, Quote> entry : quotes.entrySet()) {
+            if (expectedId == 11) {
+                expectedId++;
+            }
+            assertEquals(expectedId, entry.getKey());
+            Vehicle vehicle = vehicles.get((int) expectedId - 1);
+            Quote single = engine.quote(vehicle, FRIDAY, FRIDAY.plusDays(9), "basic",
+                vehicle.getStoreId() != 1L, null, new Customer(0, 0));
+            assertEquals(single.toMap(), entry.getValue().toMap());
+            expectedId++;
+        }
+    }
+
+    @Test
+    void promotionTextFollowsTheConfiguredValues() {
+        assertEquals("首单立减50元", engine.promotionTitle(PricingEngine.PROMO_NEW_USER));
+        assertEquals("周末特惠8折", engine.promotionTitle(PricingEngine.PROMO_WEEKEND));
+        assertEquals("租7天送1天", engine.promotionTitle(PricingEngine.PROMO_LONG_TERM));
+        assertEquals("第二单半价", engine.promotionTitle(PricingEngine.PROMO_SECOND_ORDER));
+        assertEquals("每周五至周日租车享8折优惠", engine.promotionDescription(PricingEngine.PROMO_WEEKEND));
+        assertTrue(engine.isPromotionEnabled(PricingEngine.PROMO_LONG_TERM));
+        assertFalse(engine.isPromotionEnabled("flash_sale"));
+        assertNull(engine.promotionTitle("flash_sale"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.carrental.util;
+
+import com.carrental.dto.OrderCreateRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binding an order-create body to OrderCreateRequest against the Map.class parse and
+ * hand casts it replaced. Both read every field the create handler uses.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=RequestBinderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBinderBenchmark {
+
+    private static final String BODY = "{\"vehicleId\": 12, \"pickupStoreId\": 3, \"returnStoreId\": 5,"
+        + " \"pickupTime\": \"2025-05-01 10:00:00\", \"returnTime\": \"2025-05-04 10:00:00\","
+        + " \"insuranceType\": \"premium\", \"addServices\": [\"child_seat\", \"gps\"],"
+        + " \"couponId\": 88, \"deliveryAddress\": \"朝阳区建国路88号\", \"deliveryCity\": \"北京\","
+        + " \"deliveryDistrict\": \"朝阳区\", \"deliveryLng\": 116.4612, \"deliveryLat\": 39.9087}";
+
+    private final HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+        HttpServletResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class},
+        (p, method, args) -> {
+            throw new IllegalStateException("unexpected error response");
+        });
+
+    @Benchmark
+    public void bindTyped(Blackhole bh) throws IOException {
+        OrderCreateRequest body = RequestBinder.bind(request(), response, OrderCreateRequest.class);
+        bh.consume(body.getVehicleId());
+        bh.consume(body.getPickupStoreId());
+        bh.consume(body.getReturnStoreId());
+        bh.consume(body.getPickupTime());
+        bh.consume(body.getReturnTime());
+        bh.consume(body.getInsuranceType());
+        bh.consume(body.getAddServicesJson());
+        bh.consume(body.getCouponId());
+        bh.consume(body.getDeliveryAddress());
+        bh.consume(body.getDeliveryCity());
+        bh.consume(body.getDeliveryDistrict());
+        bh.consume(body.getDeliveryLng());
+        bh.consume(body.getDeliveryLat());
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void bindMap(Blackhole bh) throws IOException {
+        Map<String, Object> body = JsonUtil.fromJson(request(), Map.class);
+        Long pickupStoreId = ((Number) body.get("pickupStoreId")).longValue();
+        bh.consume(((Number) body.get("vehicleId")).longValue());
+        bh.consume(pickupStoreId);
+        bh.consume(body.get("returnStoreId") != null
+            ? ((Number) body.get("returnStoreId")).longValue() : pickupStoreId);
+        bh.consume((String) body.get("pickupTime"));
+        bh.consume((String) body.get("returnTime"));
+        bh.consume((String) body.get("insuranceType"));
+        bh.consume(body.get("addServices") != null ? JsonUtil.toJson(body.get("addServices")) : null);
+        bh.consume(body.get("couponId") != null ? ((Number) body.get("couponId")).longValue() : null);
+        bh.consume((String) body.get("deliveryAddress"));
+        bh.consume((String) body.get("deliveryCity"));
+        bh.consume((String) body.get("deliveryDistrict"));
+        bh.consume(body.get("deliveryLng") != null ? new BigDecimal(body.get("deliveryLng").toString()) : null);
+        bh.consume(body.get("deliveryLat") != null ? new BigDecimal(body.get("deliveryLat").toString()) : null);
+    }
+
+    private static HttpServletRequest request() {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+            HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+            (p, method, args) -> new BufferedReader(new StringReader(BODY)));
+    }
+}
@@ -0,0 +1,70 @@
+package com.carrental.util;
+
+import com.carrental.dto.CouponIssueRequest;
+import com.carrental.dto.OrderCreateRequest;
+import com.carrental.dto.OrderPayRequest;
+import com.carrental.dto.OrderReviewRequest;
+import com.carrental.dto.PointsExchangeRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestBinderTest {
+
+    private static <T> T bind(String json, Class<T> type, ServletStubs.CapturedResponse resp) throws Exception {
+        return RequestBinder.bind(ServletStubs.jsonRequest(json), resp.proxy, type);
+    }
+
+    private static void assertRejected(String json, Class<?> type, String message) throws Exception {
+        ServletStubs.CapturedResponse resp = new ServletStubs.CapturedResponse();
+        assertNull(bind(json, type, resp));
+        assertEquals(400, resp.status());
+        assertEquals("{\"code\":400,\"message\":\"" + message + "\"}", resp.body.toString());
+    }
+
+    @Test
+    void bindsTypedFieldsAndKeepsRawJsonMembers() throws Exception {
+        ServletStubs.CapturedResponse resp = new ServletStubs.CapturedResponse();
+        OrderCreateRequest body = bind("{\"vehicleId\":12,\"pickupStoreId\":3,"
+            + "\"pickupTime\":\"2024-06-01 10:00:00\",\"returnTime\":\"2024-06-03 10:00:00\","
+            + "\"addServices\":[{\"id\":1,\"qty\":2}],\"deliveryLng\":121.4737}",
+            OrderCreateRequest.class, resp);
+
+        assertNotNull(body);
+        assertEquals(12L, body.getVehicleId());
+        assertEquals(3L, body.getReturnStoreId(), "return store defaults to the pickup store");
+        assertEquals("[{\"id\":1,\"qty\":2}]", body.getAddServicesJson());
+        assertEquals(new BigDecimal("121.4737"), body.getDeliveryLng());
+        assertTrue(resp.body.toString().isEmpty(), "nothing written on success");
+    }
+
+    @Test
+    void rejectsMalformedAndEmptyBodies() throws Exception {
+        assertRejected("{\"orderId\":", OrderPayRequest.class, "请求参数格式错误");
+        assertRejected("{\"orderId\":\"abc\",\"paymentMethod\":1}", OrderPayRequest.class, "请求参数格式错误");
+        assertRejected("", OrderPayRequest.class, "请求体不能为空");
+    }
+
+    @Test
+    void reportsTheFirstValidationError() throws Exception {
+        assertRejected("{\"orderId\":1}", OrderPayRequest.class, "orderId 和 paymentMethod 为必填");
+        assertRejected("{\"vehicleId\":1,\"pickupStoreId\":2}", OrderCreateRequest.class, "取车和还车时间为必填");
+        assertRejected("{\"orderId\":1,\"rating\":6}", OrderReviewRequest.class, "评分需在1到5之间");
+        assertRejected("{\"itemId\":1,\"points\":0}", PointsExchangeRequest.class, "兑换积分必须大于0");
+        assertRejected("{\"couponId\":1,\"userIds\":[1,null]}", CouponIssueRequest.class, "userIds 不能包含空值");
+    }
+
+    @Test
+    void bindsListsOfIds() throws Exception {
+        CouponIssueRequest body = bind("{\"couponId\":9,\"userIds\":[4,5,6]}", CouponIssueRequest.class,
+            new ServletStubs.CapturedResponse());
+
+        assertEquals(List.of(4L, 5L, 6L), body.getUserIds());
+    }
+}
@@ -0,0 +1,62 @@
+package com.carrental.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal servlet request/response stand-ins for tests; unexpected calls fail loudly
+ */
+final class ServletStubs {
+
+    private ServletStubs() {
+    }
+
+    /**
+     * Request whose body is json
+     */
+    static HttpServletRequest jsonRequest(String json) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+            HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+            (p, method, args) -> {
+                if ("getReader".equals(method.getName())) {
+                    return new BufferedReader(new StringReader(json));
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    /**
+     * Response capturing status, content type and body
+     */
+    static final class CapturedResponse {
+        final StringWriter body = new StringWriter();
+        final Map<String, Object> calls = new HashMap<>();
+        final HttpServletResponse proxy = (HttpServletResponse) Proxy.newProxyInstance(
+            HttpServletResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class},
+            (p, method, args) -> {
+                switch (method.getName()) {
+                    case "getWriter":
+                        return new PrintWriter(body);
+                    case "setStatus":
+                    case "setContentType":
+                    case "setCharacterEncoding":
+                        calls.put(method.getName(), args[0]);
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+        Object status() {
+            return calls.get("setStatus");
+        }
+    }
+}
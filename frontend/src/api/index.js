@@ -100,7 +100,8 @@ const api = {
     pay: (data) => instance.post('/orders/pay', data),
     cancel: (data) => instance.post('/orders/cancel', data),
     review: (data) => instance.post('/orders/review', data),
-    calculate: (data) => instance.post('/orders/calculate', data)
+    calculate: (data) => instance.post('/orders/calculate', data),
+    quotes: (data) => instance.post('/orders/quotes', data)
   },
 
   // Reviews (public)
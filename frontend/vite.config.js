@@ -15,6 +15,10 @@ export default defineConfig({
       '/api': {
         target: 'http://localhost:8080/car-rental',
         changeOrigin: true
+      },
+      '/uploads': {
+        target: 'http://localhost:8080/car-rental',
+        changeOrigin: true
       }
     }
   },